@@ -1,13 +1,15 @@
 package ch.epfl.xblast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * Note :<Code> Cell </Code> contains the values that defines the width and height of
- * the game board.
+ * the game board. The 195 cells of the board are created once, {@link #of(int, int)}
+ * and {@link #neighbor(Direction)} always return these canonical instances.
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -17,8 +19,11 @@ public final class Cell {
 	public static final int COLUMNS = 15;
 	public static final int COUNT = 195;
 	public static final int ROWS = 13;
-	public static final List<Cell> ROW_MAJOR_ORDER = Collections.unmodifiableList(rowMajorOrder());
+	private static final Cell[] CELLS = rowMajorOrder();
+	public static final List<Cell> ROW_MAJOR_ORDER = Collections.unmodifiableList(Arrays.asList(CELLS));
 	public static final List<Cell> SPIRAL_ORDER = Collections.unmodifiableList(spiralOrder());
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final Cell[] NEIGHBORS = neighbors();
 	private final int x;
 	private final int y;
 
@@ -37,6 +42,20 @@ public final class Cell {
 		this.y = Math.floorMod(y, ROWS);
 	}
 
+	/**
+	 * Returns the canonical cell with the given x- and y-coordinates, without
+	 * creating any object
+	 * 
+	 * @param x
+	 *            the x-coordinate of the cell
+	 * @param y
+	 *            the y-coordinate of the cell
+	 * @return the cell
+	 */
+	public static Cell of(int x, int y) {
+		return CELLS[Math.floorMod(x, COLUMNS) + Math.floorMod(y, ROWS) * COLUMNS];
+	}
+
 	public int x() {
 		return x;
 	}
@@ -51,16 +70,49 @@ public final class Cell {
 	 * 
 	 * @return the cell in the row major order
 	 */
-	private static List<Cell> rowMajorOrder() {
-		ArrayList<Cell> rowMajorOrder = new ArrayList<Cell>();
+	private static Cell[] rowMajorOrder() {
+		Cell[] rowMajorOrder = new Cell[COUNT];
 		for (int i = 0; i < ROWS; i++) {
 			for (int j = 0; j < COLUMNS; j++) {
-				rowMajorOrder.add(new Cell(j, i));
+				rowMajorOrder[j + i * COLUMNS] = new Cell(j, i);
 			}
 		}
 		return rowMajorOrder;
 	}
 
+	/**
+	 * Computes the neighbors of every cell, the neighbor of a cell in direction
+	 * d being at index 4 * rowMajorIndex + d.ordinal()
+	 * 
+	 * @return the table of neighbors
+	 */
+	private static Cell[] neighbors() {
+		Cell[] neighbors = new Cell[COUNT * DIRECTIONS.length];
+		for (Cell c : CELLS) {
+			for (Direction d : DIRECTIONS) {
+				Cell neighbor;
+				switch (d) {
+				case N:
+					neighbor = of(c.x, c.y - 1);
+					break;
+				case S:
+					neighbor = of(c.x, c.y + 1);
+					break;
+				case E:
+					neighbor = of(c.x + 1, c.y);
+					break;
+				case W:
+					neighbor = of(c.x - 1, c.y);
+					break;
+				default:
+					throw new NoSuchElementException("Not a valid direction");
+				}
+				neighbors[c.rowMajorIndex() * DIRECTIONS.length + d.ordinal()] = neighbor;
+			}
+		}
+		return neighbors;
+	}
+
 	/**
 	 * Create a list with cells in a specific order - the spiral order. It
 	 * counts the first line from left to right, and then make a virtual
@@ -103,9 +155,9 @@ public final class Cell {
 			for (int i = 0; i < currentColumn.size(); ++i) {
 				int c1 = currentColumn.get(i);
 				if (horizontal) {
-					spiral.add(new Cell(c1, c2));
+					spiral.add(of(c1, c2));
 				} else {
-					spiral.add(new Cell(c2, c1));
+					spiral.add(of(c2, c1));
 				}
 			}
 
@@ -119,8 +171,6 @@ public final class Cell {
 	/**
 	 * Returns the neighbor cell in the direction given
 	 * 
-	 * @throws NoSuchElementException
-	 *             if Neighbor is asked in a direction that doesn't exist
 	 * @param dir
 	 *            the neighbor's direction
 	 * @return the neighbor cell
@@ -128,39 +178,18 @@ public final class Cell {
 	 */
 
 	public final Cell neighbor(Direction dir) {
-		switch (dir) {
-		case N:
-			if (y == 0)
-				return new Cell(x, ROWS - 1);
-			else
-				return new Cell(x, y - 1);
-		case S:
-			if (y == ROWS - 1)
-				return new Cell(x, 0);
-			else
-				return new Cell(x, y + 1);
-		case E:
-			if (x == COLUMNS - 1)
-				return new Cell(0, y);
-			else
-				return new Cell(x + 1, y);
-		case W:
-			if (x == 0)
-				return new Cell(COLUMNS - 1, y);
-			else
-				return new Cell(x - 1, y);
-		default:
-			throw new NoSuchElementException("Not a valid direction");
-		}
+		return NEIGHBORS[rowMajorIndex() * DIRECTIONS.length + dir.ordinal()];
 	}
 
 	@Override
 	public final boolean equals(Object that) {
-
+		if (this == that)
+			return true;
 		if (that == null || that.getClass() != getClass())
 			return false;
 		else {
-			return (that.hashCode() == this.hashCode());
+			Cell cell = (Cell) that;
+			return cell.x == x && cell.y == y;
 		}
 	}
 
@@ -0,0 +1,128 @@
+package ch.epfl.xblast;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of cells of the board, stored as 195 bits indexed by
+ * {@link Cell#rowMajorIndex()}. Adding, removing and testing a cell costs one
+ * bit operation and never allocates anything.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class CellSet {
+
+    private static final int BITS_PER_WORD = Long.SIZE;
+    private static final int WORDS = (Cell.COUNT + BITS_PER_WORD - 1)
+            / BITS_PER_WORD;
+
+    private final long[] words = new long[WORDS];
+
+    /**
+     * Constructs an empty set of cells
+     */
+    public CellSet() {
+    }
+
+    /**
+     * @param cells
+     * @return a new set containing the given cells
+     */
+    public static CellSet of(Collection<Cell> cells) {
+        CellSet set = new CellSet();
+        for (Cell c : cells)
+            set.add(c);
+        return set;
+    }
+
+    /**
+     * @param c
+     * @return true if the cell is in the set
+     */
+    public boolean contains(Cell c) {
+        return contains(c.rowMajorIndex());
+    }
+
+    /**
+     * @param index
+     *            the row major index of a cell
+     * @return true if the cell is in the set
+     */
+    public boolean contains(int index) {
+        return (words[index / BITS_PER_WORD] & bit(index)) != 0;
+    }
+
+    /**
+     * Adds the cell to the set
+     *
+     * @param c
+     */
+    public void add(Cell c) {
+        add(c.rowMajorIndex());
+    }
+
+    /**
+     * Adds the cell of the given row major index to the set
+     *
+     * @param index
+     */
+    public void add(int index) {
+        words[index / BITS_PER_WORD] |= bit(index);
+    }
+
+    /**
+     * Removes the cell from the set
+     *
+     * @param c
+     */
+    public void remove(Cell c) {
+        words[c.rowMajorIndex() / BITS_PER_WORD] &= ~bit(c.rowMajorIndex());
+    }
+
+    /**
+     * Removes all the cells of the set
+     */
+    public void clear() {
+        for (int i = 0; i < WORDS; ++i)
+            words[i] = 0;
+    }
+
+    /**
+     * @return the number of cells in the set
+     */
+    public int size() {
+        int size = 0;
+        for (long w : words)
+            size += Long.bitCount(w);
+        return size;
+    }
+
+    /**
+     * @return true if the set does not contain any cell
+     */
+    public boolean isEmpty() {
+        for (long w : words)
+            if (w != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * @return an unmodifiable {@link Set} containing the same cells
+     */
+    public Set<Cell> toSet() {
+        Set<Cell> set = new HashSet<>();
+        for (Cell c : Cell.ROW_MAJOR_ORDER)
+            if (contains(c))
+                set.add(c);
+        return Collections.unmodifiableSet(set);
+    }
+
+    private static long bit(int index) {
+        return 1L << (index % BITS_PER_WORD);
+    }
+}
@@ -0,0 +1,284 @@
+package ch.epfl.xblast;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The delta mode of the protocol between the server and the clients. In this
+ * mode, a game state is seen as a frame of decoded bytes: the board in spiral
+ * order, the bombs and explosions in row-major order, the four players and the
+ * time. The server sends either a keyframe, which is the usual serialized
+ * state, or a delta, which only contains the bytes of the frame which changed
+ * since a frame the client acknowledged.
+ *
+ * A packet of the server starts with the id of the player, the kind of the
+ * packet and the number of its frame. The kind of a delta is the distance to
+ * its base frame, and it is followed by the sections of the frame which
+ * changed: a byte whose bits tell which sections follow (the board, the
+ * explosions, each pair of players and the time), then the segments of the
+ * board and of the explosions (their number, then for each one the number of
+ * unchanged bytes before it, its length and its new bytes), for each pair of
+ * players a byte holding the bits of their changed bytes followed by them,
+ * and the time. A delta between identical frames is empty.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class DeltaProtocol {
+
+    /**
+     * The size of a decoded frame, and the offsets of its sections
+     */
+    public static final int FRAME_SIZE = 2 * Cell.COUNT + 4 * 4 + 1;
+    public static final int BOARD_OFFSET = 0;
+    public static final int EXPLOSIONS_OFFSET = Cell.COUNT;
+    public static final int PLAYERS_OFFSET = 2 * Cell.COUNT;
+    public static final int TIME_OFFSET = FRAME_SIZE - 1;
+
+    /**
+     * The bytes sent by a client: to join a game in delta mode, to
+     * acknowledge a frame (followed by its number) and to request a keyframe
+     */
+    public static final byte JOIN_WITH_DELTAS = 0x40;
+    public static final byte ACKNOWLEDGE = 0x41;
+    public static final byte KEYFRAME_REQUEST = 0x42;
+    public static final int ACKNOWLEDGE_SIZE = 1 + Integer.BYTES;
+
+    /**
+     * The kind of the keyframes sent by the server. The kind of a delta is
+     * instead the distance to its base frame, from 1 to {@link #MAX_DISTANCE}
+     */
+    public static final byte KEYFRAME = 0;
+    public static final int MAX_DISTANCE = Byte.MAX_VALUE;
+
+    /**
+     * The sizes of the headers of the packets (player id, kind and frame
+     * number)
+     */
+    public static final int KEYFRAME_HEADER_SIZE = 2 + Integer.BYTES;
+    public static final int DELTA_HEADER_SIZE = KEYFRAME_HEADER_SIZE;
+
+    /**
+     * The size of a buffer which can hold any keyframe, and any delta before
+     * it is found too large (the board and the explosions take at most three
+     * bytes more than their size, the players one byte more by pair, and the
+     * sections changed one byte)
+     */
+    public static final int MAX_PACKET_SIZE = DELTA_HEADER_SIZE + FRAME_SIZE
+            + 2 * 3 + 2 + 1;
+
+    /**
+     * Above this size, a delta is replaced by a keyframe
+     */
+    public static final int MAX_DELTA_SIZE = FRAME_SIZE / 2;
+
+    // the bits of the sections changed by a delta
+    private static final int BOARD_CHANGED = 1;
+    private static final int EXPLOSIONS_CHANGED = 1 << 1;
+    private static final int FIRST_PAIR_CHANGED = 1 << 2;
+    private static final int TIME_CHANGED = 1 << 4;
+    // the players are grouped by pairs, so that the bits of the changed bytes
+    // of a pair fit in one byte
+    private static final int PAIRS = 2;
+    private static final int BYTES_PER_PAIR = 2 * 4;
+
+    // unchanged bytes costing less than a new segment header
+    private static final int MAX_GAP = 2;
+
+    private DeltaProtocol() {
+    }
+
+    /**
+     * Writes the frame in the buffer in the usual serialized form: the
+     * encoded board and explosions, each prefixed by its length, then the
+     * players and the time
+     *
+     * @param frame
+     * @param dst
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer is too small
+     */
+    public static void encodeKeyframe(byte[] frame, ByteBuffer dst) {
+        encodeSection(frame, BOARD_OFFSET, EXPLOSIONS_OFFSET, dst);
+        encodeSection(frame, EXPLOSIONS_OFFSET, PLAYERS_OFFSET, dst);
+        dst.put(frame, PLAYERS_OFFSET, FRAME_SIZE - PLAYERS_OFFSET);
+    }
+
+    /**
+     * Reads a game state serialized in the usual form into a frame
+     *
+     * @param src
+     * @param frame
+     * @throws IllegalArgumentException
+     *             if the serialized state is invalid
+     */
+    public static void decodeKeyframe(ByteBuffer src, byte[] frame) {
+        decodeSection(src, frame, BOARD_OFFSET, EXPLOSIONS_OFFSET);
+        decodeSection(src, frame, EXPLOSIONS_OFFSET, PLAYERS_OFFSET);
+        if (src.remaining() < FRAME_SIZE - PLAYERS_OFFSET)
+            throw new IllegalArgumentException("Truncated game state");
+        src.get(frame, PLAYERS_OFFSET, FRAME_SIZE - PLAYERS_OFFSET);
+    }
+
+    /**
+     * Writes the sections of the frame which differ from the base, nothing if
+     * the frames are identical
+     *
+     * @param base
+     * @param frame
+     * @param dst
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer is too small
+     */
+    public static void encodeDelta(byte[] base, byte[] frame, ByteBuffer dst) {
+        int changedIndex = dst.position();
+        dst.put((byte) 0);
+        int changed = 0;
+
+        if (encodeSegments(base, frame, BOARD_OFFSET, EXPLOSIONS_OFFSET, dst))
+            changed |= BOARD_CHANGED;
+        if (encodeSegments(base, frame, EXPLOSIONS_OFFSET, PLAYERS_OFFSET,
+                dst))
+            changed |= EXPLOSIONS_CHANGED;
+        for (int p = 0; p < PAIRS; ++p) {
+            int from = PLAYERS_OFFSET + p * BYTES_PER_PAIR;
+            int bytesChanged = 0;
+            for (int i = 0; i < BYTES_PER_PAIR; ++i)
+                if (base[from + i] != frame[from + i])
+                    bytesChanged |= 1 << i;
+            if (bytesChanged == 0)
+                continue;
+            changed |= FIRST_PAIR_CHANGED << p;
+            dst.put((byte) bytesChanged);
+            for (int i = 0; i < BYTES_PER_PAIR; ++i)
+                if ((bytesChanged & 1 << i) != 0)
+                    dst.put(frame[from + i]);
+        }
+        if (base[TIME_OFFSET] != frame[TIME_OFFSET]) {
+            changed |= TIME_CHANGED;
+            dst.put(frame[TIME_OFFSET]);
+        }
+
+        if (changed == 0)
+            dst.position(changedIndex);
+        else
+            dst.put(changedIndex, (byte) changed);
+    }
+
+    /**
+     * Computes a frame from its base and the sections of a delta
+     *
+     * @param base
+     * @param src
+     *            the delta, until the end of the buffer
+     * @param frame
+     * @throws IllegalArgumentException
+     *             if the delta is invalid
+     */
+    public static void applyDelta(byte[] base, ByteBuffer src, byte[] frame) {
+        System.arraycopy(base, 0, frame, 0, FRAME_SIZE);
+        if (!src.hasRemaining())
+            return;
+        int changed = Byte.toUnsignedInt(src.get());
+        if (changed >= TIME_CHANGED << 1)
+            throw new IllegalArgumentException("Invalid delta");
+
+        if ((changed & BOARD_CHANGED) != 0)
+            decodeSegments(src, frame, BOARD_OFFSET, EXPLOSIONS_OFFSET);
+        if ((changed & EXPLOSIONS_CHANGED) != 0)
+            decodeSegments(src, frame, EXPLOSIONS_OFFSET, PLAYERS_OFFSET);
+        for (int p = 0; p < PAIRS; ++p) {
+            if ((changed & FIRST_PAIR_CHANGED << p) == 0)
+                continue;
+            int bytesChanged = Byte.toUnsignedInt(next(src));
+            int from = PLAYERS_OFFSET + p * BYTES_PER_PAIR;
+            for (int i = 0; i < BYTES_PER_PAIR; ++i)
+                if ((bytesChanged & 1 << i) != 0)
+                    frame[from + i] = next(src);
+        }
+        if ((changed & TIME_CHANGED) != 0)
+            frame[TIME_OFFSET] = next(src);
+
+        if (src.hasRemaining())
+            throw new IllegalArgumentException("Invalid delta");
+    }
+
+    /**
+     * Writes the segments of bytes of a section of the frame which differ
+     * from the base, preceded by their number, if there is any
+     *
+     * @return true if the section changed
+     */
+    private static boolean encodeSegments(byte[] base, byte[] frame, int from,
+            int to, ByteBuffer dst) {
+        int countIndex = dst.position();
+        dst.put((byte) 0);
+        int count = 0;
+        // the end of the previous segment
+        int previous = from;
+        int i = from;
+        while (i < to) {
+            if (base[i] == frame[i]) {
+                ++i;
+                continue;
+            }
+            // a segment starts at the first changed byte and goes on while
+            // the next change is close enough
+            int start = i;
+            int end = i + 1;
+            for (int next = end; next < to && next - end < MAX_GAP; ++next)
+                if (base[next] != frame[next])
+                    end = next + 1;
+            dst.put((byte) (start - previous)).put((byte) (end - start))
+                    .put(frame, start, end - start);
+            ++count;
+            previous = end;
+            i = end;
+        }
+
+        if (count == 0)
+            dst.position(countIndex);
+        else
+            dst.put(countIndex, (byte) count);
+        return count != 0;
+    }
+
+    private static void decodeSegments(ByteBuffer src, byte[] frame, int from,
+            int to) {
+        int count = Byte.toUnsignedInt(next(src));
+        int previous = from;
+        for (int i = 0; i < count; ++i) {
+            int start = previous + Byte.toUnsignedInt(next(src));
+            int length = Byte.toUnsignedInt(next(src));
+            if (start + length > to || src.remaining() < length)
+                throw new IllegalArgumentException("Invalid segment");
+            src.get(frame, start, length);
+            previous = start + length;
+        }
+    }
+
+    private static byte next(ByteBuffer src) {
+        if (!src.hasRemaining())
+            throw new IllegalArgumentException("Truncated delta");
+        return src.get();
+    }
+
+    private static void encodeSection(byte[] frame, int from, int to,
+            ByteBuffer dst) {
+        int lengthIndex = dst.position();
+        dst.put((byte) 0);
+        RunLengthEncoder.encode(frame, from, to, dst);
+        dst.put(lengthIndex, (byte) (dst.position() - lengthIndex - 1));
+    }
+
+    private static void decodeSection(ByteBuffer src, byte[] frame, int from,
+            int to) {
+        if (!src.hasRemaining())
+            throw new IllegalArgumentException("Truncated game state");
+        int length = Byte.toUnsignedInt(src.get());
+        if (src.remaining() < length)
+            throw new IllegalArgumentException("Truncated game state");
+
+        RunLengthEncoder.decode(src, length, frame, from, to);
+    }
+}
@@ -0,0 +1,126 @@
+package ch.epfl.xblast;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * The sequenced mode of the actions sent by a client. Each action of a client
+ * gets the next sequence number, and each packet carries the last
+ * {@link #REDUNDANCY} actions, so that an action is only lost if as many
+ * packets in a row are lost. The server applies each action once, in order,
+ * whatever the number of packets carrying it.
+ *
+ * A packet starts with {@link #INPUTS}, followed by the sequence number of its
+ * last action, the number of the last frame the client received, the number
+ * of actions and the actions, the oldest first. Each action is the byte sent
+ * in the unsequenced mode, the ordinal of a {@link PlayerAction}.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class InputProtocol {
+
+    /**
+     * The first byte of a packet of sequenced actions
+     */
+    public static final byte INPUTS = 0x60;
+
+    /**
+     * The maximal number of actions repeated in a packet
+     */
+    public static final int REDUNDANCY = 8;
+
+    /**
+     * The size of the header of a packet, and of the largest packet
+     */
+    public static final int HEADER_SIZE = 1 + 2 * Integer.BYTES + 1;
+    public static final int MAX_PACKET_SIZE = HEADER_SIZE + REDUNDANCY;
+
+    private InputProtocol() {
+    }
+
+    /**
+     * Writes a packet in the buffer
+     *
+     * @param lastSequence
+     *            the sequence number of the last action
+     * @param lastFrame
+     *            the number of the last frame received by the client
+     * @param actions
+     *            the actions, the oldest first
+     * @param from
+     *            the index of the first action sent
+     * @param count
+     *            the number of actions sent
+     * @param dst
+     * @throws IllegalArgumentException
+     *             if there are more actions than {@link #REDUNDANCY} or than
+     *             the sequence number of the last one allows
+     */
+    public static void writePacket(int lastSequence, int lastFrame,
+            byte[] actions, int from, int count, ByteBuffer dst) {
+        if (count < 0 || count > REDUNDANCY || count > lastSequence + 1)
+            throw new IllegalArgumentException("Invalid number of actions");
+        dst.put(INPUTS).putInt(lastSequence).putInt(lastFrame)
+                .put((byte) count).put(actions, from, count);
+    }
+
+    /**
+     * @param packet
+     *            a packet, from its position to its limit
+     * @return true if the packet is a packet of sequenced actions
+     */
+    public static boolean isInputs(ByteBuffer packet) {
+        return packet.hasRemaining()
+                && packet.get(packet.position()) == INPUTS;
+    }
+
+    /**
+     * @param packet
+     *            a packet of sequenced actions
+     * @return the number of the last frame received by the client
+     * @throws IllegalArgumentException
+     *             if the packet is truncated
+     */
+    public static int lastFrameOf(ByteBuffer packet) {
+        if (packet.remaining() < HEADER_SIZE)
+            throw new IllegalArgumentException("Truncated packet");
+        return packet.getInt(packet.position() + 1 + Integer.BYTES);
+    }
+
+    /**
+     * Gives to the consumer the actions of the packet which follow the last
+     * action applied, in order
+     *
+     * @param packet
+     *            a packet of sequenced actions, from its position to its
+     *            limit
+     * @param lastApplied
+     *            the sequence number of the last action applied, -1 if there
+     *            is none
+     * @param consumer
+     *            the consumer of the actions
+     * @return the sequence number of the last action applied after this
+     *         packet
+     * @throws IllegalArgumentException
+     *             if the packet is invalid
+     */
+    public static int applyNew(ByteBuffer packet, int lastApplied,
+            IntConsumer consumer) {
+        if (packet.remaining() < HEADER_SIZE
+                || packet.get(packet.position()) != INPUTS)
+            throw new IllegalArgumentException("Not a packet of actions");
+        int start = packet.position();
+        int lastSequence = packet.getInt(start + 1);
+        int count = Byte.toUnsignedInt(packet.get(start + HEADER_SIZE - 1));
+        if (count > REDUNDANCY || count > lastSequence + 1
+                || packet.remaining() != HEADER_SIZE + count)
+            throw new IllegalArgumentException("Invalid packet of actions");
+
+        int firstSequence = lastSequence - count + 1;
+        for (int i = Math.max(0, lastApplied + 1 - firstSequence); i < count; ++i)
+            consumer.accept(packet.get(start + HEADER_SIZE + i));
+        return Math.max(lastApplied, lastSequence);
+    }
+}
@@ -1,6 +1,7 @@
 package ch.epfl.xblast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -8,7 +9,7 @@ import java.util.List;
 /**
  * This class is an util class. It provides static methods to work on lists.
  * Hence, it is not instanciable. Contains the static methods :
- * {@link #mirrored}, {@link #permutations}
+ * {@link #mirrored}, {@link #permutations}, {@link #permutation}
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -73,4 +74,57 @@ public final class Lists {
 			return listPerm;
 		}
 	}
+
+	/**
+	 * Gives the permutation of the given index in the list returned by
+	 * {@link #permutations}, without computing the other ones. The index is
+	 * taken modulo the number of permutations.
+	 * 
+	 * @param l
+	 *            a list
+	 * @param index
+	 *            a non negative index
+	 * @return the permutation of the given index
+	 */
+	public static <T> List<T> permutation(List<T> l, long index) {
+		int[] order = new int[l.size()];
+		permutation(index, order);
+		List<T> perm = new ArrayList<>(order.length);
+		for (int i : order)
+			perm.add(l.get(i));
+		return perm;
+	}
+
+	/**
+	 * Fills the given array with the permutation of the given index of the
+	 * indexes 0, 1, ..., order.length - 1, in the order of
+	 * {@link #permutations}. In that order, the first element is inserted in
+	 * every position of each permutation of the others, so the index is read
+	 * as a Lehmer code: its digit of radix n - j gives, among the free
+	 * positions, the one of the element j.
+	 * 
+	 * @param index
+	 *            a non negative index, taken modulo order.length!
+	 * @param order
+	 *            the array to fill
+	 */
+	public static void permutation(long index, int[] order) {
+		if (index < 0)
+			throw new IllegalArgumentException("Negative index");
+
+		int n = order.length;
+		Arrays.fill(order, -1);
+		for (int j = 0; j < n; ++j) {
+			int digit = (int) (index % (n - j));
+			index /= n - j;
+
+			int position = 0;
+			while (order[position] != -1 || digit > 0) {
+				if (order[position] == -1)
+					--digit;
+				++position;
+			}
+			order[position] = j;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package ch.epfl.xblast;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The motion of a player: its position and direction and the way it moves.
+ * If it is moving, the player goes forward in its direction, and on the next
+ * central subCell it takes its direction at central, and stops there if it
+ * must. This is the simulation core shared by the server, which computes the
+ * authoritative game, and the client, which predicts the motion of its own
+ * player.
+ *
+ * A motion is immutable.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class Motion {
+
+    /**
+     * The obstacles a player can meet on the board
+     */
+    public interface Obstacles {
+        /**
+         * @param cell
+         * @return true if a player can enter the given cell
+         */
+        boolean canHostPlayer(Cell cell);
+
+        /**
+         * @param cell
+         * @return true if there is a bomb on the given cell
+         */
+        boolean hasBomb(Cell cell);
+    }
+
+    // the distance to the central subCell at which a bomb stops a player
+    // going towards it
+    private static final int BOMB_BLOCKING_DISTANCE = 6;
+
+    private final SubCell position;
+    private final Direction direction;
+    private final boolean moving;
+    private final Direction directionAtCentral;
+    private final boolean stopsAtCentral;
+
+    /**
+     * Constructs a motion. If the player is moving and on a central subCell,
+     * its motion at the central subCell is applied directly.
+     *
+     * @param position
+     * @param direction
+     * @param moving
+     *            true if the player goes forward
+     * @param directionAtCentral
+     *            the direction the player takes on the next central subCell
+     * @param stopsAtCentral
+     *            true if the player stops on the next central subCell
+     */
+    public Motion(SubCell position, Direction direction, boolean moving,
+            Direction directionAtCentral, boolean stopsAtCentral) {
+        this.position = Objects.requireNonNull(position);
+        Objects.requireNonNull(direction);
+        Objects.requireNonNull(directionAtCentral);
+
+        if (moving && position.isCentral()) {
+            this.direction = directionAtCentral;
+            this.moving = !stopsAtCentral;
+            this.directionAtCentral = directionAtCentral;
+            this.stopsAtCentral = false;
+        } else {
+            this.direction = direction;
+            this.moving = moving;
+            this.directionAtCentral = directionAtCentral;
+            this.stopsAtCentral = stopsAtCentral;
+        }
+    }
+
+    /**
+     * @param position
+     * @param direction
+     * @return the motion of a player stopped on the given position
+     */
+    public static Motion stopped(SubCell position, Direction direction) {
+        return new Motion(position, direction, false, direction, false);
+    }
+
+    /**
+     * @return the position of the player
+     */
+    public SubCell position() {
+        return position;
+    }
+
+    /**
+     * @return the direction the player is looking at
+     */
+    public Direction direction() {
+        return direction;
+    }
+
+    /**
+     * @return true if the player goes forward
+     */
+    public boolean isMoving() {
+        return moving;
+    }
+
+    /**
+     * @return the direction the player takes on the next central subCell
+     */
+    public Direction directionAtCentral() {
+        return directionAtCentral;
+    }
+
+    /**
+     * @return true if the player stops on the next central subCell
+     */
+    public boolean stopsAtCentral() {
+        return stopsAtCentral;
+    }
+
+    /**
+     * @return the position of the player at the next tick, if it moves
+     */
+    public SubCell nextPosition() {
+        return moving ? position.neighbor(direction) : position;
+    }
+
+    /**
+     * @return the direction of the player at the next tick, if it moves
+     */
+    public Direction nextDirection() {
+        return moving && position.neighbor(direction).isCentral()
+                ? directionAtCentral : direction;
+    }
+
+    /**
+     * Changes the way the player moves. If the new direction is orthogonal to
+     * the current one, or if the player wants to stop, it first goes on until
+     * the next central subCell.
+     *
+     * @param nextDir
+     *            the new direction, or an empty optional to stop
+     * @return the new motion
+     */
+    public Motion withDirectionChange(Optional<Direction> nextDir) {
+        if (nextDir.isPresent() && nextDir.get().isParallelTo(direction))
+            return new Motion(position, nextDir.get(), true, nextDir.get(),
+                    false);
+
+        // the direction the player would have had on the next central subCell
+        Direction directionAtNextCentral = moving ? directionAtCentral
+                : direction;
+        if (nextDir.isPresent())
+            return new Motion(position, direction, true, nextDir.get(), false);
+        else
+            return new Motion(position, direction, true,
+                    directionAtNextCentral, true);
+    }
+
+    /**
+     * @return the motion at the next tick, if the player moves
+     */
+    public Motion next() {
+        return moving ? new Motion(nextPosition(), direction, moving,
+                directionAtCentral, stopsAtCentral) : this;
+    }
+
+    /**
+     * @param obstacles
+     * @return true if the obstacles let the player move at the next tick
+     */
+    public boolean canMove(Obstacles obstacles) {
+        return canMove(position, nextPosition(), nextDirection(), obstacles);
+    }
+
+    /**
+     * Tells if a player can go from a position to the next one: it cannot
+     * leave a central subCell towards a cell which cannot host it, and cannot
+     * go towards the center of a cell with a bomb once it is close to it
+     *
+     * @param position
+     *            the current position
+     * @param nextPosition
+     *            the position the player goes to
+     * @param nextDirection
+     *            the direction of the player on its next position
+     * @param obstacles
+     * @return true if the player can move
+     */
+    public static boolean canMove(SubCell position, SubCell nextPosition,
+            Direction nextDirection, Obstacles obstacles) {
+        Cell futureCell = nextPosition.containingCell()
+                .neighbor(nextDirection);
+
+        // see if player blocked by a wall
+        if (position.isCentral() && !obstacles.canHostPlayer(futureCell))
+            return false;
+
+        // see if player blocked by a bomb
+        if (obstacles.hasBomb(position.containingCell())) {
+            int currentDistance = position.distanceToCentral();
+            boolean goesToCentral = currentDistance > nextPosition
+                    .distanceToCentral();
+            if (goesToCentral && currentDistance == BOMB_BLOCKING_DISTANCE)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (!(that instanceof Motion))
+            return false;
+        Motion m = (Motion) that;
+        return position.equals(m.position) && direction == m.direction
+                && moving == m.moving
+                && directionAtCentral == m.directionAtCentral
+                && stopsAtCentral == m.stopsAtCentral;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, direction, moving, directionAtCentral,
+                stopsAtCentral);
+    }
+}
@@ -0,0 +1,160 @@
+package ch.epfl.xblast;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Objects;
+
+/**
+ * The multicast mode of the protocol between the server and the clients. A
+ * client joins a game with {@link #JOIN_MULTICAST}, and the server answers
+ * with a welcome packet giving the id of its player and the multicast group
+ * of the game. The server then sends each game state once to the group,
+ * without player id, instead of once per client.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class MulticastProtocol {
+
+    /**
+     * The byte sent by a client to join a game in multicast mode
+     */
+    public static final byte JOIN_MULTICAST = 0x50;
+
+    /**
+     * The first byte of a welcome packet, followed by the id of the player,
+     * the IPv4 address and the port of the group
+     */
+    public static final byte WELCOME = 0x51;
+    public static final int WELCOME_SIZE = 2 + 4 + 2;
+
+    /**
+     * The group used by default, in the range of the organization-local
+     * scope, and its port
+     */
+    public static final String DEFAULT_GROUP = "239.255.20.16";
+    public static final int DEFAULT_PORT = 2017;
+
+    private MulticastProtocol() {
+    }
+
+    /**
+     * Writes the welcome packet of a client in the buffer
+     *
+     * @param id
+     *            the id of the player of the client
+     * @param group
+     *            an IPv4 multicast group
+     * @param dst
+     * @throws IllegalArgumentException
+     *             if the group is not an IPv4 multicast address
+     */
+    public static void writeWelcome(PlayerID id, InetSocketAddress group,
+            ByteBuffer dst) {
+        InetAddress address = group.getAddress();
+        if (!(address instanceof Inet4Address) || !address.isMulticastAddress())
+            throw new IllegalArgumentException("Not an IPv4 multicast group");
+        dst.put(WELCOME).put((byte) id.ordinal()).put(address.getAddress())
+                .putShort((short) group.getPort());
+    }
+
+    /**
+     * @param packet
+     *            a packet, from its position to its limit
+     * @return true if the packet is a welcome packet
+     */
+    public static boolean isWelcome(ByteBuffer packet) {
+        return packet.remaining() == WELCOME_SIZE
+                && packet.get(packet.position()) == WELCOME;
+    }
+
+    /**
+     * @param welcome
+     * @return the id of the player given by the welcome packet
+     */
+    public static PlayerID playerOf(ByteBuffer welcome) {
+        return PlayerID.values()[welcome.get(welcome.position() + 1)];
+    }
+
+    /**
+     * @param welcome
+     * @return the group given by the welcome packet
+     * @throws IOException
+     */
+    public static InetSocketAddress groupOf(ByteBuffer welcome)
+            throws IOException {
+        byte[] address = new byte[4];
+        for (int i = 0; i < address.length; ++i)
+            address[i] = welcome.get(welcome.position() + 2 + i);
+        int port = Short.toUnsignedInt(welcome.getShort(welcome.position() + 6));
+        return new InetSocketAddress(InetAddress.getByAddress(address), port);
+    }
+
+    /**
+     * Opens a channel sending to multicast groups
+     *
+     * @param networkInterface
+     *            the interface used to send, or null for the one chosen by
+     *            the system
+     * @return the channel
+     * @throws IOException
+     */
+    public static DatagramChannel openSender(NetworkInterface networkInterface)
+            throws IOException {
+        DatagramChannel channel = DatagramChannel
+                .open(StandardProtocolFamily.INET);
+        if (networkInterface != null)
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF,
+                    networkInterface);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        return channel;
+    }
+
+    /**
+     * Opens a channel receiving the packets sent to the given group
+     *
+     * @param group
+     * @param networkInterface
+     *            the interface on which the group is joined
+     * @return the channel, in blocking mode
+     * @throws IOException
+     */
+    public static DatagramChannel joinGroup(InetSocketAddress group,
+            NetworkInterface networkInterface) throws IOException {
+        DatagramChannel channel = DatagramChannel
+                .open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(group.getPort()));
+        channel.join(group.getAddress(),
+                Objects.requireNonNull(networkInterface));
+        return channel;
+    }
+
+    /**
+     * @param server
+     * @return the interface through which the given address is reached
+     * @throws IOException
+     */
+    public static NetworkInterface interfaceTowards(InetAddress server)
+            throws IOException {
+        try (DatagramSocket socket = new DatagramSocket()) {
+            // connecting a datagram socket sends nothing, it only chooses the
+            // local address
+            socket.connect(server, 1);
+            NetworkInterface ni = NetworkInterface
+                    .getByInetAddress(socket.getLocalAddress());
+            return ni != null ? ni
+                    : NetworkInterface
+                            .getByInetAddress(InetAddress.getLoopbackAddress());
+        }
+    }
+}
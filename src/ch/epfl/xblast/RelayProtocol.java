@@ -0,0 +1,59 @@
+package ch.epfl.xblast;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The protocol between the server and a spectator relay. A relay subscribes
+ * to the game with {@link #SUBSCRIBE}, and the server then sends it each game
+ * state as to a client, once whatever the number of spectators. The relay is
+ * not a player: the server ignores anything else it sends.
+ *
+ * The spectators join the relay as they would join the server, and receive
+ * the game states sent to the relay. These are sent with the id
+ * {@link #SPECTATOR} instead of the id of a player, so that a spectator
+ * neither predicts nor sends actions.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class RelayProtocol {
+
+    /**
+     * The byte sent by a relay to subscribe to a game
+     */
+    public static final byte SUBSCRIBE = 0x70;
+
+    /**
+     * The byte given instead of the id of a player before the game states
+     * sent to a relay
+     */
+    public static final byte SPECTATOR = 0x7F;
+
+    /**
+     * The port on which a relay receives its spectators by default
+     */
+    public static final int DEFAULT_PORT = 2018;
+
+    private RelayProtocol() {
+    }
+
+    /**
+     * @param packet
+     *            a packet, from its position to its limit
+     * @return true if the packet is the subscription of a relay
+     */
+    public static boolean isSubscribe(ByteBuffer packet) {
+        return packet.remaining() == 1
+                && packet.get(packet.position()) == SUBSCRIBE;
+    }
+
+    /**
+     * @param id
+     *            the first byte of a packet holding a game state
+     * @return true if the game state was sent to a spectator
+     */
+    public static boolean isSpectator(byte id) {
+        return id == SPECTATOR;
+    }
+}
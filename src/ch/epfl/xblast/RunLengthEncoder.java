@@ -1,5 +1,6 @@
 package ch.epfl.xblast;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 /**
  * Contains methods used to compressed (serialize) the GameState
@@ -19,7 +20,6 @@ public final class RunLengthEncoder {
 	// We create this constant to find the real tag, as told in the algorithm
 	private static final int TO_ADD = 2;
 
-	private static final int REPEATED_ONCE = 1;
 	private static final int REPEATED_TWICE = 2;
 	/**
 	 * private empty constructor so it cannot be instantiated
@@ -27,9 +27,24 @@ public final class RunLengthEncoder {
 	private RunLengthEncoder() {
 	}
 
+	/**
+	 * Receives the runs of a decoded sequence, one after the other, without
+	 * them being expanded
+	 */
+	@FunctionalInterface
+	public interface RunConsumer {
+		/**
+		 * @param b
+		 *            the repeated byte
+		 * @param count
+		 *            the number of repetitions, at least 1
+		 */
+		void accept(byte b, int count);
+	}
+
 	/**
 	 * Given a list, it returns a compressed version. Calls
-	 * {@link RunLengthEncoder#countToTag(int)}
+	 * {@link RunLengthEncoder#encode(byte[], int, int, ByteBuffer)}
 	 * 
 	 * @param list
 	 * @throws IllegalArgumentException
@@ -37,37 +52,76 @@ public final class RunLengthEncoder {
 	 * @return the encoded version of the list
 	 */
 	public static List<Byte> encode(List<Byte> list) {
+		byte[] bytes = new byte[list.size()];
+		int i = 0;
+		for (byte b : list)
+			bytes[i++] = b;
 
-		List<Byte> encodedList = new ArrayList<>();
-		for (int i = 0; i < list.size(); i++) {
-			int count = 1;
-			byte currentByte = list.get(i);
+		// the encoded version is never longer than the list
+		ByteBuffer encoded = ByteBuffer.allocate(bytes.length);
+		encode(bytes, 0, bytes.length, encoded);
+		encoded.flip();
 
-			// We check if our byte if not negative
-			ArgumentChecker.requireNonNegative(currentByte);
+		List<Byte> encodedList = new ArrayList<>(encoded.remaining());
+		while (encoded.hasRemaining())
+			encodedList.add(encoded.get());
+		return Collections.unmodifiableList(encodedList);
+	}
 
-			while (i < list.size() - 1 && currentByte == list.get(i + 1) && count < MAX_COUNT) {
-				// If we go in the while, we get a sequence
+	/**
+	 * Writes the compressed version of the bytes from index from (inclusive)
+	 * to index to (exclusive) of the given array in the buffer, from its
+	 * position. The buffer needs at most to - from bytes remaining.
+	 * 
+	 * @param bytes
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @throws IllegalArgumentException
+	 *             if there is a negative byte
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer is too small
+	 */
+	public static void encode(byte[] bytes, int from, int to, ByteBuffer dst) {
+		int i = from;
+		while (i < to) {
+			byte currentByte = bytes[i];
+			int count = 1;
+			while (i + count < to && bytes[i + count] == currentByte && count < MAX_COUNT)
 				count++;
-				i++;
-			}
-
-			// Sequence ended or never started
-			switch (count) {
-			// for the case in which the element is repeated once or twice,
-			// there is no advantage of encoding it specially here.
-			case REPEATED_ONCE:
-			case REPEATED_TWICE:
-				encodedList.addAll(Collections.nCopies(count, currentByte));
-				break;
-			default:
-				encodedList.add(countToTag(count));
-				encodedList.add(currentByte);
-			}
+			encodeRun(currentByte, count, dst);
+			i += count;
 		}
-		// If our list is empty, we don't go through the iteration and return an
-		// empty list
-		return Collections.unmodifiableList(encodedList);
+	}
+
+	/**
+	 * Writes the compressed version of a run of the given byte in the buffer,
+	 * so that a sequence can be encoded run by run while it is computed. A run
+	 * longer than the maximal one is split.
+	 * 
+	 * @param b
+	 * @param count
+	 *            the length of the run
+	 * @param dst
+	 * @throws IllegalArgumentException
+	 *             if the byte is negative
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer is too small
+	 */
+	public static void encodeRun(byte b, int count, ByteBuffer dst) {
+		// We check if our byte if not negative
+		ArgumentChecker.requireNonNegative(b);
+
+		for (; count > MAX_COUNT; count -= MAX_COUNT)
+			dst.put(countToTag(MAX_COUNT)).put(b);
+
+		// for the case in which the element is repeated once or twice,
+		// there is no advantage of encoding it specially here.
+		if (count <= REPEATED_TWICE) {
+			for (int i = 0; i < count; ++i)
+				dst.put(b);
+		} else
+			dst.put(countToTag(count)).put(b);
 	}
 
 	/**
@@ -82,7 +136,7 @@ public final class RunLengthEncoder {
 
 	/**
 	 * Given a list, this method returns the full length version of this list.
-	 * Calls {@link RunLengthEncoder#tagToCount(byte)}
+	 * Calls {@link RunLengthEncoder#decode(ByteBuffer, RunConsumer)}
 	 * 
 	 * @param list
 	 * @throws IllegalArgumentException
@@ -90,29 +144,170 @@ public final class RunLengthEncoder {
 	 * @return the uncompressed version of the list
 	 */
 	public static List<Byte> decode(List<Byte> list) {
-
-		List<Byte> decodedList = new ArrayList<>();
 		// the last element can not be negative
 		if (!list.isEmpty())
 			ArgumentChecker.requireNonNegative(list.get(list.size() - 1));
 
-		// to decode the list we check if the current byte is negative, if so we
-		// know that we have to add the next byte this number of time + 2
-		for (int i = 0; i < list.size(); i++) {
-			byte currentB = list.get(i);
-			if (currentB < 0) {
+		ByteBuffer encoded = ByteBuffer.allocate(list.size());
+		for (byte b : list)
+			encoded.put(b);
+		encoded.flip();
 
-				// we can get the i+1-th element because the last byte cannot be
-				// negative without an exception, so the currentB is not the
-				// last
-				decodedList.addAll(Collections.nCopies(tagToCount(currentB), list.get(i + 1)));
-				i++;
+		List<Byte> decodedList = new ArrayList<>();
+		decode(encoded, (b, count) -> {
+			for (int i = 0; i < count; ++i)
+				decodedList.add(b);
+		});
+		return Collections.unmodifiableList(decodedList);
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer into the given array, from
+	 * the given index
+	 * 
+	 * @param src
+	 * @param dst
+	 * @param offset
+	 * @throws IllegalArgumentException
+	 *             if the last byte is negative
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the array is too small
+	 * @return the number of decoded bytes
+	 */
+	public static int decode(ByteBuffer src, byte[] dst, int offset) {
+		int i = offset;
+		while (src.hasRemaining()) {
+			byte currentB = src.get();
+			if (currentB < 0) {
+				int count = tagToCount(currentB);
+				byte b = nextByteAfterTag(src);
+				if (i + count > dst.length)
+					throw new ArrayIndexOutOfBoundsException(i + count - 1);
+				for (int j = 0; j < count; ++j)
+					dst[i++] = b;
 			} else
-				decodedList.add(currentB);
+				dst[i++] = currentB;
 		}
-		// if list is empty, we don't go through the iteration and return an
-		// empty list
-		return Collections.unmodifiableList(decodedList);
+		return i - offset;
+	}
+
+	/**
+	 * Decodes the given number of bytes of the buffer into the given part of
+	 * the array, which they must exactly fill
+	 * 
+	 * @param src
+	 * @param length
+	 *            the number of encoded bytes
+	 * @param dst
+	 * @param from
+	 *            the first index of the part, inclusive
+	 * @param to
+	 *            the last index of the part, exclusive
+	 * @throws IllegalArgumentException
+	 *             if the buffer has less bytes, if the last byte is a tag or
+	 *             if the decoded bytes do not fill the part
+	 */
+	public static void decode(ByteBuffer src, int length, byte[] dst, int from, int to) {
+		if (src.remaining() < length)
+			throw new IllegalArgumentException("Not enough bytes");
+		int end = src.position() + length;
+		int i = from;
+		while (src.position() < end) {
+			byte currentB = src.get();
+			int count = 1;
+			if (currentB < 0) {
+				count = tagToCount(currentB);
+				currentB = nextByteAfterTag(src, end);
+			}
+			if (i + count > to)
+				throw new IllegalArgumentException("Too many decoded bytes");
+			for (int j = 0; j < count; ++j)
+				dst[i++] = currentB;
+		}
+		if (i != to)
+			throw new IllegalArgumentException("Too few decoded bytes");
+	}
+
+	/**
+	 * Decodes the given number of bytes of the buffer into the array, the
+	 * n-th decoded byte being written at the index given by the n-th element
+	 * of positions, which they must exactly fill
+	 * 
+	 * @param src
+	 * @param length
+	 *            the number of encoded bytes
+	 * @param dst
+	 * @param positions
+	 *            the index in the array of each decoded byte
+	 * @throws IllegalArgumentException
+	 *             if the buffer has less bytes, if the last byte is a tag or
+	 *             if the decoded bytes do not fill the positions
+	 */
+	public static void decode(ByteBuffer src, int length, byte[] dst, int[] positions) {
+		if (src.remaining() < length)
+			throw new IllegalArgumentException("Not enough bytes");
+		int end = src.position() + length;
+		int i = 0;
+		while (src.position() < end) {
+			byte currentB = src.get();
+			int count = 1;
+			if (currentB < 0) {
+				count = tagToCount(currentB);
+				currentB = nextByteAfterTag(src, end);
+			}
+			if (i + count > positions.length)
+				throw new IllegalArgumentException("Too many decoded bytes");
+			for (int j = 0; j < count; ++j)
+				dst[positions[i++]] = currentB;
+		}
+		if (i != positions.length)
+			throw new IllegalArgumentException("Too few decoded bytes");
+	}
+
+	/**
+	 * Decodes the remaining bytes of the buffer, giving each run to the
+	 * consumer instead of expanding it
+	 * 
+	 * @param src
+	 * @param runs
+	 * @throws IllegalArgumentException
+	 *             if the last byte is negative
+	 */
+	public static void decode(ByteBuffer src, RunConsumer runs) {
+		while (src.hasRemaining()) {
+			byte currentB = src.get();
+			// if the current byte is negative, it is the tag of the next one
+			if (currentB < 0)
+				runs.accept(nextByteAfterTag(src), tagToCount(currentB));
+			else
+				runs.accept(currentB, 1);
+		}
+	}
+
+	/**
+	 * @param src
+	 * @throws IllegalArgumentException
+	 *             if the tag was the last byte
+	 * @return the byte following a tag
+	 */
+	private static byte nextByteAfterTag(ByteBuffer src) {
+		if (!src.hasRemaining())
+			throw new IllegalArgumentException("The last byte is a tag");
+		return src.get();
+	}
+
+	/**
+	 * @param src
+	 * @param end
+	 *            the position of the end of the encoded bytes
+	 * @throws IllegalArgumentException
+	 *             if the tag was the last byte
+	 * @return the byte following a tag
+	 */
+	private static byte nextByteAfterTag(ByteBuffer src, int end) {
+		if (src.position() >= end)
+			throw new IllegalArgumentException("The last byte is a tag");
+		return src.get();
 	}
 
 	/**
@@ -124,4 +319,4 @@ public final class RunLengthEncoder {
 	private static int tagToCount(byte count) {
 		return Math.abs(count) + TO_ADD;
 	}
-}
\ No newline at end of file
+}
@@ -7,17 +7,21 @@ import java.util.NoSuchElementException;
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  * Represent a subCell of the board, given its coodonates x and y. Note : there
- * are 240 columns of subcells, 208 rows of subcells.
+ * are 240 columns of subcells, 208 rows of subcells. They are all created once,
+ * {@link #of(int, int)}, {@link #neighbor(Direction)} and
+ * {@link #centralSubCellOf(Cell)} always return these canonical instances.
  */
 
 public final class SubCell {
 
     private final int x;
     private final int y;
+    private final Cell containingCell;
     private final static int SUBDIVISION = 16;
     private final static int halfCell = 8;
     private final static int COLUMNS = SUBDIVISION * Cell.COLUMNS;
     private final static int ROWS = SUBDIVISION * Cell.ROWS;
+    private final static SubCell[] SUBCELLS = allSubCells();
 
     /**
      * Construct a subCell given its coordinates
@@ -28,6 +32,33 @@ public final class SubCell {
     public SubCell(int x, int y) {
         this.x = Math.floorMod(x, COLUMNS);
         this.y = Math.floorMod(y, ROWS);
+        this.containingCell = Cell.of(this.x / SUBDIVISION,
+                this.y / SUBDIVISION);
+    }
+
+    /**
+     * Returns the canonical subCell of the given coordinates, without creating
+     * any object
+     * 
+     * @param x
+     * @param y
+     * @return the subCell
+     */
+    public static SubCell of(int x, int y) {
+        return SUBCELLS[Math.floorMod(x, COLUMNS)
+                + Math.floorMod(y, ROWS) * COLUMNS];
+    }
+
+    /**
+     * @return all the subCells, in row major order
+     */
+    private static SubCell[] allSubCells() {
+        SubCell[] subCells = new SubCell[COLUMNS * ROWS];
+        for (int y = 0; y < ROWS; ++y) {
+            for (int x = 0; x < COLUMNS; ++x)
+                subCells[x + y * COLUMNS] = new SubCell(x, y);
+        }
+        return subCells;
     }
 
     /**
@@ -49,9 +80,8 @@ public final class SubCell {
      * @return the central subCell of the given cell
      */
     public static SubCell centralSubCellOf(Cell cell) {
-        int xCell = Math.floorMod(cell.rowMajorIndex(), Cell.COLUMNS);
-        int yCell = (cell.rowMajorIndex() - xCell) / Cell.COLUMNS;
-        return new SubCell(xCell * SUBDIVISION + halfCell, yCell * SUBDIVISION + halfCell);
+        return of(cell.x() * SUBDIVISION + halfCell,
+                cell.y() * SUBDIVISION + halfCell);
     }
 
     /**
@@ -59,10 +89,8 @@ public final class SubCell {
      *         same containingCell {@link #containingCell()}
      */
     public int distanceToCentral() {
-        int xCentral = centralSubCellOf(this.containingCell()).x();
-        int yCentral = centralSubCellOf(this.containingCell()).y();
-
-        return Math.abs(xCentral - x) + Math.abs(yCentral - y);
+        return Math.abs(x % SUBDIVISION - halfCell)
+                + Math.abs(y % SUBDIVISION - halfCell);
     }
 
     /**
@@ -70,7 +98,31 @@ public final class SubCell {
      *         {@link #centralSubCellOf(Cell)} {@link #containingCell()}
      */
     public boolean isCentral() {
-        return (this.equals(centralSubCellOf(this.containingCell())));
+        return x % SUBDIVISION == halfCell && y % SUBDIVISION == halfCell;
+    }
+
+    /**
+     * Computes, without iterating, the first central subCell met when moving
+     * from this subCell in the given direction
+     * 
+     * @param d
+     * @return this subCell if it is central, else the first central subCell in
+     *         direction d. If this subCell is not on a line of central subCells
+     *         parallel to d, the subCell returned is not central.
+     */
+    public SubCell nextCentral(Direction d) {
+        switch (d) {
+        case N:
+            return of(x, y - Math.floorMod(y - halfCell, SUBDIVISION));
+        case S:
+            return of(x, y + Math.floorMod(halfCell - y, SUBDIVISION));
+        case E:
+            return of(x + Math.floorMod(halfCell - x, SUBDIVISION), y);
+        case W:
+            return of(x - Math.floorMod(x - halfCell, SUBDIVISION), y);
+        default:
+            throw new NoSuchElementException("Not a valid direction");
+        }
     }
 
     /**
@@ -82,25 +134,13 @@ public final class SubCell {
     public SubCell neighbor(Direction d) {
         switch (d) {
         case N:
-            if (y == 0)
-                return new SubCell(x, ROWS - 1);
-            else
-                return new SubCell(x, y - 1);
+            return of(x, y - 1);
         case S:
-            if (y == ROWS - 1)
-                return new SubCell(x, 0);
-            else
-                return new SubCell(x, y + 1);
+            return of(x, y + 1);
         case E:
-            if (x == COLUMNS - 1)
-                return new SubCell(0, y);
-            else
-                return new SubCell(x + 1, y);
+            return of(x + 1, y);
         case W:
-            if (x == 0)
-                return new SubCell(COLUMNS - 1, y);
-            else
-                return new SubCell(x - 1, y);
+            return of(x - 1, y);
         default:
             throw new NoSuchElementException("Not a valid direction");
         }
@@ -110,9 +150,7 @@ public final class SubCell {
      * @return the containing cell of this
      */
     public Cell containingCell() {
-        int xCell = (x - Math.floorMod(x, SUBDIVISION)) / SUBDIVISION;
-        int yCell = (y - Math.floorMod(y, SUBDIVISION)) / SUBDIVISION;
-        return new Cell(xCell, yCell);
+        return containingCell;
     }
 
     /**
@@ -120,10 +158,13 @@ public final class SubCell {
      */
     @Override
     public boolean equals(Object that) {
+        if (this == that)
+            return true;
         if (that == null || that.getClass() != getClass())
             return false;
         else {
-            return (that.hashCode() == this.hashCode());
+            SubCell subCell = (SubCell) that;
+            return subCell.x == x && subCell.y == y;
         }
     }
 
@@ -0,0 +1,402 @@
+package ch.epfl.xblast.client;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the image collections from the directories of the class path, which
+ * can be in a jar. The images are decoded in parallel, and the decoded
+ * images can be kept in a cache file, mapped in memory, so that the next
+ * start does not decode them again. The cache is used only if the files it
+ * was made from did not change.
+ *
+ * The name of each image file starts with its index, on three digits; the
+ * other files are ignored.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class AssetLoader {
+
+    private static final int MAGIC = 0x58424943;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES
+            + Integer.BYTES;
+    // 0 and 3 are the beginning and ending indexes of the files numbers
+    private static final int INDEX_DIGITS = 3;
+
+    private final Path cache;
+    private final ClassLoader classLoader;
+    private long loadNanos;
+    private boolean warm;
+
+    /**
+     * @param cache
+     *            the cache file of the decoded images, or null to decode them
+     *            at every start
+     */
+    public AssetLoader(Path cache) {
+        this(cache, AssetLoader.class.getClassLoader());
+    }
+
+    /**
+     * @param cache
+     *            the cache file of the decoded images, or null
+     * @param classLoader
+     *            the class loader whose class path holds the images
+     */
+    AssetLoader(Path cache, ClassLoader classLoader) {
+        this.cache = cache;
+        this.classLoader = Objects.requireNonNull(classLoader);
+    }
+
+    /**
+     * Loads image collections
+     *
+     * @param atlas
+     *            true if the images of each collection are packed into an
+     *            atlas (see {@link ImageCollection})
+     * @param directories
+     *            the directories of the collections, in the class path
+     * @return the collections, by directory
+     * @throws UncheckedIOException
+     *             if a directory cannot be read or an image decoded
+     */
+    public synchronized Map<String, ImageCollection> load(boolean atlas,
+            String... directories) {
+        long start = System.nanoTime();
+        Map<String, Map<Integer, byte[]>> files = new LinkedHashMap<>();
+        for (String directory : directories)
+            files.put(directory, read(classLoader, directory));
+        long fingerprint = fingerprint(files);
+
+        Map<String, Map<Integer, BufferedImage>> images = cache == null ? null
+                : readCache(fingerprint);
+        warm = images != null;
+        if (!warm) {
+            images = decode(files);
+            if (cache != null)
+                writeCache(fingerprint, images);
+        }
+
+        Map<String, ImageCollection> collections = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Integer, BufferedImage>> e : images
+                .entrySet())
+            collections.put(e.getKey(),
+                    new ImageCollection(e.getValue(), atlas));
+        loadNanos = System.nanoTime() - start;
+        return collections;
+    }
+
+    /**
+     * @return the time taken by the last load, in nanoseconds
+     */
+    public synchronized long loadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return true if the images of the last load came from the cache
+     */
+    public synchronized boolean wasWarm() {
+        return warm;
+    }
+
+    /**
+     * Decodes the images of a directory of the class path
+     *
+     * @param directory
+     * @return the images, by index
+     * @throws UncheckedIOException
+     *             if the directory cannot be read or an image decoded
+     */
+    static Map<Integer, BufferedImage> loadDirectory(String directory) {
+        Map<String, Map<Integer, byte[]>> files = Collections
+                .singletonMap(directory,
+                        read(AssetLoader.class.getClassLoader(), directory));
+        return decode(files).get(directory);
+    }
+
+    /**
+     * @return the contents of the files of a directory of the class path, by
+     *         index
+     */
+    private static Map<Integer, byte[]> read(ClassLoader classLoader,
+            String directory) {
+        URL url = classLoader.getResource(directory);
+        if (url == null)
+            throw new UncheckedIOException(
+                    new IOException("No directory " + directory));
+        FileSystem jar = null;
+        try {
+            URI uri = url.toURI();
+            // the files of a jar are read through a file system of its own
+            if (uri.getScheme().equals("jar")) {
+                try {
+                    jar = FileSystems.newFileSystem(uri,
+                            Collections.<String, Object> emptyMap());
+                } catch (FileSystemAlreadyExistsException e) {
+                    // opened by someone else, who closes it
+                }
+            }
+
+            Map<Integer, byte[]> files = new TreeMap<>();
+            try (DirectoryStream<Path> stream = Files
+                    .newDirectoryStream(Paths.get(uri))) {
+                for (Path p : stream) {
+                    int index = indexOf(p.getFileName().toString());
+                    if (index >= 0)
+                        files.put(index, Files.readAllBytes(p));
+                }
+            }
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new Error(e);
+        } finally {
+            if (jar != null) {
+                try {
+                    jar.close();
+                } catch (IOException e) {
+                    // nothing was written
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name
+     *            the name of a file
+     * @return the index given by the first digits of the name, or -1 if it
+     *         does not start with them
+     */
+    private static int indexOf(String name) {
+        if (name.length() < INDEX_DIGITS)
+            return -1;
+        int index = 0;
+        for (int i = 0; i < INDEX_DIGITS; ++i) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            index = 10 * index + c - '0';
+        }
+        return index;
+    }
+
+    /**
+     * Decodes the files of the directories, in parallel
+     */
+    private static Map<String, Map<Integer, BufferedImage>> decode(
+            Map<String, Map<Integer, byte[]>> files) {
+        ExecutorService pool = Executors
+                .newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            Map<String, Map<Integer, Future<BufferedImage>>> decoding = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<Integer, byte[]>> d : files
+                    .entrySet()) {
+                Map<Integer, Future<BufferedImage>> futures = new TreeMap<>();
+                for (Map.Entry<Integer, byte[]> f : d.getValue().entrySet()) {
+                    String name = d.getKey() + "/" + f.getKey();
+                    byte[] bytes = f.getValue();
+                    futures.put(f.getKey(),
+                            pool.submit(() -> decode(name, bytes)));
+                }
+                decoding.put(d.getKey(), futures);
+            }
+
+            Map<String, Map<Integer, BufferedImage>> images = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<Integer, Future<BufferedImage>>> d : decoding
+                    .entrySet()) {
+                Map<Integer, BufferedImage> decoded = new TreeMap<>();
+                for (Map.Entry<Integer, Future<BufferedImage>> f : d
+                        .getValue().entrySet())
+                    decoded.put(f.getKey(), f.getValue().get());
+                images.put(d.getKey(), decoded);
+            }
+            return images;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw (UncheckedIOException) e.getCause();
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(
+                    new IOException("Interrupted while decoding"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BufferedImage decode(String name, byte[] bytes) {
+        try {
+            BufferedImage image = ImageIO
+                    .read(new ByteArrayInputStream(bytes));
+            if (image == null)
+                throw new IOException("Unknown image format");
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode image " + name, e);
+        }
+    }
+
+    /**
+     * @return a fingerprint of the contents of the files
+     */
+    private static long fingerprint(Map<String, Map<Integer, byte[]>> files) {
+        CRC32 crc = new CRC32();
+        long length = 0;
+        for (Map.Entry<String, Map<Integer, byte[]>> d : files.entrySet()) {
+            for (Map.Entry<Integer, byte[]> f : d.getValue().entrySet()) {
+                crc.update((d.getKey() + "/" + f.getKey())
+                        .getBytes(StandardCharsets.UTF_8));
+                crc.update(f.getValue());
+                length += f.getValue().length;
+            }
+        }
+        return (length << Integer.SIZE) ^ crc.getValue();
+    }
+
+    /**
+     * Reads the images of the cache: the header (magic number, version,
+     * fingerprint and number of images), then each image: its directory,
+     * index, width, height, transparency and pixels in the ARGB format. An
+     * opaque image is read in a format without alpha, as it was decoded, so
+     * that its atlas is opaque too.
+     *
+     * @return the images, by directory and index, or null if the cache is
+     *         missing, invalid, or made from other files
+     */
+    private Map<String, Map<Integer, BufferedImage>> readCache(
+            long fingerprint) {
+        if (!Files.isRegularFile(cache))
+            return null;
+        try (FileChannel channel = FileChannel.open(cache,
+                StandardOpenOption.READ)) {
+            MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            if (b.remaining() < HEADER_SIZE || b.getInt() != MAGIC
+                    || b.getInt() != VERSION || b.getLong() != fingerprint)
+                return null;
+
+            Map<String, Map<Integer, BufferedImage>> images = new LinkedHashMap<>();
+            int count = b.getInt();
+            int[] pixels = new int[0];
+            for (int i = 0; i < count; ++i) {
+                byte[] name = new byte[b.getShort()];
+                b.get(name);
+                int index = b.getInt();
+                int width = b.getInt();
+                int height = b.getInt();
+                int transparency = b.getInt();
+                if (pixels.length < width * height)
+                    pixels = new int[width * height];
+
+                IntBuffer ints = b.asIntBuffer();
+                ints.get(pixels, 0, width * height);
+                b.position(b.position() + width * height * Integer.BYTES);
+                BufferedImage image = new BufferedImage(width, height,
+                        transparency == Transparency.OPAQUE
+                                ? BufferedImage.TYPE_INT_RGB
+                                : BufferedImage.TYPE_INT_ARGB);
+                image.getRaster().setDataElements(0, 0, width, height,
+                        pixels);
+
+                images.computeIfAbsent(
+                        new String(name, StandardCharsets.UTF_8),
+                        d -> new TreeMap<>()).put(index, image);
+            }
+            return images;
+        } catch (IOException | RuntimeException e) {
+            // a truncated cache is decoded again
+            return null;
+        }
+    }
+
+    private void writeCache(long fingerprint,
+            Map<String, Map<Integer, BufferedImage>> images) {
+        List<byte[]> names = new ArrayList<>();
+        long size = HEADER_SIZE;
+        int count = 0;
+        for (Map.Entry<String, Map<Integer, BufferedImage>> d : images
+                .entrySet()) {
+            byte[] name = d.getKey().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            for (BufferedImage image : d.getValue().values()) {
+                size += Short.BYTES + name.length + 4 * Integer.BYTES
+                        + (long) image.getWidth() * image.getHeight()
+                                * Integer.BYTES;
+                count++;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(cache,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, size);
+            // the header is written last, so that a partial cache is invalid
+            b.position(HEADER_SIZE);
+            int n = 0;
+            for (Map<Integer, BufferedImage> d : images.values()) {
+                byte[] name = names.get(n++);
+                for (Map.Entry<Integer, BufferedImage> e : d.entrySet()) {
+                    BufferedImage image = e.getValue();
+                    int width = image.getWidth();
+                    int height = image.getHeight();
+                    b.putShort((short) name.length).put(name)
+                            .putInt(e.getKey()).putInt(width).putInt(height)
+                            .putInt(image.getTransparency());
+                    b.asIntBuffer().put(
+                            image.getRGB(0, 0, width, height, null, 0, width));
+                    b.position(b.position() + width * height * Integer.BYTES);
+                }
+            }
+            b.force();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint)
+                    .putInt(count).flip();
+            b.position(0);
+            b.put(header);
+            b.force();
+        } catch (IOException e) {
+            // the images are decoded again at the next start
+            System.err.println("Cannot write the image cache: " + e);
+        }
+    }
+}
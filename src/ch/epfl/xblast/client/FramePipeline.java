@@ -0,0 +1,268 @@
+package ch.epfl.xblast.client;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+
+/**
+ * The stages showing the frames of the server (see {@link DeltaProtocol}),
+ * each on its own thread: the thread receiving the frames, a thread decoding
+ * them into game states (with the prediction of the player of the client,
+ * see {@link PlayerPredictor}, unless the client is a spectator), and the
+ * thread of the interface painting them.
+ *
+ * The stages are linked by mailboxes holding a single element: a new frame
+ * replaces the one not decoded yet, and a new game state the one not painted
+ * yet, so that a slow stage never delays the next ones and the screen always
+ * shows the last frame received. The frames and the game states replaced or
+ * used are reused by the next ones.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class FramePipeline implements AutoCloseable {
+
+    private static final class Frame {
+        private final byte[] bytes = new byte[DeltaProtocol.FRAME_SIZE];
+        private int number;
+        private PlayerID id;
+    }
+
+    private static final class Shown {
+        private final GameState state = new GameState();
+        private PlayerID id;
+    }
+
+    private final BiConsumer<GameState, PlayerID> painter;
+    private final Executor paintExecutor;
+
+    private final AtomicReference<Frame> mailbox = new AtomicReference<>();
+    // a frame decoded, reused by the next one received
+    private final AtomicReference<Frame> free = new AtomicReference<>();
+    private final AtomicReference<Shown> toPaint = new AtomicReference<>();
+    // a game state painted or replaced, reused by the next one
+    private final AtomicReference<Shown> freeShown = new AtomicReference<>();
+    private final Runnable paintTask = this::paint;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong painted = new AtomicLong();
+
+    private volatile PlayerPredictor predictor;
+    private volatile Thread decoder;
+    // only used by the thread receiving the frames
+    private int lastNumber = -1;
+
+    /**
+     * @param painter
+     *            shows a game state, with the id of the player of the client
+     *            (null for a spectator), and must not keep it since it is
+     *            reused once shown
+     * @param paintExecutor
+     *            runs the painter on the thread of the interface
+     */
+    public FramePipeline(BiConsumer<GameState, PlayerID> painter,
+            Executor paintExecutor) {
+        this.painter = Objects.requireNonNull(painter);
+        this.paintExecutor = Objects.requireNonNull(paintExecutor);
+    }
+
+    /**
+     * Starts the thread decoding the frames
+     *
+     * @throws IllegalStateException
+     *             if it was already started
+     */
+    public synchronized void start() {
+        if (decoder != null)
+            throw new IllegalStateException("Already started");
+        Thread t = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!decodeLatest())
+                    LockSupport.park(this);
+            }
+        }, "XBlast decoder");
+        t.setDaemon(true);
+        decoder = t;
+        t.start();
+    }
+
+    /**
+     * Stops the thread decoding the frames
+     */
+    @Override
+    public void close() {
+        Thread t = decoder;
+        if (t != null)
+            t.interrupt();
+    }
+
+    /**
+     * Gives a frame received, which replaces the one not decoded yet. Used by
+     * the thread receiving the frames.
+     *
+     * @param number
+     *            the number of the frame
+     * @param frame
+     *            the frame, copied
+     * @param id
+     *            the player of the client, or null for a spectator, whose
+     *            frames are shown as received
+     * @return false if the frame is late, that is if a frame with a greater
+     *         number was already received, in which case it is ignored
+     */
+    public boolean offer(int number, byte[] frame, PlayerID id) {
+        received.incrementAndGet();
+        if (number <= lastNumber) {
+            late.incrementAndGet();
+            return false;
+        }
+        lastNumber = number;
+
+        Frame f = free.getAndSet(null);
+        if (f == null)
+            f = new Frame();
+        System.arraycopy(frame, 0, f.bytes, 0, DeltaProtocol.FRAME_SIZE);
+        f.number = number;
+        f.id = id;
+
+        Frame replaced = mailbox.getAndSet(f);
+        if (replaced != null) {
+            dropped.incrementAndGet();
+            free.set(replaced);
+        }
+        Thread t = decoder;
+        if (t != null)
+            LockSupport.unpark(t);
+        return true;
+    }
+
+    /**
+     * Decodes the last frame received, if it was not decoded yet, and asks
+     * for it to be painted. Used by the thread decoding the frames.
+     *
+     * @return true if a frame was decoded
+     */
+    boolean decodeLatest() {
+        Frame f = mailbox.getAndSet(null);
+        if (f == null)
+            return false;
+
+        Shown shown = takeShown();
+        if (f.id == null) {
+            // a spectator has no player to predict
+            predictor = null;
+            GameStateDeserializer.deserializeFrame(f.bytes, shown.state);
+        } else {
+            PlayerPredictor p = predictor;
+            if (p == null || p.playerId() != f.id) {
+                p = new PlayerPredictor(f.id, PlayerPredictor.DEFAULT_LEAD);
+                predictor = p;
+            }
+            p.accept(f.number, f.bytes, shown.state);
+        }
+        shown.id = f.id;
+        free.set(f);
+        publish(shown);
+        return true;
+    }
+
+    /**
+     * Shows at once an action of the player of the client. Used by the
+     * thread of the interface.
+     *
+     * @param action
+     */
+    public void onAction(PlayerAction action) {
+        PlayerPredictor p = predictor;
+        if (p == null)
+            return;
+        Shown shown = takeShown();
+        if (p.onAction(action, shown.state) != null) {
+            shown.id = p.playerId();
+            publish(shown);
+        } else
+            freeShown.set(shown);
+    }
+
+    /**
+     * @return the prediction of the player of the client, null if no frame
+     *         was decoded yet or if the client is a spectator
+     */
+    public PlayerPredictor predictor() {
+        return predictor;
+    }
+
+    /**
+     * @return the number of frames received
+     */
+    public long received() {
+        return received.get();
+    }
+
+    /**
+     * @return the number of frames replaced by a newer one before being
+     *         decoded
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of frames ignored because a newer one was already
+     *         received
+     */
+    public long late() {
+        return late.get();
+    }
+
+    /**
+     * @return the number of game states replaced by a newer one before being
+     *         painted
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of game states painted
+     */
+    public long painted() {
+        return painted.get();
+    }
+
+    private Shown takeShown() {
+        Shown shown = freeShown.getAndSet(null);
+        return shown != null ? shown : new Shown();
+    }
+
+    // a paint is only asked if none is pending, the pending one painting the
+    // last game state
+    private void publish(Shown shown) {
+        Shown replaced = toPaint.getAndSet(shown);
+        if (replaced != null) {
+            coalesced.incrementAndGet();
+            freeShown.set(replaced);
+        } else
+            paintExecutor.execute(paintTask);
+    }
+
+    private void paint() {
+        Shown shown = toPaint.getAndSet(null);
+        if (shown != null) {
+            painter.accept(shown.state, shown.id);
+            painted.incrementAndGet();
+            freeShown.set(shown);
+        }
+    }
+}
@@ -1,148 +1,175 @@
 package ch.epfl.xblast.client;
 
-import java.awt.Image;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Objects;
 
-import ch.epfl.xblast.ArgumentChecker;
+import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.PlayerID;
-import ch.epfl.xblast.SubCell;
+import ch.epfl.xblast.server.Ticks;
 
 /**
  * This class represents a gameState, which will be used by the receiver
- * 
+ *
+ * The gameState only holds the indexes of the images of its elements, as
+ * sent by the server, and the images are only obtained when it is drawn (see
+ * {@link XBlastComponent}). A gameState can thus be deserialized again and
+ * again in the same arrays (see {@link GameStateDeserializer}), without
+ * creating any object.
+ *
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  */
 public final class GameState {
 
-	// GameState has a list of player and 4 lists of images to represent the
-	// board,
-	// the bombs and explosions, the score line and the time line·
-	private final List<Player> players;
-	private final List<Image> board;
-	private final List<Image> bombsAndExplosions;
-	private final List<Image> scoreLine;
-	private final List<Image> timeLine;
+	/**
+	 * The number of LEDs of the time line, each one standing for two seconds
+	 */
+	public final static int TIME_LEDS = Ticks.TOTAL_TICKS / Ticks.TICKS_PER_SECOND / 2;
+
+	private final static int NUMBER_OF_PLAYERS = PlayerID.values().length;
+
+	// the images of the blocks and of the bombs and explosions, in row major
+	// order
+	private final byte[] board = new byte[Cell.COUNT];
+	private final byte[] bombsAndExplosions = new byte[Cell.COUNT];
+	// the lives, the position and the image of each player, by id
+	private final int[] lives = new int[NUMBER_OF_PLAYERS];
+	private final int[] xs = new int[NUMBER_OF_PLAYERS];
+	private final int[] ys = new int[NUMBER_OF_PLAYERS];
+	private final int[] playerImages = new int[NUMBER_OF_PLAYERS];
+	// the number of LEDs of the time line which are on
+	private int remainingTime;
+
+	/**
+	 * Constructs a gameState whose elements all have the image 0, to be
+	 * deserialized
+	 */
+	public GameState() {
+	}
+
+	/**
+	 * Constructs a copy of the given gameState
+	 *
+	 * @param that
+	 */
+	public GameState(GameState that) {
+		set(that);
+	}
+
+	/**
+	 * Copies the given gameState in this one
+	 *
+	 * @param that
+	 */
+	void set(GameState that) {
+		Objects.requireNonNull(that);
+		System.arraycopy(that.board, 0, board, 0, Cell.COUNT);
+		System.arraycopy(that.bombsAndExplosions, 0, bombsAndExplosions, 0, Cell.COUNT);
+		System.arraycopy(that.lives, 0, lives, 0, NUMBER_OF_PLAYERS);
+		System.arraycopy(that.xs, 0, xs, 0, NUMBER_OF_PLAYERS);
+		System.arraycopy(that.ys, 0, ys, 0, NUMBER_OF_PLAYERS);
+		System.arraycopy(that.playerImages, 0, playerImages, 0, NUMBER_OF_PLAYERS);
+		remainingTime = that.remainingTime;
+	}
+
+	/**
+	 * @return the array of the images of the blocks, written by the
+	 *         deserializer
+	 */
+	byte[] boardArray() {
+		return board;
+	}
+
+	/**
+	 * @return the array of the images of the bombs and explosions, written by
+	 *         the deserializer
+	 */
+	byte[] bombsAndExplosionsArray() {
+		return bombsAndExplosions;
+	}
+
+	/**
+	 * Changes a player
+	 *
+	 * @param id
+	 * @param lives
+	 * @param x
+	 * @param y
+	 * @param image
+	 */
+	void setPlayer(PlayerID id, int lives, int x, int y, int image) {
+		int i = id.ordinal();
+		this.lives[i] = lives;
+		xs[i] = x;
+		ys[i] = y;
+		playerImages[i] = image;
+	}
+
+	/**
+	 * Changes the number of LEDs of the time line which are on
+	 *
+	 * @param remainingTime
+	 */
+	void setRemainingTime(int remainingTime) {
+		this.remainingTime = remainingTime;
+	}
 
 	/**
-	 * Statically imbricated class which represents a player
-	 * 
-	 * @author Mathilde Raynal (259176)
-	 * @author Richard Roubaty (260549)
+	 * @param rowMajorIndex
+	 *            the index of a cell in the row major order
+	 * @return the index of the image of the block of the cell
 	 */
-	public final static class Player {
-		private final PlayerID id;
-		private final int lives;
-		private final SubCell position;
-		private final Image playerImage;
-
-		/**
-		 * Constructs a player given its parameters
-		 * 
-		 * @param id
-		 * @param lives
-		 * @param position
-		 * @param playerImage
-		 */
-		public Player(PlayerID id, int lives, SubCell position, Image playerImage) {
-			this.id = Objects.requireNonNull(id);
-			this.lives = ArgumentChecker.requireNonNegative(lives);
-			this.position = Objects.requireNonNull(position);
-			// the image can be null e.g. : the player is dead
-			this.playerImage = playerImage;
-		}
-
-		/**
-		 * @return the lives of the player
-		 */
-		public final int lives() {
-			return lives;
-		}
-
-		/**
-		 * @return the ID of the player
-		 */
-		public final PlayerID id() {
-			return id;
-		}
-
-		/**
-		 * @return the x coordinate of the player
-		 */
-		public final int x() {
-			return position.x();
-		}
-
-		/**
-		 * @return the y coordinate of the player
-		 */
-		public final int y() {
-			return position.y();
-		}
-
-		/**
-		 * @return the image used to represent the player
-		 */
-		public final Image playerImage() {
-			return playerImage;
-		}
+	public final int blockImage(int rowMajorIndex) {
+		return Byte.toUnsignedInt(board[rowMajorIndex]);
 	}
 
 	/**
-	 * Constructs a GameState according to the parameters
-	 * 
-	 * @param players
-	 * @param board
-	 * @param bombsAndExplosions
-	 * @param scoreLine
-	 * @param timeLine
+	 * @param rowMajorIndex
+	 *            the index of a cell in the row major order
+	 * @return the index of the image of the bomb or explosion of the cell,
+	 *         which has no image if there is none
 	 */
-	public GameState(List<Player> players, List<Image> board, List<Image> bombsAndExplosions, List<Image> scoreLine,
-			List<Image> timeLine) {
-
-		this.players = new ArrayList<>(Objects.requireNonNull(players));
-		this.board = new ArrayList<>(Objects.requireNonNull(board));
-		this.bombsAndExplosions = new ArrayList<>(Objects.requireNonNull(bombsAndExplosions));
-		this.scoreLine = new ArrayList<>(Objects.requireNonNull(scoreLine));
-		this.timeLine = new ArrayList<>(Objects.requireNonNull(timeLine));
+	public final int bombOrExplosionImage(int rowMajorIndex) {
+		return Byte.toUnsignedInt(bombsAndExplosions[rowMajorIndex]);
 	}
 
 	/**
-	 * @return the list of the players
+	 * @param id
+	 * @return the lives of the player
 	 */
-	public final List<Player> players() {
-		return Collections.unmodifiableList(players);
+	public final int lives(PlayerID id) {
+		return lives[id.ordinal()];
 	}
 
 	/**
-	 * @return the list of images used to represent the board
+	 * @param id
+	 * @return the x coordinate of the player
 	 */
-	public final List<Image> board() {
-		return Collections.unmodifiableList(board);
+	public final int x(PlayerID id) {
+		return xs[id.ordinal()];
 	}
 
 	/**
-	 * @return the list of images used to represent the bombs and explosions of
-	 *         the GameState
+	 * @param id
+	 * @return the y coordinate of the player
 	 */
-	public final List<Image> bombsAndExplosions() {
-		return Collections.unmodifiableList(bombsAndExplosions);
+	public final int y(PlayerID id) {
+		return ys[id.ordinal()];
 	}
 
 	/**
-	 * @return the list of images used to represent the scoreLine
+	 * @param id
+	 * @return the index of the image used to represent the player, which has
+	 *         no image if the player is not shown (e.g. : the player is dead)
 	 */
-	public final List<Image> scoreLine() {
-		return Collections.unmodifiableList(scoreLine);
+	public final int playerImage(PlayerID id) {
+		return playerImages[id.ordinal()];
 	}
 
 	/**
-	 * @return the list of images used to represent the timeLine
+	 * @return the number of LEDs of the time line which are on, at most
+	 *         {@link #TIME_LEDS}
 	 */
-	public final List<Image> timeLine() {
-		return Collections.unmodifiableList(timeLine);
+	public final int remainingTime() {
+		return remainingTime;
 	}
-}
\ No newline at end of file
+}
@@ -1,37 +1,36 @@
 package ch.epfl.xblast.client;
 
-import java.awt.Image;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.DeltaProtocol;
 import ch.epfl.xblast.PlayerID;
 import ch.epfl.xblast.RunLengthEncoder;
-import ch.epfl.xblast.SubCell;
-import ch.epfl.xblast.client.GameState.Player;
-import ch.epfl.xblast.server.Ticks;
 
 /**
  * Used to deserialize the gameState received
- * 
+ *
+ * The gameState is written in the arrays of a given {@link GameState}, which
+ * can be the same for every gameState received, so that deserializing creates
+ * no object.
+ *
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  */
 public final class GameStateDeserializer {
 
-	private final static ImageCollection PLAYER_IMAGES = new ImageCollection("player");
-	private final static ImageCollection EXPLOSION_IMAGES = new ImageCollection("explosion");
-	private final static ImageCollection BLOCK_IMAGES = new ImageCollection("block");
-	private final static ImageCollection SCORE_IMAGES = new ImageCollection("score");
-	private final static int INDEX_FOR_LED_OFF = 20;
-	private final static int INDEX_FOR_LED_ON = 21;
 	private final static int BYTES_SERIALIZED_PER_PLAYER = 4;
 	private final static int NUMBER_OF_PLAYERS = PlayerID.values().length;
-	private final static int TEXT_MIDDLE_INDEX = 10;
-	private final static int TEXT_RIGHT_INDEX = 11;
-	private final static int TILE_VOID_INDEX = 12;
+	private final static PlayerID[] PLAYER_IDS = PlayerID.values();
+
+	// the index in the row major order of each cell of the spiral order, in
+	// which the board is serialized
+	private final static int[] ROW_MAJOR_INDEX_IN_SPIRAL_ORDER = new int[Cell.COUNT];
+	static {
+		for (int i = 0; i < Cell.COUNT; ++i)
+			ROW_MAJOR_INDEX_IN_SPIRAL_ORDER[i] = Cell.SPIRAL_ORDER.get(i).rowMajorIndex();
+	}
 
 	private GameStateDeserializer() {
 	}
@@ -40,131 +39,118 @@ public final class GameStateDeserializer {
 	 * This static method must receive a list of bytes which is a game state
 	 * serialized with
 	 * {@link ch.epfl.xblast.server.GameStateSerializer#serialize}
-	 * 
+	 *
 	 * @param list
 	 * @return the game state desererialized
+	 * @throws IllegalArgumentException
+	 *             if the serialized game state is invalid
 	 */
 	public static GameState deserializeGameState(List<Byte> list) {
-		// initialisation of the fields of GameState to be computed
-		// when said "obtaining a list" we only take the elements not the size
-		// at the first index
-
-		List<Player> players = new ArrayList<>();
-		List<Image> board = new ArrayList<>();
-		List<Image> bombsAndExplosions = new ArrayList<>();
-		List<Image> scoreLine = new ArrayList<>();
-		List<Image> timeLine = new ArrayList<>();
-		// the beginning index is the first element of the list we want to
-		// obtain
-
-		// obtaining the list for the board and deserializes it
-		int beginningIndex = 1;
-		int endingIndex = Byte.toUnsignedInt(list.get(0)) + 1;
-		List<Byte> byteForBlocksList = new ArrayList<>(list.subList(beginningIndex, endingIndex));
-		board = imagesInRowMajorOrderFrom(RunLengthEncoder.decode(byteForBlocksList));
-
-		// obtaining the list for the bombs and explosions
-		// + 1 because the element at endingIndex is the size of the list
-		beginningIndex = endingIndex + 1;
-		endingIndex = beginningIndex + Byte.toUnsignedInt(list.get(endingIndex));
-		List<Byte> bytesForBombList = RunLengthEncoder.decode(new ArrayList<>(list.subList(beginningIndex, endingIndex)));
-		bombsAndExplosions = bombsAndExplosionsDeserialization(bytesForBombList);
-
-		// obtaining the list for the players, as no size are given, then the
-		// element at ending index is the first element for the list of player.
-		beginningIndex = endingIndex;
-		endingIndex = beginningIndex + BYTES_SERIALIZED_PER_PLAYER * (NUMBER_OF_PLAYERS);
-		List<Byte> bytesForPlayerList = new ArrayList<>(list.subList(beginningIndex, endingIndex));
-		players = playerDeserialization(bytesForPlayerList);
-
-		// making the scoreLine with the list of players
-		scoreLine = imagesForScoreLine(players);
-
-		// making the timeLine
-		int remainingTime = Byte.toUnsignedInt(list.get(endingIndex));
-		timeLine.addAll(Collections.nCopies(remainingTime, SCORE_IMAGES.image(INDEX_FOR_LED_ON)));
-		timeLine.addAll(Collections.nCopies(Ticks.TOTAL_TICKS / Ticks.TICKS_PER_SECOND / 2 - remainingTime,
-				SCORE_IMAGES.image(INDEX_FOR_LED_OFF)));
-
-		return new GameState(players, board, bombsAndExplosions, scoreLine, timeLine);
+		ByteBuffer buffer = ByteBuffer.allocate(list.size());
+		for (Byte b : list)
+			buffer.put(b);
+		buffer.flip();
+		return deserializeGameState(buffer, new GameState());
 	}
 
 	/**
-	 * @param bytesInSpiralOrder
-	 *            the board decoded, in spiral order
-	 * @return the list of images of the board in the row major order
+	 * This static method must receive a buffer holding a game state
+	 * serialized with
+	 * {@link ch.epfl.xblast.server.GameStateSerializer#serializeInto}, from
+	 * its position, which is moved after the game state
+	 *
+	 * @param buffer
+	 * @param gameState
+	 *            the game state in which the one of the buffer is written
+	 * @return the given game state
+	 * @throws IllegalArgumentException
+	 *             if the serialized game state is invalid
 	 */
-	private static List<Image> imagesInRowMajorOrderFrom(List<Byte> bytesInSpiralOrder) {
-		Image[] inRowMajor = new Image[Cell.COUNT];
-
-		for (int i = 0; i < Cell.COUNT; ++i) {
-			// getting the index of an element in the spiralOrder board,
-			// considered as a row-major one.
-			int index = Cell.SPIRAL_ORDER.get(i).rowMajorIndex();
-			// we have to place that element at the index
-			inRowMajor[index] = BLOCK_IMAGES.image(bytesInSpiralOrder.get(i));
+	public static GameState deserializeGameState(ByteBuffer buffer, GameState gameState) {
+		// the board and the bombs and explosions are preceded by their size
+		RunLengthEncoder.decode(buffer, sectionLength(buffer), gameState.boardArray(),
+				ROW_MAJOR_INDEX_IN_SPIRAL_ORDER);
+		RunLengthEncoder.decode(buffer, sectionLength(buffer), gameState.bombsAndExplosionsArray(), 0, Cell.COUNT);
+
+		// the players and the remaining time are not compressed
+		if (buffer.remaining() < BYTES_SERIALIZED_PER_PLAYER * NUMBER_OF_PLAYERS + 1)
+			throw new IllegalArgumentException("Truncated game state");
+		for (PlayerID id : PLAYER_IDS) {
+			int lives = Byte.toUnsignedInt(buffer.get());
+			int xPosition = Byte.toUnsignedInt(buffer.get());
+			int yPosition = Byte.toUnsignedInt(buffer.get());
+			int numberOfImage = Byte.toUnsignedInt(buffer.get());
+			gameState.setPlayer(id, lives, xPosition, yPosition, numberOfImage);
 		}
-		return Collections.unmodifiableList(Arrays.asList(inRowMajor));
+		gameState.setRemainingTime(remainingTime(buffer.get()));
+		return gameState;
 	}
 
 	/**
-	 * @param bombsByte
-	 *            the list of bytes decoded of the bytes for the bombs and the
-	 *            explosions
-	 * @return the list of images used for the bombs and explosions (remind : we
-	 *         have null when there is no bomb or explosion on the tile)
+	 * This static method must receive a frame of the delta mode of the
+	 * protocol, as computed by
+	 * {@link ch.epfl.xblast.server.GameStateSerializer#serializeFrame}
+	 *
+	 * @param frame
+	 * @return the game state deserialized
+	 * @throws IllegalArgumentException
+	 *             if the remaining time is invalid
 	 */
-	private static List<Image> bombsAndExplosionsDeserialization(List<Byte> bombsByte) {
-		List<Image> bombsAndExplosionsDeserialized = new ArrayList<>();
-		for (Byte b : bombsByte) {
-			// if there is no bomb, then there is no image => imageOrNull
-			bombsAndExplosionsDeserialized.add(EXPLOSION_IMAGES.imageOrNull(b));
-		}
-		return Collections.unmodifiableList(bombsAndExplosionsDeserialized);
+	public static GameState deserializeFrame(byte[] frame) {
+		return deserializeFrame(frame, new GameState());
 	}
 
 	/**
-	 * @param playersBytes
-	 *            the list of the byte of the images used to represent the
-	 *            players
-	 * @return the list of player
+	 * This static method must receive a frame of the delta mode of the
+	 * protocol, as computed by
+	 * {@link ch.epfl.xblast.server.GameStateSerializer#serializeFrame}
+	 *
+	 * @param frame
+	 * @param gameState
+	 *            the game state in which the one of the frame is written
+	 * @return the given game state
+	 * @throws IllegalArgumentException
+	 *             if the remaining time is invalid
 	 */
-	private static List<Player> playerDeserialization(List<Byte> playersBytes) {
-		List<Player> playersDeserialized = new ArrayList<>();
-		for (PlayerID id : PlayerID.values()) {
-			// getting parameters for each player and constructing them
-			// the numbers 1, 2 and 3 are added in consequence of the ordering
-			// of the images.
-			int lives = Byte.toUnsignedInt(playersBytes.get(id.ordinal() * NUMBER_OF_PLAYERS));
-			int xPosition = Byte.toUnsignedInt(playersBytes.get(id.ordinal() * NUMBER_OF_PLAYERS + 1));
-			int yPosition = Byte.toUnsignedInt(playersBytes.get(id.ordinal() * NUMBER_OF_PLAYERS + 2));
-			int numberOfImage = Byte.toUnsignedInt(playersBytes.get(id.ordinal() * NUMBER_OF_PLAYERS + 3));
-			// there is no image for player that are dead for example so we have
-			// to use imageOrNull
-			Player player = new Player(id, lives, new SubCell(xPosition, yPosition),
-					PLAYER_IMAGES.imageOrNull(numberOfImage));
-			playersDeserialized.add(player);
+	public static GameState deserializeFrame(byte[] frame, GameState gameState) {
+		// the board of the frame is in spiral order
+		byte[] board = gameState.boardArray();
+		for (int i = 0; i < Cell.COUNT; ++i)
+			board[ROW_MAJOR_INDEX_IN_SPIRAL_ORDER[i]] = frame[DeltaProtocol.BOARD_OFFSET + i];
+		System.arraycopy(frame, DeltaProtocol.EXPLOSIONS_OFFSET, gameState.bombsAndExplosionsArray(), 0,
+				Cell.COUNT);
+
+		for (PlayerID id : PLAYER_IDS) {
+			int index = DeltaProtocol.PLAYERS_OFFSET + id.ordinal() * BYTES_SERIALIZED_PER_PLAYER;
+			gameState.setPlayer(id, Byte.toUnsignedInt(frame[index]), Byte.toUnsignedInt(frame[index + 1]),
+					Byte.toUnsignedInt(frame[index + 2]), Byte.toUnsignedInt(frame[index + 3]));
 		}
-		return Collections.unmodifiableList(playersDeserialized);
+		gameState.setRemainingTime(remainingTime(frame[DeltaProtocol.TIME_OFFSET]));
+		return gameState;
 	}
 
 	/**
-	 * @param players
-	 * @return the list of the images used to print the scoreLine
+	 * @param buffer
+	 * @return the size of the next section of the buffer
+	 * @throws IllegalArgumentException
+	 *             if the buffer is empty
 	 */
-	private static List<Image> imagesForScoreLine(List<Player> players) {
-		List<Image> scoreLine = new ArrayList<>();
-		for (Player p : players) {
-			// image for the head of the player, 2 is a number used in
-			// consequence of the ordering of images
-			scoreLine.add(SCORE_IMAGES.image(p.id().ordinal() * 2 + (p.lives() > 0 ? 0 : 1)));
-			// images between two players
-			scoreLine
-					.addAll(Arrays.asList(SCORE_IMAGES.image(TEXT_MIDDLE_INDEX), SCORE_IMAGES.image(TEXT_RIGHT_INDEX)));
-			// adding the images to fill the middle part
-			if (p.id() == PlayerID.PLAYER_2)
-				scoreLine.addAll(Collections.nCopies(8, SCORE_IMAGES.image(TILE_VOID_INDEX)));
-		}
-		return Collections.unmodifiableList(scoreLine);
+	private static int sectionLength(ByteBuffer buffer) {
+		if (!buffer.hasRemaining())
+			throw new IllegalArgumentException("Truncated game state");
+		return Byte.toUnsignedInt(buffer.get());
+	}
+
+	/**
+	 * @param b
+	 * @return the number of LEDs of the time line which are on
+	 * @throws IllegalArgumentException
+	 *             if there are more than the LEDs of the time line
+	 */
+	private static int remainingTime(byte b) {
+		int remainingTime = Byte.toUnsignedInt(b);
+		if (remainingTime > GameState.TIME_LEDS)
+			throw new IllegalArgumentException("Invalid remaining time");
+		return remainingTime;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package ch.epfl.xblast.client;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerID;
+
+/**
+ * Rebuilds the game states sent by the server in delta mode. It keeps the
+ * frames recently received, so that a delta can be applied to the frame it is
+ * based on, and tells which frame to acknowledge or if a keyframe is needed.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class GameStateReconstructor {
+
+    private static final int HISTORY = 32;
+
+    private final byte[][] frames = new byte[HISTORY][DeltaProtocol.FRAME_SIZE];
+    private final int[] frameNumbers = new int[HISTORY];
+    private int lastFrameNumber = -1;
+    private PlayerID playerId;
+    private boolean keyframeNeeded;
+
+    /**
+     * Constructs a reconstructor which did not receive any frame
+     */
+    public GameStateReconstructor() {
+        Arrays.fill(frameNumbers, -1);
+    }
+
+    /**
+     * Reads a packet of the server. It is ignored if it is older than the
+     * last frame, or if it is a delta based on an unknown frame, in which case
+     * a keyframe is needed.
+     *
+     * @param packet
+     *            the packet, from its position to its limit
+     * @return true if the packet gave a new frame
+     * @throws IllegalArgumentException
+     *             if the packet is invalid
+     */
+    public boolean accept(ByteBuffer packet) {
+        if (packet.remaining() < DeltaProtocol.KEYFRAME_HEADER_SIZE)
+            throw new IllegalArgumentException("Truncated packet");
+        PlayerID id = PlayerID.values()[packet.get()];
+        byte kind = packet.get();
+        int frameNumber = packet.getInt();
+        if (frameNumber <= lastFrameNumber)
+            return false;
+
+        // the frame is written over the oldest one, which is not valid anymore
+        // until it is completely read
+        byte[] frame = frames[frameNumber % HISTORY];
+        if (kind == DeltaProtocol.KEYFRAME) {
+            frameNumbers[frameNumber % HISTORY] = -1;
+            DeltaProtocol.decodeKeyframe(packet, frame);
+        } else if (kind > 0) {
+            // the kind of a delta is the distance to its base frame
+            int base = frameNumber - kind;
+            if (base < 0 || frameNumbers[base % HISTORY] != base) {
+                keyframeNeeded = true;
+                return false;
+            }
+            byte[] baseFrame = frames[base % HISTORY];
+            frameNumbers[frameNumber % HISTORY] = -1;
+            DeltaProtocol.applyDelta(baseFrame, packet, frame);
+        } else
+            throw new IllegalArgumentException("Unknown packet kind");
+
+        frameNumbers[frameNumber % HISTORY] = frameNumber;
+        lastFrameNumber = frameNumber;
+        playerId = id;
+        keyframeNeeded = false;
+        return true;
+    }
+
+    /**
+     * @return the number of the last frame, to be acknowledged, or -1 if
+     *         there is none
+     */
+    public int lastFrameNumber() {
+        return lastFrameNumber;
+    }
+
+    /**
+     * @return true if a delta could not be applied since the last frame
+     */
+    public boolean isKeyframeNeeded() {
+        return keyframeNeeded;
+    }
+
+    /**
+     * @return the id of the player of the client, given by the last frame
+     */
+    public PlayerID playerId() {
+        return playerId;
+    }
+
+    /**
+     * @return the last frame, which must not be modified and is only valid
+     *         until the next packet is accepted
+     * @throws IllegalStateException
+     *             if no frame was received
+     */
+    public byte[] frame() {
+        if (lastFrameNumber < 0)
+            throw new IllegalStateException("No frame received");
+        return frames[lastFrameNumber % HISTORY];
+    }
+
+    /**
+     * @return the game state of the last frame
+     * @throws IllegalStateException
+     *             if no frame was received
+     */
+    public GameState gameState() {
+        if (lastFrameNumber < 0)
+            throw new IllegalStateException("No frame received");
+        return GameStateDeserializer
+                .deserializeFrame(frames[lastFrameNumber % HISTORY]);
+    }
+}
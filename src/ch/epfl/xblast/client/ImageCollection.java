@@ -1,49 +1,123 @@
 package ch.epfl.xblast.client;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.io.File;
-import java.net.URISyntaxException;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
-
-import javax.imageio.ImageIO;
+import java.util.TreeMap;
 
 /**
  * <Code> ImageCollection </Code> is a collection of images
  * 
+ * In atlas mode, the images are packed into a single image in the pixel
+ * format of the screen, which Java2D draws faster than the format of the
+ * files, and the images of the collection are views of parts of it.
+ * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  */
 public final class ImageCollection {
 
-	private File imagesRepository;
+	// The maximal width of an atlas, whose images are placed in rows
+	private static final int ATLAS_WIDTH = 1024;
 
 	private Map<Integer, Image> imagesMap = new HashMap<>();
 
 	/**
 	 * @param directory
-	 * @throw throws Error if <Code> URISyntaxException </Code> 
+	 *            a directory of the class path, possibly in a jar
+	 * @throws UncheckedIOException
+	 *             if the directory cannot be read or an image decoded
 	 */
 	public ImageCollection(String directory){
-		try {
-			this.imagesRepository = new File(ImageCollection.class.getClassLoader().getResource(directory).toURI());
-	
-		for (File f : imagesRepository.listFiles()) {
-			String name = f.getName();
-			// 0 and 3 are the beginning and ending indexes of the files
-			// numbers.
-			int numberOfImage = Integer.parseInt(name.substring(0, 3));
-			try {
-				imagesMap.put(numberOfImage, ImageIO.read(f));
-			} catch (Exception e) {
-				// do nothing : we ignore exception here, we continue reading.
+		this(directory, false);
+	}
+
+	/**
+	 * @param directory
+	 *            a directory of the class path, possibly in a jar
+	 * @param atlas
+	 *            true if the images are packed into an atlas
+	 * @throws UncheckedIOException
+	 *             if the directory cannot be read or an image decoded
+	 */
+	public ImageCollection(String directory, boolean atlas) {
+		this(AssetLoader.loadDirectory(directory), atlas);
+	}
+
+	/**
+	 * @param images
+	 *            the images, by index
+	 * @param atlas
+	 *            true if the images are packed into an atlas
+	 */
+	public ImageCollection(Map<Integer, BufferedImage> images, boolean atlas) {
+		if (atlas && !images.isEmpty())
+			imagesMap.putAll(pack(new TreeMap<>(images)));
+		else
+			imagesMap.putAll(images);
+	}
+
+	/**
+	 * Packs images into an atlas, in rows
+	 * 
+	 * @param images
+	 *            the images, by index
+	 * @return the views of the images in the atlas, by index
+	 */
+	private static Map<Integer, Image> pack(Map<Integer, BufferedImage> images) {
+		Map<Integer, Rectangle> places = new HashMap<>();
+		int x = 0, y = 0, rowHeight = 0, width = 0;
+		boolean opaque = true;
+		for (Map.Entry<Integer, BufferedImage> e : images.entrySet()) {
+			BufferedImage image = e.getValue();
+			if (x > 0 && x + image.getWidth() > ATLAS_WIDTH) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
 			}
+			places.put(e.getKey(), new Rectangle(x, y, image.getWidth(), image.getHeight()));
+			x += image.getWidth();
+			width = Math.max(width, x);
+			rowHeight = Math.max(rowHeight, image.getHeight());
+			opaque &= image.getTransparency() == Transparency.OPAQUE;
 		}
-		}catch (URISyntaxException e){
-			throw new Error();
+
+		BufferedImage atlas = compatibleImage(width, y + rowHeight,
+				opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+		Graphics2D g = atlas.createGraphics();
+		// the pixels are copied, transparent ones included
+		g.setComposite(AlphaComposite.Src);
+		Map<Integer, Image> views = new HashMap<>();
+		for (Map.Entry<Integer, BufferedImage> e : images.entrySet()) {
+			Rectangle r = places.get(e.getKey());
+			g.drawImage(e.getValue(), r.x, r.y, null);
+			views.put(e.getKey(), atlas.getSubimage(r.x, r.y, r.width, r.height));
 		}
+		g.dispose();
+		return views;
+	}
 
+	/**
+	 * @param width
+	 * @param height
+	 * @param transparency
+	 * @return an image in the pixel format of the screen, or in an integer
+	 *         format if there is no screen
+	 */
+	private static BufferedImage compatibleImage(int width, int height, int transparency) {
+		if (!GraphicsEnvironment.isHeadless())
+			return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+		return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+				? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
 	}
 
 	/**
@@ -0,0 +1,75 @@
+package ch.epfl.xblast.client;
+
+import java.nio.ByteBuffer;
+
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.PlayerAction;
+
+/**
+ * The actions of a client in the sequenced mode (see {@link InputProtocol}).
+ * It numbers the actions and keeps the last ones, which every packet repeats.
+ * After an action, the packet is also sent again with the next game states
+ * received, so that the action reaches the server even if no other action
+ * follows it.
+ *
+ * The actions are recorded by the thread of the interface, while the packets
+ * are sent again by the thread receiving the game states.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class InputSender {
+
+    private final byte[] history = new byte[InputProtocol.REDUNDANCY];
+    private final byte[] ordered = new byte[InputProtocol.REDUNDANCY];
+    private int lastSequence = -1;
+    private int lastFrame = -1;
+    private int resends;
+
+    /**
+     * Numbers a new action and writes the packet sending it
+     *
+     * @param action
+     * @param dst
+     */
+    public synchronized void record(PlayerAction action, ByteBuffer dst) {
+        lastSequence++;
+        history[lastSequence % history.length] = (byte) action.ordinal();
+        resends = InputProtocol.REDUNDANCY;
+        writePacket(dst);
+    }
+
+    /**
+     * Records that the client received a frame
+     *
+     * @param frame
+     *            the number of the frame
+     */
+    public synchronized void frameReceived(int frame) {
+        lastFrame = Math.max(lastFrame, frame);
+    }
+
+    /**
+     * Writes the packet of the last actions if they must still be sent again
+     *
+     * @param dst
+     * @return true if a packet was written
+     */
+    public synchronized boolean writeResend(ByteBuffer dst) {
+        if (resends == 0)
+            return false;
+        resends--;
+        writePacket(dst);
+        return true;
+    }
+
+    private void writePacket(ByteBuffer dst) {
+        int count = Math.min(history.length, lastSequence + 1);
+        int first = lastSequence - count + 1;
+        for (int i = 0; i < count; ++i)
+            ordered[i] = history[(first + i) % history.length];
+        InputProtocol.writePacket(lastSequence, lastFrame, ordered, 0, count,
+                dst);
+    }
+}
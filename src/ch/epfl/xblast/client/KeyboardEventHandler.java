@@ -1,23 +1,36 @@
 package ch.epfl.xblast.client;
 
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import ch.epfl.xblast.PlayerAction;
 
 /**
- * Used to handle the key events
+ * Used to handle the key events. An action is sent when its key is pressed,
+ * but not again while it is held down, so that the auto-repeat of the keyboard
+ * does not send the same action many times.
+ * 
+ * The handler must also listen to the focus of the component: the keys
+ * released while the component does not have the focus are never reported to
+ * it, so they are all considered released when the focus is lost.
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  */
-public final class KeyboardEventHandler extends KeyAdapter {
+public final class KeyboardEventHandler extends KeyAdapter
+        implements FocusListener {
     private final Map<Integer, PlayerAction> keyBindings;
     private final Consumer<PlayerAction> sender;
+    // the keys currently held down
+    private final Set<Integer> pressedKeys = new HashSet<>();
 
     /**
      * Constructor, checks if the map, linking an Integer (in reality, an event)
@@ -36,11 +49,25 @@ public final class KeyboardEventHandler extends KeyAdapter {
     @Override
     public void keyPressed(KeyEvent e) {
         int keyCode = e.getKeyCode();
-        if (keyBindings.containsKey(keyCode)) {
+        if (keyBindings.containsKey(keyCode) && pressedKeys.add(keyCode)) {
             sender.accept(keyBindings.get(keyCode));
         }
     }
 
+    @Override
+    public void keyReleased(KeyEvent e) {
+        pressedKeys.remove(e.getKeyCode());
+    }
+
+    @Override
+    public void focusGained(FocusEvent e) {
+    }
+
+    @Override
+    public void focusLost(FocusEvent e) {
+        pressedKeys.clear();
+    }
+
     /**
      * @return the default keyBindings map, which associate a KeyEvent to a
      *         PlayerAction
@@ -8,15 +8,19 @@ import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.MulticastProtocol;
 import ch.epfl.xblast.PlayerAction;
 import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.RelayProtocol;
 import ch.epfl.xblast.Time;
 
 /**
@@ -29,16 +33,37 @@ import ch.epfl.xblast.Time;
 public class Main {
 
     private static final String DEFAULT_SERVEUR = "localhost";
-    // Maximum size of the serialized gameState +1 for the id
-    private final static int MAX_SIZE = 410;
+    private static final String DELTA_MODE = "delta";
+    private static final String MULTICAST_MODE = "multicast";
+    // Maximum size of a packet of the server, in both modes
+    private final static int MAX_SIZE = Math.max(410,
+            DeltaProtocol.MAX_PACKET_SIZE);
     private final static int BYTE_TO_SEND = 1;
     private static XBlastComponent xBlastComponent;
+    // The actions of the player, sent in sequenced mode
+    private static final InputSender inputs = new InputSender();
+    // The frames received are decoded and painted by other threads, which
+    // only show the last one
+    private static final FramePipeline pipeline = new FramePipeline(
+            (s, id) -> xBlastComponent.setGameState(s, id),
+            SwingUtilities::invokeLater);
+    // The number of frames between two prints of the statistics
+    private static final int STATISTICS_PERIOD = 10 * 20;
+    // The system property giving the cache file of the decoded images
+    private static final String IMAGE_CACHE_PROPERTY = "xblast.imagecache";
 
     /**
      * The main method used by the client to join the game,
      * 
      * @param server
-     *            address
+     *            address, optionally followed by its port after a colon (2016
+     *            by default, the port of the server; a relay receives its
+     *            spectators on port 2018 by default, as localhost:2018),
+     *            optionally followed by "delta" to receive the game
+     *            in delta mode (which only a MatchHost supports) or by
+     *            "multicast" to receive it through the multicast group of the
+     *            server. The decoded images are kept in the cache file given
+     *            by the system property xblast.imagecache, if any.
      * @throws IOException
      * @throws InterruptedException
      * @throws InvocationTargetException
@@ -46,15 +71,32 @@ public class Main {
     public static void main(String[] args) throws IOException,
             InterruptedException, InvocationTargetException {
 
+        // The images are loaded before joining the game, decoded in
+        // parallel or read from the cache
+        String cache = System.getProperty(IMAGE_CACHE_PROPERTY);
+        AssetLoader loader = new AssetLoader(
+                cache == null ? null : Paths.get(cache));
+        Map<String, ImageCollection> images = XBlastComponent
+                .loadImages(loader);
+        System.out.printf("Images loaded in %d ms (%s start)%n",
+                loader.loadNanos() / Time.NS_PER_MS,
+                loader.wasWarm() ? "warm" : "cold");
+
         // by default we play on our computer
         String hostName = args.length > 0 ? args[0] : DEFAULT_SERVEUR;
+        String mode = args.length > 1 ? args[1] : "";
+        boolean deltaMode = mode.equals(DELTA_MODE);
+        boolean multicastMode = mode.equals(MULTICAST_MODE);
+        byte joinByte = deltaMode ? DeltaProtocol.JOIN_WITH_DELTAS
+                : multicastMode ? MulticastProtocol.JOIN_MULTICAST
+                        : (byte) PlayerAction.JOIN_GAME.ordinal();
 
         try (DatagramChannel channel = DatagramChannel
                 .open(StandardProtocolFamily.INET)) {
 
             SocketAddress serverAddress;
-            SocketAddress addressToConnect = new InetSocketAddress(hostName,
-                    2016);
+            SocketAddress addressToConnect = ch.epfl.xblast.relay.Main
+                    .serverAddress(hostName);
             ByteBuffer bufferReceived = ByteBuffer.allocate(MAX_SIZE);
             ByteBuffer bufferToSend = ByteBuffer.allocate(BYTE_TO_SEND);
 
@@ -63,42 +105,188 @@ public class Main {
             // While we don't receive anything from the server, we sent our will
             // to join the game and wait
             while ((serverAddress = channel.receive(bufferReceived)) == null) {
-                bufferToSend.put((byte) PlayerAction.JOIN_GAME.ordinal())
-                        .flip();
+                bufferToSend.put(joinByte).flip();
                 channel.send(bufferToSend, addressToConnect);
                 Thread.sleep(Time.MS_PER_S);
                 bufferToSend.clear();
             }
 
+            // A relay sends the gameState to its spectators with the id of a
+            // spectator, whose keys are not sent
+            final boolean spectator = !deltaMode
+                    && RelayProtocol.isSpectator(bufferReceived.get(0));
+
             // We open a window to print the gameState
             final SocketAddress serverTemp = serverAddress;
-            SwingUtilities.invokeAndWait(() -> createUi(channel, serverTemp));
+            SwingUtilities.invokeAndWait(
+                    () -> createUi(channel, serverTemp, images, spectator));
+            pipeline.start();
 
             channel.configureBlocking(true);
 
+            if (deltaMode)
+                receiveDeltas(channel, serverAddress, bufferReceived);
+
+            // a server without multicast mode answers with the gameState
+            ByteBuffer firstPacket = (ByteBuffer) bufferReceived.duplicate()
+                    .flip();
+            if (multicastMode && MulticastProtocol.isWelcome(firstPacket))
+                receiveMulticast(channel, serverAddress, firstPacket);
+
+            // The states are not numbered by the server, we count them
+            ByteBuffer inputsToSend = ByteBuffer
+                    .allocate(InputProtocol.MAX_PACKET_SIZE);
+            byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+            int frameNumber = 0;
+
             // Infinite loop to receive the gameState
             while (true) {
-                List<Byte> list = new ArrayList<>();
-
                 bufferReceived.flip();
-                // First byte is our ID, attributed by the server
-                final PlayerID myPlayerID = PlayerID.values()[bufferReceived
-                        .get()];
-
-                // The remaining are the gameState
-                while (bufferReceived.hasRemaining()) {
-                    list.add(bufferReceived.get());
-                }
-                GameState s = GameStateDeserializer.deserializeGameState(list);
-                // We set our gameState, which calls repaint
-                SwingUtilities.invokeLater(
-                        () -> xBlastComponent.setGameState(s, myPlayerID));
+                // First byte is our ID, attributed by the server, or the id
+                // of a spectator
+                byte id = bufferReceived.get();
+                final PlayerID myPlayerID = RelayProtocol.isSpectator(id)
+                        ? null : PlayerID.values()[id];
+
+                // The remaining are the gameState, which we show
+                DeltaProtocol.decodeKeyframe(bufferReceived, frame);
+                show(frameNumber, frame, myPlayerID);
+                if (myPlayerID != null)
+                    frameReceived(channel, serverAddress, frameNumber,
+                            inputsToSend);
+                frameNumber++;
                 bufferReceived.clear();
                 channel.receive(bufferReceived);
             }
         }
     }
 
+    /**
+     * Infinite loop receiving the game through the multicast group given by
+     * the welcome packet of the server, which also gives the id of the player
+     * 
+     * @param channel
+     * @param serverAddress
+     * @param welcome
+     *            the welcome packet
+     * @throws IOException
+     */
+    private static void receiveMulticast(DatagramChannel channel,
+            SocketAddress serverAddress, ByteBuffer welcome)
+            throws IOException {
+        final PlayerID myPlayerID = MulticastProtocol.playerOf(welcome);
+        InetSocketAddress group = MulticastProtocol.groupOf(welcome);
+        ByteBuffer bufferReceived = ByteBuffer.allocate(MAX_SIZE);
+        ByteBuffer inputsToSend = ByteBuffer
+                .allocate(InputProtocol.MAX_PACKET_SIZE);
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        int frameNumber = 0;
+
+        try (DatagramChannel groupChannel = MulticastProtocol.joinGroup(group,
+                MulticastProtocol.interfaceTowards(
+                        ((InetSocketAddress) serverAddress).getAddress()))) {
+            while (true) {
+                bufferReceived.clear();
+                groupChannel.receive(bufferReceived);
+                bufferReceived.flip();
+
+                // The packets of the group only contain the gameState
+                DeltaProtocol.decodeKeyframe(bufferReceived, frame);
+                show(frameNumber, frame, myPlayerID);
+                frameReceived(channel, serverAddress, frameNumber++,
+                        inputsToSend);
+            }
+        }
+    }
+
+    /**
+     * Infinite loop receiving the game in delta mode: each frame received is
+     * printed and acknowledged, and a keyframe is requested when a delta
+     * cannot be applied
+     * 
+     * @param channel
+     * @param serverAddress
+     * @param bufferReceived
+     *            the buffer holding the first packet received
+     * @throws IOException
+     */
+    private static void receiveDeltas(DatagramChannel channel,
+            SocketAddress serverAddress, ByteBuffer bufferReceived)
+            throws IOException {
+        GameStateReconstructor reconstructor = new GameStateReconstructor();
+        ByteBuffer bufferToSend = ByteBuffer
+                .allocate(DeltaProtocol.ACKNOWLEDGE_SIZE);
+        ByteBuffer inputsToSend = ByteBuffer
+                .allocate(InputProtocol.MAX_PACKET_SIZE);
+
+        while (true) {
+            bufferReceived.flip();
+            bufferToSend.clear();
+            if (reconstructor.accept(bufferReceived)) {
+                show(reconstructor.lastFrameNumber(), reconstructor.frame(),
+                        reconstructor.playerId());
+                bufferToSend.put(DeltaProtocol.ACKNOWLEDGE)
+                        .putInt(reconstructor.lastFrameNumber());
+            } else if (reconstructor.isKeyframeNeeded()) {
+                bufferToSend.put(DeltaProtocol.KEYFRAME_REQUEST);
+            }
+            bufferToSend.flip();
+            if (bufferToSend.hasRemaining())
+                channel.send(bufferToSend, serverAddress);
+            frameReceived(channel, serverAddress,
+                    reconstructor.lastFrameNumber(), inputsToSend);
+
+            bufferReceived.clear();
+            channel.receive(bufferReceived);
+        }
+    }
+
+    /**
+     * Shows a frame, with the player of the client at its predicted position,
+     * unless a newer frame arrives before it is painted
+     * 
+     * @param frameNumber
+     * @param frame
+     * @param myPlayerID
+     */
+    private static void show(int frameNumber, byte[] frame,
+            PlayerID myPlayerID) {
+        pipeline.offer(frameNumber, frame, myPlayerID);
+
+        PlayerPredictor predictor = pipeline.predictor();
+        if (frameNumber > 0 && frameNumber % STATISTICS_PERIOD == 0
+                && predictor != null) {
+            System.out.printf("Prediction: %.1f%% of %d frames mispredicted%n",
+                    100 * predictor.errorRate(), predictor.comparedFrames());
+            System.out.printf("Frames: %d received, %d dropped, %d late, "
+                    + "%d painted%n", pipeline.received(), pipeline.dropped(),
+                    pipeline.late(), pipeline.painted());
+        }
+    }
+
+    /**
+     * Records that a frame was received, and sends again the last actions of
+     * the player if they must still be repeated
+     * 
+     * @param channel
+     * @param serverAddress
+     * @param frame
+     *            the number of the frame
+     * @param bufferToSend
+     *            the buffer used to write the packet
+     * @throws IOException
+     */
+    private static void frameReceived(DatagramChannel channel,
+            SocketAddress serverAddress, int frame, ByteBuffer bufferToSend)
+            throws IOException {
+        inputs.frameReceived(frame);
+        bufferToSend.clear();
+        if (inputs.writeResend(bufferToSend)) {
+            bufferToSend.flip();
+            channel.send(bufferToSend, serverAddress);
+        }
+    }
+
     /**
      * This method print the current gameState, listen to the keyboard actions,
      * and send them to the server given the channel
@@ -106,22 +294,33 @@ public class Main {
      * @param channel
      * @param xBlastComponent
      * @param serverAddress
-     * @param bufferToSend
+     * @param images
+     *            the images drawn by the component
+     * @param spectator
+     *            true if the client only watches the game, in which case the
+     *            keys are ignored
      * @throws IOException
      */
     private static void createUi(DatagramChannel channel,
-            SocketAddress serverAddress) {
+            SocketAddress serverAddress, Map<String, ImageCollection> images,
+            boolean spectator) {
         JFrame frame = new JFrame("XBlast");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        xBlastComponent = new XBlastComponent();
+        xBlastComponent = new XBlastComponent(images);
 
-        ByteBuffer bufferToSend = ByteBuffer.allocate(BYTE_TO_SEND);
+        ByteBuffer bufferToSend = ByteBuffer
+                .allocate(InputProtocol.MAX_PACKET_SIZE);
 
         // Used if the player attempts to do an action (like dropping a bomb...)
+        // The action is sent with the previous ones, in case they were lost
         Consumer<PlayerAction> c = (PlayerAction) -> {
             bufferToSend.clear();
-            bufferToSend.put((byte) PlayerAction.ordinal()).flip();
+            inputs.record(PlayerAction, bufferToSend);
+            bufferToSend.flip();
+
+            // The action is shown at once
+            pipeline.onAction(PlayerAction);
 
             try {
                 channel.send(bufferToSend, serverAddress);
@@ -130,9 +329,15 @@ public class Main {
             }
 
         };
-        // We add a KeyListener to our component
-        xBlastComponent.addKeyListener(new KeyboardEventHandler(
-                KeyboardEventHandler.keyBindings(), c));
+        // We add a KeyListener to our component, unless the client only
+        // watches the game, which also listens to the focus to forget the
+        // keys held down when it is lost
+        if (!spectator) {
+            KeyboardEventHandler handler = new KeyboardEventHandler(
+                    KeyboardEventHandler.keyBindings(), c);
+            xBlastComponent.addKeyListener(handler);
+            xBlastComponent.addFocusListener(handler);
+        }
         frame.getContentPane().add(xBlastComponent, BorderLayout.CENTER);
         frame.pack();
         frame.setVisible(true);
@@ -0,0 +1,341 @@
+package ch.epfl.xblast.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.Motion;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.SubCell;
+
+/**
+ * Predicts the motion of the player of the client, so that its actions are
+ * shown without waiting for the server. The frames of the server (see
+ * {@link DeltaProtocol}) are shown with the player a few frames ahead: its
+ * motion is simulated with the rules of the server ({@link Motion}), using
+ * the actions of the client and the walls and bombs of the last frame.
+ *
+ * Each prediction of a frame is kept until the frame arrives. If the server
+ * disagrees, the prediction starts again from the position of the server,
+ * moving only if the player moved on the server, and the player shown is
+ * moved smoothly towards the new prediction.
+ *
+ * The frames are given by the thread receiving them, while the actions are
+ * given by the thread of the interface.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class PlayerPredictor {
+
+    /**
+     * The default number of frames the prediction is ahead of the server: an
+     * action is applied by the server to the frame following the one the
+     * client received when the network is fast enough
+     */
+    public static final int DEFAULT_LEAD = 1;
+
+    private static final int HISTORY = 64;
+
+    // the images of the frames, see the painters of the server
+    private static final int IMAGES_PER_PLAYER = 20;
+    private static final int IMAGES_PER_DIRECTION = 3;
+    private static final int WALKING_IMAGES = 4 * IMAGES_PER_DIRECTION;
+    private static final int BLINKING_IMAGES = 80;
+    private static final byte DARK_BLOCK = 2;
+    private static final byte EXTRA = 3;
+    private static final byte EXTRA_O = 4;
+    private static final byte BLACK_BOMB = 20;
+    private static final byte WHITE_BOMB = 21;
+
+    // beyond this distance (a cell), the player shown jumps to its
+    // prediction, below it moves towards it at this speed
+    private static final int SNAP_DISTANCE = 16;
+    private static final int CORRECTION_SPEED = 2;
+
+    // the index in the frame of the block of each cell, in row major order
+    private static final int[] BOARD_INDEX = new int[Cell.COUNT];
+    static {
+        for (int i = 0; i < Cell.COUNT; ++i)
+            BOARD_INDEX[Cell.SPIRAL_ORDER.get(i).rowMajorIndex()] = i;
+    }
+
+    private final PlayerID id;
+    private final int lead;
+    private final int playerOffset;
+
+    // the predictions and the last action of the client after each frame
+    private final Motion[] predictions = new Motion[HISTORY];
+    private final int[] predictionFrames = new int[HISTORY];
+    private final List<Optional<Direction>> actions = new ArrayList<>(
+            Collections.nCopies(HISTORY, Optional.empty()));
+    private final int[] actionFrames = new int[HISTORY];
+
+    private final byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+    private int frameNumber = -1;
+    private boolean canMove;
+    private SubCell shown;
+    private SubCell serverPosition;
+
+    private long comparedFrames;
+    private long mispredictions;
+
+    private final Motion.Obstacles obstacles = new Motion.Obstacles() {
+        @Override
+        public boolean canHostPlayer(Cell cell) {
+            byte block = frame[DeltaProtocol.BOARD_OFFSET
+                    + BOARD_INDEX[cell.rowMajorIndex()]];
+            return block != DARK_BLOCK && block != EXTRA && block != EXTRA_O;
+        }
+
+        @Override
+        public boolean hasBomb(Cell cell) {
+            byte image = frame[DeltaProtocol.EXPLOSIONS_OFFSET
+                    + cell.rowMajorIndex()];
+            return image == BLACK_BOMB || image == WHITE_BOMB;
+        }
+    };
+
+    /**
+     * @param id
+     *            the player of the client
+     * @param lead
+     *            the number of frames the prediction is ahead of the server
+     * @throws IllegalArgumentException
+     *             if the lead is negative or too large
+     */
+    public PlayerPredictor(PlayerID id, int lead) {
+        this.id = Objects.requireNonNull(id);
+        if (lead < 0 || lead >= HISTORY / 2)
+            throw new IllegalArgumentException("Invalid lead");
+        this.lead = lead;
+        this.playerOffset = DeltaProtocol.PLAYERS_OFFSET + 4 * id.ordinal();
+        Arrays.fill(predictionFrames, -1);
+        Arrays.fill(actionFrames, -1);
+    }
+
+    /**
+     * @return the player of the client
+     */
+    public PlayerID playerId() {
+        return id;
+    }
+
+    /**
+     * Compares a new frame of the server with its prediction, and predicts
+     * the next ones
+     *
+     * @param number
+     *            the number of the frame, greater than the previous one
+     * @param newFrame
+     *            the frame, which is not modified
+     * @return the game state to show
+     */
+    public GameState accept(int number, byte[] newFrame) {
+        return accept(number, newFrame, new GameState());
+    }
+
+    /**
+     * Compares a new frame of the server with its prediction, and predicts
+     * the next ones
+     *
+     * @param number
+     *            the number of the frame, greater than the previous one
+     * @param newFrame
+     *            the frame, which is not modified
+     * @param shownState
+     *            the game state in which the one to show is written
+     * @return the given game state
+     */
+    public synchronized GameState accept(int number, byte[] newFrame,
+            GameState shownState) {
+        System.arraycopy(newFrame, 0, frame, 0, DeltaProtocol.FRAME_SIZE);
+        frameNumber = number;
+
+        SubCell position = SubCell.of(
+                Byte.toUnsignedInt(frame[playerOffset + 1]),
+                Byte.toUnsignedInt(frame[playerOffset + 2]));
+        int image = Byte.toUnsignedInt(frame[playerOffset + 3]);
+        int walkingImage = image >= BLINKING_IMAGES ? image - BLINKING_IMAGES
+                : image - id.ordinal() * IMAGES_PER_PLAYER;
+        canMove = walkingImage >= 0 && walkingImage < WALKING_IMAGES;
+        boolean movedOnServer = serverPosition != null
+                && !serverPosition.equals(position);
+        serverPosition = position;
+        if (!canMove) {
+            // a dying or dead player does not move
+            shown = position;
+            return GameStateDeserializer.deserializeFrame(frame, shownState);
+        }
+        Direction direction = Direction.values()[walkingImage
+                / IMAGES_PER_DIRECTION];
+
+        Motion predicted = prediction(number);
+        Motion motion;
+        if (predicted == null) {
+            motion = Motion.stopped(position, direction);
+        } else {
+            comparedFrames++;
+            if (predicted.position().equals(position)
+                    && predicted.direction() == direction) {
+                motion = predicted;
+            } else {
+                // the server is right: the player goes on if it moved on the
+                // server, keeping the changes of the client, and stops
+                // otherwise, for instance if the server lost an action
+                mispredictions++;
+                motion = movedOnServer
+                        ? new Motion(position, direction, true,
+                                predicted.isMoving()
+                                        ? predicted.directionAtCentral()
+                                        : direction,
+                                predicted.stopsAtCentral())
+                        : Motion.stopped(position, direction);
+            }
+        }
+        setPrediction(number, motion);
+        return predictAndShow(shownState);
+    }
+
+    /**
+     * Records an action of the client, applied by the server after the last
+     * frame received
+     *
+     * @param action
+     * @return the game state to show, or null if no frame was received yet
+     */
+    public GameState onAction(PlayerAction action) {
+        return onAction(action, new GameState());
+    }
+
+    /**
+     * Records an action of the client, applied by the server after the last
+     * frame received
+     *
+     * @param action
+     * @param shownState
+     *            the game state in which the one to show is written
+     * @return the given game state, or null if there is nothing new to show,
+     *         for instance if no frame was received yet
+     */
+    public synchronized GameState onAction(PlayerAction action,
+            GameState shownState) {
+        Optional<Direction> change;
+        if (action == PlayerAction.STOP)
+            change = Optional.empty();
+        else if (action.ordinal() >= PlayerAction.MOVE_N.ordinal()
+                && action.ordinal() <= PlayerAction.MOVE_W.ordinal())
+            change = Optional.of(Direction.values()[action.ordinal()
+                    - PlayerAction.MOVE_N.ordinal()]);
+        else
+            return null;
+
+        if (frameNumber < 0)
+            return null;
+        // as on the server, the last action after a frame replaces the others
+        actions.set(frameNumber % HISTORY, change);
+        actionFrames[frameNumber % HISTORY] = frameNumber;
+        return canMove ? predictAndShow(shownState) : null;
+    }
+
+    /**
+     * @return the number of frames compared with their prediction
+     */
+    public synchronized long comparedFrames() {
+        return comparedFrames;
+    }
+
+    /**
+     * @return the number of frames which differed from their prediction
+     */
+    public synchronized long mispredictions() {
+        return mispredictions;
+    }
+
+    /**
+     * @return the fraction of the frames which differed from their
+     *         prediction, 0 if none was compared
+     */
+    public synchronized double errorRate() {
+        return comparedFrames == 0 ? 0
+                : (double) mispredictions / comparedFrames;
+    }
+
+    /**
+     * Predicts the frames following the last one, and writes the game state
+     * with the player at its predicted position in the given one
+     */
+    private GameState predictAndShow(GameState shownState) {
+        Motion m = prediction(frameNumber);
+        for (int n = frameNumber + 1; n <= frameNumber + lead; ++n) {
+            Optional<Direction> change = action(n - lead);
+            if (change != null)
+                m = m.withDirectionChange(change);
+            if (m.canMove(obstacles))
+                m = m.next();
+            setPrediction(n, m);
+        }
+
+        shown = towards(shown, m.position());
+        Direction d = m.direction();
+        int image = Byte.toUnsignedInt(frame[playerOffset + 3]);
+        int first = image >= BLINKING_IMAGES ? BLINKING_IMAGES
+                : id.ordinal() * IMAGES_PER_PLAYER;
+
+        GameStateDeserializer.deserializeFrame(frame, shownState);
+        shownState.setPlayer(id, Byte.toUnsignedInt(frame[playerOffset]),
+                shown.x(), shown.y(), first
+                        + d.ordinal() * IMAGES_PER_DIRECTION + foot(shown, d));
+        return shownState;
+    }
+
+    private Motion prediction(int n) {
+        return predictionFrames[n % HISTORY] == n ? predictions[n % HISTORY]
+                : null;
+    }
+
+    private void setPrediction(int n, Motion m) {
+        predictions[n % HISTORY] = m;
+        predictionFrames[n % HISTORY] = n;
+    }
+
+    private Optional<Direction> action(int n) {
+        return n >= 0 && actionFrames[n % HISTORY] == n
+                ? actions.get(n % HISTORY) : null;
+    }
+
+    /**
+     * @return the position shown after the given one, moving smoothly
+     *         towards the target if it is close enough
+     */
+    private static SubCell towards(SubCell from, SubCell target) {
+        if (from == null)
+            return target;
+        int dx = target.x() - from.x();
+        int dy = target.y() - from.y();
+        if (Math.abs(dx) + Math.abs(dy) > SNAP_DISTANCE)
+            return target;
+        return SubCell.of(from.x() + clamp(dx), from.y() + clamp(dy));
+    }
+
+    private static int clamp(int d) {
+        return Math.max(-CORRECTION_SPEED, Math.min(CORRECTION_SPEED, d));
+    }
+
+    /**
+     * @return the index of the walking image of a player on the given
+     *         position, as chosen by the server
+     */
+    private static int foot(SubCell position, Direction d) {
+        int step = (d.isHorizontal() ? position.x() : position.y()) % 4;
+        return step == 3 ? 2 : step % 2;
+    }
+}
@@ -5,23 +5,29 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
-import java.util.ArrayList;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JComponent;
 
 import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.PlayerID;
-import ch.epfl.xblast.client.GameState.Player;
 
 /**
  * This class represent a component xBlast : a gameState with its parameters
  * (players, board, bombs and explosions, the scoreLine and the timeLine)
  * 
+ * The gameState only gives the indexes of the images, which are obtained
+ * when it is painted. The board, with its bombs and explosions, is kept in a
+ * back buffer in which only the cells whose images changed since the
+ * previous paint are drawn again. The players and the lines are then drawn on
+ * top of it.
+ * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
  */
@@ -29,9 +35,37 @@ import ch.epfl.xblast.client.GameState.Player;
 public final class XBlastComponent extends JComponent {
 
     private static final int FONT_SIZE = 25;
+    private static final Font FONT = new Font("Arial", Font.BOLD, FONT_SIZE);
+
+    // The directories of the image collections drawn
+    private static final String PLAYER_DIRECTORY = "player";
+    private static final String EXPLOSION_DIRECTORY = "explosion";
+    private static final String BLOCK_DIRECTORY = "block";
+    private static final String SCORE_DIRECTORY = "score";
+
+    private final ImageCollection playerImages;
+    private final ImageCollection explosionImages;
+    private final ImageCollection blockImages;
+    private final ImageCollection scoreImages;
+
+    // The indexes of the images of the score line and of the time line
+    private static final int INDEX_FOR_LED_OFF = 20;
+    private static final int INDEX_FOR_LED_ON = 21;
+    private static final int TEXT_MIDDLE_INDEX = 10;
+    private static final int TEXT_RIGHT_INDEX = 11;
+    private static final int TILE_VOID_INDEX = 12;
+    // The number of void tiles between the second and the third player
+    private static final int VOID_TILES = 8;
+
+    private static final PlayerID[] PLAYER_IDS = PlayerID.values();
+
 	// Store the id of the client's player
     private PlayerID myPlayerID;
+    // A copy of the last gameState given, the given one being possibly
+    // reused once given
     private GameState gameState;
+    // The order in which the players are drawn
+    private final PlayerID[] drawingOrder = PLAYER_IDS.clone();
 
     // Store the y coordinate if the score line
     private static final int SCORE_LINE_Y = 659;
@@ -51,6 +85,52 @@ public final class XBlastComponent extends JComponent {
 
     private static final List<Cell> rowMajor = Cell.ROW_MAJOR_ORDER;
 
+    // The board as last drawn in the back buffer, in row major order
+    private BufferedImage boardBuffer;
+    // The indexes of the images drawn, -1 if the cell was not drawn yet
+    private final int[] drawnBlocks = new int[Cell.COUNT];
+    private final int[] drawnBombs = new int[Cell.COUNT];
+    private int redrawnCells;
+
+    /**
+     * Constructs a component drawing the given images
+     * 
+     * @param images
+     *            the image collections, by directory, as given by
+     *            {@link #loadImages}
+     * @throws IllegalArgumentException
+     *             if a collection is missing
+     */
+    public XBlastComponent(Map<String, ImageCollection> images) {
+        playerImages = collection(images, PLAYER_DIRECTORY);
+        explosionImages = collection(images, EXPLOSION_DIRECTORY);
+        blockImages = collection(images, BLOCK_DIRECTORY);
+        scoreImages = collection(images, SCORE_DIRECTORY);
+    }
+
+    private static ImageCollection collection(
+            Map<String, ImageCollection> images, String directory) {
+        ImageCollection c = images.get(directory);
+        if (c == null)
+            throw new IllegalArgumentException(
+                    "Missing image collection " + directory);
+        return c;
+    }
+
+    /**
+     * Loads the image collections drawn by the component, packed into
+     * atlases, which are drawn faster
+     * 
+     * @param loader
+     * @return the image collections, by directory
+     * @throws java.io.UncheckedIOException
+     *             if an image cannot be loaded
+     */
+    public static Map<String, ImageCollection> loadImages(AssetLoader loader) {
+        return loader.load(true, PLAYER_DIRECTORY, EXPLOSION_DIRECTORY,
+                BLOCK_DIRECTORY, SCORE_DIRECTORY);
+    }
+
     @Override
     public Dimension getPreferredSize() {
         return new Dimension(X_PREFERED_SIZE, Y_PREFERED_SIZE);
@@ -64,44 +144,29 @@ public final class XBlastComponent extends JComponent {
         if (gameState == null)
             return;
 
-        // Else we get the lists of image representing the elements of the
-        // gameState
-        List<Image> board = gameState.board();
-        List<Image> bombs = gameState.bombsAndExplosions();
-        List<Image> scoreLine = gameState.scoreLine();
-        List<Image> timeLine = gameState.timeLine();
-
         // Width of an image
-        int width = board.get(0).getWidth(null);
+        Image firstBlock = blockImages.image(gameState.blockImage(0));
+        int width = firstBlock.getWidth(null);
         // Height of an image
-        int height = board.get(0).getHeight(null);
-
-        // Printing of the board and the bombs and explosions, iterating in the
-        // row major order
+        int height = firstBlock.getHeight(null);
 
-        for (Cell c : rowMajor) {
-            g.drawImage(board.get(rowMajor.indexOf(c)), c.x() * width,
-                    c.y() * height, null);
-            g.drawImage(bombs.get(rowMajor.indexOf(c)), c.x() * width,
-                    c.y() * height, null);
-        }
+        // Printing of the board and the bombs and explosions, through the
+        // back buffer
+        updateBoardBuffer(width, height);
+        g.drawImage(boardBuffer, 0, 0, null);
 
         // We set the font
-        Font font = new Font("Arial", Font.BOLD, FONT_SIZE);
         g.setColor(Color.WHITE);
-        g.setFont(font);
+        g.setFont(FONT);
 
         // Printing of the players given the specific order
+        sort(drawingOrder, gameState, myPlayerID);
 
-        // We construct a defensive copy because we will sort this list
-        List<Player> players = new ArrayList<>(gameState.players());
-
-        // We sort the list according to their y-position and their id
-        sort(players, myPlayerID);
-
-        for (Player p : players) {
-            g.drawImage(p.playerImage(), xForPlayerImage(p.x()),
-                    yForPlayerImage(p.y()), null);
+        for (PlayerID id : drawingOrder) {
+            g.drawImage(
+                    playerImages.imageOrNull(gameState.playerImage(id)),
+                    xForPlayerImage(gameState.x(id)),
+                    yForPlayerImage(gameState.y(id)), null);
         }
 
         // Printing of the ScoreLine
@@ -110,31 +175,108 @@ public final class XBlastComponent extends JComponent {
         // y is the height of all the board
         int y = Cell.ROWS * height;
 
-        for (Image i : scoreLine) {
-            g.drawImage(i, x, y, null);
-            x = x + i.getWidth(null);
+        for (PlayerID id : PLAYER_IDS) {
+            // image for the head of the player, 2 is a number used in
+            // consequence of the ordering of images
+            x = drawImage(g, scoreImages.image(id.ordinal() * 2
+                    + (gameState.lives(id) > 0 ? 0 : 1)), x, y);
+            // images between two players
+            x = drawImage(g, scoreImages.image(TEXT_MIDDLE_INDEX), x, y);
+            x = drawImage(g, scoreImages.image(TEXT_RIGHT_INDEX), x, y);
+            // adding the images to fill the middle part
+            if (id == PlayerID.PLAYER_2)
+                for (int i = 0; i < VOID_TILES; ++i)
+                    x = drawImage(g, scoreImages.image(TILE_VOID_INDEX), x,
+                            y);
         }
 
-        // We have to sort the player according to their id to print their head
-        // and their lives
-        Collections.sort(players, (p1, p2) -> Integer.compare(p1.id().ordinal(),
-                p2.id().ordinal()));
-
-        for (int i = 0; i < players.size(); i++) {
-            g.drawString(Integer.toString(players.get(i).lives()),
-                    X_FOR_LIVES.get(i), SCORE_LINE_Y);
+        // The lives of the players, in the order of their ids
+        for (PlayerID id : PLAYER_IDS) {
+            g.drawString(Integer.toString(gameState.lives(id)),
+                    X_FOR_LIVES.get(id.ordinal()), SCORE_LINE_Y);
         }
 
         // Finally, printing of the timeLine
 
         x = 0;
         // We add the height of the score line
-        y += scoreLine.get(0).getHeight(null);
+        y += scoreImages.image(0).getHeight(null);
+
+        for (int i = 0; i < GameState.TIME_LEDS; ++i) {
+            x = drawImage(g, scoreImages.image(
+                    i < gameState.remainingTime() ? INDEX_FOR_LED_ON
+                            : INDEX_FOR_LED_OFF),
+                    x, y);
+        }
+    }
+
+    /**
+     * Draws an image
+     * 
+     * @param g
+     * @param image
+     * @param x
+     * @param y
+     * @return the x coordinate following the image
+     */
+    private static int drawImage(Graphics2D g, Image image, int x, int y) {
+        g.drawImage(image, x, y, null);
+        return x + image.getWidth(null);
+    }
+
+    /**
+     * Draws in the back buffer the cells whose block or bomb and explosion
+     * changed since they were drawn, creating the buffer if needed
+     * 
+     * @param width
+     *            the width of a cell
+     * @param height
+     *            the height of a cell
+     */
+    private void updateBoardBuffer(int width, int height) {
+        int bufferWidth = Cell.COLUMNS * width;
+        int bufferHeight = Cell.ROWS * height;
+        if (boardBuffer == null || boardBuffer.getWidth() != bufferWidth
+                || boardBuffer.getHeight() != bufferHeight) {
+            // an image of the format of the screen is drawn faster
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            boardBuffer = gc != null
+                    ? gc.createCompatibleImage(bufferWidth, bufferHeight,
+                            Transparency.OPAQUE)
+                    : new BufferedImage(bufferWidth, bufferHeight,
+                            BufferedImage.TYPE_INT_RGB);
+            Arrays.fill(drawnBlocks, -1);
+            Arrays.fill(drawnBombs, -1);
+        }
 
-        for (Image i : timeLine) {
-            g.drawImage(i, x, y, null);
-            x += i.getWidth(null);
+        // A cell whose images are the same is already drawn
+        Graphics2D g = null;
+        redrawnCells = 0;
+        for (int i = 0; i < Cell.COUNT; ++i) {
+            int block = gameState.blockImage(i);
+            int bomb = gameState.bombOrExplosionImage(i);
+            if (block == drawnBlocks[i] && bomb == drawnBombs[i])
+                continue;
+            if (g == null)
+                g = boardBuffer.createGraphics();
+            Cell c = rowMajor.get(i);
+            g.drawImage(blockImages.image(block), c.x() * width,
+                    c.y() * height, null);
+            g.drawImage(explosionImages.imageOrNull(bomb), c.x() * width,
+                    c.y() * height, null);
+            drawnBlocks[i] = block;
+            drawnBombs[i] = bomb;
+            redrawnCells++;
         }
+        if (g != null)
+            g.dispose();
+    }
+
+    /**
+     * @return the number of cells drawn again by the last paint
+     */
+    int redrawnCells() {
+        return redrawnCells;
     }
 
     /**
@@ -156,41 +298,52 @@ public final class XBlastComponent extends JComponent {
     }
 
     /**
-     * Given the list of player, this method sort it according to their y
-     * coordinate, and if equality, print in last our player, so that it will be
-     * drawn above the others
+     * Given the ids of the players, this method sort them according to their
+     * y coordinate, and if equality, print in last our player, so that it
+     * will be drawn above the others
      * 
-     * @param list
+     * @param ids
+     *            the ids of the players, sorted
+     * @param gameState
      * @param id
+     *            our player, or null for a spectator
      */
-    private static void sort(List<Player> list, PlayerID id) {
-
-        // 1st : compare by y coordinate
-        Comparator<Player> c1 = (p1, p2) -> Integer.compare(p1.y(), p2.y());
-
-        // 2nd compare according to a rotation that put the id of our player in
-        // the last position
-        Collections.rotate(list, id.ordinal() + 1);
-
-        Comparator<Player> c2 = (p1, p2) -> Integer.compare(
-                list.indexOf(p1.id().ordinal()),
-                list.indexOf(p2.id().ordinal()));
-
-        // the final comparator
-        Comparator<Player> c = c1.thenComparing(c2);
-        Collections.sort(list, c);
+    private static void sort(PlayerID[] ids, GameState gameState,
+            PlayerID id) {
+        // the players follow our player, which is the last one, or are in
+        // the order of their ids for a spectator
+        int first = id == null ? 0 : id.ordinal() + 1;
+        for (int i = 0; i < ids.length; ++i)
+            ids[i] = PLAYER_IDS[(first + i) % ids.length];
+
+        // insertion sort by y coordinate, which keeps this order on equality
+        for (int i = 1; i < ids.length; ++i) {
+            PlayerID p = ids[i];
+            int j = i;
+            while (j > 0 && gameState.y(ids[j - 1]) > gameState.y(p)) {
+                ids[j] = ids[j - 1];
+                j--;
+            }
+            ids[j] = p;
+        }
     }
 
     /**
      * Change the gameState and call repaint so that the new gameState can be
-     * print
+     * print. The gameState is copied, so it can be reused once this method
+     * returns.
      * 
      * @param gs
      * @param favorisedID
+     *            the id of the player of the client, drawn above the others,
+     *            or null for a spectator
      */
     public void setGameState(GameState gs, PlayerID favorisedID) {
-        gameState = gs;
+        if (gameState == null)
+            gameState = new GameState(gs);
+        else
+            gameState.set(gs);
         myPlayerID = favorisedID;
         repaint();
     }
-}
\ No newline at end of file
+}
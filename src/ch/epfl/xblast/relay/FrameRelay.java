@@ -0,0 +1,128 @@
+package ch.epfl.xblast.relay;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The frames received by a relay from the server, and the spectators to which
+ * it sends them. The frames can be delayed by a fixed number of frames: each
+ * frame is kept until as many newer frames arrived.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class FrameRelay {
+
+    private final int delay;
+    private final int maxPacketSize;
+
+    // the frames not sent yet, in a ring of delay + 1 slots
+    private final byte[] frames;
+    private final int[] sizes;
+    private long received;
+    private long sent;
+
+    private final Set<SocketAddress> spectators = new LinkedHashSet<>();
+
+    /**
+     * @param delay
+     *            the number of frames by which the frames are delayed
+     * @param maxPacketSize
+     *            the size of the largest frame
+     * @throws IllegalArgumentException
+     *             if the delay is negative or the size is not positive
+     */
+    public FrameRelay(int delay, int maxPacketSize) {
+        if (delay < 0 || maxPacketSize <= 0)
+            throw new IllegalArgumentException(
+                    "Invalid delay or packet size");
+        this.delay = delay;
+        this.maxPacketSize = maxPacketSize;
+        this.frames = new byte[(delay + 1) * maxPacketSize];
+        this.sizes = new int[delay + 1];
+    }
+
+    /**
+     * @param spectator
+     * @return true if the spectator is new
+     */
+    public boolean addSpectator(SocketAddress spectator) {
+        return spectators.add(Objects.requireNonNull(spectator));
+    }
+
+    /**
+     * @return the spectators, in the order in which they joined
+     */
+    public Set<SocketAddress> spectators() {
+        return Collections.unmodifiableSet(spectators);
+    }
+
+    /**
+     * @return the delay, in frames
+     */
+    public int delay() {
+        return delay;
+    }
+
+    /**
+     * Keeps a frame received from the server, and gives the frame to send,
+     * received delay frames before
+     *
+     * @param frame
+     *            the frame, from its position to its limit, which is not
+     *            modified
+     * @param dst
+     *            the buffer in which the frame to send is written, ready to
+     *            be sent
+     * @return true if there is a frame to send
+     * @throws IllegalArgumentException
+     *             if the frame is too large
+     */
+    public boolean push(ByteBuffer frame, ByteBuffer dst) {
+        if (frame.remaining() > maxPacketSize)
+            throw new IllegalArgumentException("Frame too large");
+        int slot = (int) (received % sizes.length);
+        sizes[slot] = frame.remaining();
+        frame.duplicate().get(frames, slot * maxPacketSize, sizes[slot]);
+        received++;
+        return pending() > delay && poll(dst);
+    }
+
+    /**
+     * Gives the oldest frame not sent yet, whatever the delay, for instance
+     * to send the last frames once the game is over
+     *
+     * @param dst
+     *            the buffer in which the frame to send is written, ready to
+     *            be sent
+     * @return true if there is a frame to send
+     */
+    public boolean poll(ByteBuffer dst) {
+        if (pending() == 0)
+            return false;
+        int slot = (int) (sent % sizes.length);
+        dst.clear();
+        dst.put(frames, slot * maxPacketSize, sizes[slot]).flip();
+        sent++;
+        return true;
+    }
+
+    /**
+     * @return the number of frames received and not sent yet
+     */
+    public int pending() {
+        return (int) (received - sent);
+    }
+
+    /**
+     * @return the number of frames received from the server
+     */
+    public long received() {
+        return received;
+    }
+}
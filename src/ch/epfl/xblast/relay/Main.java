@@ -0,0 +1,141 @@
+package ch.epfl.xblast.relay;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import ch.epfl.xblast.RelayProtocol;
+import ch.epfl.xblast.Time;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Ticks;
+
+/**
+ * Class main of the spectator relay, a process which subscribes once to the
+ * game of a server and sends each game state to any number of spectators,
+ * possibly with a delay. The spectators are clients joining the relay as they
+ * would join the server, and what they send is never given to the server.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+public class Main {
+
+    private static final String DEFAULT_SERVER = "localhost";
+    private static final int SERVER_PORT = 2016;
+    // The packets of the server: the id of a player and the gameState
+    private static final int MAX_SIZE = 1
+            + GameStateSerializer.MAX_SERIALIZED_SIZE;
+    // Without frame for this time, the relay subscribes again, or sends the
+    // delayed frames once the game is over
+    private static final long IDLE_NANOS = Time.NS_PER_S;
+
+    /**
+     * The main method subscribes to the server and relays its game states
+     *
+     * @param address
+     *            of the server, optionally followed by its port after a
+     *            colon, then the delay in seconds (0 by default) and the port
+     *            on which the spectators join
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        InetSocketAddress server = serverAddress(
+                args.length > 0 ? args[0] : DEFAULT_SERVER);
+        int delay = (args.length > 1 ? Integer.parseInt(args[1]) : 0)
+                * Ticks.TICKS_PER_SECOND;
+        int port = args.length > 2 ? Integer.parseInt(args[2])
+                : RelayProtocol.DEFAULT_PORT;
+
+        FrameRelay relay = new FrameRelay(delay, MAX_SIZE);
+        ByteBuffer bufferReceived = ByteBuffer.allocate(MAX_SIZE);
+        ByteBuffer bufferToSend = ByteBuffer.allocateDirect(MAX_SIZE);
+        ByteBuffer subscribe = ByteBuffer.allocate(1);
+
+        try (DatagramChannel channel = DatagramChannel
+                .open(StandardProtocolFamily.INET);
+                Selector selector = Selector.open()) {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            sendSubscribe(channel, server, subscribe);
+            long lastFrame = System.nanoTime();
+
+            while (true) {
+                selector.select(Ticks.TICK_NANOSECOND_DURATION / Time.NS_PER_MS);
+                selector.selectedKeys().clear();
+
+                SocketAddress sender;
+                while ((sender = channel.receive(bufferReceived)) != null) {
+                    bufferReceived.flip();
+                    if (sender.equals(server)) {
+                        lastFrame = System.nanoTime();
+                        if (relay.push(bufferReceived, bufferToSend))
+                            sendToSpectators(relay, channel, bufferToSend);
+                    } else if (relay.addSpectator(sender)) {
+                        System.out.println("Spectators: "
+                                + relay.spectators().size());
+                    }
+                    bufferReceived.clear();
+                }
+
+                if (System.nanoTime() - lastFrame > IDLE_NANOS) {
+                    // The delayed frames are sent at the pace of the game
+                    if (relay.poll(bufferToSend)) {
+                        sendToSpectators(relay, channel, bufferToSend);
+                    } else {
+                        sendSubscribe(channel, server, subscribe);
+                        lastFrame = System.nanoTime();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the address of a server, also used by the clients to join a
+     * server or a relay
+     *
+     * @param address
+     *            a host name, optionally followed by a port after a colon
+     *            (the port of the server by default)
+     * @return the address of the server
+     * @throws NumberFormatException
+     *             if the port is not a number
+     */
+    public static InetSocketAddress serverAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        return colon < 0 ? new InetSocketAddress(address, SERVER_PORT)
+                : new InetSocketAddress(address.substring(0, colon),
+                        Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /**
+     * Sends a frame to all the spectators. A spectator whose packet cannot
+     * be sent at once misses the frame.
+     *
+     * @param relay
+     * @param channel
+     * @param frame
+     * @throws IOException
+     */
+    private static void sendToSpectators(FrameRelay relay,
+            DatagramChannel channel, ByteBuffer frame) throws IOException {
+        for (SocketAddress spectator : relay.spectators()) {
+            frame.rewind();
+            channel.send(frame, spectator);
+        }
+    }
+
+    private static void sendSubscribe(DatagramChannel channel,
+            SocketAddress server, ByteBuffer subscribe) throws IOException {
+        subscribe.clear();
+        subscribe.put(RelayProtocol.SUBSCRIBE).flip();
+        channel.send(subscribe, server);
+    }
+}
@@ -0,0 +1,180 @@
+package ch.epfl.xblast.server;
+
+import ch.epfl.cs108.Sq;
+import ch.epfl.xblast.ArgumentChecker;
+import ch.epfl.xblast.Cell;
+
+/**
+ * Primitive storage of the blocks of a board. Each of the 195 cells (in row
+ * major order) is stored as the ordinal of its current block, a countdown and
+ * the block that replaces the current one once the countdown is over. A cell
+ * whose countdown is 0 keeps its block forever.
+ *
+ * Cells coming from arbitrary sequences of blocks (see
+ * {@link Board#Board(java.util.List)}) are kept as such, so that the
+ * behaviour of the sequences given by the user is preserved.
+ *
+ * This class is mutable, it is only shared between {@link Board} and the
+ * server's engines, which never modify a grid once it is wrapped in a board.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class BlockGrid {
+
+    private static final Block[] BLOCKS = Block.values();
+
+    private final byte[] blocks = new byte[Cell.COUNT];
+    private final byte[] countdowns = new byte[Cell.COUNT];
+    private final byte[] pendingBlocks = new byte[Cell.COUNT];
+
+    // only allocated if the grid contains cells given as sequences
+    private Sq<Block>[] sequences;
+
+    /**
+     * @param index
+     *            the row major index of the cell
+     * @return the current block of the cell
+     */
+    Block block(int index) {
+        return BLOCKS[blocks[index]];
+    }
+
+    /**
+     * @param index
+     *            the row major index of the cell
+     * @return the number of ticks during which the current block stays, 0 if
+     *         it stays forever
+     */
+    int countdown(int index) {
+        return countdowns[index];
+    }
+
+    /**
+     * @param index
+     *            the row major index of the cell
+     * @return the sequence of the blocks of the cell, built on demand
+     */
+    Sq<Block> blocks(int index) {
+        if (sequences != null && sequences[index] != null)
+            return sequences[index];
+        else if (countdowns[index] == 0)
+            return Sq.constant(block(index));
+        else
+            return Sq.repeat(countdowns[index], block(index))
+                    .concat(Sq.constant(BLOCKS[pendingBlocks[index]]));
+    }
+
+    /**
+     * Puts the given block forever at the given cell
+     *
+     * @param index
+     * @param block
+     */
+    void set(int index, Block block) {
+        blocks[index] = (byte) block.ordinal();
+        countdowns[index] = 0;
+        clearSequence(index);
+    }
+
+    /**
+     * Puts the given block during the given number of ticks at the given cell,
+     * then the block next forever.
+     *
+     * @param index
+     * @param block
+     * @param ticks
+     * @param next
+     * @throws IllegalArgumentException
+     *             if the number of ticks cannot be stored
+     */
+    void setTimed(int index, Block block, int ticks, Block next) {
+        if (ticks > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Countdown too long: " + ticks);
+        blocks[index] = (byte) block.ordinal();
+        countdowns[index] = (byte) ArgumentChecker.requireNonNegative(ticks);
+        pendingBlocks[index] = (byte) next.ordinal();
+        clearSequence(index);
+    }
+
+    /**
+     * Puts the given sequence of blocks at the given cell
+     *
+     * @param index
+     * @param sequence
+     */
+    @SuppressWarnings("unchecked")
+    void setSequence(int index, Sq<Block> sequence) {
+        if (sequences == null)
+            sequences = (Sq<Block>[]) new Sq<?>[Cell.COUNT];
+        sequences[index] = sequence;
+        blocks[index] = (byte) sequence.head().ordinal();
+        countdowns[index] = 0;
+    }
+
+    /**
+     * Puts at the given cell the sequence of blocks of the same cell of the
+     * given grid, without its first element.
+     *
+     * @param grid0
+     * @param index
+     */
+    void setTailOf(BlockGrid grid0, int index) {
+        if (grid0.sequences != null && grid0.sequences[index] != null)
+            setSequence(index, grid0.sequences[index].tail());
+        else if (grid0.countdowns[index] == 0)
+            set(index, grid0.block(index));
+        else if (grid0.countdowns[index] == 1)
+            set(index, BLOCKS[grid0.pendingBlocks[index]]);
+        else
+            setTimed(index, grid0.block(index), grid0.countdowns[index] - 1,
+                    BLOCKS[grid0.pendingBlocks[index]]);
+    }
+
+    /**
+     * Puts at the given cell the bonus of the same cell of the given grid,
+     * which disappears after {@link Ticks#BONUS_DISAPPEARING_TICKS} ticks if
+     * it was not already disappearing.
+     *
+     * A disappearing bonus is always followed by a free block, so the bonus
+     * only has to be kept for the remaining part of its countdown.
+     *
+     * @param grid0
+     * @param index
+     */
+    void setDisappearingBonusOf(BlockGrid grid0, int index) {
+        if (grid0.sequences != null && grid0.sequences[index] != null) {
+            setSequence(index,
+                    grid0.sequences[index].tail()
+                            .limit(Ticks.BONUS_DISAPPEARING_TICKS)
+                            .concat(Sq.constant(Block.FREE)));
+        } else {
+            int remaining = grid0.countdowns[index] == 0
+                    ? Ticks.BONUS_DISAPPEARING_TICKS
+                    : Math.min(grid0.countdowns[index] - 1,
+                            Ticks.BONUS_DISAPPEARING_TICKS);
+            if (remaining == 0)
+                set(index, Block.FREE);
+            else
+                setTimed(index, grid0.block(index), remaining, Block.FREE);
+        }
+    }
+
+    /**
+     * Makes this grid an exact copy of the given one
+     *
+     * @param that
+     */
+    void copyFrom(BlockGrid that) {
+        System.arraycopy(that.blocks, 0, blocks, 0, Cell.COUNT);
+        System.arraycopy(that.countdowns, 0, countdowns, 0, Cell.COUNT);
+        System.arraycopy(that.pendingBlocks, 0, pendingBlocks, 0, Cell.COUNT);
+        sequences = that.sequences == null ? null : that.sequences.clone();
+    }
+
+    private void clearSequence(int index) {
+        if (sequences != null)
+            sequences[index] = null;
+    }
+}
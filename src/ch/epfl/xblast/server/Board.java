@@ -4,13 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 import ch.epfl.cs108.Sq;
 import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.Lists;
 
 /**
- * Creates a board with a list of sequence of blocks as field
+ * Creates a board. The blocks are stored in a primitive {@link BlockGrid}, the
+ * sequences of blocks are only built when asked with {@link #blocksAt(Cell)}.
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -18,7 +20,7 @@ import ch.epfl.xblast.Lists;
 
 public final class Board {
 
-	private final List<Sq<Block>> blockSequence;
+	private final BlockGrid grid;
 	private static final int INNER_ROWS = Cell.ROWS - 2;
 	private static final int INNER_COLUMNS = Cell.COLUMNS - 2;
 	private static final int QUARTER_ROW = Cell.ROWS / 2;
@@ -33,7 +35,19 @@ public final class Board {
 	public Board(List<Sq<Block>> blocks) {
 		if (blocks.size() != Cell.COUNT)
 			throw new IllegalArgumentException("Wrong number of block, expected 195, was " + blocks.size());
-		blockSequence = Collections.unmodifiableList(new ArrayList<>(blocks));
+		grid = new BlockGrid();
+		for (int i = 0; i < Cell.COUNT; ++i)
+			grid.setSequence(i, blocks.get(i));
+	}
+
+	/**
+	 * Constructs a board around the given grid, which must not be modified
+	 * afterwards.
+	 * 
+	 * @param grid
+	 */
+	Board(BlockGrid grid) {
+		this.grid = grid;
 	}
 
 	/**
@@ -61,9 +75,8 @@ public final class Board {
 
 	/**
 	 * @param rows
-	 *            a matrix of Blocks For each square of the board we construct a
-	 *            constant <Sq> sequence </Sq> with the block given in the
-	 *            matrix.
+	 *            a matrix of Blocks For each square of the board we store the
+	 *            block given in the matrix, which stays constant.
 	 * @return a <Board> board </Board> of constant sequences of blocks
 	 * 
 	 *         {@link #checkBlockMatrix(List, int, int)}
@@ -71,11 +84,13 @@ public final class Board {
 	public static Board ofRows(List<List<Block>> rows) {
 		checkBlockMatrix(rows, Cell.ROWS, Cell.COLUMNS);
 
-		List<Sq<Block>> board = new ArrayList<>();
+		BlockGrid grid = new BlockGrid();
+		int index = 0;
+		for (List<Block> row : rows)
+			for (Block b : row)
+				grid.set(index++, Objects.requireNonNull(b));
 
-		rows.stream().forEachOrdered(l -> l.stream().forEachOrdered(b -> board.add(Sq.constant(b))));
-
-		return new Board(board);
+		return new Board(grid);
 	}
 
 	/**
@@ -151,7 +166,7 @@ public final class Board {
 	 * @return the sequence of the blocks at this cell
 	 */
 	public Sq<Block> blocksAt(Cell c) {
-		return blockSequence.get(c.rowMajorIndex());
+		return grid.blocks(c.rowMajorIndex());
 	}
 
 	/**
@@ -160,7 +175,14 @@ public final class Board {
 	 * @return the first block of the sequence at this cell
 	 */
 	public Block blockAt(Cell c) {
-		return blocksAt(c).head();
+		return grid.block(c.rowMajorIndex());
+	}
+
+	/**
+	 * @return the grid storing the blocks of this board
+	 */
+	BlockGrid grid() {
+		return grid;
 	}
 
 	/**
@@ -180,4 +202,4 @@ public final class Board {
 						Arrays.asList(__, xx, __, xx, __, __, __),
 						Arrays.asList(xx, XX, xx, XX, xx, XX, __)));
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -12,7 +12,8 @@ import ch.epfl.xblast.Direction;
 import ch.epfl.xblast.PlayerID;
 
 /**
- * Represents a bomb.
+ * Represents a bomb. Its fuse is a simple countdown, the sequence of fuse
+ * lengths is only kept for the bombs which were given one.
  *
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -22,6 +23,7 @@ public final class Bomb {
 
     private final PlayerID ownerId;
     private final Cell position;
+    private final int fuseLength;
     private final Sq<Integer> fuseLengths;
     private final int range;
 
@@ -44,13 +46,13 @@ public final class Bomb {
         this.position = Objects.requireNonNull(position, "position is null");
         this.fuseLengths = Objects.requireNonNull(fuseLengths,
                 "fuseLengths is null");
+        this.fuseLength = fuseLengths.head();
         this.range = ArgumentChecker.requireNonNegative(range);
     }
 
     /**
-     * Constructs the bomb with the given parameters and calls the principal
-     * constructor to check the parameters. The constructor makes a sequence
-     * fuseLenghts out of an integer fuseLength with a lambda function.
+     * Constructs the bomb with the given parameters. Its fuse lengths go from
+     * fuseLength down to 1.
      *
      * @param ownerId
      * @param position
@@ -59,8 +61,14 @@ public final class Bomb {
      */
     public Bomb(PlayerID ownerId, Cell position, int fuseLength, int range) {
 
-        this(ownerId, position,
-                Sq.iterate(fuseLength, u -> u - 1).limit(fuseLength), range);
+        if (fuseLength <= 0)
+            throw new IllegalArgumentException("Empty sequence");
+
+        this.ownerId = Objects.requireNonNull(ownerId, "id is null");
+        this.position = Objects.requireNonNull(position, "position is null");
+        this.fuseLength = fuseLength;
+        this.fuseLengths = null;
+        this.range = ArgumentChecker.requireNonNegative(range);
     }
 
     /**
@@ -83,7 +91,8 @@ public final class Bomb {
      * @return the sequence of fuse lengths
      */
     public Sq<Integer> fuseLengths() {
-        return fuseLengths;
+        return fuseLengths != null ? fuseLengths
+                : Sq.iterate(fuseLength, u -> u - 1).limit(fuseLength);
 
     }
 
@@ -91,8 +100,26 @@ public final class Bomb {
      * @return the fuse length
      */
     public int fuseLength() {
-        return fuseLengths().head();
+        return fuseLength;
+
+    }
 
+    /**
+     * @return true if the fuse is at its last tick, so that the bomb explodes
+     *         at the next one
+     */
+    boolean isLastFuseTick() {
+        return fuseLengths != null ? fuseLengths.tail().isEmpty()
+                : fuseLength == 1;
+    }
+
+    /**
+     * @return the bomb at the next tick, assuming it does not explode
+     */
+    Bomb withNextFuseLength() {
+        return fuseLengths != null
+                ? new Bomb(ownerId, position, fuseLengths.tail(), range)
+                : new Bomb(ownerId, position, fuseLength - 1, range);
     }
 
     /**
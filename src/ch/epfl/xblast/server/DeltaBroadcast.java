@@ -0,0 +1,142 @@
+package ch.epfl.xblast.server;
+
+import java.nio.ByteBuffer;
+
+import ch.epfl.xblast.DeltaProtocol;
+
+/**
+ * The frames recently sent by a match in delta mode, and the packets sent to
+ * each of its clients in this mode. A client receives a delta against the
+ * last frame it acknowledged if this frame is still known, and a keyframe
+ * otherwise, periodically, or when it asks for one.
+ *
+ * The frames are added by the worker ticking the match, while the
+ * acknowledgements are received by another thread.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class DeltaBroadcast {
+
+    /**
+     * The default number of frames between two keyframes sent to a client
+     */
+    static final int DEFAULT_KEYFRAME_INTERVAL = 5 * Ticks.TICKS_PER_SECOND;
+
+    // at most DeltaProtocol.MAX_DISTANCE + 1, the distance to the base of a
+    // delta fitting in its kind
+    private static final int HISTORY = 32;
+
+    private final int keyframeInterval;
+    private final byte[][] frames = new byte[HISTORY][DeltaProtocol.FRAME_SIZE];
+    // the number of the last frame added, -1 if there is none
+    private int frameNumber = -1;
+
+    /**
+     * @param keyframeInterval
+     *            the maximal number of frames between two keyframes sent to a
+     *            client
+     * @throws IllegalArgumentException
+     *             if the interval is not positive
+     */
+    DeltaBroadcast(int keyframeInterval) {
+        if (keyframeInterval < 1)
+            throw new IllegalArgumentException("Invalid keyframe interval");
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Adds the next frame, which becomes the one sent to the clients
+     *
+     * @param frame
+     */
+    void addFrame(byte[] frame) {
+        frameNumber++;
+        System.arraycopy(frame, 0, frames[frameNumber % HISTORY], 0,
+                DeltaProtocol.FRAME_SIZE);
+    }
+
+    /**
+     * @return the number of the last frame added, -1 if there is none
+     */
+    int frameNumber() {
+        return frameNumber;
+    }
+
+    /**
+     * @param n
+     * @return true if the frame of the given number is still known, and can
+     *         be the base of the last one
+     */
+    private boolean isKnown(int n) {
+        return n >= 0 && n < frameNumber && frameNumber - n < HISTORY;
+    }
+
+    /**
+     * The state of one client in delta mode
+     *
+     * @author Mathilde Raynal (259176)
+     * @author Richard Roubaty (260549)
+     */
+    final class Receiver {
+        private volatile int acknowledged = -1;
+        private volatile boolean keyframeRequested;
+        // the number of the last keyframe sent, only accessed by the worker,
+        // an interval before the first frame if there is none
+        private int lastKeyframe = -keyframeInterval;
+
+        /**
+         * Records that the client received the frame of the given number
+         *
+         * @param n
+         */
+        void acknowledge(int n) {
+            if (n > acknowledged)
+                acknowledged = n;
+        }
+
+        /**
+         * Records that the client cannot use deltas anymore
+         */
+        void requestKeyframe() {
+            keyframeRequested = true;
+        }
+
+        /**
+         * Writes the packet of the last frame for this client, from the
+         * position of the buffer
+         *
+         * @param player
+         *            the id of the player of the client
+         * @param dst
+         */
+        void writePacket(byte player, ByteBuffer dst) {
+            byte[] frame = frames[frameNumber % HISTORY];
+            int base = acknowledged;
+            int start = dst.position();
+            // a frame not sent yet cannot be acknowledged, and would prevent
+            // any later delta
+            if (base > frameNumber) {
+                acknowledged = -1;
+                base = -1;
+            }
+
+            if (!keyframeRequested && isKnown(base)
+                    && frameNumber - lastKeyframe < keyframeInterval) {
+                // the kind of a delta is the distance to its base frame
+                dst.put(player).put((byte) (frameNumber - base))
+                        .putInt(frameNumber);
+                DeltaProtocol.encodeDelta(frames[base % HISTORY], frame, dst);
+                if (dst.position() - start <= DeltaProtocol.MAX_DELTA_SIZE)
+                    return;
+                dst.position(start);
+            }
+
+            dst.put(player).put(DeltaProtocol.KEYFRAME).putInt(frameNumber);
+            DeltaProtocol.encodeKeyframe(frame, dst);
+            lastKeyframe = frameNumber;
+            keyframeRequested = false;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package ch.epfl.xblast.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ch.epfl.cs108.Sq;
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.CellSet;
+import ch.epfl.xblast.Direction;
+
+/**
+ * The explosions and the blasts of a game state. An explosion arm is stored as
+ * a record (origin cell, direction, range, remaining ticks) and a blast as a
+ * record (cell, direction, remaining length), in arrays of integers. The cells
+ * they touch are computed from these records when needed, instead of being
+ * stored in sequences repeating the same particle at every tick.
+ *
+ * The explosions and blasts given as arbitrary sequences are kept as they
+ * are, and evolve as before.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class Explosions {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    // fields of an arm record
+    private static final int ARM_ORIGIN = 0;
+    private static final int ARM_DIRECTION = 1;
+    private static final int ARM_RANGE = 2;
+    private static final int ARM_TICKS = 3;
+    private static final int ARM_SIZE = 4;
+
+    // fields of a blast record
+    private static final int BLAST_CELL = 0;
+    private static final int BLAST_DIRECTION = 1;
+    private static final int BLAST_LENGTH = 2;
+    private static final int BLAST_SIZE = 3;
+
+    private int[] arms = new int[INITIAL_CAPACITY * ARM_SIZE];
+    private int armCount;
+    private int[] blasts = new int[INITIAL_CAPACITY * BLAST_SIZE];
+    private int blastCount;
+
+    private final List<Sq<Sq<Cell>>> otherArms = new ArrayList<>();
+    private final List<Sq<Cell>> otherBlasts = new ArrayList<>();
+
+    /**
+     * @param explosions
+     * @param blasts
+     * @return the explosions and blasts described by the given sequences
+     */
+    static Explosions of(List<Sq<Sq<Cell>>> explosions,
+            List<Sq<Cell>> blasts) {
+        Explosions e = new Explosions();
+        e.otherArms.addAll(explosions);
+        e.otherBlasts.addAll(blasts);
+        return e;
+    }
+
+    /**
+     * Removes all the explosions and blasts
+     */
+    void clear() {
+        armCount = 0;
+        blastCount = 0;
+        otherArms.clear();
+        otherBlasts.clear();
+    }
+
+    /**
+     * Replaces the content by a copy of the given explosions
+     *
+     * @param that
+     */
+    void copyFrom(Explosions that) {
+        arms = Arrays.copyOf(that.arms, that.arms.length);
+        armCount = that.armCount;
+        blasts = Arrays.copyOf(that.blasts, that.blasts.length);
+        blastCount = that.blastCount;
+        otherArms.clear();
+        otherArms.addAll(that.otherArms);
+        otherBlasts.clear();
+        otherBlasts.addAll(that.otherBlasts);
+    }
+
+    /**
+     * Adds the four arms of the explosion of the given bomb
+     *
+     * @param b
+     */
+    void addExplosionOf(Bomb b) {
+        for (Direction d : DIRECTIONS)
+            addArm(b.position().rowMajorIndex(), d.ordinal(), b.range(),
+                    Ticks.EXPLOSION_TICKS);
+    }
+
+    /**
+     * Computes the explosions and blasts of the next tick: the blasts move
+     * forward while they are on free blocks, each arm emits a new blast and
+     * lasts one tick less. The result is added to next, which is assumed to
+     * be empty.
+     *
+     * @param grid0
+     *            the blocks of the current board
+     * @param next
+     */
+    void nextInto(BlockGrid grid0, Explosions next) {
+
+        // 1. the current blasts move forward
+        for (int i = 0; i < blastCount * BLAST_SIZE; i += BLAST_SIZE) {
+            int cell = blasts[i + BLAST_CELL];
+            int direction = blasts[i + BLAST_DIRECTION];
+            int length = blasts[i + BLAST_LENGTH];
+            if (grid0.block(cell).isFree() && length > 1)
+                next.addBlast(Cell.ROW_MAJOR_ORDER.get(cell)
+                        .neighbor(DIRECTIONS[direction]).rowMajorIndex(),
+                        direction, length - 1);
+        }
+        for (Sq<Cell> b : otherBlasts) {
+            if (grid0.block(b.head().rowMajorIndex()).isFree()
+                    && !b.tail().isEmpty())
+                next.otherBlasts.add(b.tail());
+        }
+
+        // 2. the arms emit new blasts
+        for (int i = 0; i < armCount * ARM_SIZE; i += ARM_SIZE) {
+            if (arms[i + ARM_RANGE] > 0)
+                next.addBlast(arms[i + ARM_ORIGIN], arms[i + ARM_DIRECTION],
+                        arms[i + ARM_RANGE]);
+        }
+        for (Sq<Sq<Cell>> arm : otherArms) {
+            if (!arm.isEmpty() && !arm.head().isEmpty())
+                next.otherBlasts.add(arm.head());
+        }
+
+        // 3. the arms last one tick less
+        for (int i = 0; i < armCount * ARM_SIZE; i += ARM_SIZE) {
+            if (arms[i + ARM_TICKS] > 1)
+                next.addArm(arms[i + ARM_ORIGIN], arms[i + ARM_DIRECTION],
+                        arms[i + ARM_RANGE], arms[i + ARM_TICKS] - 1);
+        }
+        for (Sq<Sq<Cell>> arm : otherArms) {
+            if (!arm.tail().isEmpty())
+                next.otherArms.add(arm.tail());
+        }
+    }
+
+    /**
+     * Adds the cells where there is a blast to the given set
+     *
+     * @param blastedCells
+     */
+    void addBlastedCellsTo(CellSet blastedCells) {
+        for (int i = 0; i < blastCount * BLAST_SIZE; i += BLAST_SIZE)
+            blastedCells.add(blasts[i + BLAST_CELL]);
+        for (Sq<Cell> b : otherBlasts) {
+            if (!b.isEmpty())
+                blastedCells.add(b.head());
+        }
+    }
+
+    /**
+     * @return the explosion arms, as sequences of particles
+     */
+    List<Sq<Sq<Cell>>> armSequences() {
+        List<Sq<Sq<Cell>>> sequences = new ArrayList<>();
+        for (int i = 0; i < armCount * ARM_SIZE; i += ARM_SIZE)
+            sequences.add(Sq.repeat(arms[i + ARM_TICKS],
+                    particle(arms[i + ARM_ORIGIN], arms[i + ARM_DIRECTION],
+                            arms[i + ARM_RANGE])));
+        sequences.addAll(otherArms);
+        return Collections.unmodifiableList(sequences);
+    }
+
+    /**
+     * @return the blasts, as sequences of cells
+     */
+    List<Sq<Cell>> blastSequences() {
+        List<Sq<Cell>> sequences = new ArrayList<>();
+        for (int i = 0; i < blastCount * BLAST_SIZE; i += BLAST_SIZE)
+            sequences.add(particle(blasts[i + BLAST_CELL],
+                    blasts[i + BLAST_DIRECTION], blasts[i + BLAST_LENGTH]));
+        sequences.addAll(otherBlasts);
+        return Collections.unmodifiableList(sequences);
+    }
+
+    /**
+     * @param cell
+     * @param direction
+     * @param length
+     * @return the sequence of the given length of cells starting at the given
+     *         one and going in the given direction
+     */
+    private static Sq<Cell> particle(int cell, int direction, int length) {
+        Direction d = DIRECTIONS[direction];
+        return Sq.iterate(Cell.ROW_MAJOR_ORDER.get(cell), c -> c.neighbor(d))
+                .limit(length);
+    }
+
+    private void addArm(int origin, int direction, int range, int ticks) {
+        int i = armCount * ARM_SIZE;
+        if (i == arms.length)
+            arms = Arrays.copyOf(arms, 2 * arms.length);
+        arms[i + ARM_ORIGIN] = origin;
+        arms[i + ARM_DIRECTION] = direction;
+        arms[i + ARM_RANGE] = range;
+        arms[i + ARM_TICKS] = ticks;
+        armCount++;
+    }
+
+    private void addBlast(int cell, int direction, int length) {
+        int i = blastCount * BLAST_SIZE;
+        if (i == blasts.length)
+            blasts = Arrays.copyOf(blasts, 2 * blasts.length);
+        blasts[i + BLAST_CELL] = cell;
+        blasts[i + BLAST_DIRECTION] = direction;
+        blasts[i + BLAST_LENGTH] = length;
+        blastCount++;
+    }
+}
@@ -5,26 +5,23 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.SplittableRandom;
 import java.util.stream.Collectors;
 
 import ch.epfl.cs108.Sq;
 import ch.epfl.xblast.ArgumentChecker;
 import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.CellSet;
 import ch.epfl.xblast.Direction;
 import ch.epfl.xblast.Lists;
+import ch.epfl.xblast.Motion;
 import ch.epfl.xblast.PlayerID;
 import ch.epfl.xblast.SubCell;
-import ch.epfl.xblast.server.Player.DirectedPosition;
-import ch.epfl.xblast.server.Player.LifeState;
 import ch.epfl.xblast.server.Player.LifeState.State;
 
 /**
@@ -38,15 +35,26 @@ import ch.epfl.xblast.server.Player.LifeState.State;
 
 public final class GameState {
 
+    /**
+     * The seed of the game states whose seed is not given
+     */
+    public static final long DEFAULT_SEED = 2016;
+
     private final int ticks;
     private final Board board;
     private final List<Player> players;
     private final List<Bomb> bombs;
-    private final List<Sq<Sq<Cell>>> explosions;
-    private final List<Sq<Cell>> blasts;
-    private static final List<List<PlayerID>> permsList = Lists
-            .permutations(Arrays.asList(PlayerID.values()));
-    private static final Random RANDOM = new Random(2016);
+    private final Explosions explosions;
+    private final CellSet blastedCells;
+    private final Bomb[] bombsByCell;
+    // seed of the random stream used to compute the next tick
+    private final long seed;
+    private static final List<PlayerID> PLAYER_IDS = Arrays
+            .asList(PlayerID.values());
+    // blocks that can appear once a destructible wall has crumbled
+    private static final Block[] CRUMBLED_WALL_BLOCKS = { Block.BONUS_BOMB,
+            Block.BONUS_RANGE, Block.BONUS_LIFE, Block.BONUS_STATE,
+            Block.BONUS_REMOTE, Block.FREE };
 
     /**
      * Constructor that checks the arguments, constructs a defensive copy and
@@ -62,6 +70,26 @@ public final class GameState {
     public GameState(int ticks, Board board, List<Player> players,
             List<Bomb> bombs, List<Sq<Sq<Cell>>> explosions,
             List<Sq<Cell>> blasts) {
+        this(ticks, board, players, bombs,
+                Explosions.of(Objects.requireNonNull(explosions),
+                        Objects.requireNonNull(blasts)),
+                DEFAULT_SEED);
+    }
+
+    /**
+     * Constructs a game state whose explosions and blasts are already
+     * computed. The explosions must not be modified afterwards.
+     * 
+     * @param ticks
+     * @param board
+     * @param players
+     * @param bombs
+     * @param explosions
+     * @param seed
+     *            the seed of the random stream of the next tick
+     */
+    GameState(int ticks, Board board, List<Player> players, List<Bomb> bombs,
+            Explosions explosions, long seed) {
 
         this.ticks = ArgumentChecker.requireNonNegative(ticks);
 
@@ -74,10 +102,14 @@ public final class GameState {
         this.board = Objects.requireNonNull(board);
         this.bombs = Objects.requireNonNull(
                 Collections.unmodifiableList(new ArrayList<>(bombs)));
-        this.explosions = Objects.requireNonNull(
-                Collections.unmodifiableList(new ArrayList<>(explosions)));
-        this.blasts = Objects.requireNonNull(
-                Collections.unmodifiableList(new ArrayList<>(blasts)));
+        this.explosions = explosions;
+
+        // indexes of the blasts and bombs by cell, so that they can be found
+        // in constant time
+        this.blastedCells = new CellSet();
+        explosions.addBlastedCellsTo(blastedCells);
+        this.bombsByCell = bombedCellsWith(this.bombs);
+        this.seed = seed;
     }
 
     /**
@@ -91,6 +123,25 @@ public final class GameState {
                 new ArrayList<>());
     }
 
+    /**
+     * Returns this game state with another random stream. Two game states
+     * with the same seed which receive the same events evolve identically.
+     * 
+     * @param seed
+     * @return a copy of this game state whose random stream starts at the
+     *         given seed
+     */
+    public GameState withSeed(long seed) {
+        return new GameState(ticks, board, players, bombs, explosions, seed);
+    }
+
+    /**
+     * @return the seed of the random stream used to compute the next tick
+     */
+    public long seed() {
+        return seed;
+    }
+
     /**
      * @return elapsed ticks
      */
@@ -146,49 +197,44 @@ public final class GameState {
     }
 
     /**
-     * Updates blasts, creates the new ones
-     * 
-     * @param blasts0
-     * @param board0
-     * @param explosions0
-     * @return a list of sequence of cell where there is a blast
+     * @return the list of the bombs
      */
-    private static List<Sq<Cell>> nextBlasts(List<Sq<Cell>> blasts0,
-            Board board0, List<Sq<Sq<Cell>>> explosions0) {
-
-        List<Sq<Cell>> blasts1 = new LinkedList<>();
-
-        // 1. update the current blasts
-        blasts0.stream()
-                .filter(b -> (board0.blockAt(b.head()).isFree()
-                        && !b.tail().isEmpty()))
-                .map(b -> b.tail()).forEach(blasts1::add);
-
-        // 2. creates the new blast from explosions.
-        explosions0.stream().filter(arm -> !arm.isEmpty())
-                .map(arm -> arm.head()).forEach(blasts1::add);
+    List<Bomb> bombs() {
+        return bombs;
+    }
 
-        return Collections.unmodifiableList(blasts1);
+    /**
+     * @return the explosions and blasts, which must not be modified
+     */
+    Explosions explosions() {
+        return explosions;
     }
 
     /**
      * @return the set of the Cell where there is a blast
      */
     public Set<Cell> blastedCells() {
-        return blastedCellsWith(this.blasts);
+        return blastedCells.toSet();
     }
 
     /**
-     * Gives the cells where there is a blast
-     * 
-     * @param blasts
-     * @return the blasted Cells (Set) given a list of blasts
+     * @return the set of the Cell where there is a blast, which must not be
+     *         modified
      */
-    private static Set<Cell> blastedCellsWith(List<Sq<Cell>> blasts) {
+    CellSet blastedCellSet() {
+        return blastedCells;
+    }
 
-        return Collections
-                .unmodifiableSet((blasts.stream().filter(sq -> !sq.isEmpty())
-                        .map(sq -> sq.head())).collect(Collectors.toSet()));
+    /**
+     * Computes the seed of the next tick from the random stream of this one,
+     * so that the stream of a match only depends on its initial seed
+     * 
+     * @param random
+     *            the random stream of the current tick
+     * @return the seed of the next tick
+     */
+    static long nextSeed(SplittableRandom random) {
+        return random.split().nextLong();
     }
 
     /**
@@ -198,67 +244,67 @@ public final class GameState {
      * @param board0
      * @param consumedBonuses
      * @param blastedCells1
+     * @param random
+     *            the random stream drawing the blocks of the crumbled walls
      * @return the next board given the parameters
      */
-    private static Board nextBoard(Board board0, Set<Cell> consumedBonuses,
-            Set<Cell> blastedCells1) {
-        List<Sq<Block>> board1 = new ArrayList<>();
+    private static Board nextBoard(Board board0, CellSet consumedBonuses,
+            CellSet blastedCells1, SplittableRandom random) {
+        BlockGrid grid1 = new BlockGrid();
+        nextGrid(board0.grid(), grid1, consumedBonuses, blastedCells1, random);
+        return new Board(grid1);
+    }
+
+    /**
+     * Computes in grid1 the evolution of the blocks of grid0, without
+     * allocating anything per cell
+     * 
+     * @param grid0
+     * @param grid1
+     * @param consumedBonuses
+     * @param blastedCells1
+     * @param random
+     *            the random stream drawing the blocks of the crumbled walls
+     */
+    static void nextGrid(BlockGrid grid0, BlockGrid grid1,
+            CellSet consumedBonuses, CellSet blastedCells1,
+            SplittableRandom random) {
 
-        for (Cell c : Cell.ROW_MAJOR_ORDER) {
+        for (int i = 0; i < Cell.COUNT; ++i) {
+            Block block0 = grid0.block(i);
 
             // a bonus is consumed and so disappears
 
-            if (consumedBonuses.contains(c))
-                board1.add(Sq.constant(Block.FREE));
+            if (consumedBonuses.contains(i))
+                grid1.set(i, Block.FREE);
 
             // specific actions of a bomb towards the board
 
-            else if (blastedCells1.contains(c)) {
+            else if (blastedCells1.contains(i)) {
 
-                if (board0.blockAt(c) == Block.DESTRUCTIBLE_WALL) {
-                    List<Block> listBlock = Arrays.asList(Block.BONUS_BOMB,
-                            Block.BONUS_RANGE, Block.BONUS_LIFE,
-                            Block.BONUS_STATE, Block.BONUS_REMOTE, Block.FREE);
+                if (block0 == Block.DESTRUCTIBLE_WALL) {
 
                     /// destruction of a crumbling wall
 
-                    board1.add(Sq.constant(Block.CRUMBLING_WALL)
-                            .limit(Ticks.WALL_CRUMBLING_TICKS)
-                            .concat(Sq.constant(listBlock
-                                    .get(RANDOM.nextInt(listBlock.size())))));
+                    grid1.setTimed(i, Block.CRUMBLING_WALL,
+                            Ticks.WALL_CRUMBLING_TICKS,
+                            CRUMBLED_WALL_BLOCKS[random
+                                    .nextInt(CRUMBLED_WALL_BLOCKS.length)]);
 
                     // destruction of a bonus
 
-                } else if (board0.blockAt(c).isBonus()) {
-                    board1.add(board0.blocksAt(c).tail()
-                            .limit(Ticks.BONUS_DISAPPEARING_TICKS)
-                            .concat(Sq.constant(Block.FREE)));
+                } else if (block0.isBonus()) {
+                    grid1.setDisappearingBonusOf(grid0, i);
 
                 } else
                     // there is a blast but the block isn't modified
-                    board1.add(board0.blocksAt(c).tail());
+                    grid1.setTailOf(grid0, i);
 
             } else
                 // there is nothing the block isn't modified
-                board1.add(board0.blocksAt(c).tail());
+                grid1.setTailOf(grid0, i);
 
         }
-        return new Board(board1);
-    }
-
-    /**
-     * Computes the next explosions
-     * 
-     * @param explosions0
-     * @return a list<sq<sq<cell>>> of the evolved explosions
-     */
-    private static List<Sq<Sq<Cell>>> nextExplosions(
-            List<Sq<Sq<Cell>>> explosions0) {
-
-        // we check if the explosion is not over
-        return Collections.unmodifiableList(
-                explosions0.stream().filter(ex -> !ex.tail().isEmpty())
-                        .map(ex -> ex.tail()).collect(Collectors.toList()));
     }
 
     /**
@@ -278,28 +324,24 @@ public final class GameState {
             Set<PlayerID> bombDropEvents, List<Bomb> bombs0) {
 
         List<Bomb> newlyDroppedBombs = new ArrayList<>();
-        Set<Cell> cellsAlreadyBombed = new HashSet<>();
-        Map<PlayerID, Integer> bombPerPlayer = new HashMap<>();
-
-        bombs0.stream().forEachOrdered(b -> {
-            cellsAlreadyBombed.add(b.position());
-            players0.stream().forEachOrdered(p -> {
-                if (b.ownerId().equals(p.id()))
-                    bombPerPlayer.put(p.id(),
-                            bombPerPlayer.getOrDefault(p.id(), 0) + 1);
-            });
-        });
+        CellSet cellsAlreadyBombed = new CellSet();
+        int[] bombPerPlayer = new int[PlayerID.values().length];
 
         // Computes how many bombs have each player on the board
 
-        players0.stream().forEachOrdered(p -> {
+        for (Bomb b : bombs0) {
+            cellsAlreadyBombed.add(b.position());
+            bombPerPlayer[b.ownerId().ordinal()]++;
+        }
+
+        for (Player p : players0) {
             if (!cellsAlreadyBombed.contains(p.position().containingCell())
                     && p.isAlive() && bombDropEvents.contains(p.id())
-                    && bombPerPlayer.getOrDefault(p.id(), 0) < p.maxBombs()) {
+                    && bombPerPlayer[p.id().ordinal()] < p.maxBombs()) {
                 newlyDroppedBombs.add(p.newBomb());
                 cellsAlreadyBombed.add(p.position().containingCell());
             }
-        });
+        }
 
         return Collections.unmodifiableList(newlyDroppedBombs);
     }
@@ -310,18 +352,34 @@ public final class GameState {
      * @return a map that associated the bombed cells to their bomb
      */
     public Map<Cell, Bomb> bombedCells() {
-        return bombedCellsWith(this.bombs);
+        Map<Cell, Bomb> bombedCells = new HashMap<>();
+        for (Bomb b : bombs)
+            bombedCells.putIfAbsent(b.position(), b);
+        return Collections.unmodifiableMap(bombedCells);
+    }
+
+    /**
+     * @param c
+     * @return the bomb at the given cell, or null if there is none
+     */
+    Bomb bombAt(Cell c) {
+        return bombsByCell[c.rowMajorIndex()];
     }
 
     /**
      * Returns the cells which contains a bomb
      * 
      * @parameter bombs a list of bomb
-     * @return a map that associated the bombs to their cell
+     * @return an array that associates to each row major index the bomb of
+     *         the cell, or null
      */
-    private static Map<Cell, Bomb> bombedCellsWith(List<Bomb> bombs) {
-        return Collections.unmodifiableMap(bombs.stream().collect(
-                Collectors.toMap(b -> b.position(), Function.identity())));
+    private static Bomb[] bombedCellsWith(List<Bomb> bombs) {
+        Bomb[] bombsByCell = new Bomb[Cell.COUNT];
+        for (Bomb b : bombs) {
+            if (bombsByCell[b.position().rowMajorIndex()] == null)
+                bombsByCell[b.position().rowMajorIndex()] = b;
+        }
+        return bombsByCell;
     }
 
     /**
@@ -331,114 +389,75 @@ public final class GameState {
      * @param players0
      * @param playerBonuses
      * @param bombedCells1
-     * @param board1
+     * @param grid1
      * @param blastedCells1
      * @param speedChangeEvents
      * @return
      */
 
     private static List<Player> nextPlayers(List<Player> players0,
-            Map<PlayerID, Bonus> playerBonuses, Set<Cell> bombedCells1,
-            Board board1, Set<Cell> blastedCells1,
+            Map<PlayerID, Bonus> playerBonuses, CellSet bombedCells1,
+            BlockGrid grid1, CellSet blastedCells1,
             Map<PlayerID, Optional<Direction>> speedChangeEvents) {
 
         List<Player> players1 = new ArrayList<>();
+        BoardObstacles obstacles = new BoardObstacles().set(grid1,
+                bombedCells1);
 
-        for (Player player : players0) {
-
-            PlayerID id = player.id();
-            Sq<LifeState> lifeStates1 = player.lifeStates();
-            Sq<DirectedPosition> directedPos1 = player.directedPositions();
-            int maxBomb = player.maxBombs();
-            int bombRange = player.bombRange();
-            SubCell currentPosition = player.position();
-            Direction currentDirection = player.direction();
-            DirectedPosition currentDirectedPosition = player
-                    .directedPositions().head();
-
-            // 1. evolution of the directed positions of the player according to
-            // - its will to change direction
-            // - its ability to move
-
-            boolean wantsToChange = speedChangeEvents.containsKey(id);
-
-            if (wantsToChange) {
-
-                Optional<Direction> nextDir = speedChangeEvents.get(id);
-                DirectedPosition directedPosAtNextCentral = directedPos1
-                        .findFirst(p -> p.position().isCentral());
-
-                // if the current direction and the next direction are not
-                // parallel then the player
-                // can not move to a central subCell
-                boolean mustReachNextCentral = nextDir
-                        .map(d -> !d.isParallelTo(currentDirection))
-                        .orElse(true);
-
-                if (mustReachNextCentral) {
-
-                    // sequence of directed positions before the next
-                    // central subCell
-                    directedPos1 = DirectedPosition
-                            .moving(currentDirectedPosition)
-                            .takeWhile(p -> !p.position().isCentral());
-
-                    // if the player stops
-                    if (nextDir.equals(Optional.empty())) {
-                        directedPos1 = directedPos1.concat(DirectedPosition
-                                .stopped(directedPosAtNextCentral));
-
-                    }
-                    // if the player moves after the next central
-                    else {
-                        // way after the next central SubCell including
-                        // central
-
-                        directedPos1 = directedPos1.concat(
-                                DirectedPosition.moving(directedPosAtNextCentral
-                                        .withDirection(nextDir.get())));
-                    }
-                } else {
-                    directedPos1 = DirectedPosition
-                            .moving(currentDirectedPosition
-                                    .withDirection(nextDir.get()));
-                }
-            }
+        for (Player player : players0)
+            players1.add(nextPlayer(player, playerBonuses, obstacles,
+                    blastedCells1, speedChangeEvents));
 
-            // so far we have computed the next Sequences of directed position
-            // without knowing if the player can move
-            // consumes the head of the sequence of directed positions if player
-            // can move
+        return Collections.unmodifiableList(players1);
+    }
 
-            if (playerCanMove(player, directedPos1, board1, currentPosition,
-                    bombedCells1)) {
-                directedPos1 = directedPos1.tail();
-            }
+    /**
+     * 
+     * Computes the evolution of one player
+     * 
+     * @param player
+     * @param playerBonuses
+     * @param obstacles
+     *            the next grid and the cells of the next bombs
+     * @param blastedCells1
+     * @param speedChangeEvents
+     * @return the player at the next tick
+     */
+    static Player nextPlayer(Player player, Map<PlayerID, Bonus> playerBonuses,
+            BoardObstacles obstacles, CellSet blastedCells1,
+            Map<PlayerID, Optional<Direction>> speedChangeEvents) {
 
-            // 2. evolution of the player's lifeState according to :
-            // - his new position
+        PlayerID id = player.id();
 
-            SubCell nextPosition = directedPos1.head().position();
-            boolean bombHasEffect = (player.lifeState()
-                    .state() == State.VULNERABLE);
-            if (blastedCells1.contains(nextPosition.containingCell())
-                    && bombHasEffect) {
-                lifeStates1 = player.statesForNextLife();
-            } else
-                lifeStates1 = lifeStates1.tail();
+        // 1. evolution of the directed positions of the player according to
+        // - its will to change direction
+        // - its ability to move
 
-            // 3. evolution of the player's capacities :
+        Player player1 = player;
+        if (speedChangeEvents.containsKey(id))
+            player1 = player.withDirectionChange(speedChangeEvents.get(id));
 
-            Player player1 = new Player(id, lifeStates1, directedPos1, maxBomb,
-                    bombRange);
+        boolean moves = playerCanMove(player1, obstacles);
 
-            if (playerBonuses.containsKey(id)) {
-                Bonus currentBonus = playerBonuses.get(id);
-                player1 = currentBonus.applyTo(player1);
-            }
-            players1.add(player1);
+        // 2. evolution of the player's lifeState according to :
+        // - his new position
+
+        SubCell nextPosition = moves ? player1.nextPosition()
+                : player1.position();
+        boolean bombHasEffect = (player.lifeState()
+                .state() == State.VULNERABLE);
+        boolean blasted = bombHasEffect
+                && blastedCells1.contains(nextPosition.containingCell());
+
+        player1 = player1.next(moves, blasted);
+
+        // 3. evolution of the player's capacities :
+
+        if (playerBonuses.containsKey(id)) {
+            Bonus currentBonus = playerBonuses.get(id);
+            player1 = currentBonus.applyTo(player1);
         }
-        return Collections.unmodifiableList(players1);
+        return player1;
     }
 
     /**
@@ -447,43 +466,61 @@ public final class GameState {
      * in the specific direction
      * 
      * @param player
-     * @param directedPos1
-     * @param board1
-     * @param currentPosition
-     * @param bombedCells1
+     * @param obstacles
      * @return
      */
     private static boolean playerCanMove(Player player,
-            Sq<DirectedPosition> directedPos1, Board board1,
-            SubCell currentPosition, Set<Cell> bombedCells1) {
-
-        SubCell nextPosition = directedPos1.tail().head().position();
-        Direction nextDirection = directedPos1.tail().head().direction();
-        Cell futureContainingCell = nextPosition.containingCell()
-                .neighbor(nextDirection);
-        Block futureBlock = board1.blockAt(futureContainingCell);
-
-        // check if the player blocked by its state
-        if (!player.lifeState().canMove()) {
-            return false;
-        }
-        // see if player blocked by a wall
-        if (currentPosition.isCentral() && !futureBlock.canHostPlayer()) {
-            return false;
+            BoardObstacles obstacles) {
+        // check if the player blocked by its state, then by the obstacles, as
+        // the clients do when they predict the motion of their player
+        return player.lifeState().canMove()
+                && Motion.canMove(player.position(), player.nextPosition(),
+                        player.nextDirection(), obstacles);
+    }
+
+    /**
+     * The obstacles of a grid and of the cells of its bombs, which can be
+     * given another grid at every tick, so that moving the players creates
+     * no object
+     *
+     * @author Mathilde Raynal (259176)
+     * @author Richard Roubaty (260549)
+     */
+    static final class BoardObstacles implements Motion.Obstacles {
+        private BlockGrid grid;
+        private CellSet bombedCells;
+
+        /**
+         * Changes the grid and the cells of the bombs
+         *
+         * @param grid
+         * @param bombedCells
+         * @return these obstacles
+         */
+        BoardObstacles set(BlockGrid grid, CellSet bombedCells) {
+            this.grid = grid;
+            this.bombedCells = bombedCells;
+            return this;
         }
-        // see if player blocked by a bomb
-        if (bombedCells1.contains(currentPosition.containingCell())) {
-            int currentDistanceToCentral = currentPosition.distanceToCentral();
-            int nextDistanceToCentral = nextPosition.distanceToCentral();
-            boolean isGoingToCentral = currentDistanceToCentral > nextDistanceToCentral;
 
-            if (isGoingToCentral && currentDistanceToCentral == 6) {
+        @Override
+        public boolean canHostPlayer(Cell cell) {
+            return grid.block(cell.rowMajorIndex()).canHostPlayer();
+        }
 
-                return false;
-            }
+        @Override
+        public boolean hasBomb(Cell cell) {
+            return bombedCells.contains(cell);
         }
-        // if it reaches this step he can moves
-        return true;
+    }
+
+    /**
+     * @param ticks
+     * @return the order of priority of the players at the given tick, used to
+     *         resolve conflicts
+     */
+    static List<PlayerID> playersPriority(int ticks) {
+        return Lists.permutation(PLAYER_IDS, ticks);
     }
 
     /**
@@ -501,7 +538,7 @@ public final class GameState {
     public GameState next(Map<PlayerID, Optional<Direction>> speedChangeEvents,
             Set<PlayerID> bombDropEvents) {
 
-        List<PlayerID> currentPerm = permsList.get(ticks % permsList.size());
+        List<PlayerID> currentPerm = playersPriority(ticks);
 
         // We create this list so it can be modified if the bonus
         // Bonus.BONUS_REMOTE is consumed
@@ -509,16 +546,19 @@ public final class GameState {
 
         // creation of the list of priority of players given the current
         // permutation of ID's
+        Player[] playersById = new Player[PLAYER_IDS.size()];
+        for (Player p : players)
+            playersById[p.id().ordinal()] = p;
         List<Player> currentPermOfPlayers = new ArrayList<>();
         for (PlayerID id : currentPerm) {
-            players.stream().filter(p -> p.id().equals(id))
-                    .forEach(currentPermOfPlayers::add);
+            if (playersById[id.ordinal()] != null)
+                currentPermOfPlayers.add(playersById[id.ordinal()]);
         }
 
         // Map the playerID to his actual trying-to-consumed Bonus.
         // Set of the current consumed Bonuses.
 
-        Set<Cell> consumedBonuses = new HashSet<>();
+        CellSet consumedBonuses = new CellSet();
         Map<PlayerID, Bonus> playerBonuses = new EnumMap<>(PlayerID.class);
 
         for (Player p : currentPermOfPlayers) {
@@ -541,27 +581,24 @@ public final class GameState {
             }
         }
 
-        // nextBlast
+        // nextBlasts and nextExplosions
 
-        List<Sq<Cell>> blasts1 = nextBlasts(blasts, board, explosions);
+        Explosions explosions1 = new Explosions();
+        explosions.nextInto(board.grid(), explosions1);
 
         // nextBoard
 
-        Set<Cell> newBlasts = blastedCellsWith(blasts1);
-        Board board1 = nextBoard(board, consumedBonuses, newBlasts);
+        CellSet newBlasts = new CellSet();
+        explosions1.addBlastedCellsTo(newBlasts);
+        SplittableRandom random = new SplittableRandom(seed);
+        Board board1 = nextBoard(board, consumedBonuses, newBlasts, random);
 
-        // nextExplosions
+        // the bombs which explode add their explosion
 
-        List<Sq<Sq<Cell>>> explosions1 = new ArrayList<>(
-                nextExplosions(explosions));
-        List<Bomb> explodedBombs = new ArrayList<>();
-        bombsBis.stream()
-                .filter(b -> newBlasts.contains(b.position())
-                        || b.fuseLengths().tail().isEmpty())
-                .forEachOrdered(b -> {
-                    explodedBombs.add(b);
-                    explosions1.addAll(b.explosion());
-                });
+        for (Bomb b : bombsBis) {
+            if (newBlasts.contains(b.position()) || b.isLastFuseTick())
+                explosions1.addExplosionOf(b);
+        }
 
         // nextBomb
 
@@ -572,21 +609,23 @@ public final class GameState {
                 bombsBis));
 
         List<Bomb> bombs1 = new ArrayList<>();
-        tempBomb.stream()
-                .filter(b -> !b.fuseLengths().tail().isEmpty()
-                        && !newBlasts.contains(b.position()))
-                .forEachOrdered(b -> bombs1.add(new Bomb(b.ownerId(),
-                        b.position(), b.fuseLengths().tail(), b.range())));
-                        // nextPlayers
+        CellSet bombedCells1 = new CellSet();
+        for (Bomb b : tempBomb) {
+            if (!b.isLastFuseTick() && !newBlasts.contains(b.position())) {
+                bombs1.add(b.withNextFuseLength());
+                bombedCells1.add(b.position());
+            }
+        }
+
+        // nextPlayers
 
         // given the parameters of the next GameState, we compute the evolution
         // of the player, given their new direction if they choose to change
         List<Player> players1 = nextPlayers(players, playerBonuses,
-                bombedCellsWith(bombs1).keySet(), board1, newBlasts,
-                speedChangeEvents);
+                bombedCells1, board1.grid(), newBlasts, speedChangeEvents);
 
         // we create a new GameState and increase by one the ticks
-        return new GameState(ticks() + 1, board1, players1, bombs1, explosions1,
-                blasts1);
+        return new GameState(ticks() + 1, board1, players1, bombs1,
+                explosions1, nextSeed(random));
     }
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
 package ch.epfl.xblast.server;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.CellSet;
+import ch.epfl.xblast.DeltaProtocol;
 import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
 import ch.epfl.xblast.RunLengthEncoder;
 import ch.epfl.xblast.server.painter.BoardPainter;
 import ch.epfl.xblast.server.painter.ExplosionPainter;
@@ -14,8 +17,8 @@ import ch.epfl.xblast.server.painter.PlayerPainter;
 
 /**
  * 
- * This class is used to serialize the GameState, using methods from
- * {@link #RunLengthEncoder}
+ * This class is used to serialize the GameState. The board and the explosions
+ * are compressed with the run-length encoding of {@link RunLengthEncoder}.
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -23,6 +26,15 @@ import ch.epfl.xblast.server.painter.PlayerPainter;
 
 public final class GameStateSerializer {
 
+	/**
+	 * The maximal size of a serialized game state: two length prefixes, the
+	 * board and the explosions (which cannot be longer once encoded), the four
+	 * players and the time
+	 */
+	public static final int MAX_SERIALIZED_SIZE = 2 * (1 + Cell.COUNT) + 4 * 4 + 1;
+
+	private static final PlayerID[] PLAYER_IDS = PlayerID.values();
+
 	// private empty constructor so it cannot be instantiated
 	private GameStateSerializer() {
 	}
@@ -37,85 +49,145 @@ public final class GameStateSerializer {
 	 * @return List<Byte>
 	 */
 	public static List<Byte> serialize(BoardPainter boardP, GameState s) {
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_SERIALIZED_SIZE);
+		serializeInto(boardP, s, buffer);
+		buffer.flip();
 
-		// This list will be returned, we will add it step by step the different
-		// serializations (board, explosions...)
-		List<Byte> gameStateSerialized = new LinkedList<>();
+		List<Byte> gameStateSerialized = new ArrayList<>(buffer.remaining());
+		while (buffer.hasRemaining())
+			gameStateSerialized.add(buffer.get());
+		return Collections.unmodifiableList(gameStateSerialized);
+	}
 
-		// This list will contain the different serializations, but will be
-		// cleared before stepping to the other section, in order to work with
-		// one section at a time
-		List<Byte> currentlySerialization = new LinkedList<>();
+	/**
+	 * Writes the serialized version of the gameState in the given buffer, from
+	 * its position, as {@link #serialize} would. The length prefixes are
+	 * written once the sections they precede are known, so that nothing is
+	 * allocated: the buffer can be reused at every tick.
+	 * 
+	 * @param boardP
+	 * @param s
+	 * @param buffer
+	 *            a buffer with at least {@link #MAX_SERIALIZED_SIZE} bytes
+	 *            remaining
+	 * @throws java.nio.BufferOverflowException
+	 *             if the buffer is too small
+	 */
+	public static void serializeInto(BoardPainter boardP, GameState s,
+			ByteBuffer buffer) {
 
-		// Serialization of the board
+		// Serialization of the board, prefixed by its length
 		Board board = s.board();
+		int lengthIndex = buffer.position();
+		buffer.put((byte) 0);
+		byte run = 0;
+		int count = 0;
 		for (Cell c : Cell.SPIRAL_ORDER) {
-			currentlySerialization.add(boardP.byteForCell(board, c));
+			byte b = boardP.byteForCell(board, c);
+			if (count > 0 && b != run) {
+				RunLengthEncoder.encodeRun(run, count, buffer);
+				count = 0;
+			}
+			run = b;
+			count++;
 		}
+		RunLengthEncoder.encodeRun(run, count, buffer);
+		buffer.put(lengthIndex, (byte) (buffer.position() - lengthIndex - 1));
 
-		// Creating the serialized version of the board, and adding it to the
-		// total list with a prefix of its length;
-
-		currentlySerialization = new LinkedList<>(RunLengthEncoder.encode(currentlySerialization));
-		currentlySerialization.add(0, (byte) currentlySerialization.size());
-		gameStateSerialized.addAll(currentlySerialization);
-
-		// Serialization of the bombs and explosions;
-
-		currentlySerialization.clear();
-		Set<Cell> blastedCells = s.blastedCells();
-		Set<Cell> bombedCells = s.bombedCells().keySet();
+		// Serialization of the bombs and explosions, prefixed by its length
+		lengthIndex = buffer.position();
+		buffer.put((byte) 0);
+		count = 0;
 		for (Cell c : Cell.ROW_MAJOR_ORDER) {
-			if (bombedCells.contains(c)) {
-				currentlySerialization.add(ExplosionPainter.byteForBomb(s.bombedCells().get(c)));
+			byte b = byteForBombOrBlast(s, c);
+			if (count > 0 && b != run) {
+				RunLengthEncoder.encodeRun(run, count, buffer);
+				count = 0;
 			}
-
-			else if (blastedCells.contains(c)) {
-				if (board.blockAt(c).isFree()) {
-					boolean blastAtNorth = blastedCells.contains(c.neighbor(Direction.N));
-					boolean blastAtEast = blastedCells.contains(c.neighbor(Direction.E));
-					boolean blastAtWest = blastedCells.contains(c.neighbor(Direction.W));
-					boolean blastAtSouth = blastedCells.contains(c.neighbor(Direction.S));
-
-					currentlySerialization
-							.add(ExplosionPainter.byteForBlast(blastAtNorth, blastAtEast, blastAtSouth, blastAtWest));
-				} else {
-					currentlySerialization.add(ExplosionPainter.BYTE_FOR_EMPTY);
+			run = b;
+			count++;
+		}
+		RunLengthEncoder.encodeRun(run, count, buffer);
+		buffer.put(lengthIndex, (byte) (buffer.position() - lengthIndex - 1));
+
+		// Serialization of the players, in the order of their ids. Its length
+		// is constant so it is not written
+		List<Player> players = s.players();
+		for (PlayerID id : PLAYER_IDS) {
+			for (int i = 0; i < players.size(); ++i) {
+				Player player = players.get(i);
+				if (player.id() == id) {
+					buffer.put((byte) player.lives());
+					buffer.put((byte) player.position().x());
+					buffer.put((byte) player.position().y());
+					buffer.put(PlayerPainter.byteForPlayer(s.ticks(), player));
 				}
-			} else {
-				currentlySerialization.add(ExplosionPainter.BYTE_FOR_EMPTY);
 			}
 		}
-		// Creating the serialized version of explosions and bombs, and
-		// adding it to the total list with a prefix of its length;
-
-		currentlySerialization = new LinkedList<>(RunLengthEncoder.encode(currentlySerialization));
-		currentlySerialization.add(0, (byte) currentlySerialization.size());
-		gameStateSerialized.addAll(currentlySerialization);
-		
-
-		// Serialization of the players;
-		currentlySerialization.clear();
-		List<Player> playersModifiable = new LinkedList<>(s.players());
-		Collections.sort(playersModifiable, (x, y) -> Integer.compare(x.id().ordinal(), y.id().ordinal()));
-		for (Player player : playersModifiable) {
-			byte xPosition = (byte) player.position().x();
-			byte yPosition = (byte) player.position().y();
-			currentlySerialization.add((byte) player.lives());
-			currentlySerialization.add(xPosition);
-			currentlySerialization.add(yPosition);
-			currentlySerialization.add(PlayerPainter.byteForPlayer(s.ticks(), player));
-		}
-		// We add the serialized version of the player without the length
-		// because it's a constant
-
-		gameStateSerialized.addAll(currentlySerialization);
 
 		// We add the serialized time
 		int remainingTime = (int) Math.ceil(s.remainingTime() / 2d);
-		gameStateSerialized.add((byte) remainingTime);
+		buffer.put((byte) remainingTime);
+	}
 
-		// the total list is complete
-		return Collections.unmodifiableList(gameStateSerialized);
+	/**
+	 * Writes the decoded frame of the gameState used by the delta mode of the
+	 * protocol: the bytes of the board, of the explosions, of the players and
+	 * of the time, as {@link #serialize} computes them before encoding.
+	 * 
+	 * @param boardP
+	 * @param s
+	 * @param frame
+	 *            an array of {@link DeltaProtocol#FRAME_SIZE} bytes
+	 */
+	public static void serializeFrame(BoardPainter boardP, GameState s,
+			byte[] frame) {
+		Board board = s.board();
+		for (int i = 0; i < Cell.COUNT; ++i) {
+			frame[DeltaProtocol.BOARD_OFFSET + i] = boardP.byteForCell(board,
+					Cell.SPIRAL_ORDER.get(i));
+			frame[DeltaProtocol.EXPLOSIONS_OFFSET + i] = byteForBombOrBlast(s,
+					Cell.ROW_MAJOR_ORDER.get(i));
+		}
+
+		int i = DeltaProtocol.PLAYERS_OFFSET;
+		List<Player> players = s.players();
+		for (PlayerID id : PLAYER_IDS) {
+			for (int j = 0; j < players.size(); ++j) {
+				Player player = players.get(j);
+				if (player.id() == id) {
+					frame[i++] = (byte) player.lives();
+					frame[i++] = (byte) player.position().x();
+					frame[i++] = (byte) player.position().y();
+					frame[i++] = PlayerPainter.byteForPlayer(s.ticks(), player);
+				}
+			}
+		}
+
+		frame[DeltaProtocol.TIME_OFFSET] = (byte) Math
+				.ceil(s.remainingTime() / 2d);
+	}
+
+	/**
+	 * @param s
+	 * @param c
+	 * @return the byte of the image of the bomb or of the blast on the given
+	 *         cell
+	 */
+	private static byte byteForBombOrBlast(GameState s, Cell c) {
+		Bomb bomb = s.bombAt(c);
+		if (bomb != null)
+			return ExplosionPainter.byteForBomb(bomb);
+
+		CellSet blastedCells = s.blastedCellSet();
+		if (blastedCells.contains(c) && s.board().blockAt(c).isFree()) {
+			boolean blastAtNorth = blastedCells.contains(c.neighbor(Direction.N));
+			boolean blastAtEast = blastedCells.contains(c.neighbor(Direction.E));
+			boolean blastAtWest = blastedCells.contains(c.neighbor(Direction.W));
+			boolean blastAtSouth = blastedCells.contains(c.neighbor(Direction.S));
+			return ExplosionPainter.byteForBlast(blastAtNorth, blastAtEast,
+					blastAtSouth, blastAtWest);
+		}
+		return ExplosionPainter.BYTE_FOR_EMPTY;
 	}
-}
\ No newline at end of file
+}
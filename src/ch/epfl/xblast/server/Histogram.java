@@ -0,0 +1,105 @@
+package ch.epfl.xblast.server;
+
+import ch.epfl.xblast.Time;
+
+/**
+ * A histogram of durations, in buckets whose bounds double: the first bucket
+ * holds the durations shorter than a microsecond, and the bucket i the
+ * durations from 2^(i-1) to 2^i microseconds. Recording a duration never
+ * allocates, so that it can be done at every tick.
+ *
+ * A histogram is not thread-safe: it must be read by the thread recording
+ * the durations, or once it stopped.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class Histogram {
+
+    private static final int NS_PER_US = Time.NS_PER_S / Time.US_PER_S;
+    private static final int BUCKETS = 32;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * Records a duration, a negative one being recorded as 0
+     *
+     * @param nanos
+     *            the duration, in nanoseconds
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long us = nanos / NS_PER_US;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(us));
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the average duration, in nanoseconds, or 0 if there is none
+     */
+    public long averageNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return the longest duration, in nanoseconds
+     */
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param bucket
+     * @return the number of durations in the given bucket
+     * @throws IndexOutOfBoundsException
+     *             if the bucket does not exist
+     */
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @param p
+     *            a fraction, between 0 and 1
+     * @return an upper bound of the given percentile, in nanoseconds: the
+     *         upper bound of its bucket, or the longest duration if it is
+     *         shorter
+     * @throws IllegalArgumentException
+     *             if the fraction is not between 0 and 1
+     */
+    public long percentileNanos(double p) {
+        if (!(p >= 0 && p <= 1))
+            throw new IllegalArgumentException("Invalid percentile");
+        long rank = (long) Math.ceil(p * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; ++i) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(maxNanos, (1L << i) * NS_PER_US);
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%.3f ms on average, %.3f ms at 99%%, %.3f ms at most (%d)",
+                (double) averageNanos() / Time.NS_PER_MS,
+                (double) percentileNanos(0.99) / Time.NS_PER_MS,
+                (double) maxNanos / Time.NS_PER_MS, count);
+    }
+}
@@ -0,0 +1,59 @@
+package ch.epfl.xblast.server;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
+
+import ch.epfl.xblast.InputProtocol;
+
+/**
+ * The sequenced actions received from one client, which applies each action
+ * once whatever the number of packets carrying it, or the order in which they
+ * arrive. A sequencer is used by the thread receiving the packets.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class InputSequencer {
+
+    private int lastApplied = -1;
+    private int lastFrame = -1;
+
+    /**
+     * Gives to the consumer the actions of the packet not applied yet
+     *
+     * @param packet
+     *            a packet of sequenced actions, from its position to its
+     *            limit
+     * @param consumer
+     *            the consumer of the actions
+     * @return the number of actions applied
+     * @throws IllegalArgumentException
+     *             if the packet is invalid
+     */
+    int accept(ByteBuffer packet, IntConsumer consumer) {
+        int[] applied = { 0 };
+        lastApplied = InputProtocol.applyNew(packet, lastApplied, a -> {
+            applied[0]++;
+            consumer.accept(a);
+        });
+        lastFrame = Math.max(lastFrame, InputProtocol.lastFrameOf(packet));
+        return applied[0];
+    }
+
+    /**
+     * @return the sequence number of the last action applied, -1 if there is
+     *         none
+     */
+    int lastApplied() {
+        return lastApplied;
+    }
+
+    /**
+     * @return the number of the last frame the client received, -1 if it did
+     *         not tell
+     */
+    int lastFrame() {
+        return lastFrame;
+    }
+}
@@ -84,10 +84,10 @@ public final class Level {
     public static class LevelWithPlayerAtFourEdges {
 
         // Creation of the different parameters
-        private static final Cell INITIAL_CELL_FOR_P1 = new Cell(1, 1);
-        private static final Cell INITIAL_CELL_FOR_P2 = new Cell(13, 1);
-        private static final Cell INITIAL_CELL_FOR_P3 = new Cell(13, 11);
-        private static final Cell INITIAL_CELL_FOR_P4 = new Cell(1, 11);
+        private static final Cell INITIAL_CELL_FOR_P1 = Cell.of(1, 1);
+        private static final Cell INITIAL_CELL_FOR_P2 = Cell.of(13, 1);
+        private static final Cell INITIAL_CELL_FOR_P3 = Cell.of(13, 11);
+        private static final Cell INITIAL_CELL_FOR_P4 = Cell.of(1, 11);
         private static final int INITIAL_NB_OF_LIVES = 3;
         private static final int INITIAL_MAX_BOMB = 2;
         private static final int INITIAL_MAX_RANGE = 3;
@@ -1,22 +1,26 @@
 package ch.epfl.xblast.server;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.MulticastProtocol;
 import ch.epfl.xblast.PlayerAction;
 import ch.epfl.xblast.PlayerID;
-import ch.epfl.xblast.Time;
+import ch.epfl.xblast.RelayProtocol;
 
 /**
  * Class main used by the server to send the gameState, receive the actions of
@@ -28,7 +32,13 @@ import ch.epfl.xblast.Time;
 public class Main {
 
     private static final int NB_OF_PLAYER_PER_DEFAULT = 4;
+    private static final String MULTICAST_MODE = "multicast";
     private static final int BYTES_TO_RECEIVE = 1;
+    // The maximal number of spectator relays, each receiving the gameState
+    // once
+    private static final int MAX_RELAYS = 4;
+    // The system property giving the file in which the match is recorded
+    private static final String REPLAY_PROPERTY = "xblast.replay";
 
     // Level as shown in the video
     private static final Level INITIAL_LEVEL = Level.LevelWithPlayerAtFourEdges
@@ -39,17 +49,34 @@ public class Main {
      * receives their actions and computes the next gameState
      * 
      * @param number
-     *            of players
+     *            of players, optionally followed by "multicast", a group and
+     *            the name of the network interface used to send to it. The
+     *            clients joining in multicast mode then receive the gameState
+     *            through the group. The match is recorded in the file given by
+     *            the system property xblast.replay, if any (see
+     *            {@link ReplayPlayer}).
      * @throws IOException
-     * @throws InterruptedException
      */
-    public static void main(String[] args)
-            throws IOException, InterruptedException {
+    public static void main(String[] args) throws IOException {
 
         // getting the number of players
         int nbPlayers = args.length > 0 ? Integer.parseInt(args[0])
                 : NB_OF_PLAYER_PER_DEFAULT;
 
+        // getting the multicast group and the channel sending to it, if any
+        boolean multicastMode = args.length > 1
+                && args[1].equals(MULTICAST_MODE);
+        InetSocketAddress group = new InetSocketAddress(
+                InetAddress.getByName(args.length > 2 ? args[2]
+                        : MulticastProtocol.DEFAULT_GROUP),
+                MulticastProtocol.DEFAULT_PORT);
+        DatagramChannel multicastChannel = multicastMode
+                ? MulticastProtocol.openSender(args.length > 3
+                        ? NetworkInterface.getByName(args[3]) : null)
+                : null;
+        ByteBuffer welcome = ByteBuffer
+                .allocate(MulticastProtocol.WELCOME_SIZE);
+
         // opening the channel
         DatagramChannel channel = DatagramChannel
                 .open(StandardProtocolFamily.INET);
@@ -60,6 +87,10 @@ public class Main {
         // giving the id : the first client get the id number 0, etc...
 
         Map<SocketAddress, PlayerID> players = new HashMap<>();
+        // the clients which receive the gameState through the group
+        Set<SocketAddress> multicastClients = new HashSet<>();
+        // the spectator relays, which are not players
+        SpectatorRelays relays = new SpectatorRelays(MAX_RELAYS);
         PlayerID[] ids = PlayerID.values();
 
         ByteBuffer bufferReceived = ByteBuffer.allocate(BYTES_TO_RECEIVE);
@@ -68,83 +99,231 @@ public class Main {
         // getting the addresses and mapping them to a player
         while (players.keySet().size() != nbPlayers) {
             if (((addressClient = channel.receive(bufferReceived)) != null)) {
+                if (bufferReceived.get(0) == RelayProtocol.SUBSCRIBE) {
+                    addRelay(addressClient, players, relays);
+                    bufferReceived.clear();
+                    continue;
+                }
+                // a relay never plays
+                if (relays.isRelay(addressClient)) {
+                    bufferReceived.clear();
+                    continue;
+                }
                 players.putIfAbsent(addressClient, ids[players.size()]);
+                // a client in multicast mode learns its id and the group
+                if (multicastMode && bufferReceived
+                        .get(0) == MulticastProtocol.JOIN_MULTICAST) {
+                    multicastClients.add(addressClient);
+                    sendWelcome(channel, addressClient,
+                            players.get(addressClient), group, welcome);
+                }
                 bufferReceived.clear();
             }
         }
-        // Sending the GameState
-        GameState s = new GameState(INITIAL_LEVEL.initialGameState().board(),
-                INITIAL_LEVEL.initialGameState().players());
+        // The gameState, in an array so that the handlers can replace it
+        GameState[] s = { new GameState(
+                INITIAL_LEVEL.initialGameState().board(),
+                INITIAL_LEVEL.initialGameState().players()) };
 
-        // Storing of the startTime
-        long startTime = System.nanoTime();
+        // The buffer in which the gameState is serialized at every tick,
+        // preceded by the id of the player
+        ByteBuffer bufferToSend = ByteBuffer
+                .allocateDirect(1 + GameStateSerializer.MAX_SERIALIZED_SIZE);
 
-        while (!s.isGameOver()) {
-            // Serialization
-            List<Byte> gameStateSerialized = GameStateSerializer
-                    .serialize(INITIAL_LEVEL.boardPainter(), s);
+        // The sequenced actions received from each client
+        Map<SocketAddress, InputSequencer> sequencers = new HashMap<>();
+        for (SocketAddress client : players.keySet())
+            sequencers.put(client, new InputSequencer());
 
-            ByteBuffer bufferToSend = ByteBuffer
-                    .allocate(gameStateSerialized.size() + 1);
+        // The events received since the last tick
+        Map<PlayerID, Optional<Direction>> speedChangeEvents = new HashMap<>();
+        Set<PlayerID> bombDropEvents = new HashSet<>();
 
-            bufferToSend.put((byte) 0);
-            for (Byte b : gameStateSerialized) {
-                bufferToSend.put(b);
-            }
+        // The events of each tick are recorded, if a file is given
+        String replayFile = System.getProperty(REPLAY_PROPERTY);
+        ReplayRecorder recorder = replayFile == null ? null
+                : new ReplayRecorder(Paths.get(replayFile), INITIAL_LEVEL,
+                        ReplayRecorder.DEFAULT_PERIOD);
 
-            // Send
-            for (SocketAddress addressC : players.keySet()) {
-                // We also send the id of the player
-                bufferToSend.put(0, (byte) players.get(addressC).ordinal())
-                        .flip();
+        // Late ticks are caught up, so that the game keeps its pace
+        TickClock clock = new TickClock(Ticks.TICK_NANOSECOND_DURATION,
+                TickClock.OverrunPolicy.CATCH_UP);
+        try (TickLoop loop = new TickLoop(clock,
+                InputProtocol.MAX_PACKET_SIZE)) {
+            // The actions of the players are read as soon as they arrive
+            loop.register(channel, (adresseClient, packet) -> {
+                PlayerID id = players.get(adresseClient);
+                if (id == null) {
+                    // a relay never sends anything else to the game
+                    if (RelayProtocol.isSubscribe(packet))
+                        addRelay(adresseClient, players, relays);
+                    return;
+                }
+                if (!packet.hasRemaining())
+                    return;
 
-                channel.send(bufferToSend, addressC);
-            }
+                if (InputProtocol.isInputs(packet)) {
+                    // Each sequenced action is applied once
+                    try {
+                        sequencers.get(adresseClient).accept(packet,
+                                a -> addEvent(id, (byte) a, speedChangeEvents,
+                                        bombDropEvents));
+                    } catch (IllegalArgumentException e) {
+                        // invalid packet, ignored
+                    }
+                } else if (packet.get(
+                        packet.position()) == MulticastProtocol.JOIN_MULTICAST) {
+                    // the welcome of this client was lost
+                    if (multicastClients.contains(adresseClient))
+                        sendWelcome(channel, adresseClient, id, group,
+                                welcome);
+                } else
+                    addEvent(id, packet.get(), speedChangeEvents,
+                            bombDropEvents);
+            });
 
-            // Computes if we have to sleep
-            long timeTillNextTick = ((startTime
-                    + (long) (s.ticks() + 1) * Ticks.TICK_NANOSECOND_DURATION
-                    - System.nanoTime())) / Time.NS_PER_MS;
+            sendGameState(s[0], players, multicastClients, relays, channel,
+                    multicastChannel, group, bufferToSend);
 
-            if (timeTillNextTick > 0) {
-                Thread.sleep(timeTillNextTick);
-            }
+            // At every tick, it computes the next gameState and sends it
+            loop.run(() -> {
+                s[0] = s[0].next(speedChangeEvents, bombDropEvents);
+                if (recorder != null)
+                    recorder.record(speedChangeEvents, bombDropEvents, s[0]);
+                speedChangeEvents.clear();
+                bombDropEvents.clear();
+                if (s[0].isGameOver())
+                    return false;
+                sendGameState(s[0], players, multicastClients, relays,
+                        channel, multicastChannel, group, bufferToSend);
+                return true;
+            });
 
-            // While the server is sleeping, it gets the actions of the players
-            channel.configureBlocking(false);
+            System.out.println("Input latency: " + loop.inputLatency());
+            System.out.println("Tick start error: " + clock.startError());
+            System.out.println("Tick duration: " + clock.tickDuration());
+            System.out.println("Overruns: " + clock.overruns());
+        }
 
-            Map<PlayerID, Optional<Direction>> speedChangeEvents = new HashMap<>();
-            Set<PlayerID> bombDropEvents = new HashSet<>();
+        // If there is a winner, we print it
+        if (s[0].winner().isPresent()) {
+            System.out.println("The winner is " + s[0].winner());
+        }
+        channel.close();
+        if (recorder != null)
+            recorder.close();
+        if (multicastChannel != null)
+            multicastChannel.close();
+    }
 
-            SocketAddress adresseClient;
-            while ((adresseClient = channel.receive(bufferReceived)) != null) {
+    /**
+     * Adds the event corresponding to the byte sent by a client. An event
+     * replaces the previous one of the same kind.
+     * 
+     * @param id
+     *            the player of the client
+     * @param action
+     *            the byte sent by the client
+     * @param speedChangeEvents
+     * @param bombDropEvents
+     */
+    private static void addEvent(PlayerID id, byte action,
+            Map<PlayerID, Optional<Direction>> speedChangeEvents,
+            Set<PlayerID> bombDropEvents) {
+        // According to the buffer we create a new event
+        if (action == PlayerAction.DROP_BOMB.ordinal()) {
+            bombDropEvents.add(id);
 
-                PlayerID id = players.get(adresseClient);
+        } else if (action == PlayerAction.STOP.ordinal()) {
+            speedChangeEvents.put(id, Optional.empty());
 
-                bufferReceived.rewind();
-                byte currentBuffer = bufferReceived.get();
+        } else if (action > PlayerAction.JOIN_GAME.ordinal()
+                && action <= Direction.values().length) {
+            speedChangeEvents.put(id,
+                    Optional.of(Direction.values()[action - 1]));
+        }
+    }
 
-                // According to the buffer we create a new event
-                if (currentBuffer == 0) {
-                } else if (currentBuffer == PlayerAction.DROP_BOMB.ordinal()) {
-                    bombDropEvents.add(id);
+    /**
+     * Adds a spectator relay, unless it is a player or there are already
+     * {@link #MAX_RELAYS} relays
+     * 
+     * @param relay
+     * @param players
+     * @param relays
+     */
+    private static void addRelay(SocketAddress relay,
+            Map<SocketAddress, PlayerID> players, SpectatorRelays relays) {
+        if (relays.subscribe(relay, players.keySet()))
+            System.out.println("Relay subscribed: " + relay);
+    }
 
-                } else if (currentBuffer == PlayerAction.STOP.ordinal()) {
-                    speedChangeEvents.put(id, Optional.empty());
+    /**
+     * Sends the gameState to the clients, once to the group for those in
+     * multicast mode and once to each of the others, with the id of their
+     * player, and once to each relay, with the id of a spectator
+     * 
+     * @param s
+     * @param players
+     * @param multicastClients
+     * @param relays
+     * @param channel
+     * @param multicastChannel
+     * @param group
+     * @param bufferToSend
+     *            the buffer used to serialize the gameState
+     * @throws IOException
+     */
+    private static void sendGameState(GameState s,
+            Map<SocketAddress, PlayerID> players,
+            Set<SocketAddress> multicastClients, SpectatorRelays relays,
+            DatagramChannel channel, DatagramChannel multicastChannel,
+            InetSocketAddress group, ByteBuffer bufferToSend) throws IOException {
+        // Serialization
+        bufferToSend.clear();
+        bufferToSend.put((byte) 0);
+        GameStateSerializer.serializeInto(INITIAL_LEVEL.boardPainter(), s,
+                bufferToSend);
+        bufferToSend.flip();
 
-                } else {
-                    speedChangeEvents.put(id,
-                            Optional.of(Direction.values()[currentBuffer - 1]));
-                }
-                bufferReceived.clear();
-            }
-            // and it computes the next gameState
-            s = s.next(speedChangeEvents, bombDropEvents);
+        // The clients in multicast mode receive the gameState once, without
+        // id
+        if (!multicastClients.isEmpty()) {
+            bufferToSend.position(1);
+            multicastChannel.send(bufferToSend, group);
         }
-        // If there is a winner, we print it
-        if (s.winner().isPresent()) {
-            System.out.println("The winner is " + s.winner());
+
+        relays.send(channel, bufferToSend);
+
+        // Send
+        for (SocketAddress addressC : players.keySet()) {
+            if (multicastClients.contains(addressC))
+                continue;
+            // We also send the id of the player
+            bufferToSend.put(0, (byte) players.get(addressC).ordinal())
+                    .rewind();
+
+            channel.send(bufferToSend, addressC);
         }
-        channel.close();
+    }
+
+    /**
+     * Sends to a client in multicast mode the id of its player and the group
+     * 
+     * @param channel
+     * @param client
+     * @param id
+     * @param group
+     * @param welcome
+     *            the buffer used to write the packet
+     * @throws IOException
+     */
+    private static void sendWelcome(DatagramChannel channel,
+            SocketAddress client, PlayerID id, InetSocketAddress group,
+            ByteBuffer welcome) throws IOException {
+        welcome.clear();
+        MulticastProtocol.writeWelcome(id, group, welcome);
+        welcome.flip();
+        channel.send(welcome, client);
     }
 }
\ No newline at end of file
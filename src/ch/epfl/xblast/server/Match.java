@@ -0,0 +1,318 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import ch.epfl.xblast.ArgumentChecker;
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+/**
+ * A match hosted by a {@link MatchHost}: a game state, the clients playing it
+ * and the actions they sent since the last tick. A match is ticked by one
+ * worker of the host at a time, while its actions are received by another
+ * thread.
+ *
+ * The clients which joined in delta mode receive the state as keyframes and
+ * deltas (see {@link DeltaProtocol}), the others receive the whole state at
+ * every tick.
+ *
+ * It also keeps the statistics of its ticks: the duration of the last one and
+ * the number of ticks which took longer than the budget of the match.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class Match {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int id;
+    private final BoardPainter boardPainter;
+    private final Map<SocketAddress, PlayerID> seats;
+    private final long tickBudget;
+    private final long seed;
+    private final DeltaBroadcast broadcast = new DeltaBroadcast(
+            DeltaBroadcast.DEFAULT_KEYFRAME_INTERVAL);
+    // the state of the clients in delta mode
+    private final Map<SocketAddress, DeltaBroadcast.Receiver> receivers = new HashMap<>();
+    // the sequenced actions of each client, only accessed by the receiving
+    // thread
+    private final Map<SocketAddress, InputSequencer> sequencers = new HashMap<>();
+
+    // only modified by the worker ticking the match
+    private volatile GameState state;
+    private final ByteBuffer frame = ByteBuffer
+            .allocateDirect(1 + GameStateSerializer.MAX_SERIALIZED_SIZE);
+    private final byte[] deltaFrame = new byte[DeltaProtocol.FRAME_SIZE];
+    private final ByteBuffer deltaPacket = ByteBuffer
+            .allocateDirect(DeltaProtocol.MAX_PACKET_SIZE);
+
+    // the actions received since the last tick, guarded by this
+    private Map<PlayerID, Optional<Direction>> speedChangeEvents = new EnumMap<>(
+            PlayerID.class);
+    private Set<PlayerID> bombDropEvents = EnumSet.noneOf(PlayerID.class);
+
+    // statistics, written by the worker and read by anyone
+    private volatile int ticks;
+    private volatile long lastTickDuration;
+    private volatile long overruns;
+    private volatile boolean over;
+
+    /**
+     * Constructs a match of the given level between the given clients
+     *
+     * @param id
+     *            the identifier of the match in its host
+     * @param level
+     * @param seats
+     *            the address of each client and the player it controls
+     * @param deltaClients
+     *            the addresses of the clients in delta mode
+     * @param tickBudget
+     *            the maximal duration of a tick, in nanoseconds
+     * @param seed
+     *            the seed of the random stream of the match
+     * @throws IllegalArgumentException
+     *             if the identifier or the budget is negative
+     */
+    public Match(int id, Level level, Map<SocketAddress, PlayerID> seats,
+            Set<SocketAddress> deltaClients, long tickBudget, long seed) {
+        this.id = ArgumentChecker.requireNonNegative(id);
+        this.boardPainter = level.boardPainter();
+        this.state = level.initialGameState().withSeed(seed);
+        this.seed = seed;
+        this.seats = Collections.unmodifiableMap(
+                new LinkedHashMap<>(Objects.requireNonNull(seats)));
+        if (tickBudget < 0)
+            throw new IllegalArgumentException("Negative tick budget");
+        this.tickBudget = tickBudget;
+        for (SocketAddress client : deltaClients) {
+            if (seats.containsKey(client))
+                receivers.put(client, broadcast.new Receiver());
+        }
+        for (SocketAddress client : seats.keySet())
+            sequencers.put(client, new InputSequencer());
+    }
+
+    /**
+     * @return the identifier of the match in its host
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return the address of each client and the player it controls
+     */
+    public Map<SocketAddress, PlayerID> seats() {
+        return seats;
+    }
+
+    /**
+     * @return the seed of the random stream of the match, with which it can be
+     *         replayed
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * @return the maximal duration of a tick, in nanoseconds
+     */
+    public long tickBudget() {
+        return tickBudget;
+    }
+
+    /**
+     * @return the number of ticks played
+     */
+    public int ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return the duration of the last tick, in nanoseconds
+     */
+    public long lastTickDuration() {
+        return lastTickDuration;
+    }
+
+    /**
+     * @return the number of ticks which took longer than the budget
+     */
+    public long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return true if the game of this match is over
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Records an action sent by the client controlling the given player. It
+     * is applied at the next tick and replaces the previous action of the same
+     * kind, as in {@link Main}.
+     *
+     * @param player
+     * @param action
+     *            the byte sent by the client
+     */
+    void onAction(PlayerID player, byte action) {
+        synchronized (this) {
+            if (action == PlayerAction.DROP_BOMB.ordinal())
+                bombDropEvents.add(player);
+            else if (action == PlayerAction.STOP.ordinal())
+                speedChangeEvents.put(player, Optional.empty());
+            else if (action > PlayerAction.JOIN_GAME.ordinal()
+                    && action <= DIRECTIONS.length)
+                speedChangeEvents.put(player,
+                        Optional.of(DIRECTIONS[action - 1]));
+        }
+    }
+
+    /**
+     * Records the actions of a packet of sequenced actions which were not
+     * received yet, in order. The packet also acknowledges the last frame
+     * received by a client in delta mode. An invalid packet is ignored.
+     *
+     * @param client
+     * @param packet
+     *            the packet, from its position to its limit
+     */
+    void onInputs(SocketAddress client, ByteBuffer packet) {
+        InputSequencer sequencer = sequencers.get(client);
+        if (sequencer == null)
+            return;
+        PlayerID player = seats.get(client);
+        try {
+            sequencer.accept(packet, a -> onAction(player, (byte) a));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (sequencer.lastFrame() >= 0)
+            onAcknowledge(client, sequencer.lastFrame());
+    }
+
+    /**
+     * Records that the given client in delta mode received a frame
+     *
+     * @param client
+     * @param frameNumber
+     */
+    void onAcknowledge(SocketAddress client, int frameNumber) {
+        DeltaBroadcast.Receiver r = receivers.get(client);
+        if (r != null)
+            r.acknowledge(frameNumber);
+    }
+
+    /**
+     * Records that the given client in delta mode needs a keyframe
+     *
+     * @param client
+     */
+    void onKeyframeRequest(SocketAddress client) {
+        DeltaBroadcast.Receiver r = receivers.get(client);
+        if (r != null)
+            r.requestKeyframe();
+    }
+
+    /**
+     * Plays one tick: sends the current state to the clients, then computes
+     * the next one with the actions received since the previous tick. Does
+     * nothing once the game is over.
+     *
+     * @param channel
+     *            the channel used to send the state
+     * @throws IOException
+     */
+    void tick(DatagramChannel channel) throws IOException {
+        if (over)
+            return;
+        long start = System.nanoTime();
+
+        if (state.isGameOver()) {
+            over = true;
+        } else {
+            send(channel);
+
+            Map<PlayerID, Optional<Direction>> speedChanges;
+            Set<PlayerID> bombDrops;
+            synchronized (this) {
+                speedChanges = speedChangeEvents;
+                bombDrops = bombDropEvents;
+                speedChangeEvents = new EnumMap<>(PlayerID.class);
+                bombDropEvents = EnumSet.noneOf(PlayerID.class);
+            }
+            state = state.next(speedChanges, bombDrops);
+            ticks = state.ticks();
+        }
+
+        lastTickDuration = System.nanoTime() - start;
+        if (lastTickDuration > tickBudget)
+            overruns++;
+    }
+
+    /**
+     * @return the winner of the match, if there is one
+     */
+    public Optional<PlayerID> winner() {
+        return state.winner();
+    }
+
+    /**
+     * Sends the serialized state to each client, preceded by the identifier of
+     * its player, or the keyframe or delta of the state to the clients in
+     * delta mode
+     *
+     * @param channel
+     * @throws IOException
+     */
+    private void send(DatagramChannel channel) throws IOException {
+        if (receivers.size() < seats.size()) {
+            frame.clear();
+            frame.put((byte) 0);
+            GameStateSerializer.serializeInto(boardPainter, state, frame);
+            frame.flip();
+        }
+        if (!receivers.isEmpty()) {
+            GameStateSerializer.serializeFrame(boardPainter, state,
+                    deltaFrame);
+            broadcast.addFrame(deltaFrame);
+        }
+
+        for (Map.Entry<SocketAddress, PlayerID> seat : seats.entrySet()) {
+            byte player = (byte) seat.getValue().ordinal();
+            DeltaBroadcast.Receiver r = receivers.get(seat.getKey());
+            if (r == null) {
+                frame.put(0, player);
+                frame.rewind();
+                channel.send(frame, seat.getKey());
+            } else {
+                deltaPacket.clear();
+                r.writePacket(player, deltaPacket);
+                deltaPacket.flip();
+                channel.send(deltaPacket, seat.getKey());
+            }
+        }
+    }
+}
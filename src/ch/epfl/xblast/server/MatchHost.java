@@ -0,0 +1,373 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+
+/**
+ * A server hosting many independent matches in one process. All the clients
+ * talk to the host through a single channel: a client which is not playing
+ * joins the next match by sending {@link PlayerAction#JOIN_GAME}, and a match
+ * starts as soon as it has enough players. A client joining with
+ * {@link DeltaProtocol#JOIN_WITH_DELTAS} instead receives the state in delta
+ * mode. The actions are sent either as single bytes or as sequenced packets
+ * (see {@link InputProtocol}).
+ *
+ * The matches are distributed among a fixed number of shards, each of them
+ * ticked at the rate of the game by one worker of a shared scheduler. A
+ * receiving thread dispatches the actions of the clients to their match. A
+ * match failing is ended, without stopping the others.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class MatchHost implements AutoCloseable {
+
+    private static final int DEFAULT_PORT = 2016;
+    private static final int BYTES_TO_RECEIVE = Math.max(
+            DeltaProtocol.ACKNOWLEDGE_SIZE, InputProtocol.MAX_PACKET_SIZE);
+
+    private final SocketAddress address;
+    private final int playersPerMatch;
+    private final Level level;
+    private final long tickBudget;
+    private final List<Shard> shards = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    // the match and the player of each client playing, by address
+    private final Map<SocketAddress, Seat> seats = new ConcurrentHashMap<>();
+
+    // the clients waiting for their match to start, only accessed by the
+    // receiving thread
+    private final Map<SocketAddress, PlayerID> lobby = new LinkedHashMap<>();
+    private final Set<SocketAddress> deltaClients = new HashSet<>();
+    private int matchCount;
+    // draws the seed of each match
+    private final SplittableRandom seeds = new SplittableRandom();
+
+    private DatagramChannel channel;
+    private Thread receiver;
+    // run by a worker once a match ends, normally or not
+    private volatile Consumer<Match> matchEndListener = m -> {
+    };
+
+    /**
+     * Constructs a host, which does not accept clients until it is started
+     *
+     * @param address
+     *            the address the host listens to
+     * @param playersPerMatch
+     *            the number of clients starting a match
+     * @param level
+     *            the level played by every match
+     * @param workers
+     *            the number of threads ticking the matches
+     * @param tickBudget
+     *            the maximal duration of a tick of a match, in nanoseconds
+     * @throws IllegalArgumentException
+     *             if the number of players is not between 1 and the number of
+     *             players of the level, if the number of workers is not
+     *             positive, or if the budget is negative
+     */
+    public MatchHost(SocketAddress address, int playersPerMatch, Level level,
+            int workers, long tickBudget) {
+        this.address = Objects.requireNonNull(address);
+        this.level = Objects.requireNonNull(level);
+        if (playersPerMatch < 1
+                || playersPerMatch > level.initialGameState().players().size())
+            throw new IllegalArgumentException(
+                    "Invalid number of players per match");
+        if (workers < 1)
+            throw new IllegalArgumentException("No worker");
+        if (tickBudget < 0)
+            throw new IllegalArgumentException("Negative tick budget");
+        this.playersPerMatch = playersPerMatch;
+        this.tickBudget = tickBudget;
+
+        for (int i = 0; i < workers; ++i)
+            shards.add(new Shard());
+        scheduler = Executors.newScheduledThreadPool(workers, r -> {
+            Thread t = new Thread(r, "match-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Constructs a host of the default level, with one worker per available
+     * processor and a budget of one tick per match
+     *
+     * @param port
+     * @param playersPerMatch
+     */
+    public MatchHost(int port, int playersPerMatch) {
+        this(new InetSocketAddress(port), playersPerMatch,
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel(),
+                Runtime.getRuntime().availableProcessors(),
+                Ticks.TICK_NANOSECOND_DURATION);
+    }
+
+    /**
+     * Opens the channel, then starts receiving the clients and ticking the
+     * matches
+     *
+     * @throws IOException
+     * @throws IllegalStateException
+     *             if the host was already started
+     */
+    public void start() throws IOException {
+        if (channel != null)
+            throw new IllegalStateException("Host already started");
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.bind(address);
+        channel.configureBlocking(true);
+
+        receiver = new Thread(this::receive, "match-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        for (Shard s : shards)
+            scheduler.scheduleAtFixedRate(s, 0, Ticks.TICK_NANOSECOND_DURATION,
+                    TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the address the host is bound to
+     * @throws IOException
+     */
+    public SocketAddress localAddress() throws IOException {
+        return channel.getLocalAddress();
+    }
+
+    /**
+     * @return the matches currently played
+     */
+    public List<Match> matches() {
+        List<Match> matches = new ArrayList<>();
+        for (Shard s : shards)
+            matches.addAll(s.matches);
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * @return the total number of ticks of the matches which took longer than
+     *         their budget
+     */
+    public long overruns() {
+        long overruns = 0;
+        for (Match m : matches())
+            overruns += m.overruns();
+        return overruns;
+    }
+
+    /**
+     * Sets the action run once a match ends, because its game is over or
+     * because it failed. It is run by the worker ticking the match.
+     *
+     * @param listener
+     */
+    public void onMatchEnd(Consumer<Match> listener) {
+        matchEndListener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Stops ticking the matches and closes the channel
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * Receives the packets of the clients until the channel is closed. A
+     * packet which cannot be received or handled is reported and ignored,
+     * so that the other clients can still play.
+     */
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES_TO_RECEIVE);
+        while (true) {
+            SocketAddress client = null;
+            try {
+                buffer.clear();
+                client = channel.receive(buffer);
+                if (buffer.position() > 0)
+                    dispatch(client, buffer);
+            } catch (ClosedChannelException e) {
+                // the host was closed
+                return;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Packet of " + client + " ignored: " + e);
+            }
+        }
+    }
+
+    /**
+     * Gives a packet received to the match of its client, or adds the client
+     * to the lobby if it joins
+     *
+     * @param client
+     * @param buffer
+     *            the packet, from 0 to its position
+     */
+    private void dispatch(SocketAddress client, ByteBuffer buffer) {
+        byte action = buffer.get(0);
+
+        Seat seat = seats.get(client);
+        if (seat == null) {
+            if (action == PlayerAction.JOIN_GAME.ordinal())
+                join(client, false);
+            else if (action == DeltaProtocol.JOIN_WITH_DELTAS)
+                join(client, true);
+        } else if (action == DeltaProtocol.ACKNOWLEDGE) {
+            if (buffer.position() == DeltaProtocol.ACKNOWLEDGE_SIZE)
+                seat.match.onAcknowledge(client, buffer.getInt(1));
+        } else if (action == DeltaProtocol.KEYFRAME_REQUEST) {
+            seat.match.onKeyframeRequest(client);
+        } else if (action == InputProtocol.INPUTS) {
+            buffer.flip();
+            seat.match.onInputs(client, buffer);
+        } else
+            seat.match.onAction(seat.player, action);
+    }
+
+    /**
+     * Adds the client to the lobby, and starts a match if it is full
+     *
+     * @param client
+     * @param withDeltas
+     *            true if the client joins in delta mode
+     */
+    private void join(SocketAddress client, boolean withDeltas) {
+        lobby.putIfAbsent(client, PlayerID.values()[lobby.size()]);
+        if (withDeltas)
+            deltaClients.add(client);
+        else
+            deltaClients.remove(client);
+        if (lobby.size() < playersPerMatch)
+            return;
+
+        Match match = new Match(matchCount++, level, lobby, deltaClients,
+                tickBudget, seeds.nextLong());
+        lobby.clear();
+        deltaClients.clear();
+        for (Map.Entry<SocketAddress, PlayerID> e : match.seats().entrySet())
+            seats.put(e.getKey(), new Seat(match, e.getValue()));
+
+        Shard shard = shards.get(0);
+        for (Shard s : shards) {
+            if (s.matches.size() < shard.matches.size())
+                shard = s;
+        }
+        shard.matches.add(match);
+    }
+
+    /**
+     * The matches ticked together by one worker
+     *
+     * @author Mathilde Raynal (259176)
+     * @author Richard Roubaty (260549)
+     */
+    private final class Shard implements Runnable {
+        private final List<Match> matches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void run() {
+            // an exception escaping this task would stop ticking the shard
+            for (Match m : matches) {
+                try {
+                    m.tick(channel);
+                } catch (IOException | RuntimeException e) {
+                    // the clients cannot be reached anymore, or the match
+                    // failed: only this match ends
+                    System.err.println("Match " + m.id() + " ended: " + e);
+                    end(m);
+                    continue;
+                }
+                if (m.isOver())
+                    end(m);
+            }
+        }
+
+        private void end(Match m) {
+            matches.remove(m);
+            for (SocketAddress client : m.seats().keySet())
+                seats.remove(client);
+            try {
+                matchEndListener.accept(m);
+            } catch (RuntimeException e) {
+                System.err.println("Match " + m.id() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * The match and the player of a client
+     *
+     * @author Mathilde Raynal (259176)
+     * @author Richard Roubaty (260549)
+     */
+    private static final class Seat {
+        private final Match match;
+        private final PlayerID player;
+
+        private Seat(Match match, PlayerID player) {
+            this.match = match;
+            this.player = player;
+        }
+    }
+
+    /**
+     * Hosts matches until the process is stopped
+     *
+     * @param args
+     *            the number of players per match (4 by default) and the port
+     *            (2016 by default)
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        int playersPerMatch = args.length > 0 ? Integer.parseInt(args[0])
+                : PlayerID.values().length;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        try (MatchHost host = new MatchHost(port, playersPerMatch)) {
+            host.onMatchEnd(m -> {
+                if (m.winner().isPresent())
+                    System.out.println("Match " + m.id() + ": the winner is "
+                            + m.winner().get());
+            });
+            host.start();
+            host.receiver.join();
+        }
+    }
+}
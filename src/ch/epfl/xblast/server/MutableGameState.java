@@ -0,0 +1,311 @@
+package ch.epfl.xblast.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.CellSet;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.Lists;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.SubCell;
+
+/**
+ * A game state which evolves in place. It keeps two preallocated buffers, the
+ * current one and the next one, computes the next tick into the second and
+ * then swaps them, so that stepping a game does not create any list, set or
+ * map. Its evolution follows exactly the rules of {@link GameState#next}, and
+ * {@link #snapshot()} exports a normal {@link GameState} whenever one is
+ * needed.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class MutableGameState {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Buffer current;
+    private Buffer next;
+
+    // Scratch space reused at every tick
+    private final Player[] playersByPriority;
+    private final Player[] playersById = new Player[PlayerID.values().length];
+    private final int[] priority = new int[PlayerID.values().length];
+    private final CellSet consumedBonuses = new CellSet();
+    private final CellSet blastedCells1 = new CellSet();
+    private final CellSet bombedCells = new CellSet();
+    private final GameState.BoardObstacles obstacles =
+            new GameState.BoardObstacles();
+    private final int[] bombsPerPlayer = new int[PlayerID.values().length];
+    private final Map<PlayerID, Bonus> playerBonuses = new EnumMap<>(
+            PlayerID.class);
+    private Bomb[] bombsBis = new Bomb[INITIAL_CAPACITY];
+    private int bombsBisCount;
+
+    /**
+     * Constructs a mutable game state starting at the given game state
+     *
+     * @param initial
+     */
+    public MutableGameState(GameState initial) {
+        int nbPlayers = initial.players().size();
+        current = new Buffer(nbPlayers);
+        next = new Buffer(nbPlayers);
+        playersByPriority = new Player[nbPlayers];
+
+        current.ticks = initial.ticks();
+        current.seed = initial.seed();
+        current.grid.copyFrom(initial.board().grid());
+        initial.players().toArray(current.players);
+        for (Bomb b : initial.bombs())
+            current.addBomb(b);
+        current.explosions.copyFrom(initial.explosions());
+    }
+
+    /**
+     * @return elapsed ticks
+     */
+    public int ticks() {
+        return current.ticks;
+    }
+
+    /**
+     * @return true if the game is over
+     */
+    public boolean isGameOver() {
+        return ticks() > Ticks.TOTAL_TICKS || winner().isPresent();
+    }
+
+    /**
+     * @return the winner or an optional empty object if there is not
+     */
+    public Optional<PlayerID> winner() {
+        Player alive = null;
+        for (Player p : current.players) {
+            if (p.isAlive()) {
+                if (alive != null)
+                    return Optional.empty();
+                alive = p;
+            }
+        }
+        return alive == null ? Optional.empty() : Optional.of(alive.id());
+    }
+
+    /**
+     * @return the current state as an immutable game state
+     */
+    public GameState snapshot() {
+        BlockGrid grid = new BlockGrid();
+        grid.copyFrom(current.grid);
+        Explosions explosions = new Explosions();
+        explosions.copyFrom(current.explosions);
+        return new GameState(current.ticks, new Board(grid),
+                Arrays.asList(current.players),
+                Arrays.asList(current.bombs).subList(0, current.bombCount),
+                explosions, current.seed);
+    }
+
+    /**
+     * Makes the game state evolve of one tick, as
+     * {@link GameState#next(Map, Set)} would
+     *
+     * @param speedChangeEvents
+     * @param bombDropEvents
+     */
+    public void next(Map<PlayerID, Optional<Direction>> speedChangeEvents,
+            Set<PlayerID> bombDropEvents) {
+
+        Buffer b0 = current;
+        Buffer b1 = next;
+        b1.clear();
+
+        // the players in their order of priority for this tick
+        Arrays.fill(playersById, null);
+        for (Player p : b0.players)
+            playersById[p.id().ordinal()] = p;
+        Lists.permutation(b0.ticks, priority);
+        int n = 0;
+        for (int id : priority) {
+            if (playersById[id] != null)
+                playersByPriority[n++] = playersById[id];
+        }
+
+        bombsBisCount = 0;
+        for (int i = 0; i < b0.bombCount; ++i)
+            addBombBis(b0.bombs[i]);
+
+        consumeBonuses(b0, n);
+
+        // nextBlasts and nextExplosions
+
+        b0.explosions.nextInto(b0.grid, b1.explosions);
+
+        // nextBoard
+
+        blastedCells1.clear();
+        b1.explosions.addBlastedCellsTo(blastedCells1);
+        SplittableRandom random = new SplittableRandom(b0.seed);
+        GameState.nextGrid(b0.grid, b1.grid, consumedBonuses, blastedCells1,
+                random);
+
+        // the bombs which explode add their explosion
+
+        for (int i = 0; i < bombsBisCount; ++i) {
+            Bomb b = bombsBis[i];
+            if (blastedCells1.contains(b.position()) || b.isLastFuseTick())
+                b1.explosions.addExplosionOf(b);
+        }
+
+        // nextBombs
+
+        dropNewBombs(bombDropEvents, n);
+
+        bombedCells.clear();
+        for (int i = 0; i < bombsBisCount; ++i) {
+            Bomb b = bombsBis[i];
+            if (!b.isLastFuseTick() && !blastedCells1.contains(b.position())) {
+                b1.addBomb(b.withNextFuseLength());
+                bombedCells.add(b.position());
+            }
+        }
+
+        // nextPlayers
+
+        obstacles.set(b1.grid, bombedCells);
+        for (int i = 0; i < b0.players.length; ++i)
+            b1.players[i] = GameState.nextPlayer(b0.players[i], playerBonuses,
+                    obstacles, blastedCells1, speedChangeEvents);
+
+        b1.ticks = b0.ticks + 1;
+        b1.seed = GameState.nextSeed(random);
+
+        // the next buffer becomes the current one, the old one will be reused
+        current = b1;
+        next = b0;
+    }
+
+    /**
+     * Computes the bonuses consumed by the players, in their order of
+     * priority, and applies the game state bonuses to the bombs.
+     *
+     * @param b0
+     * @param nbPlayers
+     */
+    private void consumeBonuses(Buffer b0, int nbPlayers) {
+        consumedBonuses.clear();
+        playerBonuses.clear();
+
+        for (int i = 0; i < nbPlayers; ++i) {
+            Player p = playersByPriority[i];
+            SubCell currentPosition = p.position();
+            Cell cell = currentPosition.containingCell();
+            Block currentBlock = b0.grid.block(cell.rowMajorIndex());
+
+            if (currentBlock.isBonus() && currentPosition.isCentral()
+                    && !consumedBonuses.contains(cell)) {
+                consumedBonuses.add(cell);
+
+                if (currentBlock.isPlayerBonus())
+                    playerBonuses.put(p.id(), currentBlock.associatedBonus());
+                if (currentBlock.isGameStateBonus())
+                    applyToBombsBis(currentBlock.associatedBonus());
+            }
+        }
+    }
+
+    /**
+     * Drops the bombs of the players who want to, in their order of priority
+     *
+     * @param bombDropEvents
+     * @param nbPlayers
+     */
+    private void dropNewBombs(Set<PlayerID> bombDropEvents, int nbPlayers) {
+        bombedCells.clear();
+        Arrays.fill(bombsPerPlayer, 0);
+        int oldBombs = bombsBisCount;
+        for (int i = 0; i < oldBombs; ++i) {
+            bombedCells.add(bombsBis[i].position());
+            bombsPerPlayer[bombsBis[i].ownerId().ordinal()]++;
+        }
+
+        for (int i = 0; i < nbPlayers; ++i) {
+            Player p = playersByPriority[i];
+            Cell cell = p.position().containingCell();
+            if (!bombedCells.contains(cell) && p.isAlive()
+                    && bombDropEvents.contains(p.id())
+                    && bombsPerPlayer[p.id().ordinal()] < p.maxBombs()) {
+                addBombBis(p.newBomb());
+                bombedCells.add(cell);
+            }
+        }
+    }
+
+    /**
+     * Applies a game state bonus to the bombs. This only happens when such a
+     * bonus is consumed, so the list it needs can be created here.
+     *
+     * @param bonus
+     */
+    private void applyToBombsBis(Bonus bonus) {
+        List<Bomb> bombs = bonus.applyTo(Collections.unmodifiableList(
+                Arrays.asList(bombsBis).subList(0, bombsBisCount)));
+        bombsBisCount = 0;
+        for (Bomb b : bombs)
+            addBombBis(b);
+    }
+
+    private void addBombBis(Bomb b) {
+        bombsBis = Buffer.ensureCapacity(bombsBis, bombsBisCount + 1);
+        bombsBis[bombsBisCount++] = b;
+    }
+
+    /**
+     * The state of the game at one tick, stored in arrays which only grow
+     *
+     * @author Mathilde Raynal (259176)
+     * @author Richard Roubaty (260549)
+     */
+    private static final class Buffer {
+        private int ticks;
+        private long seed;
+        private final BlockGrid grid = new BlockGrid();
+        private final Player[] players;
+        private Bomb[] bombs = new Bomb[INITIAL_CAPACITY];
+        private int bombCount;
+        private final Explosions explosions = new Explosions();
+
+        private Buffer(int nbPlayers) {
+            players = new Player[nbPlayers];
+        }
+
+        private void clear() {
+            Arrays.fill(bombs, 0, bombCount, null);
+            bombCount = 0;
+            explosions.clear();
+        }
+
+        private void addBomb(Bomb b) {
+            bombs = ensureCapacity(bombs, bombCount + 1);
+            bombs[bombCount++] = b;
+        }
+
+        /**
+         * @param array
+         * @param size
+         * @return the given array if it can hold the given size, else a copy
+         *         twice as big
+         */
+        private static <T> T[] ensureCapacity(T[] array, int size) {
+            return size <= array.length ? array
+                    : Arrays.copyOf(array, Math.max(size, 2 * array.length));
+        }
+    }
+}
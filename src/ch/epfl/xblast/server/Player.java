@@ -5,11 +5,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import ch.epfl.cs108.Sq;
 import ch.epfl.xblast.ArgumentChecker;
 import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.Motion;
 import ch.epfl.xblast.PlayerID;
 import ch.epfl.xblast.SubCell;
 import ch.epfl.xblast.server.Player.LifeState.State;
@@ -18,7 +20,9 @@ import ch.epfl.xblast.server.Player.LifeState.State;
  * Represents a player of the game. id : name, lifeStates : the sequence of his
  * {@link LifeState}, directedPos : the sequence of his {@link DirectedPosition}
  * , maxBombs : the maximal number a player can lay at the same time, bombRange
- * : the range of the bomb laid by the player.
+ * : the range of the bomb laid by the player. The sequences are not stored but
+ * described by a few fields (current position and life state, motion, ticks
+ * left in the current state), from which they are created on demand.
  * 
  * @author Mathilde Raynal (259176)
  * @author Richard Roubaty (260549)
@@ -27,11 +31,22 @@ import ch.epfl.xblast.server.Player.LifeState.State;
 public class Player {
 
     private final PlayerID id;
-    private final Sq<LifeState> lifeStates;
-    private final Sq<DirectedPosition> directedPos;
     private final int maxBombs;
     private final int bombRange;
 
+    // The current life state, and the number of ticks it still lasts
+    // (including the current one), 0 meaning forever. lifeStates is only
+    // used by the players which were given an arbitrary sequence.
+    private final LifeState lifeState;
+    private final int lifeStateTicks;
+    private final Sq<LifeState> lifeStates;
+
+    // The current directed position and the motion of the player.
+    // directedPos is only used by the players which were given an arbitrary
+    // sequence, whose motion only gives the current directed position.
+    private final Motion motion;
+    private final Sq<DirectedPosition> directedPos;
+
     /**
      * Constructs the player with the given parameters. The constructor checks
      * that none of theme is null or not in the bounds wanted.
@@ -50,13 +65,17 @@ public class Player {
         this.directedPos = Objects.requireNonNull(directedPos);
         this.maxBombs = ArgumentChecker.requireNonNegative(maxBombs);
         this.bombRange = ArgumentChecker.requireNonNegative(bombRange);
+
+        this.lifeState = lifeStates.head();
+        this.lifeStateTicks = 0;
+        this.motion = Motion.stopped(directedPos.head().position(),
+                directedPos.head().direction());
     }
 
     /**
-     * Constructs the player with the given parameters. The sequence of
-     * LifeStates and sequence of DirectedPosition are created according to the
-     * static methods : {@link #SqOfLifeStatesWith} and
-     * {@link SqOfDirectedPositionToSouthWith}
+     * Constructs the player with the given parameters. The player is first
+     * invulnerable, and is stopped on the central subCell of the given cell,
+     * looking to the south.
      * 
      * @param id
      * @param lives
@@ -68,61 +87,89 @@ public class Player {
 
     public Player(PlayerID id, int lives, Cell position, int maxBombs,
             int bombRange) {
-        this(id, SqOfLifeStatesWith(lives),
-                SqOfDirectedPositionToSouthWith(position), maxBombs, bombRange);
+        this(id, initialLifeState(lives), SubCell.centralSubCellOf(position),
+                maxBombs, bombRange);
+    }
 
+    private Player(PlayerID id, LifeState lifeState, SubCell position,
+            int maxBombs, int bombRange) {
+        this(Objects.requireNonNull(id), lifeState,
+                ticksOf(lifeState.state()), null,
+                Motion.stopped(position, Direction.S), null,
+                ArgumentChecker.requireNonNegative(maxBombs),
+                ArgumentChecker.requireNonNegative(bombRange));
     }
 
     /**
-     * * Construct a sequence of life states so that : the player is
-     * invulnerable during the according tick times, the player is then
-     * vulnerable. The LifeStates of the sequence have the number of lives given
-     * in the parameter.
-     * 
-     * @param newLives
-     * @return the sequence of LifeStates
+     * Constructs a player from its compact representation
      */
+    private Player(PlayerID id, LifeState lifeState, int lifeStateTicks,
+            Sq<LifeState> lifeStates, Motion motion,
+            Sq<DirectedPosition> directedPos, int maxBombs, int bombRange) {
+        this.id = id;
+        this.maxBombs = maxBombs;
+        this.bombRange = bombRange;
+        this.lifeState = lifeState;
+        this.lifeStateTicks = lifeStateTicks;
+        this.lifeStates = lifeStates;
+        this.motion = motion;
+        this.directedPos = directedPos;
+    }
 
-    private final static Sq<LifeState> SqOfLifeStatesWith(int newLives) {
-        if (newLives > 0)
-            return Sq
-                    .repeat(Ticks.PLAYER_INVULNERABLE_TICKS,
-                            new LifeState(newLives, State.INVULNERABLE))
-                    .concat(Sq.constant(
-                            new LifeState(newLives, State.VULNERABLE)));
-        else
-            return Sq.constant(new LifeState(newLives, State.DEAD));
-
+    /**
+     * @param lives
+     * @return the life state of a player who has just been created
+     */
+    private static LifeState initialLifeState(int lives) {
+        return new LifeState(lives,
+                lives > 0 ? State.INVULNERABLE : State.DEAD);
     }
 
     /**
-     * Construct a sequence of life states so that the player is vulnerable. The
-     * LifeStates of the sequence have the number of lives given in the
-     * parameter.
-     * 
-     * @param newLives
-     * @return the sequence of LifeStates
+     * @param state
+     * @return the number of ticks a player stays in the given state when it
+     *         enters it, 0 meaning forever
      */
+    private static int ticksOf(State state) {
+        switch (state) {
+        case INVULNERABLE:
+            return Ticks.PLAYER_INVULNERABLE_TICKS;
+        case DYING:
+            return Ticks.PLAYER_DYING_TICKS;
+        default:
+            return 0;
+        }
+    }
 
-    private final static Sq<LifeState> SqOfLifeStateWithoutInvulnerabilityWithLife(
-            int newLives) {
-        return Sq.constant(new LifeState(newLives, State.VULNERABLE));
+    /**
+     * @param lifeState
+     * @return the life state which follows the given one, once its ticks are
+     *         over
+     */
+    private static LifeState lifeStateAfter(LifeState lifeState) {
+        switch (lifeState.state()) {
+        case INVULNERABLE:
+            return new LifeState(lifeState.lives(), State.VULNERABLE);
+        case DYING:
+            return initialLifeState(lifeState.lives() - 1);
+        default:
+            return lifeState;
+        }
     }
 
     /**
-     * The DirectedPosition is so that : the position is the central SubCell of
-     * the given Cell and the direction is the South. The sequence is such that
-     * the Player is stopped at the DirectedPosition.
-     * 
-     * @param position
-     * @return the Sq of DirectedPosition
-     * 
-     * 
+     * @param lifeState
+     * @param ticks
+     * @return the sequence of life states starting with the given one, lasting
+     *         the given number of ticks (0 meaning forever)
      */
-    private final static Sq<DirectedPosition> SqOfDirectedPositionToSouthWith(
-            Cell position) {
-        return DirectedPosition.stopped(new DirectedPosition(
-                SubCell.centralSubCellOf(position), Direction.S));
+    private static Sq<LifeState> lifeStatesFrom(LifeState lifeState,
+            int ticks) {
+        if (ticks == 0)
+            return Sq.constant(lifeState);
+        LifeState next = lifeStateAfter(lifeState);
+        return Sq.repeat(ticks, lifeState)
+                .concat(lifeStatesFrom(next, ticksOf(next.state())));
     }
 
     /**
@@ -136,29 +183,47 @@ public class Player {
      * @return the number of lives of the player
      */
     public final int lives() {
-        return lifeState().lives;
+        return lifeState.lives();
     }
 
     /**
      * @return the sequence of directed positions of the current player
      */
     public final Sq<DirectedPosition> directedPositions() {
-        return directedPos;
+        if (directedPos != null)
+            return directedPos;
+
+        DirectedPosition head = new DirectedPosition(motion.position(),
+                motion.direction());
+        if (!motion.isMoving())
+            return DirectedPosition.stopped(head);
+
+        SubCell central = motion.position().nextCentral(motion.direction());
+        if (!central.isCentral())
+            return DirectedPosition.moving(head);
+
+        DirectedPosition atCentral = new DirectedPosition(central,
+                motion.directionAtCentral());
+        return DirectedPosition.moving(head)
+                .takeWhile(p -> !p.position().isCentral())
+                .concat(motion.stopsAtCentral()
+                        ? DirectedPosition.stopped(atCentral)
+                        : DirectedPosition.moving(atCentral));
     }
 
     /**
      * @return the sequence of lifeStates of the current player
      */
     public final Sq<LifeState> lifeStates() {
-        return lifeStates;
+        return lifeStates != null ? lifeStates
+                : lifeStatesFrom(lifeState, lifeStateTicks);
     }
 
     /**
      * @return the current lifeState of the current player
      */
     public final LifeState lifeState() {
-        return new LifeState(lifeStates().head().lives,
-                lifeStates().head().state);
+        return lifeState;
     }
 
     /**
@@ -175,14 +240,14 @@ public class Player {
      * @return the current position (a SubCell) of the current player
      */
     public final SubCell position() {
-        return directedPositions().head().position;
+        return motion.position();
     }
 
     /**
      * @return the current Direction the current player is looking at
      */
     public final Direction direction() {
-        return directedPositions().head().direction;
+        return motion.direction();
     }
 
     /**
@@ -217,8 +282,9 @@ public class Player {
      * @return a new player with a new BombRange
      */
     public final Player withBombRange(int newBombRange) {
-        return new Player(id(), lifeStates(), directedPositions(), maxBombs(),
-                newBombRange);
+        return new Player(id, lifeState, lifeStateTicks, lifeStates, motion,
+                directedPos, maxBombs,
+                ArgumentChecker.requireNonNegative(newBombRange));
     }
 
     /**
@@ -226,8 +292,9 @@ public class Player {
      * @return a new player with a new number of max bombs
      */
     public final Player withMaxBombs(int newMaxBombs) {
-        return new Player(id(), lifeStates(), directedPositions(), newMaxBombs,
-                bombRange());
+        return new Player(id, lifeState, lifeStateTicks, lifeStates, motion,
+                directedPos, ArgumentChecker.requireNonNegative(newMaxBombs),
+                bombRange);
     }
 
     /**
@@ -235,9 +302,7 @@ public class Player {
      * @return a new player with a life incremented by one
      */
     public final Player withLife(int newMaxLife) {
-        return new Player(id(),
-                SqOfLifeStateWithoutInvulnerabilityWithLife(newMaxLife),
-                directedPositions(), maxBombs(), bombRange());
+        return withLifeState(new LifeState(newMaxLife, State.VULNERABLE), 0);
     }
 
     /**
@@ -246,12 +311,19 @@ public class Player {
      *         first, during 128 ticks
      */
     public final Player withTempoInvState() {
+        return withLifeState(new LifeState(lives(), State.INVULNERABLE),
+                2 * Ticks.PLAYER_INVULNERABLE_TICKS);
+    }
 
-        return new Player(id(),
-                Sq.repeat(2 * Ticks.PLAYER_INVULNERABLE_TICKS,
-                        new LifeState(lives(), State.INVULNERABLE))
-                .concat(Sq.constant(new LifeState(lives(), State.VULNERABLE))),
-                directedPositions(), maxBombs(), bombRange());
+    /**
+     * @param newLifeState
+     * @param ticks
+     * @return a new player in the given life state during the given ticks (0
+     *         meaning forever)
+     */
+    private Player withLifeState(LifeState newLifeState, int ticks) {
+        return new Player(id, newLifeState, ticks, null, motion, directedPos,
+                maxBombs, bombRange);
     }
 
     /**
@@ -263,11 +335,121 @@ public class Player {
      * @return a new sequence
      */
     public final Sq<LifeState> statesForNextLife() {
+        return lifeStatesFrom(new LifeState(lives(), State.DYING),
+                Ticks.PLAYER_DYING_TICKS);
+    }
+
+    /**
+     * @return the position of the player at the next tick, if it moves
+     */
+    final SubCell nextPosition() {
+        if (directedPos != null)
+            return directedPos.tail().head().position();
+        return motion.nextPosition();
+    }
+
+    /**
+     * @return the direction of the player at the next tick, if it moves
+     */
+    final Direction nextDirection() {
+        if (directedPos != null)
+            return directedPos.tail().head().direction();
+        return motion.nextDirection();
+    }
+
+    /**
+     * Changes the way the player moves. If the new direction is orthogonal to
+     * the current one, or if the player wants to stop, it first goes on until
+     * the next central subCell.
+     * 
+     * @param nextDir
+     *            the new direction, or an empty optional to stop
+     * @return the player with its new motion
+     */
+    final Player withDirectionChange(Optional<Direction> nextDir) {
+        if (directedPos != null)
+            return withDirectedPositions(directedPositionsAfterChange(nextDir));
+        return new Player(id, lifeState, lifeStateTicks, lifeStates,
+                motion.withDirectionChange(nextDir), null, maxBombs,
+                bombRange);
+    }
+
+    private Player withDirectedPositions(Sq<DirectedPosition> newDirectedPos) {
+        DirectedPosition head = newDirectedPos.head();
+        return new Player(id, lifeState, lifeStateTicks, lifeStates,
+                Motion.stopped(head.position(), head.direction()),
+                newDirectedPos, maxBombs, bombRange);
+    }
+
+    /**
+     * Computes the new sequence of directed positions of a player which was
+     * given an arbitrary sequence, see {@link #withDirectionChange(Optional)}
+     * 
+     * @param nextDir
+     * @return the new sequence
+     */
+    private Sq<DirectedPosition> directedPositionsAfterChange(
+            Optional<Direction> nextDir) {
+        DirectedPosition current = directedPos.head();
+        DirectedPosition atNextCentral = directedPos
+                .findFirst(p -> p.position().isCentral());
+
+        // if the current direction and the next direction are not parallel,
+        // the player must first reach the next central subCell
+        boolean mustReachNextCentral = nextDir
+                .map(d -> !d.isParallelTo(current.direction())).orElse(true);
+
+        if (!mustReachNextCentral)
+            return DirectedPosition
+                    .moving(current.withDirection(nextDir.get()));
+
+        Sq<DirectedPosition> beforeCentral = DirectedPosition.moving(current)
+                .takeWhile(p -> !p.position().isCentral());
+        return nextDir.isPresent()
+                ? beforeCentral.concat(DirectedPosition
+                        .moving(atNextCentral.withDirection(nextDir.get())))
+                : beforeCentral
+                        .concat(DirectedPosition.stopped(atNextCentral));
+    }
+
+    /**
+     * @param moves
+     *            true if the player is able to move during this tick
+     * @param blasted
+     *            true if the player is touched by a blast and loses a life
+     * @return the player at the next tick
+     */
+    final Player next(boolean moves, boolean blasted) {
+        LifeState lifeState1;
+        int lifeStateTicks1;
+        Sq<LifeState> lifeStates1 = null;
+        if (blasted) {
+            lifeState1 = new LifeState(lives(), State.DYING);
+            lifeStateTicks1 = Ticks.PLAYER_DYING_TICKS;
+        } else if (lifeStates != null) {
+            lifeStates1 = lifeStates.tail();
+            lifeState1 = lifeStates1.head();
+            lifeStateTicks1 = 0;
+        } else if (lifeStateTicks == 1) {
+            lifeState1 = lifeStateAfter(lifeState);
+            lifeStateTicks1 = ticksOf(lifeState1.state());
+        } else {
+            lifeState1 = lifeState;
+            lifeStateTicks1 = Math.max(lifeStateTicks - 1, 0);
+        }
+
+        Motion motion1 = motion;
+        Sq<DirectedPosition> directedPos1 = directedPos;
+        if (moves && directedPos != null) {
+            directedPos1 = directedPos.tail();
+            motion1 = Motion.stopped(directedPos1.head().position(),
+                    directedPos1.head().direction());
+        } else if (moves) {
+            motion1 = motion.next();
+        }
 
-        return Sq
-                .repeat(Ticks.PLAYER_DYING_TICKS,
-                        new LifeState(lives(), State.DYING))
-                .concat(SqOfLifeStatesWith(lives() - 1));
+        return new Player(id, lifeState1, lifeStateTicks1, lifeStates1,
+                motion1, directedPos1, maxBombs, bombRange);
     }
 
     /**
@@ -0,0 +1,152 @@
+package ch.epfl.xblast.server;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+/**
+ * The layout of a replay log, which stores a match as the events of each of
+ * its ticks, since a game only depends on its initial state, its seed and
+ * its events.
+ *
+ * A log starts with a header: a magic number, the version, the seed of the
+ * initial state, the number of ticks between two snapshots, the number of
+ * ticks recorded and the digest of the initial state. The events of each
+ * tick follow, on {@link #INPUT_SIZE} bytes, and after every period of ticks
+ * a snapshot: the tick and the digest of the state reached. The position of
+ * the events of any tick is thus known without reading the log.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class ReplayLog {
+
+    static final int MAGIC = 0x58425250;
+    static final int VERSION = 1;
+
+    static final int SEED_OFFSET = 2 * Integer.BYTES;
+    static final int PERIOD_OFFSET = SEED_OFFSET + Long.BYTES;
+    static final int TICKS_OFFSET = PERIOD_OFFSET + Integer.BYTES;
+    static final int DIGEST_OFFSET = TICKS_OFFSET + Integer.BYTES;
+    static final int HEADER_SIZE = DIGEST_OFFSET + Integer.BYTES;
+
+    // the events of a player on 4 bits: the speed change and the bomb drop
+    static final int INPUT_SIZE = Short.BYTES;
+    static final int SNAPSHOT_SIZE = 2 * Integer.BYTES;
+    private static final int BITS_PER_PLAYER = 4;
+    private static final int NO_CHANGE = 0;
+    private static final int STOP = 1;
+    private static final int BOMB = 1 << 3;
+
+    private ReplayLog() {
+    }
+
+    /**
+     * @param tick
+     * @param period
+     *            the number of ticks between two snapshots
+     * @return the position of the events of the given tick, which lead to
+     *         the next one
+     */
+    static long inputOffset(int tick, int period) {
+        return HEADER_SIZE + (long) (tick / period) * blockSize(period)
+                + (long) (tick % period) * INPUT_SIZE;
+    }
+
+    /**
+     * @param tick
+     *            a multiple of the period, not 0
+     * @param period
+     * @return the position of the snapshot of the given tick
+     */
+    static long snapshotOffset(int tick, int period) {
+        return HEADER_SIZE + (long) (tick / period - 1) * blockSize(period)
+                + (long) period * INPUT_SIZE;
+    }
+
+    private static long blockSize(int period) {
+        return (long) period * INPUT_SIZE + SNAPSHOT_SIZE;
+    }
+
+    /**
+     * @param speedChangeEvents
+     * @param bombDropEvents
+     * @return the events of a tick, encoded
+     */
+    static short encode(Map<PlayerID, Optional<Direction>> speedChangeEvents,
+            Set<PlayerID> bombDropEvents) {
+        int input = 0;
+        for (PlayerID id : PlayerID.values()) {
+            Optional<Direction> change = speedChangeEvents.get(id);
+            int bits = change == null ? NO_CHANGE
+                    : change.map(d -> STOP + 1 + d.ordinal()).orElse(STOP);
+            if (bombDropEvents.contains(id))
+                bits |= BOMB;
+            input |= bits << (BITS_PER_PLAYER * id.ordinal());
+        }
+        return (short) input;
+    }
+
+    /**
+     * Adds the encoded events of a tick to the given events
+     *
+     * @param input
+     * @param speedChangeEvents
+     * @param bombDropEvents
+     */
+    static void decode(short input,
+            Map<PlayerID, Optional<Direction>> speedChangeEvents,
+            Set<PlayerID> bombDropEvents) {
+        for (PlayerID id : PlayerID.values()) {
+            int bits = (input >> (BITS_PER_PLAYER * id.ordinal())) & 0xF;
+            int change = bits & ~BOMB;
+            if (change == STOP)
+                speedChangeEvents.put(id, Optional.empty());
+            else if (change != NO_CHANGE)
+                speedChangeEvents.put(id,
+                        Optional.of(Direction.values()[change - STOP - 1]));
+            if ((bits & BOMB) != 0)
+                bombDropEvents.add(id);
+        }
+    }
+
+    /**
+     * Computes the digest of a game state: its tick, its frame, and what the
+     * frame does not show, the bonuses and directions of the players and the
+     * bombs
+     *
+     * @param painter
+     * @param s
+     * @param frame
+     *            an array of {@link DeltaProtocol#FRAME_SIZE} bytes used to
+     *            serialize the state
+     * @return the digest
+     */
+    static int digest(BoardPainter painter, GameState s, byte[] frame) {
+        GameStateSerializer.serializeFrame(painter, s, frame);
+        CRC32 crc = new CRC32();
+        crc.update(frame, 0, DeltaProtocol.FRAME_SIZE);
+        // the other values fit in a byte
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE)
+            crc.update(s.ticks() >>> shift);
+        for (Player p : s.players()) {
+            crc.update(p.maxBombs());
+            crc.update(p.bombRange());
+            crc.update(p.direction().ordinal());
+        }
+        for (Bomb b : s.bombs()) {
+            crc.update(b.ownerId().ordinal());
+            crc.update(b.position().rowMajorIndex());
+            crc.update(b.fuseLength());
+            crc.update(b.range());
+        }
+        return (int) crc.getValue();
+    }
+}
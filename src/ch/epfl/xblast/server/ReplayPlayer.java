@@ -0,0 +1,207 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.Time;
+
+/**
+ * Plays again a match recorded by a {@link ReplayRecorder}, by simulating it
+ * from its events. The game state of any tick can be computed: the
+ * simulation starts from the closest game state already computed before it,
+ * the game states of the ticks of the snapshots being kept.
+ *
+ * The snapshots of the log only hold the digests of the game states, which
+ * are compared with those of the simulation to check that the game still
+ * evolves as when it was recorded.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class ReplayPlayer {
+
+    private final Level level;
+    private final MappedByteBuffer log;
+    private final int period;
+    private final int ticks;
+    private final byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+
+    // the game states of the ticks of the snapshots, once computed
+    private final GameState[] checkpoints;
+
+    private final Map<PlayerID, Optional<Direction>> speedChangeEvents = new EnumMap<>(
+            PlayerID.class);
+    private final Set<PlayerID> bombDropEvents = EnumSet
+            .noneOf(PlayerID.class);
+
+    /**
+     * Opens a replay log
+     *
+     * @param file
+     * @param level
+     *            the level of the match recorded
+     * @throws IllegalArgumentException
+     *             if the file is not a replay log, or a log of a match of
+     *             another level
+     * @throws IOException
+     */
+    public ReplayPlayer(Path file, Level level) throws IOException {
+        this.level = Objects.requireNonNull(level);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            if (channel.size() < ReplayLog.HEADER_SIZE)
+                throw new IllegalArgumentException("Not a replay log");
+            // the mapping remains valid once the channel is closed
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (log.getInt(0) != ReplayLog.MAGIC
+                || log.getInt(Integer.BYTES) != ReplayLog.VERSION)
+            throw new IllegalArgumentException("Not a replay log");
+
+        period = log.getInt(ReplayLog.PERIOD_OFFSET);
+        if (period <= 0)
+            throw new IllegalArgumentException("Invalid period");
+        ticks = Math.min(log.getInt(ReplayLog.TICKS_OFFSET),
+                lastTickIn(log.capacity()));
+
+        GameState initial = level.initialGameState()
+                .withSeed(log.getLong(ReplayLog.SEED_OFFSET));
+        if (ReplayLog.digest(level.boardPainter(), initial, frame) != log
+                .getInt(ReplayLog.DIGEST_OFFSET))
+            throw new IllegalArgumentException(
+                    "Replay log of another level");
+        checkpoints = new GameState[ticks / period + 1];
+        checkpoints[0] = initial;
+    }
+
+    /**
+     * @return the number of ticks recorded
+     */
+    public int ticks() {
+        return ticks;
+    }
+
+    /**
+     * Computes the game state of a tick
+     *
+     * @param tick
+     * @return the game state of the given tick
+     * @throws IllegalArgumentException
+     *             if the tick was not recorded
+     */
+    public GameState seek(int tick) {
+        if (tick < 0 || tick > ticks)
+            throw new IllegalArgumentException("Tick not recorded");
+        int k = tick / period;
+        while (checkpoints[k] == null)
+            k--;
+        if (k * period == tick)
+            return checkpoints[k];
+        MutableGameState s = new MutableGameState(checkpoints[k]);
+        simulate(s, tick, false);
+        return s.snapshot();
+    }
+
+    /**
+     * Simulates the whole match and compares the digests of the snapshots
+     * with those of the simulation
+     *
+     * @return the tick of the first snapshot which differs, or -1 if the
+     *         match evolves as when it was recorded
+     */
+    public int verify() {
+        MutableGameState s = new MutableGameState(checkpoints[0]);
+        return simulate(s, ticks, true);
+    }
+
+    /**
+     * Makes a game state evolve until the given tick, keeping the game
+     * states of the snapshots
+     *
+     * @return the tick of the first snapshot whose digest differs, or -1, if
+     *         the digests are checked
+     */
+    private int simulate(MutableGameState s, int tick, boolean check) {
+        while (s.ticks() < tick) {
+            speedChangeEvents.clear();
+            bombDropEvents.clear();
+            ReplayLog.decode(
+                    log.getShort((int) ReplayLog.inputOffset(s.ticks(),
+                            period)),
+                    speedChangeEvents, bombDropEvents);
+            s.next(speedChangeEvents, bombDropEvents);
+
+            int t = s.ticks();
+            if (t % period == 0) {
+                GameState snapshot = checkpoints[t / period];
+                if (snapshot == null) {
+                    snapshot = s.snapshot();
+                    checkpoints[t / period] = snapshot;
+                }
+                int offset = (int) ReplayLog.snapshotOffset(t, period);
+                if (check && ReplayLog.digest(level.boardPainter(), snapshot,
+                        frame) != log.getInt(offset + Integer.BYTES))
+                    return t;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the last tick whose events fit in a log of the given size
+     */
+    private int lastTickIn(long size) {
+        int tick = 0;
+        while (ReplayLog.inputOffset(tick, period)
+                + ReplayLog.INPUT_SIZE <= size)
+            tick++;
+        return tick;
+    }
+
+    /**
+     * Checks a replay log of the default level, and prints the game state of
+     * a tick
+     *
+     * @param args
+     *            the file of the log, optionally followed by a tick
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        ReplayPlayer player = new ReplayPlayer(Paths.get(args[0]),
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel());
+
+        long start = System.nanoTime();
+        int diverging = player.verify();
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d ticks simulated in %d ms (%.0f times real "
+                + "time)%n", player.ticks(), nanos / Time.NS_PER_MS,
+                (double) player.ticks() * Ticks.TICK_NANOSECOND_DURATION
+                        / Math.max(1, nanos));
+        System.out.println(diverging < 0 ? "The replay matches the match"
+                : "The replay diverges at tick " + diverging);
+
+        GameState s = player.seek(
+                args.length > 1 ? Integer.parseInt(args[1]) : player.ticks());
+        System.out.println("Tick " + s.ticks() + ":");
+        for (Player p : s.players())
+            System.out.println(p.id() + ": " + p.lives() + " lives at "
+                    + p.position().containingCell());
+        if (s.winner().isPresent())
+            System.out.println("The winner is " + s.winner().get());
+    }
+}
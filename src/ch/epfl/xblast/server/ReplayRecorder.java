@@ -0,0 +1,137 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+
+/**
+ * Records a match in a replay log (see {@link ReplayLog}), which a
+ * {@link ReplayPlayer} plays again. The log is mapped in memory, so that
+ * recording a tick only writes in memory: the file is only resized when the
+ * match is longer than expected, and written when the recorder is closed.
+ *
+ * The header is updated at every tick, so that the ticks recorded before a
+ * crash of the server can still be played.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class ReplayRecorder implements AutoCloseable {
+
+    /**
+     * The number of ticks between two snapshots by default
+     */
+    public static final int DEFAULT_PERIOD = 5 * Ticks.TICKS_PER_SECOND;
+
+    private final FileChannel channel;
+    private final Level level;
+    private final int period;
+    private final byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+
+    private MappedByteBuffer log;
+    private int ticks;
+
+    /**
+     * Creates a log recording a match starting with the initial game state
+     * of the given level
+     *
+     * @param file
+     *            the file of the log, replaced if it exists
+     * @param level
+     * @param period
+     *            the number of ticks between two snapshots
+     * @throws IllegalArgumentException
+     *             if the period is not positive
+     * @throws IOException
+     */
+    public ReplayRecorder(Path file, Level level, int period)
+            throws IOException {
+        if (period <= 0)
+            throw new IllegalArgumentException("Invalid period");
+        this.level = Objects.requireNonNull(level);
+        this.period = period;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // a match lasts at most the total number of ticks
+        map(ReplayLog.inputOffset(Ticks.TOTAL_TICKS + 1, period));
+
+        GameState initial = level.initialGameState();
+        log.putInt(0, ReplayLog.MAGIC).putInt(Integer.BYTES, ReplayLog.VERSION)
+                .putLong(ReplayLog.SEED_OFFSET, initial.seed())
+                .putInt(ReplayLog.PERIOD_OFFSET, period)
+                .putInt(ReplayLog.TICKS_OFFSET, 0)
+                .putInt(ReplayLog.DIGEST_OFFSET, ReplayLog
+                        .digest(level.boardPainter(), initial, frame));
+    }
+
+    /**
+     * Records the events of a tick
+     *
+     * @param speedChangeEvents
+     * @param bombDropEvents
+     * @param next
+     *            the game state computed with these events
+     * @throws IllegalArgumentException
+     *             if the game state does not follow the last one recorded
+     * @throws IOException
+     */
+    public void record(Map<PlayerID, Optional<Direction>> speedChangeEvents,
+            Set<PlayerID> bombDropEvents, GameState next) throws IOException {
+        if (next.ticks() != ticks + 1)
+            throw new IllegalArgumentException("Not the next game state");
+
+        long end = ReplayLog.inputOffset(next.ticks(), period)
+                + ReplayLog.SNAPSHOT_SIZE;
+        if (end > log.capacity())
+            map(2 * end);
+
+        log.putShort((int) ReplayLog.inputOffset(ticks, period),
+                ReplayLog.encode(speedChangeEvents, bombDropEvents));
+        ticks = next.ticks();
+        if (ticks % period == 0) {
+            int offset = (int) ReplayLog.snapshotOffset(ticks, period);
+            log.putInt(offset, ticks).putInt(offset + Integer.BYTES,
+                    ReplayLog.digest(level.boardPainter(), next, frame));
+        }
+        log.putInt(ReplayLog.TICKS_OFFSET, ticks);
+    }
+
+    /**
+     * @return the number of ticks recorded
+     */
+    public int ticks() {
+        return ticks;
+    }
+
+    /**
+     * Writes the log and truncates the file to its length
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            log.force();
+            // the end of the events or of the snapshot of the last tick
+            channel.truncate(ReplayLog.inputOffset(ticks, period));
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Replay log too large");
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+}
@@ -0,0 +1,91 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import ch.epfl.xblast.RelayProtocol;
+
+/**
+ * The spectator relays subscribed to the game of a server (see
+ * {@link RelayProtocol}). Each relay receives every game state once, whatever
+ * the number of its spectators, and nothing it sends is given to the game.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class SpectatorRelays {
+
+    private final int maxRelays;
+    private final Set<SocketAddress> relays = new LinkedHashSet<>();
+
+    /**
+     * @param maxRelays
+     *            the maximal number of relays
+     * @throws IllegalArgumentException
+     *             if the number is negative
+     */
+    public SpectatorRelays(int maxRelays) {
+        if (maxRelays < 0)
+            throw new IllegalArgumentException("Invalid number of relays");
+        this.maxRelays = maxRelays;
+    }
+
+    /**
+     * Subscribes a relay, unless it is a player or there are already as many
+     * relays as allowed
+     *
+     * @param relay
+     * @param players
+     *            the addresses of the players, which cannot be relays
+     * @return true if the relay is new
+     */
+    public boolean subscribe(SocketAddress relay,
+            Collection<SocketAddress> players) {
+        Objects.requireNonNull(relay);
+        return !players.contains(relay) && relays.size() < maxRelays
+                && relays.add(relay);
+    }
+
+    /**
+     * @param sender
+     * @return true if the sender is a relay, whose packets other than a
+     *         subscription must be ignored
+     */
+    public boolean isRelay(SocketAddress sender) {
+        return relays.contains(sender);
+    }
+
+    /**
+     * @return the relays, in the order in which they subscribed
+     */
+    public Set<SocketAddress> relays() {
+        return Collections.unmodifiableSet(relays);
+    }
+
+    /**
+     * Sends a game state to each relay, with the id of a spectator
+     *
+     * @param channel
+     * @param gameState
+     *            the game state, preceded by a byte for the id, which is
+     *            replaced
+     * @return the number of packets sent
+     * @throws IOException
+     */
+    public int send(DatagramChannel channel, ByteBuffer gameState)
+            throws IOException {
+        for (SocketAddress relay : relays) {
+            gameState.put(0, RelayProtocol.SPECTATOR).rewind();
+            channel.send(gameState, relay);
+        }
+        return relays.size();
+    }
+}
@@ -0,0 +1,233 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock pacing ticks of a fixed duration. The deadlines of the ticks are
+ * computed from the start of the clock with {@link System#nanoTime()}, so
+ * that the delays of the waits do not add up. A wait parks the thread until
+ * shortly before the deadline and spins for the rest of it.
+ *
+ * When a tick ends after the deadline of the next one, the clock follows its
+ * {@link OverrunPolicy}. It keeps the histograms of the delay of the start of
+ * the ticks after their deadline, and of the duration of the ticks.
+ *
+ * A clock is used by a single thread, the one running the ticks.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+public final class TickClock {
+
+    /**
+     * What the clock does when a tick ends after the deadline of the next one
+     */
+    public enum OverrunPolicy {
+        /**
+         * The deadlines already passed are dropped, the next tick starts at
+         * the next deadline
+         */
+        SKIP,
+        /**
+         * The next ticks start without waiting until the clock is on time
+         * again
+         */
+        CATCH_UP,
+        /**
+         * The next tick starts at once, and the following deadlines are
+         * shifted accordingly
+         */
+        STRETCH
+    }
+
+    /**
+     * Waits during the first part of the time until a deadline
+     */
+    @FunctionalInterface
+    public interface Waiter {
+        /**
+         * Waits for at most the given duration, possibly less
+         *
+         * @param nanos
+         * @throws IOException
+         */
+        void await(long nanos) throws IOException;
+    }
+
+    /**
+     * The waiter parking the thread
+     */
+    public static final Waiter PARK = LockSupport::parkNanos;
+
+    /**
+     * The default duration of the spin before a deadline, longer than the
+     * usual delay of a wake up after parking
+     */
+    public static final long DEFAULT_SPIN_NANOS = 100_000;
+
+    private final long tickNanos;
+    private final OverrunPolicy policy;
+    private final long spinNanos;
+
+    private final Histogram startError = new Histogram();
+    private final Histogram tickDuration = new Histogram();
+
+    private boolean started;
+    private long deadline;
+    private long tickStart;
+    private long ticks;
+    private long overruns;
+    private long skipped;
+
+    /**
+     * Constructs a clock spinning for the default duration
+     *
+     * @param tickNanos
+     *            the duration of a tick, in nanoseconds
+     * @param policy
+     * @throws IllegalArgumentException
+     *             if the duration is not positive
+     */
+    public TickClock(long tickNanos, OverrunPolicy policy) {
+        this(tickNanos, policy, DEFAULT_SPIN_NANOS);
+    }
+
+    /**
+     * @param tickNanos
+     *            the duration of a tick, in nanoseconds
+     * @param policy
+     * @param spinNanos
+     *            the duration of the spin before each deadline
+     * @throws IllegalArgumentException
+     *             if the duration of a tick is not positive, or if the
+     *             duration of the spin is negative
+     */
+    public TickClock(long tickNanos, OverrunPolicy policy, long spinNanos) {
+        if (tickNanos <= 0 || spinNanos < 0)
+            throw new IllegalArgumentException("Invalid duration");
+        this.tickNanos = tickNanos;
+        this.policy = Objects.requireNonNull(policy);
+        this.spinNanos = spinNanos;
+    }
+
+    /**
+     * Starts the clock: the first tick starts one tick later
+     */
+    public void start() {
+        started = true;
+        deadline = System.nanoTime() + tickNanos;
+        ticks = 0;
+    }
+
+    /**
+     * Parks the thread until the start of the next tick
+     *
+     * @throws IllegalStateException
+     *             if the clock is not started
+     */
+    public void awaitTick() {
+        try {
+            awaitTick(PARK);
+        } catch (IOException e) {
+            // parking does not fail
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Waits until the start of the next tick, with the given waiter until
+     * shortly before its deadline
+     *
+     * @param waiter
+     * @throws IOException
+     *             if the waiter fails
+     * @throws IllegalStateException
+     *             if the clock is not started
+     */
+    public void awaitTick(Waiter waiter) throws IOException {
+        if (!started)
+            throw new IllegalStateException("Clock not started");
+
+        long now = System.nanoTime();
+        if (ticks > 0)
+            tickDuration.record(now - tickStart);
+
+        if (now > deadline) {
+            overruns++;
+            switch (policy) {
+            case SKIP:
+                long missed = (now - deadline) / tickNanos + 1;
+                skipped += missed;
+                deadline += missed * tickNanos;
+                break;
+            case STRETCH:
+                deadline = now;
+                break;
+            case CATCH_UP:
+                break;
+            }
+        }
+
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spinNanos)
+            waiter.await(remaining - spinNanos);
+        while (System.nanoTime() < deadline) {
+            // spinning until the deadline
+        }
+
+        tickStart = System.nanoTime();
+        startError.record(tickStart - deadline);
+        ticks++;
+        deadline += tickNanos;
+    }
+
+    /**
+     * @return the time at which the last tick started, given by
+     *         {@link System#nanoTime()}
+     */
+    public long tickStart() {
+        return tickStart;
+    }
+
+    /**
+     * @return the number of ticks since the start
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * @return the number of ticks which ended after the deadline of the next
+     *         one
+     */
+    public long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return the number of deadlines dropped by the {@link OverrunPolicy#SKIP}
+     *         policy
+     */
+    public long skipped() {
+        return skipped;
+    }
+
+    /**
+     * @return the histogram of the delay of the start of the ticks after their
+     *         deadline
+     */
+    public Histogram startError() {
+        return startError;
+    }
+
+    /**
+     * @return the histogram of the duration of the ticks, until the clock is
+     *         waited for again
+     */
+    public Histogram tickDuration() {
+        return tickDuration;
+    }
+}
@@ -0,0 +1,172 @@
+package ch.epfl.xblast.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.epfl.xblast.Time;
+
+/**
+ * An event loop on a selector, which reads the packets of any number of
+ * channels as soon as they arrive and calls a tick handler at the ticks of a
+ * clock. The loop waits in the selector until the last millisecond before a
+ * tick, lets the clock park and spin for the rest, and reads the packets
+ * arrived meanwhile just before the tick.
+ *
+ * It records the time between the arrival of each packet and the tick
+ * following it.
+ *
+ * @author Mathilde Raynal (259176)
+ * @author Richard Roubaty (260549)
+ */
+
+final class TickLoop implements AutoCloseable {
+
+    /**
+     * Handles a packet received by a channel of the loop
+     */
+    @FunctionalInterface
+    interface PacketHandler {
+        /**
+         * @param sender
+         * @param packet
+         *            the packet, from its position to its limit
+         * @throws IOException
+         */
+        void received(SocketAddress sender, ByteBuffer packet)
+                throws IOException;
+    }
+
+    /**
+     * Handles a tick of the loop
+     */
+    @FunctionalInterface
+    interface TickHandler {
+        /**
+         * @return false if the loop must stop after this tick
+         * @throws IOException
+         */
+        boolean tick() throws IOException;
+    }
+
+    private final TickClock clock;
+    private final ByteBuffer buffer;
+    private final Selector selector;
+
+    // the arrival times of the packets read since the last tick
+    private long[] arrivals = new long[16];
+    private int arrivalCount;
+
+    private final Histogram inputLatency = new Histogram();
+
+    /**
+     * @param clock
+     *            the clock pacing the ticks, started by the loop
+     * @param maxPacketSize
+     *            the size of the largest packet read, larger packets being
+     *            truncated
+     * @throws IllegalArgumentException
+     *             if the size is not positive
+     * @throws IOException
+     */
+    TickLoop(TickClock clock, int maxPacketSize) throws IOException {
+        if (maxPacketSize <= 0)
+            throw new IllegalArgumentException("Invalid packet size");
+        this.clock = Objects.requireNonNull(clock);
+        this.buffer = ByteBuffer.allocateDirect(maxPacketSize);
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Adds a channel to the loop, which makes it non-blocking
+     *
+     * @param channel
+     * @param handler
+     *            the handler of the packets received by the channel
+     * @throws IOException
+     */
+    void register(DatagramChannel channel, PacketHandler handler)
+            throws IOException {
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, handler);
+    }
+
+    /**
+     * Calls the tick handler at every tick of the clock, until it returns
+     * false
+     *
+     * @param handler
+     * @throws IOException
+     */
+    void run(TickHandler handler) throws IOException {
+        TickClock.Waiter waiter = nanos -> {
+            if (nanos >= Time.NS_PER_MS)
+                selector.select(nanos / Time.NS_PER_MS);
+            else
+                LockSupport.parkNanos(nanos);
+            readSelected();
+        };
+
+        clock.start();
+        boolean running = true;
+        while (running) {
+            clock.awaitTick(waiter);
+            selector.selectNow();
+            readSelected();
+
+            for (int i = 0; i < arrivalCount; ++i)
+                inputLatency.record(clock.tickStart() - arrivals[i]);
+            arrivalCount = 0;
+
+            running = handler.tick();
+        }
+    }
+
+    private void readSelected() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            DatagramChannel channel = (DatagramChannel) key.channel();
+            PacketHandler handler = (PacketHandler) key.attachment();
+            SocketAddress sender;
+            while ((sender = channel.receive(buffer)) != null) {
+                if (arrivalCount == arrivals.length)
+                    arrivals = Arrays.copyOf(arrivals, 2 * arrivals.length);
+                arrivals[arrivalCount++] = System.nanoTime();
+
+                buffer.flip();
+                handler.received(sender, buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the histogram of the time between the arrival of the packets
+     *         and the tick following them
+     */
+    Histogram inputLatency() {
+        return inputLatency;
+    }
+
+    /**
+     * @return the clock pacing the ticks
+     */
+    TickClock clock() {
+        return clock;
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+    }
+}
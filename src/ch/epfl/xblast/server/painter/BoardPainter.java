@@ -1,7 +1,5 @@
 package ch.epfl.xblast.server.painter;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import ch.epfl.xblast.Cell;
@@ -18,7 +16,7 @@ import ch.epfl.xblast.server.Board;
 
 public final class BoardPainter {
 
-	private final Map<Block, BlockImage> palette;
+	private final BlockImage[] palette;
 	private final BlockImage shadowB;
 
 	/**
@@ -30,7 +28,11 @@ public final class BoardPainter {
 	 */
 	public BoardPainter(Map<Block, BlockImage> palette, BlockImage shadowB) {
 
-		this.palette = Collections.unmodifiableMap(new HashMap<>(palette));
+		// the palette is stored by ordinal of the blocks, so that painting a
+		// cell does not need any map lookup
+		this.palette = new BlockImage[Block.values().length];
+		for (Map.Entry<Block, BlockImage> e : palette.entrySet())
+			this.palette[e.getKey().ordinal()] = e.getValue();
 		this.shadowB = shadowB;
 	}
 
@@ -45,14 +47,13 @@ public final class BoardPainter {
 	 */
 	public byte byteForCell(Board board, Cell c) {
 
-		BlockImage blockImageForCell = palette.get(board.blockAt(c));
-		Block neighbor = board.blockAt(c.neighbor(Direction.W));
+		Block block = board.blockAt(c);
 
 		// If its a free block and its neighbor casts shadow, we must choose the
 		// image with shadow
-		if (board.blockAt(c).isFree() && neighbor.castsShadow()) {
+		if (block.isFree() && board.blockAt(c.neighbor(Direction.W)).castsShadow()) {
 			return (byte) shadowB.ordinal();
 		} else
-			return (byte) (blockImageForCell.ordinal());
+			return (byte) (palette[block.ordinal()].ordinal());
 	}
 }
@@ -37,7 +37,7 @@ public final class PlayerPainter {
     public static byte byteForPlayer(int ticks, Player p) {
 
         State state = p.lifeState().state();
-        Direction d = p.directedPositions().head().direction();
+        Direction d = p.direction();
 
         // Select the range of the image according to its id
         int imageByte = p.id().ordinal() * ID_RANGE;
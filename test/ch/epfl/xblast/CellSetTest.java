@@ -0,0 +1,53 @@
+package ch.epfl.xblast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CellSetTest {
+    @Test
+    public void newSetIsEmpty() {
+        CellSet s = new CellSet();
+        assertTrue(s.isEmpty());
+        assertEquals(0, s.size());
+        for (Cell c : Cell.ROW_MAJOR_ORDER)
+            assertFalse(s.contains(c));
+    }
+
+    @Test
+    public void addedCellsAreContained() {
+        CellSet s = new CellSet();
+        for (Cell c : Cell.ROW_MAJOR_ORDER) {
+            s.add(c);
+            assertTrue(s.contains(c));
+            assertTrue(s.contains(c.rowMajorIndex()));
+            assertEquals(c.rowMajorIndex() + 1, s.size());
+        }
+        assertFalse(s.isEmpty());
+    }
+
+    @Test
+    public void removeAndClearWork() {
+        CellSet s = CellSet.of(Arrays.asList(new Cell(0, 0), new Cell(14, 12),
+                new Cell(7, 4)));
+        s.remove(new Cell(7, 4));
+        assertFalse(s.contains(new Cell(7, 4)));
+        assertEquals(2, s.size());
+
+        s.clear();
+        assertTrue(s.isEmpty());
+    }
+
+    @Test
+    public void toSetContainsTheSameCells() {
+        Set<Cell> cells = new HashSet<>(Arrays.asList(new Cell(1, 1),
+                new Cell(3, 5), new Cell(13, 11), new Cell(14, 12)));
+        assertEquals(cells, CellSet.of(cells).toSet());
+    }
+}
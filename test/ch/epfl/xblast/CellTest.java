@@ -114,4 +114,23 @@ public class CellTest {
 	    assertEquals(13, Cell.ROWS);
 	    assertEquals(15*13, Cell.COUNT);
 	}
+
+    @Test
+    public void neighborsAreCanonicalInstances() {
+        for (Cell c : Cell.ROW_MAJOR_ORDER) {
+            assertTrue(c == Cell.of(c.x(), c.y()));
+            for (Direction d : Direction.values()) {
+                Cell n = c.neighbor(d);
+                assertTrue(n == Cell.ROW_MAJOR_ORDER.get(n.rowMajorIndex()));
+                assertTrue(n.neighbor(d.opposite()) == c);
+            }
+        }
+    }
+
+    @Test
+    public void equalsComparesCoordinates() {
+        assertTrue(new Cell(-1, 0).equals(Cell.of(14, 0)));
+        assertFalse(new Cell(1, 0).equals(new Cell(0, 1)));
+        assertTrue(Cell.of(16, 14) == new Cell(16, 14).neighbor(Direction.N).neighbor(Direction.S));
+    }
 }
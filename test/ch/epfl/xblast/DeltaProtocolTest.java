@@ -0,0 +1,131 @@
+package ch.epfl.xblast;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.server.Board;
+import ch.epfl.xblast.server.GameState;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+import ch.epfl.xblast.server.debug.GameStatePrinter;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+public class DeltaProtocolTest {
+
+    private static final BoardPainter PAINTER = new BoardPainter(
+            Level.defaultPalet(), BlockImage.IRON_FLOOR_S);
+
+    @Test
+    public void keyframeIsTheSerializedState() {
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        GameState s = new GameState(Board.defaultBoard(),
+                GameStatePrinter.players());
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] decoded = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer buffer = ByteBuffer
+                .allocate(GameStateSerializer.MAX_SERIALIZED_SIZE);
+
+        while (!s.isGameOver()) {
+            GameStateSerializer.serializeFrame(PAINTER, s, frame);
+            buffer.clear();
+            DeltaProtocol.encodeKeyframe(frame, buffer);
+            buffer.flip();
+
+            List<Byte> serialized = GameStateSerializer.serialize(PAINTER, s);
+            assertEquals(serialized.size(), buffer.remaining());
+            for (int i = 0; i < serialized.size(); ++i)
+                assertEquals((byte) serialized.get(i), buffer.get(i));
+
+            DeltaProtocol.decodeKeyframe(buffer, decoded);
+            assertArrayEquals(frame, decoded);
+            assertEquals(0, buffer.remaining());
+
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+    }
+
+    @Test
+    public void deltaGivesTheFrameBack() {
+        Random rng = new Random(2016);
+        byte[] base = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] applied = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer buffer = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+
+        for (int i = 0; i < 1000; ++i) {
+            rng.nextBytes(base);
+            System.arraycopy(base, 0, frame, 0, frame.length);
+            int changes = rng.nextInt(i % 10 == 0 ? frame.length : 20);
+            for (int j = 0; j < changes; ++j)
+                frame[rng.nextInt(frame.length)] = (byte) rng.nextInt();
+
+            buffer.clear();
+            DeltaProtocol.encodeDelta(base, frame, buffer);
+            buffer.flip();
+            DeltaProtocol.applyDelta(base, buffer, applied);
+            assertArrayEquals(frame, applied);
+        }
+    }
+
+    @Test
+    public void identicalFramesGiveAnEmptyDelta() {
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer buffer = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+        DeltaProtocol.encodeDelta(frame, frame.clone(), buffer);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void aChangedTimeCostsTheByteOfTheSectionsChanged() {
+        byte[] base = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] frame = base.clone();
+        frame[DeltaProtocol.TIME_OFFSET] = 5;
+        ByteBuffer buffer = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+        DeltaProtocol.encodeDelta(base, frame, buffer);
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void unchangedSectionsAreOmitted() {
+        byte[] base = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] frame = base.clone();
+        // a moving player changes its position and its image
+        frame[DeltaProtocol.PLAYERS_OFFSET + 4 + 1] = 9;
+        frame[DeltaProtocol.PLAYERS_OFFSET + 4 + 3] = 2;
+        // a bomb is dropped on the board
+        frame[DeltaProtocol.EXPLOSIONS_OFFSET + 40] = 20;
+        ByteBuffer buffer = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+        DeltaProtocol.encodeDelta(base, frame, buffer);
+        // sections, explosions (count, gap, length, byte), players (bits,
+        // bytes)
+        assertEquals(1 + 4 + 3, buffer.position());
+
+        buffer.flip();
+        byte[] applied = new byte[DeltaProtocol.FRAME_SIZE];
+        DeltaProtocol.applyDelta(base, buffer, applied);
+        assertArrayEquals(frame, applied);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedDeltaIsInvalid() {
+        byte[] base = new byte[DeltaProtocol.FRAME_SIZE];
+        byte[] frame = base.clone();
+        frame[DeltaProtocol.BOARD_OFFSET + 3] = 1;
+        frame[DeltaProtocol.BOARD_OFFSET + 4] = 1;
+        ByteBuffer buffer = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+        DeltaProtocol.encodeDelta(base, frame, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        DeltaProtocol.applyDelta(base, buffer,
+                new byte[DeltaProtocol.FRAME_SIZE]);
+    }
+}
@@ -0,0 +1,84 @@
+package ch.epfl.xblast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class InputProtocolTest {
+
+    private static ByteBuffer packet(int lastSequence, int lastFrame,
+            byte... actions) {
+        ByteBuffer b = ByteBuffer.allocate(InputProtocol.MAX_PACKET_SIZE);
+        InputProtocol.writePacket(lastSequence, lastFrame, actions, 0,
+                actions.length, b);
+        b.flip();
+        return b;
+    }
+
+    @Test
+    public void packetGivesItsActionsAndItsFrame() {
+        ByteBuffer b = packet(2, 17, (byte) 1, (byte) 6, (byte) 5);
+        assertEquals(InputProtocol.HEADER_SIZE + 3, b.remaining());
+        assertTrue(InputProtocol.isInputs(b));
+        assertEquals(17, InputProtocol.lastFrameOf(b));
+
+        List<Integer> applied = new ArrayList<>();
+        assertEquals(2, InputProtocol.applyNew(b, -1, applied::add));
+        assertEquals(Arrays.asList(1, 6, 5), applied);
+        assertEquals(0, b.position());
+    }
+
+    @Test
+    public void onlyTheActionsFollowingTheLastAppliedAreGiven() {
+        ByteBuffer b = packet(5, 0, (byte) 1, (byte) 2, (byte) 3);
+        List<Integer> applied = new ArrayList<>();
+
+        assertEquals(5, InputProtocol.applyNew(b, 3, applied::add));
+        assertEquals(Arrays.asList(2, 3), applied);
+
+        applied.clear();
+        assertEquals(7, InputProtocol.applyNew(b, 7, applied::add));
+        assertTrue(applied.isEmpty());
+    }
+
+    @Test
+    public void packetWithoutActionsOnlyGivesTheFrame() {
+        ByteBuffer b = packet(-1, 4);
+        assertEquals(4, InputProtocol.lastFrameOf(b));
+        assertEquals(-1, InputProtocol.applyNew(b, -1, a -> {
+            throw new AssertionError();
+        }));
+    }
+
+    @Test
+    public void singleByteActionsAreNotSequenced() {
+        assertFalse(InputProtocol.isInputs(ByteBuffer
+                .wrap(new byte[] { (byte) PlayerAction.DROP_BOMB.ordinal() })));
+        assertFalse(InputProtocol.isInputs(ByteBuffer.allocate(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writePacketThrowsExceptionOnTooManyActions() {
+        packet(20, 0, new byte[InputProtocol.REDUNDANCY + 1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writePacketThrowsExceptionOnActionsBeforeTheFirst() {
+        packet(0, 0, (byte) 1, (byte) 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void applyNewThrowsExceptionOnTruncatedPacket() {
+        ByteBuffer b = packet(2, 0, (byte) 1, (byte) 2, (byte) 3);
+        b.limit(b.limit() - 1);
+        InputProtocol.applyNew(b, -1, a -> {
+        });
+    }
+}
@@ -56,4 +56,26 @@ public class ListsTest {
         
         assertEquals(resultList, testList);
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void permutationIsTheOneOfPermutations() {
+        List<Integer> l = new ArrayList<>();
+        for (int n = 0; n <= 6; ++n) {
+            List<List<Integer>> all = Lists.permutations(l);
+            for (int k = 0; k < 2 * all.size(); ++k)
+                assertEquals(all.get(k % all.size()), Lists.permutation(l, k));
+            l.add(n);
+        }
+    }
+    
+    @Test
+    public void permutationWorksForManyElements() {
+        int[] order = new int[12];
+        Lists.permutation(123456789L, order);
+        boolean[] seen = new boolean[order.length];
+        for (int i : order) {
+            assertFalse(seen[i]);
+            seen[i] = true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ch.epfl.xblast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class MotionTest {
+
+    private static Motion.Obstacles obstacles(Cell wall, Cell bomb) {
+        return new Motion.Obstacles() {
+            @Override
+            public boolean canHostPlayer(Cell cell) {
+                return !cell.equals(wall);
+            }
+
+            @Override
+            public boolean hasBomb(Cell cell) {
+                return cell.equals(bomb);
+            }
+        };
+    }
+
+    @Test
+    public void stoppedMotionDoesNotMove() {
+        Motion m = Motion.stopped(SubCell.centralSubCellOf(new Cell(1, 1)),
+                Direction.S);
+        assertFalse(m.isMoving());
+        assertEquals(m, m.next());
+    }
+
+    @Test
+    public void parallelChangeIsImmediate() {
+        SubCell start = SubCell.centralSubCellOf(new Cell(3, 3)).neighbor(
+                Direction.E);
+        Motion m = Motion.stopped(start, Direction.E)
+                .withDirectionChange(Optional.of(Direction.W));
+        assertEquals(Direction.W, m.direction());
+        assertTrue(m.isMoving());
+        assertEquals(start.neighbor(Direction.W), m.next().position());
+    }
+
+    @Test
+    public void orthogonalChangeWaitsForTheCentralSubCell() {
+        SubCell central = SubCell.centralSubCellOf(new Cell(3, 3));
+        Motion m = Motion.stopped(central.neighbor(Direction.W), Direction.E)
+                .withDirectionChange(Optional.of(Direction.S));
+        assertEquals(Direction.E, m.direction());
+        assertEquals(Direction.S, m.nextDirection());
+
+        m = m.next();
+        assertEquals(central, m.position());
+        assertEquals(Direction.S, m.direction());
+        assertEquals(central.neighbor(Direction.S), m.next().position());
+    }
+
+    @Test
+    public void stopHappensOnTheCentralSubCell() {
+        SubCell central = SubCell.centralSubCellOf(new Cell(3, 3));
+        Motion m = Motion.stopped(central.neighbor(Direction.W), Direction.E)
+                .withDirectionChange(Optional.empty());
+        assertTrue(m.isMoving());
+
+        m = m.next();
+        assertEquals(central, m.position());
+        assertFalse(m.isMoving());
+        assertEquals(Direction.E, m.direction());
+    }
+
+    @Test
+    public void wallStopsPlayerOnCentralSubCell() {
+        Cell c = new Cell(3, 3);
+        Motion m = Motion.stopped(SubCell.centralSubCellOf(c), Direction.N)
+                .withDirectionChange(Optional.of(Direction.E));
+        assertFalse(m.canMove(obstacles(c.neighbor(Direction.E), null)));
+        assertTrue(m.canMove(obstacles(c.neighbor(Direction.W), null)));
+    }
+
+    @Test
+    public void bombStopsPlayerGoingToItsCenter() {
+        Cell c = new Cell(3, 3);
+        SubCell central = SubCell.centralSubCellOf(c);
+        SubCell blocked = SubCell.of(central.x() - 6, central.y());
+        Motion.Obstacles bomb = obstacles(null, c);
+
+        Motion m = Motion.stopped(blocked, Direction.E)
+                .withDirectionChange(Optional.of(Direction.E));
+        assertFalse(m.canMove(bomb));
+
+        Motion away = Motion.stopped(blocked, Direction.W)
+                .withDirectionChange(Optional.of(Direction.W));
+        assertTrue(away.canMove(bomb));
+
+        Motion closer = Motion.stopped(blocked.neighbor(Direction.E),
+                Direction.E).withDirectionChange(Optional.of(Direction.E));
+        assertTrue(closer.canMove(bomb));
+    }
+}
@@ -0,0 +1,111 @@
+package ch.epfl.xblast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+
+public class MulticastProtocolTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private static InetSocketAddress group() throws IOException {
+        // a port which is free at the moment
+        try (DatagramChannel c = DatagramChannel.open()) {
+            c.bind(new InetSocketAddress(0));
+            return new InetSocketAddress(
+                    InetAddress.getByName(MulticastProtocol.DEFAULT_GROUP),
+                    ((InetSocketAddress) c.getLocalAddress()).getPort());
+        }
+    }
+
+    private static ByteBuffer receive(DatagramChannel c)
+            throws IOException, InterruptedException {
+        c.configureBlocking(false);
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (c.receive(buffer) != null) {
+                buffer.flip();
+                return buffer;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Nothing received");
+    }
+
+    @Test
+    public void welcomeGivesThePlayerAndTheGroup() throws IOException {
+        InetSocketAddress group = group();
+        ByteBuffer welcome = ByteBuffer
+                .allocate(MulticastProtocol.WELCOME_SIZE);
+        MulticastProtocol.writeWelcome(PlayerID.PLAYER_3, group, welcome);
+        welcome.flip();
+
+        assertTrue(MulticastProtocol.isWelcome(welcome));
+        assertEquals(PlayerID.PLAYER_3, MulticastProtocol.playerOf(welcome));
+        assertEquals(group, MulticastProtocol.groupOf(welcome));
+    }
+
+    @Test
+    public void gameStatesAreNotWelcomePackets() {
+        List<Byte> state = GameStateSerializer.serialize(
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel()
+                        .boardPainter(),
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel()
+                        .initialGameState());
+        ByteBuffer packet = ByteBuffer.allocate(1 + state.size());
+        packet.put((byte) 0);
+        for (byte b : state)
+            packet.put(b);
+        packet.flip();
+        assertFalse(MulticastProtocol.isWelcome(packet));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void welcomeRequiresAMulticastGroup() {
+        MulticastProtocol.writeWelcome(PlayerID.PLAYER_1,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 2017),
+                ByteBuffer.allocate(MulticastProtocol.WELCOME_SIZE));
+    }
+
+    @Test
+    public void stateSentOnceReachesEveryMemberOnLoopback() throws Exception {
+        NetworkInterface lo = MulticastProtocol
+                .interfaceTowards(InetAddress.getLoopbackAddress());
+        InetSocketAddress group = group();
+
+        Level level = Level.LevelWithPlayerAtFourEdges.initialDefaultLevel();
+        ByteBuffer frame = ByteBuffer
+                .allocate(GameStateSerializer.MAX_SERIALIZED_SIZE);
+        GameStateSerializer.serializeInto(level.boardPainter(),
+                level.initialGameState(), frame);
+        frame.flip();
+
+        try (DatagramChannel client1 = MulticastProtocol.joinGroup(group, lo);
+                DatagramChannel client2 = MulticastProtocol.joinGroup(group,
+                        lo);
+                DatagramChannel sender = MulticastProtocol.openSender(lo)) {
+            sender.send(frame, group);
+
+            for (DatagramChannel c : new DatagramChannel[] { client1,
+                    client2 }) {
+                ByteBuffer received = receive(c);
+                frame.rewind();
+                assertEquals(frame, received);
+            }
+        }
+    }
+}
@@ -118,4 +118,25 @@ public class SubCellTest {
         assertEquals(new Cell(0,1), new SubCell(15, 16).containingCell());
         assertEquals(new Cell(1,0), new SubCell(16, 15).containingCell());
     }
+
+    @Test
+    public void factoryReturnsCanonicalInstances() {
+        for (int x = -16; x < 256; x += 7) {
+            for (int y = -16; y < 224; y += 5) {
+                SubCell s = SubCell.of(x, y);
+                assertTrue(s == SubCell.of(x, y));
+                assertEquals(new SubCell(x, y), s);
+                assertTrue(s.containingCell() == Cell.of(s.x() / 16, s.y() / 16));
+                for (Direction d : Direction.values())
+                    assertTrue(s.neighbor(d) == SubCell.of(s.neighbor(d).x(), s.neighbor(d).y()));
+            }
+        }
+    }
+
+    @Test
+    public void equalsComparesCoordinates() {
+        assertFalse(new SubCell(1, 0).equals(new SubCell(0, 1)));
+        assertTrue(new SubCell(-1, -1).equals(SubCell.of(239, 207)));
+        assertTrue(SubCell.centralSubCellOf(new Cell(3, 4)) == SubCell.of(56, 72));
+    }
 }
@@ -0,0 +1,162 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class AssetLoaderTest {
+
+    private static final String[] COLLECTIONS = { "block", "explosion",
+            "player", "score" };
+
+    private static void assertSameImages(ImageCollection expected,
+            ImageCollection actual) {
+        for (int i = 0; i < 1000; ++i) {
+            BufferedImage e = (BufferedImage) expected.imageOrNull(i);
+            BufferedImage a = (BufferedImage) actual.imageOrNull(i);
+            if (e == null) {
+                assertNull(a);
+                continue;
+            }
+            assertEquals(e.getWidth(), a.getWidth());
+            assertEquals(e.getHeight(), a.getHeight());
+            for (int y = 0; y < e.getHeight(); y += 2)
+                for (int x = 0; x < e.getWidth(); x += 2) {
+                    // the color of a transparent pixel does not matter
+                    if ((e.getRGB(x, y) >>> 24) == 0)
+                        assertEquals(0, a.getRGB(x, y) >>> 24);
+                    else
+                        assertEquals(e.getRGB(x, y), a.getRGB(x, y));
+                }
+        }
+    }
+
+    // a jar holding the block images, files without index, and the given
+    // file in a directory bad
+    private static Path jar(byte[] bad) throws IOException {
+        Path jar = Files.createTempFile("xblast", ".jar");
+        ImageCollection blocks = new ImageCollection("block");
+        try (JarOutputStream out = new JarOutputStream(
+                Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("block/"));
+            Path dir = Files.createTempDirectory("xblast");
+            for (int i = 0; i < 1000; ++i) {
+                if (blocks.imageOrNull(i) == null)
+                    continue;
+                Path png = dir.resolve("png");
+                ImageIO.write(
+                        (BufferedImage) blocks.imageOrNull(i), "png",
+                        png.toFile());
+                out.putNextEntry(new JarEntry(
+                        String.format("block/%03d_image.png", i)));
+                Files.copy(png, out);
+                Files.delete(png);
+            }
+            Files.delete(dir);
+            out.putNextEntry(new JarEntry("block/.DS_Store"));
+            out.putNextEntry(new JarEntry("block/README.txt"));
+            out.putNextEntry(new JarEntry("bad/"));
+            out.putNextEntry(new JarEntry("bad/000_bad.png"));
+            ((OutputStream) out).write(bad);
+        }
+        return jar;
+    }
+
+    @Test
+    public void warmStartReadsTheImagesOfTheColdOne() throws IOException {
+        Path cache = Files.createTempFile("xblast", ".cache");
+        Files.delete(cache);
+        try {
+            AssetLoader cold = new AssetLoader(cache);
+            Map<String, ImageCollection> first = cold.load(false, COLLECTIONS);
+            assertFalse(cold.wasWarm());
+            assertTrue(Files.size(cache) > 0);
+
+            AssetLoader warm = new AssetLoader(cache);
+            Map<String, ImageCollection> second = warm.load(true,
+                    COLLECTIONS);
+            assertTrue(warm.wasWarm());
+            assertTrue(warm.loadNanos() > 0);
+            for (String name : COLLECTIONS)
+                assertSameImages(first.get(name), second.get(name));
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
+    @Test
+    public void warmStartGivesAtlasesOfTheSameFormat() throws IOException {
+        Path cache = Files.createTempFile("xblast", ".cache");
+        Files.delete(cache);
+        try {
+            Map<String, ImageCollection> cold = new AssetLoader(cache)
+                    .load(true, COLLECTIONS);
+            AssetLoader loader = new AssetLoader(cache);
+            Map<String, ImageCollection> warm = loader.load(true,
+                    COLLECTIONS);
+            assertTrue(loader.wasWarm());
+            for (String name : COLLECTIONS) {
+                for (int i = 0; i < 1000; ++i) {
+                    BufferedImage c = (BufferedImage) cold.get(name)
+                            .imageOrNull(i);
+                    if (c == null)
+                        continue;
+                    BufferedImage w = (BufferedImage) warm.get(name)
+                            .imageOrNull(i);
+                    assertEquals(c.getTransparency(), w.getTransparency());
+                    assertEquals(c.getType(), w.getType());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
+    @Test
+    public void imagesAreReadFromAJar() throws IOException {
+        Path jar = jar(new byte[] { 1, 2, 3 });
+        Path cache = Files.createTempFile("xblast", ".cache");
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { jar.toUri().toURL() }, null)) {
+            Map<String, ImageCollection> fromJar = new AssetLoader(cache,
+                    classLoader).load(false, "block");
+            assertNotNull(fromJar.get("block").imageOrNull(0));
+            assertSameImages(new ImageCollection("block"),
+                    fromJar.get("block"));
+
+            // the cache of other files is not used
+            AssetLoader loader = new AssetLoader(cache);
+            loader.load(false, "block");
+            assertFalse(loader.wasWarm());
+
+            try {
+                new AssetLoader(null, classLoader).load(false, "bad");
+                fail();
+            } catch (UncheckedIOException e) {
+                assertTrue(e.getMessage().contains("bad"));
+            }
+        } finally {
+            Files.delete(jar);
+            Files.delete(cache);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+
+public class FramePipelineTest {
+
+    private static final Level LEVEL = Level.LevelWithPlayerAtFourEdges
+            .initialDefaultLevel();
+
+    private static List<byte[]> frames(int count) {
+        List<byte[]> frames = new ArrayList<>();
+        ch.epfl.xblast.server.GameState s = LEVEL.initialGameState();
+        for (int i = 0; i < count; ++i) {
+            byte[] f = new byte[DeltaProtocol.FRAME_SIZE];
+            GameStateSerializer.serializeFrame(LEVEL.boardPainter(), s, f);
+            frames.add(f);
+            s = s.next(Collections.emptyMap(), Collections.emptySet());
+        }
+        return frames;
+    }
+
+    @Test
+    public void onlyTheLastFrameIsDecoded() {
+        List<Runnable> paints = new ArrayList<>();
+        List<GameState> painted = new ArrayList<>();
+        FramePipeline p = new FramePipeline((s, id) -> painted.add(s),
+                paints::add);
+        List<byte[]> frames = frames(5);
+
+        for (int i = 0; i < 3; ++i)
+            assertTrue(p.offer(i, frames.get(i), PlayerID.PLAYER_1));
+        assertEquals(2, p.dropped());
+
+        assertTrue(p.decodeLatest());
+        assertFalse(p.decodeLatest());
+        assertEquals(1, paints.size());
+        // the frame 2 was compared with no prediction
+        assertEquals(0, p.predictor().comparedFrames());
+
+        p.offer(3, frames.get(3), PlayerID.PLAYER_1);
+        p.decodeLatest();
+        // a paint is already pending, it paints the last game state
+        assertEquals(1, paints.size());
+        assertEquals(1, p.coalesced());
+
+        paints.get(0).run();
+        assertEquals(1, painted.size());
+        assertEquals(1, p.painted());
+        assertEquals(4, p.received());
+    }
+
+    @Test
+    public void lateFrameIsIgnored() {
+        FramePipeline p = new FramePipeline((s, id) -> {
+        }, Runnable::run);
+        List<byte[]> frames = frames(3);
+
+        assertTrue(p.offer(1, frames.get(1), PlayerID.PLAYER_2));
+        assertFalse(p.offer(0, frames.get(0), PlayerID.PLAYER_2));
+        assertFalse(p.offer(1, frames.get(1), PlayerID.PLAYER_2));
+        assertEquals(2, p.late());
+        assertEquals(0, p.dropped());
+
+        assertTrue(p.decodeLatest());
+        assertEquals(PlayerID.PLAYER_2, p.predictor().playerId());
+        assertEquals(1, p.painted());
+    }
+
+    @Test
+    public void spectatorFrameIsShownWithoutPrediction() {
+        List<PlayerID> ids = new ArrayList<>();
+        FramePipeline p = new FramePipeline((s, id) -> ids.add(id),
+                Runnable::run);
+        List<byte[]> frames = frames(2);
+
+        p.offer(0, frames.get(0), PlayerID.PLAYER_1);
+        p.decodeLatest();
+        p.offer(1, frames.get(1), null);
+        assertTrue(p.decodeLatest());
+        assertNull(p.predictor());
+        assertEquals(Arrays.asList(PlayerID.PLAYER_1, null), ids);
+    }
+
+    @Test
+    public void actionIsPaintedAtOnce() {
+        List<Runnable> paints = new ArrayList<>();
+        FramePipeline p = new FramePipeline((s, id) -> {
+        }, paints::add);
+        p.onAction(PlayerAction.MOVE_E);
+        assertEquals(0, paints.size());
+
+        p.offer(0, frames(1).get(0), PlayerID.PLAYER_1);
+        p.decodeLatest();
+        paints.remove(0).run();
+        p.onAction(PlayerAction.MOVE_E);
+        assertEquals(1, paints.size());
+    }
+
+    @Test
+    public void decoderPaintsTheFramesReceived() throws InterruptedException {
+        CountDownLatch last = new CountDownLatch(1);
+        try (FramePipeline p = new FramePipeline((s, id) -> last.countDown(),
+                Runnable::run)) {
+            p.start();
+            List<byte[]> frames = frames(10);
+            for (int i = 0; i < frames.size(); ++i)
+                p.offer(i, frames.get(i), PlayerID.PLAYER_1);
+            assertTrue(last.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
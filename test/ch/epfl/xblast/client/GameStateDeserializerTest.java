@@ -0,0 +1,138 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.Board;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+import ch.epfl.xblast.server.Player;
+import ch.epfl.xblast.server.debug.GameStatePrinter;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+public class GameStateDeserializerTest {
+
+    private static final BoardPainter PAINTER = new BoardPainter(
+            Level.defaultPalet(), BlockImage.IRON_FLOOR_S);
+
+    private static void assertSameGameState(GameState expected,
+            GameState actual) {
+        for (int i = 0; i < Cell.COUNT; ++i) {
+            assertEquals(expected.blockImage(i), actual.blockImage(i));
+            assertEquals(expected.bombOrExplosionImage(i),
+                    actual.bombOrExplosionImage(i));
+        }
+        for (PlayerID id : PlayerID.values()) {
+            assertEquals(expected.lives(id), actual.lives(id));
+            assertEquals(expected.x(id), actual.x(id));
+            assertEquals(expected.y(id), actual.y(id));
+            assertEquals(expected.playerImage(id), actual.playerImage(id));
+        }
+        assertEquals(expected.remainingTime(), actual.remainingTime());
+    }
+
+    @Test
+    public void bufferAndFrameGiveTheGameStateOfTheServer() {
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        ch.epfl.xblast.server.GameState s = new ch.epfl.xblast.server.GameState(
+                Board.defaultBoard(), GameStatePrinter.players());
+        ByteBuffer buffer = ByteBuffer
+                .allocate(GameStateSerializer.MAX_SERIALIZED_SIZE);
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        GameState fromBuffer = new GameState();
+        GameState fromFrame = new GameState();
+
+        while (!s.isGameOver()) {
+            buffer.clear();
+            GameStateSerializer.serializeInto(PAINTER, s, buffer);
+            buffer.flip();
+            assertSame(fromBuffer, GameStateDeserializer
+                    .deserializeGameState(buffer, fromBuffer));
+            assertEquals(0, buffer.remaining());
+            GameStateSerializer.serializeFrame(PAINTER, s, frame);
+            GameStateDeserializer.deserializeFrame(frame, fromFrame);
+            assertSameGameState(fromFrame, fromBuffer);
+
+            for (Cell c : Cell.ROW_MAJOR_ORDER)
+                assertEquals(
+                        Byte.toUnsignedInt(PAINTER.byteForCell(s.board(), c)),
+                        fromBuffer.blockImage(c.rowMajorIndex()));
+            for (Player p : s.players()) {
+                assertEquals(p.lives(), fromBuffer.lives(p.id()));
+                assertEquals(p.position().x(), fromBuffer.x(p.id()));
+                assertEquals(p.position().y(), fromBuffer.y(p.id()));
+            }
+            assertEquals((int) Math.ceil(s.remainingTime() / 2d),
+                    fromBuffer.remainingTime());
+
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+    }
+
+    @Test
+    public void listIsDeserializedAsTheBuffer() {
+        ch.epfl.xblast.server.GameState s = Level.LevelWithPlayerAtFourEdges
+                .initialDefaultLevel().initialGameState();
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        GameStateSerializer.serializeFrame(PAINTER, s, frame);
+        assertSameGameState(GameStateDeserializer.deserializeFrame(frame),
+                GameStateDeserializer.deserializeGameState(
+                        GameStateSerializer.serialize(PAINTER, s)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedGameStateIsInvalid() {
+        ByteBuffer buffer = ByteBuffer
+                .allocate(GameStateSerializer.MAX_SERIALIZED_SIZE);
+        GameStateSerializer.serializeInto(PAINTER, Level.LevelWithPlayerAtFourEdges
+                .initialDefaultLevel().initialGameState(), buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        GameStateDeserializer.deserializeGameState(buffer, new GameState());
+    }
+
+    @Test
+    public void deserializingInTheSameGameStateAllocatesNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        // the allocations can only be measured by some virtual machines
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()
+                || !threads.isThreadAllocatedMemoryEnabled())
+            return;
+
+        ByteBuffer buffer = ByteBuffer
+                .allocate(GameStateSerializer.MAX_SERIALIZED_SIZE);
+        GameStateSerializer.serializeInto(PAINTER, Level.LevelWithPlayerAtFourEdges
+                .initialDefaultLevel().initialGameState(), buffer);
+        buffer.flip();
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        GameStateDeserializer.deserializeGameState(buffer.duplicate(),
+                GameStateDeserializer.deserializeFrame(frame));
+        GameState state = new GameState();
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; ++i) {
+            buffer.rewind();
+            GameStateDeserializer.deserializeGameState(buffer, state);
+            GameStateDeserializer.deserializeFrame(frame, state);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // the list of the previous version took kilobytes by game state
+        assertEquals(0, allocated / 10000);
+    }
+}
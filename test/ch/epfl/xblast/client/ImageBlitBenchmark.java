@@ -0,0 +1,63 @@
+package ch.epfl.xblast.client;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time taken to draw the images of the collections loaded as
+ * files and packed into atlases, into an image of the format of the screen.
+ */
+public final class ImageBlitBenchmark {
+
+    private static final String[] COLLECTIONS = { "block", "explosion",
+            "player", "score" };
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    public static void main(String[] args) {
+        BufferedImage screen = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(960, 688, BufferedImage.TYPE_INT_RGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDefaultConfiguration()
+                        .createCompatibleImage(960, 688, Transparency.OPAQUE);
+        Graphics2D g = screen.createGraphics();
+
+        for (String name : COLLECTIONS) {
+            Image[] files = images(new ImageCollection(name, false));
+            Image[] atlas = images(new ImageCollection(name, true));
+            for (int round = 0; round < 2; ++round) {
+                int n = round == 0 ? WARMUP : ITERATIONS;
+                long plain = blit(g, files, n);
+                long packed = blit(g, atlas, n);
+                if (round == 1)
+                    System.out.printf(
+                            "%s (%d images): files %.0f ns, atlas %.0f ns per image%n",
+                            name, files.length, (double) plain / n,
+                            (double) packed / n);
+            }
+        }
+        g.dispose();
+    }
+
+    // the indexes of the files have three digits
+    private static Image[] images(ImageCollection c) {
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i)
+            if (c.imageOrNull(i) != null)
+                images.add(c.imageOrNull(i));
+        return images.toArray(new Image[images.size()]);
+    }
+
+    private static long blit(Graphics2D g, Image[] images, int n) {
+        long start = System.nanoTime();
+        for (int i = 0; i < n; ++i)
+            g.drawImage(images[i % images.length], (i * 64) % 896,
+                    (i * 48) % 624, null);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,50 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class ImageCollectionTest {
+
+    private static final String[] COLLECTIONS = { "block", "explosion",
+            "player", "score" };
+
+    @Test
+    public void atlasImagesHaveThePixelsOfTheFiles() {
+        for (String name : COLLECTIONS) {
+            ImageCollection files = new ImageCollection(name);
+            ImageCollection atlas = new ImageCollection(name, true);
+            BufferedImage sharedAtlas = null;
+            for (int i = 0; i < 1000; ++i) {
+                BufferedImage f = (BufferedImage) files.imageOrNull(i);
+                BufferedImage a = (BufferedImage) atlas.imageOrNull(i);
+                if (f == null) {
+                    assertNull(a);
+                    continue;
+                }
+                assertEquals(f.getWidth(), a.getWidth());
+                assertEquals(f.getHeight(), a.getHeight());
+                for (int y = 0; y < f.getHeight(); ++y)
+                    for (int x = 0; x < f.getWidth(); ++x) {
+                        int expected = f.getRGB(x, y);
+                        int actual = a.getRGB(x, y);
+                        // the color of a transparent pixel does not matter
+                        if ((expected >>> 24) == 0)
+                            assertEquals(0, actual >>> 24);
+                        else
+                            assertEquals(expected, actual);
+                    }
+
+                // the images are views of the same atlas
+                if (sharedAtlas == null)
+                    sharedAtlas = a;
+                assertSame(sharedAtlas.getRaster().getDataBuffer(),
+                        a.getRaster().getDataBuffer());
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Canvas;
+import java.awt.Component;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.PlayerAction;
+
+public class KeyboardEventHandlerTest {
+
+    private static final Component SOURCE = new Canvas();
+
+    private static KeyEvent key(int id, int keyCode) {
+        return new KeyEvent(SOURCE, id, 0, 0, keyCode,
+                KeyEvent.CHAR_UNDEFINED);
+    }
+
+    @Test
+    public void heldKeySendsItsActionOnce() {
+        List<PlayerAction> sent = new ArrayList<>();
+        KeyboardEventHandler h = new KeyboardEventHandler(
+                KeyboardEventHandler.keyBindings(), sent::add);
+
+        h.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_UP));
+        h.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_UP));
+        h.keyReleased(key(KeyEvent.KEY_RELEASED, KeyEvent.VK_UP));
+        h.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_UP));
+        assertEquals(Arrays.asList(PlayerAction.MOVE_N, PlayerAction.MOVE_N),
+                sent);
+    }
+
+    @Test
+    public void keysAreReleasedWhenTheFocusIsLost() {
+        List<PlayerAction> sent = new ArrayList<>();
+        KeyboardEventHandler h = new KeyboardEventHandler(
+                KeyboardEventHandler.keyBindings(), sent::add);
+
+        h.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_SPACE));
+        // the key is released while another window has the focus
+        h.focusLost(new FocusEvent(SOURCE, FocusEvent.FOCUS_LOST));
+        h.focusGained(new FocusEvent(SOURCE, FocusEvent.FOCUS_GAINED));
+        h.keyPressed(key(KeyEvent.KEY_PRESSED, KeyEvent.VK_SPACE));
+        assertEquals(Arrays.asList(PlayerAction.DROP_BOMB,
+                PlayerAction.DROP_BOMB), sent);
+    }
+}
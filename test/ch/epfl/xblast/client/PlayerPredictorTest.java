@@ -0,0 +1,122 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.SubCell;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+
+public class PlayerPredictorTest {
+
+    private static final Level LEVEL = Level.LevelWithPlayerAtFourEdges
+            .initialDefaultLevel();
+
+    // the actions of the first player, by the number of the frame after
+    // which they are sent
+    private static final Map<Integer, PlayerAction> SCRIPT = new HashMap<>();
+    static {
+        SCRIPT.put(2, PlayerAction.MOVE_E);
+        SCRIPT.put(20, PlayerAction.MOVE_S);
+        SCRIPT.put(30, PlayerAction.STOP);
+        SCRIPT.put(45, PlayerAction.MOVE_N);
+        SCRIPT.put(46, PlayerAction.MOVE_W);
+        SCRIPT.put(70, PlayerAction.MOVE_E);
+        SCRIPT.put(75, PlayerAction.MOVE_W);
+        SCRIPT.put(90, PlayerAction.STOP);
+    }
+
+    private static byte[] frame(ch.epfl.xblast.server.GameState s) {
+        byte[] f = new byte[DeltaProtocol.FRAME_SIZE];
+        GameStateSerializer.serializeFrame(LEVEL.boardPainter(), s, f);
+        return f;
+    }
+
+    private static SubCell shown(GameState g, PlayerID id) {
+        return SubCell.of(g.x(id), g.y(id));
+    }
+
+    private static Optional<Direction> change(PlayerAction a) {
+        return a == PlayerAction.STOP ? Optional.empty()
+                : Optional.of(Direction.values()[a.ordinal()
+                        - PlayerAction.MOVE_N.ordinal()]);
+    }
+
+    @Test
+    public void predictionAgreesWithTheServer() {
+        PlayerPredictor p = new PlayerPredictor(PlayerID.PLAYER_1,
+                PlayerPredictor.DEFAULT_LEAD);
+        ch.epfl.xblast.server.GameState s = LEVEL.initialGameState();
+        SubCell start = s.alivePlayers().get(0).position();
+        boolean moved = false;
+
+        GameState shown = p.accept(0, frame(s));
+        for (int n = 0; n < 100; ++n) {
+            Map<PlayerID, Optional<Direction>> events = new HashMap<>();
+            PlayerAction a = SCRIPT.get(n);
+            if (a != null) {
+                shown = p.onAction(a);
+                events.put(PlayerID.PLAYER_1, change(a));
+            }
+            s = s.next(events, Collections.emptySet());
+            SubCell server = s.alivePlayers().get(0).position();
+            // the player shown is the one the server computes next
+            assertEquals(server, shown(shown, PlayerID.PLAYER_1));
+            moved |= !server.equals(start);
+
+            shown = p.accept(n + 1, frame(s));
+        }
+        assertTrue(moved);
+        assertEquals(100, p.comparedFrames());
+        assertEquals(0, p.mispredictions());
+        assertEquals(0, p.errorRate(), 0);
+    }
+
+    @Test
+    public void lostActionIsCorrected() {
+        PlayerPredictor p = new PlayerPredictor(PlayerID.PLAYER_1,
+                PlayerPredictor.DEFAULT_LEAD);
+        ch.epfl.xblast.server.GameState s = LEVEL.initialGameState();
+        SubCell start = s.alivePlayers().get(0).position();
+
+        p.accept(0, frame(s));
+        GameState predicted = p.onAction(PlayerAction.MOVE_E);
+        assertNotEquals(start, shown(predicted, PlayerID.PLAYER_1));
+
+        // the server never received the action
+        GameState shown = null;
+        for (int n = 1; n <= 10; ++n) {
+            s = s.next(Collections.emptyMap(), Collections.emptySet());
+            shown = p.accept(n, frame(s));
+        }
+        assertEquals(1, p.mispredictions());
+        assertEquals(10, p.comparedFrames());
+        assertEquals(start, shown(shown, PlayerID.PLAYER_1));
+    }
+
+    @Test
+    public void actionBeforeTheFirstFrameIsIgnored() {
+        PlayerPredictor p = new PlayerPredictor(PlayerID.PLAYER_2, 3);
+        assertNull(p.onAction(PlayerAction.MOVE_N));
+        assertNull(p.onAction(PlayerAction.DROP_BOMB));
+        assertEquals(PlayerID.PLAYER_2, p.playerId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLeadIsInvalid() {
+        new PlayerPredictor(PlayerID.PLAYER_1, -1);
+    }
+}
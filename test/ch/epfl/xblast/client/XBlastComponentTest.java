@@ -0,0 +1,86 @@
+package ch.epfl.xblast.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.Level;
+
+public class XBlastComponentTest {
+
+    private static final Level LEVEL = Level.LevelWithPlayerAtFourEdges
+            .initialDefaultLevel();
+    private static final Map<String, ImageCollection> IMAGES = XBlastComponent
+            .loadImages(new AssetLoader(null));
+
+    private static GameState clientState(ch.epfl.xblast.server.GameState s) {
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        GameStateSerializer.serializeFrame(LEVEL.boardPainter(), s, frame);
+        return GameStateDeserializer.deserializeFrame(frame);
+    }
+
+    private static BufferedImage paint(XBlastComponent c) {
+        BufferedImage image = new BufferedImage(
+                c.getPreferredSize().width, c.getPreferredSize().height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        c.paintComponent(g);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void onlyTheChangedCellsAreDrawnAgain() {
+        XBlastComponent c = new XBlastComponent(IMAGES);
+        ch.epfl.xblast.server.GameState s = LEVEL.initialGameState();
+        c.setGameState(clientState(s), PlayerID.PLAYER_1);
+        paint(c);
+        assertEquals(Cell.COUNT, c.redrawnCells());
+
+        c.setGameState(clientState(s), PlayerID.PLAYER_1);
+        paint(c);
+        assertEquals(0, c.redrawnCells());
+
+        // a bomb on the cell of the first player
+        s = s.next(Collections.emptyMap(),
+                Collections.singleton(PlayerID.PLAYER_1));
+        c.setGameState(clientState(s), PlayerID.PLAYER_1);
+        paint(c);
+        assertEquals(1, c.redrawnCells());
+    }
+
+    @Test
+    public void bufferedBoardIsTheBoardDrawnAtOnce() {
+        ch.epfl.xblast.server.GameState s = LEVEL.initialGameState();
+        XBlastComponent incremental = new XBlastComponent(IMAGES);
+        incremental.setGameState(clientState(s), PlayerID.PLAYER_1);
+        paint(incremental);
+
+        // bombs which explode, on several cells
+        for (int i = 0; i < 120; ++i) {
+            s = s.next(Collections.emptyMap(),
+                    i % 40 == 0 ? Collections.singleton(PlayerID.PLAYER_2)
+                            : Collections.emptySet());
+            incremental.setGameState(clientState(s), PlayerID.PLAYER_1);
+            BufferedImage image = paint(incremental);
+
+            XBlastComponent full = new XBlastComponent(IMAGES);
+            full.setGameState(clientState(s), PlayerID.PLAYER_1);
+            BufferedImage expected = paint(full);
+            assertTrue(incremental.redrawnCells() < Cell.COUNT);
+            for (int y = 0; y < image.getHeight(); y += 3)
+                for (int x = 0; x < image.getWidth(); x += 3)
+                    assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ch.epfl.xblast.relay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FrameRelayTest {
+
+    private static ByteBuffer frame(int i) {
+        return ByteBuffer.wrap(new byte[] { 0, (byte) i, (byte) (2 * i) });
+    }
+
+    @Test
+    public void framesWithoutDelayAreSentAtOnce() {
+        FrameRelay r = new FrameRelay(0, 8);
+        ByteBuffer out = ByteBuffer.allocate(8);
+        for (int i = 0; i < 5; ++i) {
+            ByteBuffer f = frame(i);
+            assertTrue(r.push(f, out));
+            assertEquals(0, f.position());
+            assertEquals(f, out);
+            assertEquals(0, r.pending());
+        }
+        assertFalse(r.poll(out));
+    }
+
+    @Test
+    public void framesAreDelayed() {
+        FrameRelay r = new FrameRelay(3, 8);
+        ByteBuffer out = ByteBuffer.allocate(8);
+        for (int i = 0; i < 3; ++i)
+            assertFalse(r.push(frame(i), out));
+        for (int i = 3; i < 10; ++i) {
+            assertTrue(r.push(frame(i), out));
+            assertEquals(frame(i - 3), out);
+            assertEquals(3, r.pending());
+        }
+
+        // once the game is over, the last frames are sent anyway
+        for (int i = 7; i < 10; ++i) {
+            assertTrue(r.poll(out));
+            assertEquals(frame(i), out);
+        }
+        assertFalse(r.poll(out));
+        assertEquals(10, r.received());
+    }
+
+    @Test
+    public void spectatorsAreAddedOnce() {
+        FrameRelay r = new FrameRelay(0, 8);
+        InetSocketAddress a = new InetSocketAddress("127.0.0.1", 3000);
+        InetSocketAddress b = new InetSocketAddress("127.0.0.1", 3001);
+        assertTrue(r.addSpectator(a));
+        assertTrue(r.addSpectator(b));
+        assertFalse(r.addSpectator(new InetSocketAddress("127.0.0.1", 3000)));
+        assertEquals(Arrays.asList(a, b), Arrays.asList(r.spectators()
+                .toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLargeFrameIsInvalid() {
+        new FrameRelay(2, 2).push(frame(1), ByteBuffer.allocate(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDelayIsInvalid() {
+        new FrameRelay(-1, 8);
+    }
+}
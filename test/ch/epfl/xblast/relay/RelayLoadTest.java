@@ -0,0 +1,197 @@
+package ch.epfl.xblast.relay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.RelayProtocol;
+import ch.epfl.xblast.server.GameStateSerializer;
+import ch.epfl.xblast.server.SpectatorRelays;
+
+/**
+ * Runs a relay in its own process between a server and a growing number of
+ * spectators, and checks that the server still sends one packet per frame and
+ * never receives anything from the spectators. The server handles the relay
+ * as the server of the game does, with {@link SpectatorRelays}.
+ */
+public class RelayLoadTest {
+
+    private static final int FRAMES = 40;
+    private static final int[] SPECTATORS = { 1, 16, 64 };
+    private static final long TIMEOUT_MS = 10_000;
+
+    private static DatagramChannel open() throws IOException {
+        DatagramChannel c = DatagramChannel.open(StandardProtocolFamily.INET);
+        c.bind(new InetSocketAddress("127.0.0.1", 0));
+        c.configureBlocking(false);
+        return c;
+    }
+
+    private static void send(DatagramChannel c, InetSocketAddress to, byte b)
+            throws IOException {
+        c.send(ByteBuffer.wrap(new byte[] { b }), to);
+    }
+
+    @Test
+    public void serverCostIsFlatAsSpectatorsGrow() throws Exception {
+        int relayPort;
+        try (DatagramChannel probe = open()) {
+            relayPort = ((InetSocketAddress) probe.getLocalAddress())
+                    .getPort();
+        }
+        InetSocketAddress relayAddress = new InetSocketAddress("127.0.0.1",
+                relayPort);
+        File log = File.createTempFile("relay", ".log");
+        log.deleteOnExit();
+
+        SpectatorRelays relays = new SpectatorRelays(4);
+        try (DatagramChannel server = open()) {
+            int serverPort = ((InetSocketAddress) server.getLocalAddress())
+                    .getPort();
+            Process relay = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java")
+                            .getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Main.class.getName(), "127.0.0.1:" + serverPort, "0",
+                    Integer.toString(relayPort)).redirectErrorStream(true)
+                            .redirectOutput(log).start();
+            try {
+                ByteBuffer in = ByteBuffer.allocate(64);
+                InetSocketAddress from = null;
+                long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+                while (from == null && System.currentTimeMillis() < deadline) {
+                    from = (InetSocketAddress) server.receive(in);
+                    Thread.sleep(1);
+                }
+                assertTrue("relay did not subscribe", from != null);
+                in.flip();
+                assertTrue(RelayProtocol.isSubscribe(in));
+                assertTrue(relays.subscribe(from,
+                        Collections.<SocketAddress> emptySet()));
+
+                ByteBuffer frame = ByteBuffer
+                        .allocateDirect(1 + GameStateSerializer.MAX_SERIALIZED_SIZE);
+                int sequence = 0;
+                List<DatagramChannel> spectators = new ArrayList<>();
+                try {
+                    for (int count : SPECTATORS) {
+                        while (spectators.size() < count) {
+                            DatagramChannel s = open();
+                            spectators.add(s);
+                            send(s, relayAddress,
+                                    (byte) PlayerAction.JOIN_GAME.ordinal());
+                        }
+
+                        // frames until every spectator receives one
+                        boolean[] joined = new boolean[count];
+                        int missing = count;
+                        deadline = System.currentTimeMillis() + TIMEOUT_MS;
+                        while (missing > 0) {
+                            assertTrue("spectators did not join",
+                                    System.currentTimeMillis() < deadline);
+                            sendFrame(server, relays, frame, sequence++);
+                            Thread.sleep(5);
+                            for (int i = 0; i < count; ++i) {
+                                if (!joined[i] && drain(spectators.get(i),
+                                        0) > 0) {
+                                    joined[i] = true;
+                                    missing--;
+                                }
+                            }
+                        }
+                        for (DatagramChannel s : spectators)
+                            drain(s, 0);
+
+                        // the spectators play, which must not reach the server
+                        long sendNanos = 0;
+                        int sent = 0;
+                        int first = sequence;
+                        for (int f = 0; f < FRAMES; ++f) {
+                            for (DatagramChannel s : spectators)
+                                send(s, relayAddress,
+                                        (byte) PlayerAction.MOVE_E.ordinal());
+                            long start = System.nanoTime();
+                            sent += sendFrame(server, relays, frame,
+                                    sequence++);
+                            sendNanos += System.nanoTime() - start;
+                            Thread.sleep(2);
+                        }
+                        Thread.sleep(200);
+
+                        long received = 0;
+                        for (DatagramChannel s : spectators) {
+                            int r = drain(s, first);
+                            assertTrue(r > 0);
+                            received += r;
+                        }
+                        // the server only hears the subscriptions of the relay
+                        in.clear();
+                        InetSocketAddress sender;
+                        while ((sender = (InetSocketAddress) server
+                                .receive(in)) != null) {
+                            in.flip();
+                            assertTrue(relays.isRelay(sender));
+                            assertTrue(RelayProtocol.isSubscribe(in));
+                            in.clear();
+                        }
+                        System.out.printf(
+                                "%d spectators: server sent %d packets in "
+                                        + "%d us, spectators received %d%n",
+                                count, sent, sendNanos / 1000, received);
+                        // one packet per frame, whatever the spectators
+                        assertEquals(FRAMES, sent);
+                        assertEquals(1, relays.relays().size());
+                    }
+                } finally {
+                    for (DatagramChannel s : spectators)
+                        s.close();
+                }
+            } finally {
+                relay.destroy();
+                relay.waitFor();
+            }
+        }
+    }
+
+    /**
+     * @return the number of packets sent by the server
+     */
+    private static int sendFrame(DatagramChannel server,
+            SpectatorRelays relays, ByteBuffer frame, int sequence)
+            throws IOException {
+        frame.clear();
+        frame.put((byte) 0).putInt(sequence);
+        frame.position(frame.limit()).flip();
+        return relays.send(server, frame);
+    }
+
+    /**
+     * @return the number of frames received with a sequence number at least
+     *         the given one
+     */
+    private static int drain(DatagramChannel spectator, int first)
+            throws IOException {
+        ByteBuffer b = ByteBuffer
+                .allocate(1 + GameStateSerializer.MAX_SERIALIZED_SIZE);
+        int count = 0;
+        while (spectator.receive(b) != null) {
+            if (b.getInt(1) >= first)
+                count++;
+            b.clear();
+        }
+        return count;
+    }
+}
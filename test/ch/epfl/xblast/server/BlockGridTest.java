@@ -0,0 +1,95 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ch.epfl.cs108.Sq;
+
+public class BlockGridTest {
+
+    private static void assertSameSequence(Sq<Block> expected,
+            Sq<Block> given) {
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(expected.isEmpty(), given.isEmpty());
+            if (expected.isEmpty())
+                return;
+            assertEquals(expected.head(), given.head());
+            expected = expected.tail();
+            given = given.tail();
+        }
+    }
+
+    @Test
+    public void constantCellStaysTheSame() {
+        BlockGrid g0 = new BlockGrid();
+        BlockGrid g1 = new BlockGrid();
+        g0.set(3, Block.DESTRUCTIBLE_WALL);
+        g1.setTailOf(g0, 3);
+
+        assertEquals(Block.DESTRUCTIBLE_WALL, g1.block(3));
+        assertEquals(0, g1.countdown(3));
+        assertSameSequence(Sq.constant(Block.DESTRUCTIBLE_WALL), g1.blocks(3));
+    }
+
+    @Test
+    public void timedCellBehavesLikeItsSequence() {
+        BlockGrid g = new BlockGrid();
+        g.setTimed(0, Block.CRUMBLING_WALL, Ticks.WALL_CRUMBLING_TICKS,
+                Block.BONUS_BOMB);
+        Sq<Block> expected = Sq.constant(Block.CRUMBLING_WALL)
+                .limit(Ticks.WALL_CRUMBLING_TICKS)
+                .concat(Sq.constant(Block.BONUS_BOMB));
+
+        for (int i = 0; i < 2 * Ticks.WALL_CRUMBLING_TICKS; ++i) {
+            assertEquals(expected.head(), g.block(0));
+            assertSameSequence(expected, g.blocks(0));
+            BlockGrid g1 = new BlockGrid();
+            g1.setTailOf(g, 0);
+            g = g1;
+            expected = expected.tail();
+        }
+    }
+
+    @Test
+    public void blastedBonusDisappearsAfterItsTicks() {
+        BlockGrid g0 = new BlockGrid();
+        BlockGrid g1 = new BlockGrid();
+        g0.set(0, Block.BONUS_RANGE);
+        g1.setDisappearingBonusOf(g0, 0);
+
+        assertSameSequence(Sq.repeat(Ticks.BONUS_DISAPPEARING_TICKS,
+                Block.BONUS_RANGE).concat(Sq.constant(Block.FREE)),
+                g1.blocks(0));
+
+        // a second blast does not extend the life of the bonus
+        BlockGrid g2 = new BlockGrid();
+        g2.setDisappearingBonusOf(g1, 0);
+        assertEquals(Ticks.BONUS_DISAPPEARING_TICKS - 1, g2.countdown(0));
+    }
+
+    @Test
+    public void sequencesAreKeptAsGiven() {
+        BlockGrid g0 = new BlockGrid();
+        g0.setSequence(0, Sq.repeat(1, Block.FREE)
+                .concat(Sq.repeat(1, Block.BONUS_LIFE)));
+        BlockGrid g1 = new BlockGrid();
+        g1.setTailOf(g0, 0);
+
+        assertEquals(Block.BONUS_LIFE, g1.block(0));
+        assertTrue(g1.blocks(0).tail().isEmpty());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        BlockGrid g0 = new BlockGrid();
+        g0.setTimed(5, Block.BONUS_STATE, 4, Block.FREE);
+        BlockGrid g1 = new BlockGrid();
+        g1.copyFrom(g0);
+        g0.set(5, Block.INDESTRUCTIBLE_WALL);
+
+        assertEquals(Block.BONUS_STATE, g1.block(5));
+        assertEquals(4, g1.countdown(5));
+    }
+}
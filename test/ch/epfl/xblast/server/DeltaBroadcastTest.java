@@ -0,0 +1,178 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.DeltaProtocol;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.client.GameStateDeserializer;
+import ch.epfl.xblast.client.GameStateReconstructor;
+import ch.epfl.xblast.server.debug.GameStatePrinter;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+public class DeltaBroadcastTest {
+
+    private static final BoardPainter PAINTER = new BoardPainter(
+            Level.defaultPalet(), BlockImage.IRON_FLOOR_S);
+
+    private static void assertSameGameState(
+            ch.epfl.xblast.client.GameState expected,
+            ch.epfl.xblast.client.GameState actual) {
+        for (int i = 0; i < Cell.COUNT; ++i) {
+            assertEquals(expected.blockImage(i), actual.blockImage(i));
+            assertEquals(expected.bombOrExplosionImage(i),
+                    actual.bombOrExplosionImage(i));
+        }
+        assertEquals(expected.remainingTime(), actual.remainingTime());
+        for (PlayerID id : PlayerID.values()) {
+            assertEquals(expected.lives(id), actual.lives(id));
+            assertEquals(expected.x(id), actual.x(id));
+            assertEquals(expected.y(id), actual.y(id));
+        }
+    }
+
+    /**
+     * Plays a game, losing some packets and acknowledgements, and checks that
+     * the client rebuilds every frame it accepts
+     *
+     * @return the total size of the packets sent
+     */
+    private static long playLossyGame(int packetLoss, int ackLoss) {
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        GameState s = new GameState(Board.defaultBoard(),
+                GameStatePrinter.players());
+        DeltaBroadcast broadcast = new DeltaBroadcast(
+                DeltaBroadcast.DEFAULT_KEYFRAME_INTERVAL);
+        DeltaBroadcast.Receiver receiver = broadcast.new Receiver();
+        GameStateReconstructor client = new GameStateReconstructor();
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer packet = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+        long size = 0;
+
+        for (int tick = 0; !s.isGameOver(); ++tick) {
+            GameStateSerializer.serializeFrame(PAINTER, s, frame);
+            broadcast.addFrame(frame);
+            packet.clear();
+            receiver.writePacket((byte) PlayerID.PLAYER_2.ordinal(), packet);
+            packet.flip();
+            size += packet.remaining();
+
+            if (packetLoss == 0 || tick % packetLoss != 0) {
+                if (client.accept(packet)) {
+                    assertEquals(broadcast.frameNumber(),
+                            client.lastFrameNumber());
+                    assertEquals(PlayerID.PLAYER_2, client.playerId());
+                    assertSameGameState(
+                            GameStateDeserializer.deserializeFrame(frame),
+                            client.gameState());
+                    if (ackLoss == 0 || tick % ackLoss != 0)
+                        receiver.acknowledge(client.lastFrameNumber());
+                } else if (client.isKeyframeNeeded())
+                    receiver.requestKeyframe();
+            }
+
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+        return size;
+    }
+
+    @Test
+    public void clientRebuildsTheFrames() {
+        playLossyGame(0, 0);
+    }
+
+    @Test
+    public void clientRebuildsTheFramesDespiteLosses() {
+        playLossyGame(7, 3);
+    }
+
+    @Test
+    public void deltasAreMuchSmallerThanTheStates() {
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        GameState s = new GameState(Board.defaultBoard(),
+                GameStatePrinter.players());
+        long fullSize = 0;
+        while (!s.isGameOver()) {
+            fullSize += 1 + GameStateSerializer.serialize(PAINTER, s).size();
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+        long deltaSize = playLossyGame(0, 0);
+        assertTrue(deltaSize * 10 < fullSize);
+    }
+
+    @Test
+    public void acknowledgementOfAFutureFrameIsForgotten() {
+        DeltaBroadcast broadcast = new DeltaBroadcast(100);
+        DeltaBroadcast.Receiver receiver = broadcast.new Receiver();
+        GameStateReconstructor client = new GameStateReconstructor();
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer packet = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        packet.flip();
+        assertTrue(client.accept(packet));
+        // a bogus acknowledgement, far after the last frame
+        receiver.acknowledge(1_000_000);
+
+        frame[DeltaProtocol.TIME_OFFSET] = 1;
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        assertEquals(DeltaProtocol.KEYFRAME, packet.get(1));
+        receiver.acknowledge(1);
+
+        // the client receives deltas again
+        frame[DeltaProtocol.TIME_OFFSET] = 2;
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        assertEquals(1, packet.get(1));
+    }
+
+    @Test
+    public void unknownBaseRequiresAKeyframe() {
+        DeltaBroadcast broadcast = new DeltaBroadcast(100);
+        DeltaBroadcast.Receiver receiver = broadcast.new Receiver();
+        GameStateReconstructor client = new GameStateReconstructor();
+        byte[] frame = new byte[DeltaProtocol.FRAME_SIZE];
+        ByteBuffer packet = ByteBuffer.allocate(DeltaProtocol.MAX_PACKET_SIZE);
+
+        // the keyframe 0 is lost, but acknowledged by a faulty client
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        receiver.acknowledge(0);
+
+        frame[DeltaProtocol.TIME_OFFSET] = 1;
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        packet.flip();
+        // a delta based on the frame 0
+        assertEquals(1, packet.get(1));
+        assertFalse(client.accept(packet));
+        assertTrue(client.isKeyframeNeeded());
+
+        receiver.requestKeyframe();
+        frame[DeltaProtocol.TIME_OFFSET] = 2;
+        broadcast.addFrame(frame);
+        packet.clear();
+        receiver.writePacket((byte) 0, packet);
+        packet.flip();
+        assertEquals(DeltaProtocol.KEYFRAME, packet.get(1));
+        assertTrue(client.accept(packet));
+        assertEquals(2, client.lastFrameNumber());
+    }
+}
@@ -0,0 +1,78 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.CellSet;
+import ch.epfl.xblast.PlayerID;
+
+public class ExplosionsTest {
+
+    private static BlockGrid gridWithWalls() {
+        BlockGrid grid = new BlockGrid();
+        grid.set(new Cell(7, 3).rowMajorIndex(), Block.DESTRUCTIBLE_WALL);
+        grid.set(new Cell(9, 6).rowMajorIndex(), Block.INDESTRUCTIBLE_WALL);
+        grid.set(new Cell(4, 6).rowMajorIndex(), Block.BONUS_BOMB);
+        return grid;
+    }
+
+    @Test
+    public void recordsEvolveLikeTheSequences() {
+        BlockGrid grid = gridWithWalls();
+        Bomb bomb = new Bomb(PlayerID.PLAYER_1, new Cell(7, 6), 1, 5);
+
+        Explosions records = new Explosions();
+        records.addExplosionOf(bomb);
+        Explosions sequences = Explosions.of(bomb.explosion(),
+                Collections.emptyList());
+
+        for (int tick = 0; tick < 2 * Ticks.EXPLOSION_TICKS; ++tick) {
+            CellSet expected = new CellSet();
+            sequences.addBlastedCellsTo(expected);
+            CellSet given = new CellSet();
+            records.addBlastedCellsTo(given);
+            assertEquals(expected.toSet(), given.toSet());
+            assertEquals(sequences.armSequences().size(),
+                    records.armSequences().size());
+            assertEquals(sequences.blastSequences().size(),
+                    records.blastSequences().size());
+
+            Explosions records1 = new Explosions();
+            records.nextInto(grid, records1);
+            records = records1;
+            Explosions sequences1 = new Explosions();
+            sequences.nextInto(grid, sequences1);
+            sequences = sequences1;
+        }
+        assertEquals(0, records.armSequences().size());
+        assertEquals(0, records.blastSequences().size());
+    }
+
+    @Test
+    public void blastsStopOnWalls() {
+        Explosions e = new Explosions();
+        e.addExplosionOf(new Bomb(PlayerID.PLAYER_1, new Cell(7, 6), 1, 9));
+        BlockGrid grid = gridWithWalls();
+
+        for (int tick = 0; tick < 9; ++tick) {
+            Explosions e1 = new Explosions();
+            e.nextInto(grid, e1);
+            e = e1;
+        }
+        CellSet blasted = new CellSet();
+        e.addBlastedCellsTo(blasted);
+
+        assertTrue(blasted.contains(new Cell(7, 3)));
+        assertFalse(blasted.contains(new Cell(7, 2)));
+        assertTrue(blasted.contains(new Cell(9, 6)));
+        assertFalse(blasted.contains(new Cell(10, 6)));
+        assertTrue(blasted.contains(new Cell(4, 6)));
+        assertFalse(blasted.contains(new Cell(3, 6)));
+    }
+}
@@ -2,6 +2,8 @@ package ch.epfl.xblast.server;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -10,8 +12,10 @@ import org.junit.Test;
 
 import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.RunLengthEncoder;
 import ch.epfl.xblast.client.GameStateDeserializer;
 import ch.epfl.xblast.server.debug.GameStatePrinter;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
 import ch.epfl.xblast.server.painter.BlockImage;
 import ch.epfl.xblast.server.painter.BoardPainter;
 
@@ -59,4 +63,64 @@ public class GameStateSerializerTests {
         System.out.println(
                 GameStateDeserializer.deserializeGameState(gameSerialized));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void serializeIntoWritesTheSerializedBytesAtThePosition() {
+        BoardPainter bp = new BoardPainter(Level.defaultPalet(),
+                BlockImage.IRON_FLOOR_S);
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        GameState s = new GameState(Board.defaultBoard(),
+                GameStatePrinter.players());
+        ByteBuffer buffer = ByteBuffer
+                .allocateDirect(3 + GameStateSerializer.MAX_SERIALIZED_SIZE);
+
+        while (!s.isGameOver()) {
+            List<Byte> serialized = GameStateSerializer.serialize(bp, s);
+
+            buffer.clear();
+            buffer.put((byte) 42).put((byte) 43).put((byte) 44);
+            GameStateSerializer.serializeInto(bp, s, buffer);
+            buffer.flip();
+            assertEquals(42, buffer.get(0));
+            assertEquals(3 + serialized.size(), buffer.limit());
+            for (int i = 0; i < serialized.size(); ++i)
+                assertEquals((byte) serialized.get(i), buffer.get(3 + i));
+
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+    }
+
+    @Test
+    public void sectionsAreRunLengthEncodedAndPrefixedByTheirLength() {
+        BoardPainter bp = new BoardPainter(Level.defaultPalet(),
+                BlockImage.IRON_FLOOR_S);
+        RandomEventGenerator events = new RandomEventGenerator(7, 30, 50);
+        GameState s = new GameState(Board.defaultBoard(),
+                GameStatePrinter.players());
+
+        for (int tick = 0; tick < 500 && !s.isGameOver(); ++tick) {
+            List<Byte> serialized = GameStateSerializer.serialize(bp, s);
+
+            List<Byte> board = new ArrayList<>();
+            for (Cell c : Cell.SPIRAL_ORDER)
+                board.add(bp.byteForCell(s.board(), c));
+            List<Byte> encodedBoard = RunLengthEncoder.encode(board);
+            int boardLength = serialized.get(0);
+            assertEquals(encodedBoard.size(), boardLength);
+            assertEquals(encodedBoard, serialized.subList(1, 1 + boardLength));
+
+            int explosionsLength = serialized.get(1 + boardLength);
+            List<Byte> explosions = serialized.subList(2 + boardLength,
+                    2 + boardLength + explosionsLength);
+            assertEquals(Cell.COUNT, RunLengthEncoder.decode(explosions).size());
+            assertEquals(explosions, RunLengthEncoder
+                    .encode(RunLengthEncoder.decode(explosions)));
+            assertEquals(2 + boardLength + explosionsLength + 4 * 4 + 1,
+                    serialized.size());
+
+            s = s.next(events.randomSpeedChangeEvents(),
+                    events.randomBombDropEvents());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void durationsAreCountedInTheirBucket() {
+        Histogram h = new Histogram();
+        h.record(500);
+        h.record(-3);
+        h.record(1_500);
+        h.record(3_000);
+        h.record(3_999);
+
+        assertEquals(2, h.count(0));
+        assertEquals(1, h.count(1));
+        assertEquals(2, h.count(2));
+        assertEquals(5, h.count());
+        assertEquals(3_999, h.maxNanos());
+        assertEquals((500 + 1_500 + 3_000 + 3_999) / 5, h.averageNanos());
+    }
+
+    @Test
+    public void percentileGivesTheUpperBoundOfItsBucket() {
+        Histogram h = new Histogram();
+        for (int i = 0; i < 99; ++i)
+            h.record(100);
+        h.record(1_000_000);
+
+        assertEquals(1_000, h.percentileNanos(0.5));
+        assertEquals(1_000, h.percentileNanos(0.99));
+        assertEquals(1_000_000, h.percentileNanos(1));
+    }
+
+    @Test
+    public void emptyHistogramGivesZero() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.averageNanos());
+        assertEquals(0, h.percentileNanos(0.99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileThrowsExceptionOnInvalidFraction() {
+        new Histogram().percentileNanos(1.5);
+    }
+}
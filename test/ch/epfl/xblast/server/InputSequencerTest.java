@@ -0,0 +1,117 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.InputProtocol;
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.client.InputSender;
+
+public class InputSequencerTest {
+
+    private static ByteBuffer record(InputSender sender, PlayerAction a) {
+        ByteBuffer b = ByteBuffer.allocate(InputProtocol.MAX_PACKET_SIZE);
+        sender.record(a, b);
+        b.flip();
+        return b;
+    }
+
+    private static List<PlayerAction> actions(List<Integer> bytes) {
+        List<PlayerAction> actions = new ArrayList<>();
+        for (int b : bytes)
+            actions.add(PlayerAction.values()[b]);
+        return actions;
+    }
+
+    @Test
+    public void eachActionIsAppliedOnceDespiteDuplicates() {
+        InputSender sender = new InputSender();
+        InputSequencer sequencer = new InputSequencer();
+        List<Integer> applied = new ArrayList<>();
+
+        ByteBuffer p1 = record(sender, PlayerAction.MOVE_N);
+        assertEquals(1, sequencer.accept(p1, applied::add));
+        assertEquals(0, sequencer.accept(p1, applied::add));
+        ByteBuffer p2 = record(sender, PlayerAction.DROP_BOMB);
+        assertEquals(1, sequencer.accept(p2, applied::add));
+        assertEquals(0, sequencer.accept(p2, applied::add));
+
+        assertEquals(Arrays.asList(PlayerAction.MOVE_N, PlayerAction.DROP_BOMB),
+                actions(applied));
+        assertEquals(1, sequencer.lastApplied());
+    }
+
+    @Test
+    public void lostActionsArriveWithTheNextPacket() {
+        InputSender sender = new InputSender();
+        InputSequencer sequencer = new InputSequencer();
+        List<Integer> applied = new ArrayList<>();
+
+        // the packets of the first actions are lost
+        record(sender, PlayerAction.MOVE_E);
+        record(sender, PlayerAction.DROP_BOMB);
+        record(sender, PlayerAction.STOP);
+        sequencer.accept(record(sender, PlayerAction.MOVE_S), applied::add);
+
+        assertEquals(Arrays.asList(PlayerAction.MOVE_E, PlayerAction.DROP_BOMB,
+                PlayerAction.STOP, PlayerAction.MOVE_S), actions(applied));
+    }
+
+    @Test
+    public void lateOlderPacketIsIgnored() {
+        InputSender sender = new InputSender();
+        InputSequencer sequencer = new InputSequencer();
+        List<Integer> applied = new ArrayList<>();
+
+        ByteBuffer old = record(sender, PlayerAction.MOVE_W);
+        sequencer.accept(record(sender, PlayerAction.DROP_BOMB), applied::add);
+        assertEquals(0, sequencer.accept(old, applied::add));
+        assertEquals(Arrays.asList(PlayerAction.MOVE_W, PlayerAction.DROP_BOMB),
+                actions(applied));
+    }
+
+    @Test
+    public void lastActionIsSentAgainWithTheNextFrames() {
+        InputSender sender = new InputSender();
+        InputSequencer sequencer = new InputSequencer();
+        List<Integer> applied = new ArrayList<>();
+        ByteBuffer b = ByteBuffer.allocate(InputProtocol.MAX_PACKET_SIZE);
+
+        assertEquals(false, sender.writeResend(b));
+        // the packet of the action is lost
+        record(sender, PlayerAction.DROP_BOMB);
+        sender.frameReceived(12);
+
+        int resends = 0;
+        while (sender.writeResend(b)) {
+            b.flip();
+            sequencer.accept(b, applied::add);
+            b.clear();
+            resends++;
+        }
+        assertEquals(InputProtocol.REDUNDANCY, resends);
+        assertEquals(Arrays.asList(PlayerAction.DROP_BOMB), actions(applied));
+        assertEquals(12, sequencer.lastFrame());
+    }
+
+    @Test
+    public void packetKeepsTheLastActionsOnly() {
+        InputSender sender = new InputSender();
+        ByteBuffer last = null;
+        for (int i = 0; i < 3 * InputProtocol.REDUNDANCY; ++i)
+            last = record(sender, PlayerAction.values()[1 + i % 6]);
+        assertEquals(InputProtocol.MAX_PACKET_SIZE, last.remaining());
+
+        InputSequencer sequencer = new InputSequencer();
+        assertEquals(InputProtocol.REDUNDANCY,
+                sequencer.accept(last, a -> {
+                }));
+        assertEquals(3 * InputProtocol.REDUNDANCY - 1, sequencer.lastApplied());
+    }
+}
@@ -0,0 +1,156 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.PlayerAction;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+public class MatchHostTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private static DatagramChannel client() throws IOException {
+        DatagramChannel c = DatagramChannel.open();
+        c.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        c.configureBlocking(false);
+        return c;
+    }
+
+    private static MatchHost host(int playersPerMatch) throws IOException {
+        MatchHost host = new MatchHost(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                playersPerMatch,
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel(), 2,
+                Ticks.TICK_NANOSECOND_DURATION);
+        host.start();
+        return host;
+    }
+
+    private static void send(DatagramChannel c, PlayerAction a,
+            SocketAddress to) throws IOException {
+        c.send(ByteBuffer.wrap(new byte[] { (byte) a.ordinal() }), to);
+    }
+
+    /**
+     * @return the first byte of the first packet received, or -1 if none
+     *         arrives before the timeout
+     */
+    private static int receivePlayerId(DatagramChannel c)
+            throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (c.receive(buffer) != null)
+                return buffer.get(0);
+            Thread.sleep(5);
+        }
+        return -1;
+    }
+
+    @Test
+    public void clientsAreDistributedInMatches() throws Exception {
+        int nbClients = 24;
+        try (MatchHost host = host(2)) {
+            SocketAddress address = host.localAddress();
+            List<DatagramChannel> clients = new ArrayList<>();
+            for (int i = 0; i < nbClients; ++i) {
+                DatagramChannel c = client();
+                clients.add(c);
+                send(c, PlayerAction.JOIN_GAME, address);
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (DatagramChannel c : clients) {
+                int id = receivePlayerId(c);
+                assertTrue(id == 0 || id == 1);
+                ids.add(id);
+            }
+            assertEquals(2, ids.size());
+            assertEquals(nbClients / 2, host.matches().size());
+
+            // the matches are ticked and the actions of the clients accepted
+            for (DatagramChannel c : clients)
+                send(c, PlayerAction.MOVE_S, address);
+            Thread.sleep(200);
+            for (Match m : host.matches()) {
+                assertTrue(m.ticks() > 0);
+                assertEquals(2, m.seats().size());
+                assertTrue(m.overruns() <= m.ticks());
+            }
+
+            for (DatagramChannel c : clients)
+                c.close();
+        }
+    }
+
+    @Test
+    public void onlyJoinRequestsStartAMatch() throws Exception {
+        try (MatchHost host = host(1)) {
+            SocketAddress address = host.localAddress();
+            DatagramChannel c = client();
+            send(c, PlayerAction.DROP_BOMB, address);
+            Thread.sleep(100);
+            assertEquals(0, host.matches().size());
+
+            send(c, PlayerAction.JOIN_GAME, address);
+            assertEquals(0, receivePlayerId(c));
+            assertEquals(1, host.matches().size());
+            c.close();
+        }
+    }
+
+    @Test
+    public void failingMatchEndsWithoutStoppingTheOthers() throws Exception {
+        // a painter without palette cannot serialize the board
+        Level broken = new Level(
+                new BoardPainter(Collections.emptyMap(),
+                        BlockImage.IRON_FLOOR_S),
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel()
+                        .initialGameState());
+        List<Match> ended = new CopyOnWriteArrayList<>();
+        try (MatchHost host = new MatchHost(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1,
+                broken, 1, Ticks.TICK_NANOSECOND_DURATION)) {
+            host.onMatchEnd(ended::add);
+            host.start();
+            SocketAddress address = host.localAddress();
+            DatagramChannel c = client();
+
+            // the shard and the receiving thread go on after each failure
+            for (int i = 1; i <= 2; ++i) {
+                send(c, PlayerAction.JOIN_GAME, address);
+                long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+                while (ended.size() < i
+                        && System.currentTimeMillis() < deadline)
+                    Thread.sleep(5);
+                assertEquals(i, ended.size());
+                assertEquals(0, host.matches().size());
+            }
+            c.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyPlayersPerMatchAreRejected() {
+        new MatchHost(new InetSocketAddress(0), 5,
+                Level.LevelWithPlayerAtFourEdges.initialDefaultLevel(), 1,
+                Ticks.TICK_NANOSECOND_DURATION);
+    }
+}
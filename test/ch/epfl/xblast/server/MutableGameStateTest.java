@@ -0,0 +1,134 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+public class MutableGameStateTest {
+
+    private static final BoardPainter PAINTER = new BoardPainter(
+            Level.defaultPalet(), BlockImage.IRON_FLOOR_S);
+
+    // A board without destructible walls, so that both games draw the same
+    // blocks, but with bonuses to consume and to blast.
+    private static Board createBoard() {
+        Block __ = Block.FREE;
+        Block XX = Block.INDESTRUCTIBLE_WALL;
+        Block bb = Block.BONUS_BOMB;
+        Block rr = Block.BONUS_RANGE;
+        Block ll = Block.BONUS_LIFE;
+        Block ss = Block.BONUS_STATE;
+        Block cc = Block.BONUS_REMOTE;
+        return Board.ofQuadrantNWBlocksWalled(Arrays.asList(
+                Arrays.asList(__, __, bb, __, rr, __, __),
+                Arrays.asList(__, XX, __, XX, __, XX, ll),
+                Arrays.asList(ss, __, __, cc, __, __, __),
+                Arrays.asList(__, XX, __, XX, XX, XX, XX),
+                Arrays.asList(__, rr, __, bb, __, ss, __),
+                Arrays.asList(ll, XX, __, XX, __, XX, __)));
+    }
+
+    private static GameState createGameState() {
+        return new GameState(createBoard(),
+                Player.players(new Cell(1, 1), new Cell(13, 1),
+                        new Cell(13, 11), new Cell(1, 11), 3, 2, 3));
+    }
+
+    @Test
+    public void evolvesLikeTheImmutableGameState() {
+        for (int seed = 0; seed < 10; ++seed) {
+            RandomEventGenerator events = new RandomEventGenerator(seed, 10,
+                    30);
+            GameState s = createGameState();
+            MutableGameState m = new MutableGameState(s);
+
+            while (!s.isGameOver()) {
+                Map<PlayerID, Optional<Direction>> speedChangeEvents = events
+                        .randomSpeedChangeEvents();
+                Set<PlayerID> bombDropEvents = events.randomBombDropEvents();
+                s = s.next(speedChangeEvents, bombDropEvents);
+                m.next(speedChangeEvents, bombDropEvents);
+
+                assertEquals(s.ticks(), m.ticks());
+                assertEquals(s.winner(), m.winner());
+                assertEquals(GameStateSerializer.serialize(PAINTER, s),
+                        GameStateSerializer.serialize(PAINTER, m.snapshot()));
+            }
+            assertEquals(s.isGameOver(), m.isGameOver());
+        }
+    }
+
+    @Test
+    public void drawsTheSameBlocksAsTheImmutableGameState() {
+        for (int seed = 0; seed < 5; ++seed) {
+            RandomEventGenerator events = new RandomEventGenerator(seed, 10,
+                    30);
+            GameState s = new GameState(Board.defaultBoard(),
+                    createGameState().players()).withSeed(seed);
+            MutableGameState m = new MutableGameState(s);
+
+            while (!s.isGameOver()) {
+                Map<PlayerID, Optional<Direction>> speedChangeEvents = events
+                        .randomSpeedChangeEvents();
+                Set<PlayerID> bombDropEvents = events.randomBombDropEvents();
+                s = s.next(speedChangeEvents, bombDropEvents);
+                m.next(speedChangeEvents, bombDropEvents);
+
+                assertEquals(s.seed(), m.snapshot().seed());
+                assertEquals(GameStateSerializer.serialize(PAINTER, s),
+                        GameStateSerializer.serialize(PAINTER, m.snapshot()));
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedAndEventsReplayTheSameGame() {
+        List<List<Byte>> games = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            RandomEventGenerator events = new RandomEventGenerator(7, 10, 30);
+            GameState s = new GameState(Board.defaultBoard(),
+                    createGameState().players()).withSeed(42);
+            List<Byte> game = new ArrayList<>();
+            while (!s.isGameOver()) {
+                s = s.next(events.randomSpeedChangeEvents(),
+                        events.randomBombDropEvents());
+                game.addAll(GameStateSerializer.serialize(PAINTER, s));
+            }
+            games.add(game);
+        }
+        assertEquals(games.get(0), games.get(1));
+    }
+
+    @Test
+    public void snapshotIsNotModifiedByLaterTicks() {
+        MutableGameState m = new MutableGameState(createGameState());
+        Set<PlayerID> allBombs = Collections.singleton(PlayerID.PLAYER_1);
+        m.next(Collections.emptyMap(), allBombs);
+        GameState snapshot = m.snapshot();
+        List<Byte> serialized = GameStateSerializer.serialize(PAINTER,
+                snapshot);
+
+        for (int i = 0; i < 2 * Ticks.BOMB_FUSE_TICKS; ++i)
+            m.next(Collections.emptyMap(), Collections.emptySet());
+
+        assertEquals(1, snapshot.ticks());
+        assertEquals(1, snapshot.bombedCells().size());
+        assertEquals(serialized,
+                GameStateSerializer.serialize(PAINTER, snapshot));
+    }
+}
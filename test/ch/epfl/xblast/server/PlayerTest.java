@@ -542,4 +542,55 @@ public class PlayerTest {
         assertEquals("Position Y is correct",  7, newPos.position().y());
         assertEquals("Direction is correct", Direction.E, newPos.direction());
     }
+
+    private static void assertSamePrefix(Sq<DirectedPosition> expected, Sq<DirectedPosition> given) {
+        for (int i = 0; i < 40; i++) {
+            assertEquals(expected.head().position(), given.head().position());
+            assertEquals(expected.head().direction(), given.head().direction());
+            expected = expected.tail();
+            given = given.tail();
+        }
+    }
+
+    @Test
+    public void compactMotionFollowsTheSequenceSemantics() {
+        Player compact = new Player(id, 3, new Cell(1, 1), maxBombs, bombRange);
+        Player sequence = new Player(id, compact.lifeStates(), compact.directedPositions(), maxBombs, bombRange);
+
+        List<Optional<Direction>> changes = Arrays.asList(Optional.of(Direction.E), Optional.of(Direction.S),
+                Optional.empty(), Optional.of(Direction.W), Optional.of(Direction.E), Optional.of(Direction.N),
+                Optional.of(Direction.W), Optional.empty(), Optional.of(Direction.S));
+        for (int tick = 0; tick < 300; tick++) {
+            if (tick % 7 == 0) {
+                Optional<Direction> change = changes.get(tick / 7 % changes.size());
+                compact = compact.withDirectionChange(change);
+                sequence = sequence.withDirectionChange(change);
+            }
+            assertEquals(sequence.nextPosition(), compact.nextPosition());
+            assertEquals(sequence.nextDirection(), compact.nextDirection());
+            assertSamePrefix(sequence.directedPositions(), compact.directedPositions());
+
+            boolean blasted = tick == 150;
+            compact = compact.next(true, blasted);
+            sequence = sequence.next(true, blasted);
+            assertEquals(sequence.position(), compact.position());
+            assertEquals(sequence.direction(), compact.direction());
+            assertEquals(sequence.lives(), compact.lives());
+            assertEquals(sequence.lifeState().state(), compact.lifeState().state());
+        }
+    }
+
+    @Test
+    public void compactLifeStatesFollowTheSequenceSemantics() {
+        Player p = new Player(id, 2, cellPosition, maxBombs, bombRange).next(false, true);
+        Sq<LifeState> expected = p.lifeStates();
+        for (int i = 0; i < 3 * (Ticks.PLAYER_DYING_TICKS + Ticks.PLAYER_INVULNERABLE_TICKS); i++) {
+            assertEquals(expected.head().lives(), p.lifeState().lives());
+            assertEquals(expected.head().state(), p.lifeState().state());
+            expected = expected.tail();
+            p = p.next(false, false);
+        }
+        assertEquals(1, p.lives());
+        assertEquals(State.VULNERABLE, p.lifeState().state());
+    }
 }
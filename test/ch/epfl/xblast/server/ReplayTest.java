@@ -0,0 +1,150 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.debug.RandomEventGenerator;
+
+public class ReplayTest {
+
+    private static final int PERIOD = 50;
+    private static final Level DEFAULT = Level.LevelWithPlayerAtFourEdges
+            .initialDefaultLevel();
+    private static final Level LEVEL = new Level(DEFAULT.boardPainter(),
+            DEFAULT.initialGameState().withSeed(99));
+
+    // records a random match, and returns its game states
+    private static List<GameState> record(Path file) throws IOException {
+        RandomEventGenerator events = new RandomEventGenerator(2016, 30, 100);
+        List<GameState> states = new ArrayList<>();
+        GameState s = LEVEL.initialGameState();
+        states.add(s);
+        try (ReplayRecorder r = new ReplayRecorder(file, LEVEL, PERIOD)) {
+            while (!s.isGameOver()) {
+                Map<PlayerID, Optional<Direction>> speedChangeEvents = events
+                        .randomSpeedChangeEvents();
+                Set<PlayerID> bombDropEvents = events.randomBombDropEvents();
+                s = s.next(speedChangeEvents, bombDropEvents);
+                r.record(speedChangeEvents, bombDropEvents, s);
+                states.add(s);
+            }
+            assertEquals(s.ticks(), r.ticks());
+        }
+        return states;
+    }
+
+    private static void assertSameState(GameState expected, GameState actual) {
+        assertEquals(expected.ticks(), actual.ticks());
+        assertEquals(
+                GameStateSerializer.serialize(LEVEL.boardPainter(), expected),
+                GameStateSerializer.serialize(LEVEL.boardPainter(), actual));
+    }
+
+    @Test
+    public void eventsAreEncodedAndDecoded() {
+        Optional<Direction> none = null;
+        List<Optional<Direction>> changes = new ArrayList<>();
+        changes.add(none);
+        changes.add(Optional.empty());
+        for (Direction d : Direction.values())
+            changes.add(Optional.of(d));
+
+        // every combination of the events of the players
+        int perPlayer = 2 * changes.size();
+        int combinations = (int) Math.pow(perPlayer, PlayerID.values().length);
+        for (int i = 0; i < combinations; ++i) {
+            Map<PlayerID, Optional<Direction>> speed = new EnumMap<>(
+                    PlayerID.class);
+            Set<PlayerID> bombs = EnumSet.noneOf(PlayerID.class);
+            int code = i;
+            for (PlayerID id : PlayerID.values()) {
+                Optional<Direction> c = changes.get(code % changes.size());
+                if (c != null)
+                    speed.put(id, c);
+                if ((code / changes.size()) % 2 == 1)
+                    bombs.add(id);
+                code /= perPlayer;
+            }
+
+            Map<PlayerID, Optional<Direction>> speed1 = new EnumMap<>(
+                    PlayerID.class);
+            Set<PlayerID> bombs1 = EnumSet.noneOf(PlayerID.class);
+            ReplayLog.decode(ReplayLog.encode(speed, bombs), speed1, bombs1);
+            assertEquals(speed, speed1);
+            assertEquals(bombs, bombs1);
+        }
+    }
+
+    @Test
+    public void replayGivesTheGameStatesOfTheMatch() throws IOException {
+        Path file = Files.createTempFile("xblast", ".xbr");
+        try {
+            List<GameState> states = record(file);
+            int last = states.size() - 1;
+            assertEquals(ReplayLog.inputOffset(last, PERIOD), Files.size(file));
+
+            ReplayPlayer player = new ReplayPlayer(file, LEVEL);
+            assertEquals(last, player.ticks());
+            int[] ticks = { last, 0, 1, PERIOD - 1, PERIOD, PERIOD + 1,
+                    last / 2, 3, 7 * PERIOD + 13, last - 1 };
+            for (int t : ticks)
+                assertSameState(states.get(t), player.seek(t));
+            // the speed of the replay is measured by ReplayBenchmark
+            assertEquals(-1, player.verify());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void modifiedEventsAreDetected() throws IOException {
+        Path file = Files.createTempFile("xblast", ".xbr");
+        try {
+            record(file);
+            // all the players drop a bomb at tick 10
+            try (FileChannel c = FileChannel.open(file,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(ReplayLog.INPUT_SIZE);
+                b.putShort(ReplayLog.encode(new EnumMap<>(PlayerID.class),
+                        EnumSet.allOf(PlayerID.class))).flip();
+                c.write(b, ReplayLog.inputOffset(10, PERIOD));
+            }
+            assertEquals(PERIOD, new ReplayPlayer(file, LEVEL).verify());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void logOfAnotherLevelIsRejected() throws IOException {
+        Path file = Files.createTempFile("xblast", ".xbr");
+        try {
+            new ReplayRecorder(file, LEVEL, PERIOD).close();
+            // the players have fewer lives
+            GameState other = new GameState(Board.defaultBoard(),
+                    Player.players(new Cell(1, 1), new Cell(13, 1),
+                            new Cell(13, 11), new Cell(1, 11), 1, 2, 3));
+            new ReplayPlayer(file, new Level(DEFAULT.boardPainter(), other));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
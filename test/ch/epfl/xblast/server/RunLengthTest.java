@@ -3,10 +3,13 @@ package ch.epfl.xblast.server;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -47,4 +50,129 @@ public class RunLengthTest {
         assertTrue(toTest.equals(correct));
     }
 
+    private static List<Byte> randomRuns(Random rng, int size) {
+        List<Byte> list = new ArrayList<>();
+        while (list.size() < size)
+            list.addAll(Collections.nCopies(1 + rng.nextInt(200),
+                    (byte) rng.nextInt(4)));
+        return list.subList(0, size);
+    }
+
+    private static byte[] toArray(List<Byte> list) {
+        byte[] bytes = new byte[list.size()];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = list.get(i);
+        return bytes;
+    }
+
+    @Test
+    public void primitiveEncodingIsTheListOne() {
+        Random rng = new Random(2016);
+        for (int i = 0; i < 100; ++i) {
+            List<Byte> list = randomRuns(rng, 400);
+            byte[] bytes = toArray(list);
+            ByteBuffer encoded = ByteBuffer.allocate(bytes.length + 2);
+            encoded.put((byte) 9);
+            RunLengthEncoder.encode(bytes, 0, bytes.length, encoded);
+            encoded.flip();
+            encoded.get();
+
+            List<Byte> expected = RunLengthEncoder.encode(list);
+            assertEquals(expected.size(), encoded.remaining());
+            for (byte b : expected)
+                assertEquals(b, encoded.get());
+        }
+    }
+
+    @Test
+    public void longRunsAreSplit() {
+        ByteBuffer encoded = ByteBuffer.allocate(8);
+        RunLengthEncoder.encodeRun((byte) 5, 262, encoded);
+        assertEquals(Arrays.asList((byte) -128, (byte) 5, (byte) -128,
+                (byte) 5, (byte) 5, (byte) 5), bytesOf(encoded));
+    }
+
+    @Test
+    public void decodingIntoAnArrayIsTheListDecoding() {
+        Random rng = new Random(7);
+        for (int i = 0; i < 100; ++i) {
+            List<Byte> list = randomRuns(rng, 300);
+            List<Byte> encoded = RunLengthEncoder.encode(list);
+
+            byte[] decoded = new byte[302];
+            int n = RunLengthEncoder.decode(ByteBuffer.wrap(toArray(encoded)),
+                    decoded, 2);
+            assertEquals(300, n);
+            assertEquals(RunLengthEncoder.decode(encoded), Arrays.asList(
+                    toBoxed(Arrays.copyOfRange(decoded, 2, 302))));
+        }
+    }
+
+    @Test
+    public void streamingDecodingGivesTheRuns() {
+        List<Integer> runs = new ArrayList<>();
+        RunLengthEncoder.decode(
+                ByteBuffer.wrap(new byte[] { 1, -3, 2, 3, 3, 4 }),
+                (b, count) -> {
+                    runs.add((int) b);
+                    runs.add(count);
+                });
+        assertEquals(Arrays.asList(1, 1, 2, 5, 3, 1, 3, 1, 4, 1), runs);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodingFailsOnAFinalTag() {
+        RunLengthEncoder.decode(ByteBuffer.wrap(new byte[] { 1, -3 }),
+                new byte[10], 0);
+    }
+
+    @Test
+    public void decodingAPartReadsOnlyItsBytes() {
+        ByteBuffer src = ByteBuffer.wrap(new byte[] { 1, -3, 2, 3, 9, 9 });
+        byte[] dst = new byte[8];
+        RunLengthEncoder.decode(src, 4, dst, 1, 8);
+        assertEquals(4, src.position());
+        assertTrue(Arrays.equals(new byte[] { 0, 1, 2, 2, 2, 2, 2, 3 }, dst));
+    }
+
+    @Test
+    public void decodingAtPositionsPermutesTheBytes() {
+        byte[] dst = new byte[4];
+        RunLengthEncoder.decode(ByteBuffer.wrap(new byte[] { 1, -1, 2 }), 3,
+                dst, new int[] { 3, 0, 2, 1 });
+        assertTrue(Arrays.equals(new byte[] { 2, 2, 2, 1 }, dst));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodingAPartFailsIfItIsNotFilled() {
+        RunLengthEncoder.decode(ByteBuffer.wrap(new byte[] { 1, 2 }), 2,
+                new byte[4], 0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodingAPartFailsOnATagAtItsEnd() {
+        RunLengthEncoder.decode(ByteBuffer.wrap(new byte[] { 1, -3, 2 }), 2,
+                new byte[10], 0, 6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encodingFailsOnANegativeByte() {
+        RunLengthEncoder.encode(new byte[] { 1, -1 }, 0, 2,
+                ByteBuffer.allocate(2));
+    }
+
+    private static List<Byte> bytesOf(ByteBuffer buffer) {
+        buffer.flip();
+        List<Byte> bytes = new ArrayList<>();
+        while (buffer.hasRemaining())
+            bytes.add(buffer.get());
+        return bytes;
+    }
+
+    private static Byte[] toBoxed(byte[] bytes) {
+        Byte[] boxed = new Byte[bytes.length];
+        for (int i = 0; i < bytes.length; ++i)
+            boxed[i] = bytes[i];
+        return boxed;
+    }
 }
@@ -0,0 +1,74 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.RelayProtocol;
+
+public class SpectatorRelaysTest {
+
+    private static final Set<SocketAddress> NO_PLAYER = Collections
+            .emptySet();
+
+    private static DatagramChannel open() throws IOException {
+        DatagramChannel c = DatagramChannel.open(StandardProtocolFamily.INET);
+        c.bind(new InetSocketAddress("127.0.0.1", 0));
+        return c;
+    }
+
+    @Test
+    public void playersAndExtraRelaysCannotSubscribe() {
+        SpectatorRelays relays = new SpectatorRelays(2);
+        SocketAddress player = new InetSocketAddress("127.0.0.1", 1);
+        assertFalse(relays.subscribe(player, Collections.singleton(player)));
+        assertFalse(relays.isRelay(player));
+
+        for (int port = 2; port < 5; ++port)
+            relays.subscribe(new InetSocketAddress("127.0.0.1", port),
+                    NO_PLAYER);
+        assertEquals(2, relays.relays().size());
+        assertTrue(relays.isRelay(new InetSocketAddress("127.0.0.1", 3)));
+        assertFalse(relays.isRelay(new InetSocketAddress("127.0.0.1", 4)));
+        // a relay subscribing again is not new
+        assertFalse(relays.subscribe(new InetSocketAddress("127.0.0.1", 2),
+                NO_PLAYER));
+    }
+
+    @Test
+    public void eachRelayReceivesTheStateOnceAsASpectator()
+            throws IOException {
+        SpectatorRelays relays = new SpectatorRelays(4);
+        try (DatagramChannel server = open();
+                DatagramChannel relay1 = open();
+                DatagramChannel relay2 = open()) {
+            relays.subscribe(relay1.getLocalAddress(), NO_PLAYER);
+            relays.subscribe(relay2.getLocalAddress(), NO_PLAYER);
+
+            ByteBuffer state = ByteBuffer.allocate(3);
+            state.put((byte) 0).put((byte) 5).put((byte) 6).flip();
+            assertEquals(2, relays.send(server, state));
+
+            for (DatagramChannel relay : new DatagramChannel[] { relay1,
+                    relay2 }) {
+                ByteBuffer received = ByteBuffer.allocate(8);
+                relay.receive(received);
+                received.flip();
+                assertEquals(3, received.remaining());
+                assertTrue(RelayProtocol.isSpectator(received.get(0)));
+                assertEquals(6, received.get(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Time;
+import ch.epfl.xblast.server.TickClock.OverrunPolicy;
+
+public class TickClockTest {
+
+    private static final long TICK = 10 * Time.NS_PER_MS;
+
+    private static void busy(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+        }
+    }
+
+    /**
+     * @return a clock whose second tick is late by more than three ticks
+     */
+    private static TickClock overrunClock(OverrunPolicy policy) {
+        TickClock clock = new TickClock(TICK, policy);
+        clock.start();
+        clock.awaitTick();
+        busy(35 * Time.NS_PER_MS);
+        return clock;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsExceptionOnInvalidTickDuration() {
+        new TickClock(0, OverrunPolicy.CATCH_UP);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsExceptionOnNegativeSpin() {
+        new TickClock(TICK, OverrunPolicy.CATCH_UP, -1);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void constructorThrowsExceptionOnNullPolicy() {
+        new TickClock(TICK, null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void awaitTickThrowsExceptionIfNotStarted() {
+        new TickClock(TICK, OverrunPolicy.CATCH_UP).awaitTick();
+    }
+
+    @Test
+    public void ticksDoNotDrift() {
+        TickClock clock = new TickClock(5 * Time.NS_PER_MS,
+                OverrunPolicy.CATCH_UP);
+        long start = System.nanoTime();
+        clock.start();
+        for (int i = 0; i < 40; ++i)
+            clock.awaitTick();
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed >= 40 * 5 * Time.NS_PER_MS);
+        assertTrue(elapsed < 40 * 5 * Time.NS_PER_MS + 50 * Time.NS_PER_MS);
+        assertEquals(40, clock.ticks());
+        assertEquals(40, clock.startError().count());
+        assertEquals(39, clock.tickDuration().count());
+    }
+
+    @Test
+    public void catchUpStartsTheLateTicksAtOnce() {
+        TickClock clock = overrunClock(OverrunPolicy.CATCH_UP);
+        long start = System.nanoTime();
+        clock.awaitTick();
+        clock.awaitTick();
+        clock.awaitTick();
+        assertTrue(System.nanoTime() - start < TICK);
+        assertEquals(4, clock.ticks());
+        assertEquals(3, clock.overruns());
+        assertEquals(0, clock.skipped());
+    }
+
+    @Test
+    public void skipDropsThePassedDeadlines() {
+        TickClock clock = overrunClock(OverrunPolicy.SKIP);
+        clock.awaitTick();
+        assertEquals(2, clock.ticks());
+        assertEquals(1, clock.overruns());
+        assertTrue(clock.skipped() >= 3);
+    }
+
+    @Test
+    public void stretchShiftsTheNextDeadlines() {
+        TickClock clock = overrunClock(OverrunPolicy.STRETCH);
+        long start = System.nanoTime();
+        clock.awaitTick();
+        long lateStart = clock.tickStart();
+        clock.awaitTick();
+        // the late tick starts at once, the next one a tick later
+        assertTrue(lateStart - start < TICK / 2);
+        assertTrue(clock.tickStart() - lateStart > TICK / 2);
+        assertEquals(3, clock.ticks());
+        assertEquals(1, clock.overruns());
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.xblast.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.epfl.xblast.Time;
+
+public class TickLoopTest {
+
+    private static DatagramChannel channel() throws IOException {
+        DatagramChannel c = DatagramChannel.open();
+        c.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return c;
+    }
+
+    private static void send(DatagramChannel from, DatagramChannel to,
+            byte b) throws IOException {
+        from.send(ByteBuffer.wrap(new byte[] { b }), to.getLocalAddress());
+    }
+
+    private static TickClock clock(long tickNanos) {
+        return new TickClock(tickNanos, TickClock.OverrunPolicy.CATCH_UP);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsExceptionOnInvalidPacketSize()
+            throws IOException {
+        new TickLoop(clock(Time.NS_PER_MS), 0);
+    }
+
+    @Test
+    public void runStopsWhenTheHandlerReturnsFalse() throws IOException {
+        long tick = 10 * Time.NS_PER_MS;
+        int[] ticks = { 0 };
+        try (TickLoop loop = new TickLoop(clock(tick), 1)) {
+            long start = System.nanoTime();
+            loop.run(() -> ++ticks[0] < 5);
+            assertTrue(System.nanoTime() - start >= 5 * tick);
+            assertEquals(5, ticks[0]);
+            assertEquals(5, loop.clock().startError().count());
+            assertEquals(0, loop.inputLatency().count());
+        }
+    }
+
+    @Test
+    public void packetsOfEveryChannelAreReadBeforeTheTick()
+            throws IOException {
+        try (DatagramChannel sender = channel();
+                DatagramChannel c1 = channel();
+                DatagramChannel c2 = channel();
+                TickLoop loop = new TickLoop(clock(20 * Time.NS_PER_MS), 1)) {
+            List<Byte> received = new ArrayList<>();
+            List<SocketAddress> senders = new ArrayList<>();
+            loop.register(c1, (s, p) -> {
+                senders.add(s);
+                received.add(p.get());
+            });
+            loop.register(c2, (s, p) -> received.add(p.get()));
+
+            send(sender, c1, (byte) 1);
+            send(sender, c2, (byte) 2);
+            loop.run(() -> false);
+
+            assertEquals(2, received.size());
+            assertTrue(received.contains((byte) 1));
+            assertTrue(received.contains((byte) 2));
+            assertEquals(sender.getLocalAddress(), senders.get(0));
+            assertEquals(2, loop.inputLatency().count());
+        }
+    }
+
+    @Test
+    public void packetIsReadAsSoonAsItArrives() throws Exception {
+        long tick = 500L * Time.NS_PER_MS;
+        try (DatagramChannel sender = channel();
+                DatagramChannel c = channel();
+                TickLoop loop = new TickLoop(clock(tick), 1)) {
+            long[] readAt = { 0 };
+            loop.register(c, (s, p) -> readAt[0] = System.nanoTime());
+
+            long[] sentAt = { 0 };
+            Thread t = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                    sentAt[0] = System.nanoTime();
+                    send(sender, c, (byte) 1);
+                } catch (IOException | InterruptedException e) {
+                    throw new Error(e);
+                }
+            });
+            t.start();
+            loop.run(() -> false);
+            t.join();
+
+            // read long before the end of the tick
+            assertTrue(readAt[0] > 0);
+            assertTrue(readAt[0] - sentAt[0] < tick / 2);
+            assertTrue(loop.inputLatency().maxNanos() > tick / 4);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ch.epfl.xblast.server.debug;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.Board;
+import ch.epfl.xblast.server.GameState;
+import ch.epfl.xblast.server.MutableGameState;
+
+/**
+ * Plays many complete matches without display nor delay, in parallel on a
+ * fork-join pool, and reports statistics about them. The events and the random
+ * stream of each match are derived from its seed, so that a batch can be
+ * replayed.
+ */
+public final class BatchSimulator {
+
+    private final Supplier<GameState> initialState;
+    private final LongFunction<RandomEventGenerator> events;
+    private final int parallelism;
+
+    /**
+     * @param initialState
+     *            the state each match starts from
+     * @param events
+     *            the generator of the events of a match, given its seed
+     * @param parallelism
+     *            the number of threads playing the matches
+     */
+    public BatchSimulator(Supplier<GameState> initialState,
+            LongFunction<RandomEventGenerator> events, int parallelism) {
+        this.initialState = initialState;
+        this.events = events;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Plays the matches of the given seeds seed, seed + 1, ...
+     *
+     * @param nbMatches
+     * @param seed
+     * @return the statistics of the batch
+     */
+    public Report run(int nbMatches, long seed)
+            throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long start = System.nanoTime();
+            List<Result> results = pool.submit(() -> IntStream
+                    .range(0, nbMatches).parallel()
+                    .mapToObj(i -> play(seed + i))
+                    .collect(Collectors.toList())).get();
+            return new Report(results, System.nanoTime() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays one match until it is over
+     *
+     * @param seed
+     * @return its result
+     */
+    public Result play(long seed) {
+        RandomEventGenerator g = events.apply(seed);
+        long start = System.nanoTime();
+        MutableGameState s = new MutableGameState(
+                initialState.get().withSeed(seed));
+        while (!s.isGameOver())
+            s.next(g.randomSpeedChangeEvents(), g.randomBombDropEvents());
+        return new Result(seed, s.ticks(), System.nanoTime() - start,
+                s.winner());
+    }
+
+    /**
+     * The outcome of one match
+     */
+    public static final class Result {
+        public final long seed;
+        public final int ticks;
+        public final long wallNanos;
+        public final Optional<PlayerID> winner;
+
+        private Result(long seed, int ticks, long wallNanos,
+                Optional<PlayerID> winner) {
+            this.seed = seed;
+            this.ticks = ticks;
+            this.wallNanos = wallNanos;
+            this.winner = winner;
+        }
+    }
+
+    /**
+     * The aggregated statistics of a batch
+     */
+    public static final class Report {
+        public final List<Result> results;
+        public final long wallNanos;
+
+        private Report(List<Result> results, long wallNanos) {
+            this.results = results;
+            this.wallNanos = wallNanos;
+        }
+
+        public long totalTicks() {
+            return results.stream().mapToLong(r -> r.ticks).sum();
+        }
+
+        public double ticksPerSecond() {
+            return totalTicks() * 1e9 / wallNanos;
+        }
+
+        public double averageTicks() {
+            return results.stream().mapToInt(r -> r.ticks).average()
+                    .orElse(0);
+        }
+
+        public double averageMatchMillis() {
+            return results.stream().mapToLong(r -> r.wallNanos).average()
+                    .orElse(0) / 1e6;
+        }
+
+        public double maxMatchMillis() {
+            return results.stream().mapToLong(r -> r.wallNanos).max()
+                    .orElse(0) / 1e6;
+        }
+
+        /**
+         * @return the number of matches won by each player
+         */
+        public Map<PlayerID, Integer> wins() {
+            Map<PlayerID, Integer> wins = new EnumMap<>(PlayerID.class);
+            for (PlayerID id : PlayerID.values())
+                wins.put(id, 0);
+            for (Result r : results)
+                r.winner.ifPresent(id -> wins.merge(id, 1, Integer::sum));
+            return wins;
+        }
+
+        /**
+         * @return the number of matches without winner
+         */
+        public long draws() {
+            return results.stream().filter(r -> !r.winner.isPresent())
+                    .count();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder();
+            b.append(String.format("%d matches in %.1f s, %.0f ticks/s%n",
+                    results.size(), wallNanos / 1e9, ticksPerSecond()));
+            b.append(String.format(
+                    "match length: %.1f ticks on average, wall time: %.2f ms on average, %.2f ms at most%n",
+                    averageTicks(), averageMatchMillis(), maxMatchMillis()));
+            for (Map.Entry<PlayerID, Integer> e : wins().entrySet())
+                b.append(String.format("%s: %d wins%n", e.getKey(),
+                        e.getValue()));
+            b.append(String.format("no winner: %d%n", draws()));
+            return b.toString();
+        }
+    }
+
+    /**
+     * Plays a batch on the default board and prints its report
+     *
+     * @param args
+     *            the number of matches (1000 by default), the number of
+     *            threads (the number of processors by default) and the
+     *            first seed (2016 by default)
+     */
+    public static void main(String[] args)
+            throws InterruptedException, ExecutionException {
+        int nbMatches = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 2016;
+
+        BatchSimulator simulator = new BatchSimulator(
+                () -> new GameState(Board.defaultBoard(),
+                        GameStatePrinter.players()),
+                s -> new RandomEventGenerator(s, 30, 100), parallelism);
+        System.out.print(simulator.run(nbMatches, seed));
+    }
+}
@@ -8,6 +8,7 @@ import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
 import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.client.AssetLoader;
 import ch.epfl.xblast.client.GameStateDeserializer;
 import ch.epfl.xblast.client.XBlastComponent;
 import ch.epfl.xblast.server.Board;
@@ -36,7 +37,8 @@ public class GamePrinterComponent {
                 GameStatePrinter.players());
         RandomEventGenerator n = new RandomEventGenerator(2016, 30, 100);
 
-        XBlastComponent xbc = new XBlastComponent();
+        XBlastComponent xbc = new XBlastComponent(
+                XBlastComponent.loadImages(new AssetLoader(null)));
 
         SwingUtilities.invokeLater(() -> createUi(xbc));
 
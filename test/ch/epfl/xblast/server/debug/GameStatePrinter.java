@@ -7,10 +7,12 @@ import java.util.Set;
 
 import ch.epfl.xblast.Cell;
 import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.Time;
 import ch.epfl.xblast.server.Block;
 import ch.epfl.xblast.server.Board;
 import ch.epfl.xblast.server.GameState;
 import ch.epfl.xblast.server.Player;
+import ch.epfl.xblast.server.TickClock;
 
 public final class GameStatePrinter {
 
@@ -46,10 +48,14 @@ public final class GameStatePrinter {
         return players;
     }
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) {
         GameState s = new GameState(normalBoard(), players());
         String clear = "\u001b[ 2 J";
         RandomEventGenerator n = new RandomEventGenerator(2016, 30, 100);
+        // a slow terminal drops ticks rather than accelerating afterwards
+        TickClock clock = new TickClock(30 * Time.NS_PER_MS,
+                TickClock.OverrunPolicy.SKIP);
+        clock.start();
 
         do {
             System.out.println(clear);
@@ -61,7 +67,7 @@ public final class GameStatePrinter {
             }
             printGameState(s);
             s = s.next(n.randomSpeedChangeEvents(), n.randomBombDropEvents());
-            Thread.sleep(30);
+            clock.awaitTick();
             System.out.println(s.ticks());
         } while (!s.isGameOver());
     }
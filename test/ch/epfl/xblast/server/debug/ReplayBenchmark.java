@@ -0,0 +1,74 @@
+package ch.epfl.xblast.server.debug;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import ch.epfl.xblast.Direction;
+import ch.epfl.xblast.PlayerID;
+import ch.epfl.xblast.server.GameState;
+import ch.epfl.xblast.server.Level;
+import ch.epfl.xblast.server.ReplayPlayer;
+import ch.epfl.xblast.server.ReplayRecorder;
+import ch.epfl.xblast.server.Ticks;
+
+/**
+ * Compares the time taken to verify and to seek a recorded random match with
+ * the duration of the match itself, which the replay must beat by far (at
+ * least 100 times).
+ */
+public final class ReplayBenchmark {
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    public static void main(String[] args) throws IOException {
+        Level level = Level.LevelWithPlayerAtFourEdges.initialDefaultLevel();
+        Path file = Files.createTempFile("xblast", ".xbr");
+        try {
+            RandomEventGenerator events = new RandomEventGenerator(2016, 30,
+                    100);
+            GameState s = level.initialGameState();
+            try (ReplayRecorder r = new ReplayRecorder(file, level,
+                    ReplayRecorder.DEFAULT_PERIOD)) {
+                while (!s.isGameOver()) {
+                    Map<PlayerID, Optional<Direction>> speedChangeEvents = events
+                            .randomSpeedChangeEvents();
+                    Set<PlayerID> bombDropEvents = events
+                            .randomBombDropEvents();
+                    s = s.next(speedChangeEvents, bombDropEvents);
+                    r.record(speedChangeEvents, bombDropEvents, s);
+                }
+            }
+            ReplayPlayer player = new ReplayPlayer(file, level);
+            int ticks = player.ticks();
+            double match = (double) ticks * Ticks.TICK_NANOSECOND_DURATION;
+
+            for (int round = 0; round < 2; ++round) {
+                int n = round == 0 ? WARMUP : ITERATIONS;
+                long sink = 0;
+
+                long start = System.nanoTime();
+                for (int i = 0; i < n; ++i)
+                    sink += player.verify();
+                long verify = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < n; ++i)
+                    sink += player.seek(ticks - 1 - i % ticks).ticks();
+                long seek = System.nanoTime() - start;
+
+                if (round == 1)
+                    System.out.printf(
+                            "%d ticks: verify %.0f us (%.0f times faster than the match), seek %.0f us (%d)%n",
+                            ticks, verify / 1e3 / n, match * n / verify,
+                            seek / 1e3 / n, sink);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ch.epfl.xblast.server.debug;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.epfl.xblast.Cell;
+import ch.epfl.xblast.RunLengthEncoder;
+import ch.epfl.xblast.server.Board;
+import ch.epfl.xblast.server.Level;
+import ch.epfl.xblast.server.painter.BlockImage;
+import ch.epfl.xblast.server.painter.BoardPainter;
+
+/**
+ * Compares the time taken to encode and decode the default board with the
+ * list API and with the primitive one of the RunLengthEncoder.
+ */
+public final class RunLengthBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    public static void main(String[] args) {
+        BoardPainter painter = new BoardPainter(Level.DEFAULT_PALET,
+                BlockImage.IRON_FLOOR_S);
+        Board board = Board.defaultBoard();
+        List<Byte> list = new ArrayList<>();
+        for (Cell c : Cell.SPIRAL_ORDER)
+            list.add(painter.byteForCell(board, c));
+        byte[] bytes = new byte[list.size()];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = list.get(i);
+
+        ByteBuffer encoded = ByteBuffer.allocate(bytes.length);
+        byte[] decoded = new byte[bytes.length];
+
+        for (int round = 0; round < 2; ++round) {
+            int n = round == 0 ? WARMUP : ITERATIONS;
+            long sink = 0;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < n; ++i)
+                sink += RunLengthEncoder.decode(RunLengthEncoder.encode(list))
+                        .size();
+            long boxed = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < n; ++i) {
+                encoded.clear();
+                RunLengthEncoder.encode(bytes, 0, bytes.length, encoded);
+                encoded.flip();
+                sink += RunLengthEncoder.decode(encoded, decoded, 0);
+            }
+            long primitive = System.nanoTime() - start;
+
+            if (round == 1)
+                System.out.printf(
+                        "encode + decode of %d bytes: list %.0f ns, primitive %.0f ns (%d)%n",
+                        bytes.length, (double) boxed / n,
+                        (double) primitive / n, sink);
+        }
+    }
+}